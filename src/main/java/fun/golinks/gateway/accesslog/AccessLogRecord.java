@@ -0,0 +1,39 @@
+package fun.golinks.gateway.accesslog;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 一条访问日志，预先分配在环形缓冲区中并被反复复用，写入线程消费后即可被下一个请求覆盖
+ */
+@Getter
+@Setter
+public class AccessLogRecord {
+
+    /**
+     * 请求完成时间（毫秒）
+     */
+    private long timestamp;
+    private String traceId;
+    private String method;
+    private String path;
+    private String routeId;
+    private int status;
+    /**
+     * 耗时（微秒）
+     */
+    private long latencyMicros;
+    /**
+     * 响应体字节数
+     */
+    private long bytes;
+    private String clientIp;
+
+    void clear() {
+        traceId = null;
+        method = null;
+        path = null;
+        routeId = null;
+        clientIp = null;
+    }
+}
@@ -0,0 +1,86 @@
+package fun.golinks.gateway.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 多生产者、单消费者的有界无锁环形缓冲区（Vyukov 算法），槽位中的 {@link AccessLogRecord} 预先分配并复用。
+ * <p>
+ * 每个槽位有一个序号：序号等于生产者游标时可写，等于游标 + 1 时可读。生产者通过 CAS 占用槽位，填充后发布；缓冲区满时 {@link #claim()} 立即返回 null，不会阻塞请求线程。
+ */
+class AccessLogRingBuffer {
+
+    private final int mask;
+    private final AccessLogRecord[] records;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerIndex = new AtomicLong();
+    /**
+     * 只由消费者线程读写
+     */
+    private long consumerIndex;
+
+    AccessLogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.records = new AccessLogRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            records[i] = new AccessLogRecord();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 占用一个槽位，缓冲区满时返回 -1。占用成功后必须调用 {@link #publish(long)}
+     */
+    long claim() {
+        long index = producerIndex.get();
+        while (true) {
+            long sequence = sequences.get((int) index & mask);
+            long diff = sequence - index;
+            if (diff == 0) {
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    return index;
+                }
+                index = producerIndex.get();
+            } else if (diff < 0) {
+                return -1;
+            } else {
+                index = producerIndex.get();
+            }
+        }
+    }
+
+    AccessLogRecord get(long index) {
+        return records[(int) index & mask];
+    }
+
+    void publish(long index) {
+        sequences.set((int) index & mask, index + 1);
+    }
+
+    /**
+     * 消费至多 limit 条已发布的记录，返回消费的条数
+     */
+    int drain(Consumer<AccessLogRecord> consumer, int limit) {
+        int count = 0;
+        while (count < limit) {
+            int slot = (int) consumerIndex & mask;
+            if (sequences.get(slot) != consumerIndex + 1) {
+                break;
+            }
+            AccessLogRecord record = records[slot];
+            consumer.accept(record);
+            record.clear();
+            sequences.set(slot, consumerIndex + records.length);
+            consumerIndex++;
+            count++;
+        }
+        return count;
+    }
+
+    int capacity() {
+        return records.length;
+    }
+}
@@ -0,0 +1,247 @@
+package fun.golinks.gateway.accesslog;
+
+import fun.golinks.gateway.ip.ClientIpResolver;
+import fun.golinks.gateway.properties.AccessLogProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * 异步访问日志。
+ * <p>
+ * 请求线程在请求完成时占用环形缓冲区中的一条预分配记录并填充字段，不做格式化和 I/O；后台线程批量把记录写成 JSON Lines，文件超过 max-file-size 时滚动。
+ * 缓冲区写满时直接丢弃记录并计数（gateway.access_log.records{result=dropped}），不会阻塞 Netty 事件循环线程。
+ */
+@Slf4j
+@Component
+public class AccessLogWriter implements InitializingBean, DisposableBean {
+
+    private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+
+    private final AccessLogProperties accessLogProperties;
+    private final ClientIpResolver clientIpResolver;
+    private final AccessLogRingBuffer ringBuffer;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final StringBuilder batch = new StringBuilder(WRITER_BUFFER_SIZE);
+    private final File file;
+    private volatile boolean running;
+    private Thread thread;
+    private Writer writer;
+    private long fileSize;
+
+    public AccessLogWriter(AccessLogProperties accessLogProperties, ClientIpResolver clientIpResolver,
+            MeterRegistry meterRegistry) {
+        this.accessLogProperties = accessLogProperties;
+        this.clientIpResolver = clientIpResolver;
+        this.ringBuffer = new AccessLogRingBuffer(accessLogProperties.getBufferSize());
+        this.file = new File(accessLogProperties.getPath());
+        FunctionCounter.builder("gateway.access_log.records", written, LongAdder::sum).tag("result", "written")
+                .description("Access log records written").register(meterRegistry);
+        FunctionCounter.builder("gateway.access_log.records", dropped, LongAdder::sum).tag("result", "dropped")
+                .description("Access log records dropped because the buffer was full").register(meterRegistry);
+        Gauge.builder("gateway.access_log.buffer.capacity", ringBuffer, AccessLogRingBuffer::capacity)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一次请求，采样未命中或缓冲区已满时直接返回
+     *
+     * @param startNanos
+     *            请求开始时的 {@link System#nanoTime()}
+     * @param bytes
+     *            响应体字节数
+     */
+    public void log(ServerWebExchange exchange, String traceId, long startNanos, long bytes) {
+        if (!running) {
+            return;
+        }
+        Integer rawStatus = exchange.getResponse().getRawStatusCode();
+        int status = rawStatus == null ? 0 : rawStatus;
+        double sampleRate = accessLogProperties.getSampleRate();
+        if (status < 500 && sampleRate < 1.0D && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        long index = ringBuffer.claim();
+        if (index < 0) {
+            dropped.increment();
+            return;
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        AccessLogRecord record = ringBuffer.get(index);
+        record.setTimestamp(System.currentTimeMillis());
+        record.setTraceId(traceId);
+        record.setMethod(request.getMethodValue());
+        record.setPath(request.getURI().getRawPath());
+        record.setRouteId(route == null ? null : route.getId());
+        record.setStatus(status);
+        record.setLatencyMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        record.setBytes(bytes);
+        record.setClientIp(clientIpResolver.getClientIp(exchange));
+        ringBuffer.publish(index);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!accessLogProperties.isEnabled()) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "access-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void run() {
+        long idleNanos = accessLogProperties.getFlushInterval().toNanos();
+        int batchSize = Math.max(1, accessLogProperties.getBatchSize());
+        while (true) {
+            int count = ringBuffer.drain(this::append, batchSize);
+            if (count > 0) {
+                write(count, count < batchSize);
+                continue;
+            }
+            if (!running) {
+                break;
+            }
+            LockSupport.parkNanos(this, idleNanos);
+        }
+        closeWriter();
+    }
+
+    private void write(int count, boolean flush) {
+        try {
+            if (writer == null) {
+                openWriter();
+            }
+            writer.append(batch);
+            if (flush) {
+                writer.flush();
+            }
+            written.add(count);
+            fileSize += batch.length();
+            if (fileSize >= accessLogProperties.getMaxFileSize().toBytes()) {
+                rotate();
+            }
+        } catch (IOException e) {
+            dropped.add(count);
+            log.error("Failed to write access log {}", file, e);
+            closeWriter();
+        } finally {
+            batch.setLength(0);
+        }
+    }
+
+    private void openWriter() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8),
+                WRITER_BUFFER_SIZE);
+        fileSize = file.length();
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to close access log {}", file, e);
+        }
+        writer = null;
+    }
+
+    private void rotate() {
+        closeWriter();
+        String suffix = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        File target = new File(file.getPath() + "." + suffix);
+        for (int i = 1; target.exists(); i++) {
+            target = new File(file.getPath() + "." + suffix + "-" + i);
+        }
+        if (!file.renameTo(target)) {
+            log.warn("Failed to rotate access log {} to {}", file, target);
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        File[] history = parent == null ? null : parent.listFiles((dir, name) -> name.startsWith(prefix));
+        if (history != null && history.length > accessLogProperties.getMaxHistory()) {
+            Arrays.sort(history);
+            for (int i = 0; i < history.length - accessLogProperties.getMaxHistory(); i++) {
+                if (!history[i].delete()) {
+                    log.warn("Failed to delete access log {}", history[i]);
+                }
+            }
+        }
+    }
+
+    private void append(AccessLogRecord record) {
+        StringBuilder sb = batch;
+        sb.append("{\"ts\":").append(record.getTimestamp());
+        appendField(sb, "traceId", record.getTraceId());
+        appendField(sb, "method", record.getMethod());
+        appendField(sb, "path", record.getPath());
+        appendField(sb, "routeId", record.getRouteId());
+        sb.append(",\"status\":").append(record.getStatus());
+        sb.append(",\"latencyUs\":").append(record.getLatencyMicros());
+        sb.append(",\"bytes\":").append(record.getBytes());
+        appendField(sb, "clientIp", record.getClientIp());
+        sb.append("}\n");
+    }
+
+    private static void appendField(StringBuilder sb, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        sb.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,60 @@
+package fun.golinks.gateway.cache;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * 把写出的响应体复制到直接缓冲区。有 Content-Length 时一次分配到位，否则按倍数扩容；超过上限后放弃，不再复制。
+ */
+final class BodyCapture {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    private final int limit;
+    private ByteBuffer buffer;
+    private boolean overflow;
+
+    BodyCapture(int limit, long contentLength) {
+        this.limit = limit;
+        if (contentLength > limit) {
+            overflow = true;
+        } else {
+            buffer = ByteBuffer
+                    .allocateDirect(contentLength >= 0 ? (int) contentLength : Math.min(limit, INITIAL_CAPACITY));
+        }
+    }
+
+    void append(DataBuffer dataBuffer) {
+        if (overflow) {
+            return;
+        }
+        int length = dataBuffer.readableByteCount();
+        if (buffer.remaining() < length) {
+            int required = buffer.position() + length;
+            if (required > limit) {
+                overflow = true;
+                buffer = null;
+                return;
+            }
+            ByteBuffer expanded = ByteBuffer
+                    .allocateDirect((int) Math.min(limit, Math.max(required, buffer.capacity() * 2L)));
+            ((Buffer) buffer).flip();
+            expanded.put(buffer);
+            buffer = expanded;
+        }
+        buffer.put(dataBuffer.asByteBuffer());
+    }
+
+    /**
+     * 返回完整的响应体，超过上限时返回 null
+     */
+    ByteBuffer finish() {
+        if (overflow) {
+            return null;
+        }
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,224 @@
+package fun.golinks.gateway.cache;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 缓存的响应。
+ * <p>
+ * 响应体保存在只读的直接缓冲区（堆外）中，写给客户端时直接包装成 Netty 缓冲区，不做复制；条目本身只有状态码、响应头和几个时间戳留在堆上。
+ */
+public final class CachedResponse {
+
+    private static final int VERSION = 1;
+    /**
+     * 不缓存的响应头：逐跳头、Cookie 以及由网关在返回时重新计算的头
+     */
+    private static final Set<String> EXCLUDED_HEADERS = new HashSet<>(Arrays.asList("connection", "keep-alive",
+            "proxy-authenticate", "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade", "set-cookie",
+            "content-length", "date", "age", ResponseCache.CACHE_STATUS_HEADER.toLowerCase(Locale.ROOT)));
+
+    private final int status;
+    private final HttpHeaders headers;
+    private final ByteBuffer body;
+    private final String etag;
+    private final long createdAt;
+    private final long freshUntil;
+    private final long staleUntil;
+
+    private CachedResponse(int status, HttpHeaders headers, ByteBuffer body, String etag, long createdAt,
+            long freshUntil, long staleUntil) {
+        this.status = status;
+        this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+        this.body = body.asReadOnlyBuffer();
+        this.etag = etag;
+        this.createdAt = createdAt;
+        this.freshUntil = freshUntil;
+        this.staleUntil = staleUntil;
+    }
+
+    /**
+     * @param body
+     *            position 到 limit 之间为响应体，通常是直接缓冲区
+     * @param ttlMillis
+     *            新鲜期
+     * @param staleMillis
+     *            新鲜期过后仍可返回旧响应（同时后台刷新）的时长
+     */
+    static CachedResponse of(int status, HttpHeaders source, ByteBuffer body, long createdAt, long ttlMillis,
+            long staleMillis) {
+        HttpHeaders headers = new HttpHeaders();
+        for (Map.Entry<String, List<String>> entry : source.entrySet()) {
+            if (!EXCLUDED_HEADERS.contains(entry.getKey().toLowerCase(Locale.ROOT))) {
+                headers.put(entry.getKey(), entry.getValue());
+            }
+        }
+        String etag = headers.getETag();
+        if (StringUtils.isEmpty(etag)) {
+            // 上游没有返回 ETag 时按响应体生成弱 ETag
+            CRC32 crc32 = new CRC32();
+            crc32.update(body.duplicate());
+            etag = "W/\"" + Long.toHexString(crc32.getValue()) + "-" + Integer.toHexString(body.remaining()) + "\"";
+            headers.set(HttpHeaders.ETAG, etag);
+        }
+        return new CachedResponse(status, headers, body, etag, createdAt, createdAt + ttlMillis,
+                createdAt + ttlMillis + staleMillis);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    /**
+     * 响应体的只读视图，每次返回新的 position/limit
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public boolean isFresh(long now) {
+        return now < freshUntil;
+    }
+
+    /**
+     * 是否还能返回给客户端（新鲜或处于 stale-while-revalidate 期间）
+     */
+    public boolean isUsable(long now) {
+        return now < staleUntil;
+    }
+
+    long getStaleUntil() {
+        return staleUntil;
+    }
+
+    long ageSeconds(long now) {
+        return TimeUnit.MILLISECONDS.toSeconds(Math.max(0L, now - createdAt));
+    }
+
+    /**
+     * 缓存占用的估算大小
+     */
+    int weight() {
+        int weight = 128 + body.capacity();
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            weight += entry.getKey().length() * 2;
+            for (String value : entry.getValue()) {
+                weight += value.length() * 2;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * If-None-Match 是否命中（弱比较）
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (StringUtils.isEmpty(ifNoneMatch)) {
+            return false;
+        }
+        String opaque = opaqueTag(etag);
+        for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+            String tag = candidate.trim();
+            if ("*".equals(tag) || opaque.equals(opaqueTag(tag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * 序列化为字符串，用于写入 Redis
+     */
+    String encode() {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(body.remaining() + 512);
+            DataOutputStream data = new DataOutputStream(output);
+            data.writeByte(VERSION);
+            data.writeInt(status);
+            data.writeLong(createdAt);
+            data.writeLong(freshUntil);
+            data.writeLong(staleUntil);
+            data.writeUTF(etag);
+            data.writeInt(headers.size());
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                data.writeUTF(entry.getKey());
+                data.writeInt(entry.getValue().size());
+                for (String value : entry.getValue()) {
+                    data.writeUTF(value);
+                }
+            }
+            ByteBuffer content = getBody();
+            byte[] bytes = new byte[content.remaining()];
+            content.get(bytes);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+            data.flush();
+            return Base64.getEncoder().encodeToString(output.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 从 {@link #encode()} 的结果还原，格式不正确时返回 null
+     */
+    static CachedResponse decode(String value) {
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(value)));
+            if (data.readByte() != VERSION) {
+                return null;
+            }
+            int status = data.readInt();
+            long createdAt = data.readLong();
+            long freshUntil = data.readLong();
+            long staleUntil = data.readLong();
+            String etag = data.readUTF();
+            HttpHeaders headers = new HttpHeaders();
+            int headerCount = data.readInt();
+            for (int i = 0; i < headerCount; i++) {
+                String name = data.readUTF();
+                int valueCount = data.readInt();
+                for (int j = 0; j < valueCount; j++) {
+                    headers.add(name, data.readUTF());
+                }
+            }
+            byte[] bytes = new byte[data.readInt()];
+            data.readFully(bytes);
+            ByteBuffer body = ByteBuffer.allocateDirect(bytes.length);
+            body.put(bytes);
+            ((Buffer) body).flip();
+            return new CachedResponse(status, headers, body, etag, createdAt, freshUntil, staleUntil);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package fun.golinks.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.properties.ResponseCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应缓存的存储。
+ * <p>
+ * 本地为按大小淘汰的 Caffeine 缓存，条目在 stale-while-revalidate 期结束时过期；可选的共享层存放在 Redis 中，多个网关节点共用。同时记录每个 key
+ * 正在进行中的上游请求，用于合并并发的未命中请求。
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    public static final String CACHE_STATUS_HEADER = "X-Cache-Status";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * 请求的处理结果，同时作为 X-Cache-Status 响应头的取值
+     */
+    public enum Result {
+        HIT, STALE, MISS, COALESCED, BYPASS
+    }
+
+    private final ResponseCacheProperties responseCacheProperties;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final GatewayMetrics gatewayMetrics;
+    private final Cache<String, CachedResponse> cache;
+    private final ConcurrentMap<String, Sinks.One<CachedResponse>> inflight = new ConcurrentHashMap<>();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final Map<Result, Counter> results = new EnumMap<>(Result.class);
+
+    public ResponseCache(ResponseCacheProperties responseCacheProperties,
+            ReactiveRedisTemplate<String, String> redisTemplate, GatewayMetrics gatewayMetrics,
+            MeterRegistry meterRegistry) {
+        this.responseCacheProperties = responseCacheProperties;
+        this.redisTemplate = redisTemplate;
+        this.gatewayMetrics = gatewayMetrics;
+        this.cache = Caffeine.newBuilder().maximumWeight(responseCacheProperties.getMaxSize().toBytes())
+                .weigher((String key, CachedResponse response) -> response.weight()).recordStats()
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+                        return TimeUnit.MILLISECONDS
+                                .toNanos(Math.max(0L, response.getStaleUntil() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse response, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, response, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse response, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                }).build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "response");
+        for (Result result : Result.values()) {
+            results.put(result, Counter.builder("gateway.response_cache.requests").description("Response cache lookups")
+                    .tag("result", result.name().toLowerCase(Locale.ROOT)).register(meterRegistry));
+        }
+    }
+
+    public void record(Result result) {
+        results.get(result).increment();
+    }
+
+    /**
+     * 查询本地缓存，已过期（包括 stale 期）的条目返回 null
+     */
+    public CachedResponse getLocal(String key) {
+        CachedResponse response = cache.getIfPresent(key);
+        return response != null && response.isUsable(System.currentTimeMillis()) ? response : null;
+    }
+
+    /**
+     * 查询 Redis 中的共享缓存，命中时同时写入本地缓存；Redis 不可用时视为未命中
+     */
+    public Mono<CachedResponse> getShared(String key) {
+        return redisTemplate.opsForValue().get(redisKey(key)).flatMap(value -> {
+            CachedResponse response = CachedResponse.decode(value);
+            if (response == null || !response.isUsable(System.currentTimeMillis())) {
+                return Mono.empty();
+            }
+            cache.put(key, response);
+            return Mono.just(response);
+        }).onErrorResume(e -> {
+            gatewayMetrics.redisError(GatewayMetrics.RESPONSE_CACHE);
+            log.warn("Failed to read shared response cache: {}", e.getMessage());
+            return Mono.empty();
+        });
+    }
+
+    /**
+     * 写入本地缓存，shared 为 true 时异步写入 Redis
+     */
+    public void put(String key, CachedResponse response, boolean shared) {
+        cache.put(key, response);
+        if (!shared) {
+            return;
+        }
+        long ttlMillis = response.getStaleUntil() - System.currentTimeMillis();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        redisTemplate.opsForValue().set(redisKey(key), response.encode(), Duration.ofMillis(ttlMillis)).subscribe(null,
+                e -> {
+                    gatewayMetrics.redisError(GatewayMetrics.RESPONSE_CACHE);
+                    log.warn("Failed to write shared response cache: {}", e.getMessage());
+                });
+    }
+
+    /**
+     * 加入同一个 key 正在进行中的上游请求，没有进行中的请求时当前调用方成为首个请求
+     */
+    public Flight join(String key) {
+        Sinks.One<CachedResponse> sink = Sinks.one();
+        Sinks.One<CachedResponse> existing = inflight.putIfAbsent(key, sink);
+        return existing == null ? new Flight(key, sink, true) : new Flight(key, existing, false);
+    }
+
+    /**
+     * 同一个 key 同时只做一次后台刷新
+     */
+    boolean startRevalidation(String key) {
+        return revalidating.add(key);
+    }
+
+    void finishRevalidation(String key) {
+        revalidating.remove(key);
+    }
+
+    int getMaxEntrySize() {
+        return (int) Math.min(Integer.MAX_VALUE, responseCacheProperties.getMaxEntrySize().toBytes());
+    }
+
+    /**
+     * Redis key 使用摘要，避免把请求头（例如 Authorization）原文写入 Redis
+     */
+    private String redisKey(String key) {
+        byte[] digest = SHA_256.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(responseCacheProperties.getRedisKeyPrefix().length() + digest.length * 2);
+        sb.append(responseCacheProperties.getRedisKeyPrefix());
+        for (byte b : digest) {
+            sb.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一次进行中的上游请求
+     */
+    public final class Flight {
+
+        private final String key;
+        private final Sinks.One<CachedResponse> sink;
+        private final boolean leader;
+
+        private Flight(String key, Sinks.One<CachedResponse> sink, boolean leader) {
+            this.key = key;
+            this.sink = sink;
+            this.leader = leader;
+        }
+
+        /**
+         * 是否为首个请求，首个请求负责访问上游并且必须调用 {@link #complete(CachedResponse)}
+         */
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * 等待首个请求的结果，不可缓存、失败或等待超时时为空
+         */
+        public Mono<CachedResponse> result() {
+            return sink.asMono().timeout(responseCacheProperties.getMaxWait(), Mono.empty());
+        }
+
+        /**
+         * 首个请求完成，唤醒等待的请求；重复调用无效
+         *
+         * @param response
+         *            可缓存的响应，不可缓存或请求失败时为 null
+         */
+        public void complete(CachedResponse response) {
+            if (!leader || !inflight.remove(key, sink)) {
+                return;
+            }
+            if (response == null) {
+                sink.tryEmitEmpty();
+            } else {
+                sink.tryEmitValue(response);
+            }
+        }
+    }
+}
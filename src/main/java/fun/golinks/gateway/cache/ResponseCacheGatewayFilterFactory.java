@@ -0,0 +1,534 @@
+package fun.golinks.gateway.cache;
+
+import fun.golinks.gateway.cache.ResponseCache.Flight;
+import fun.golinks.gateway.cache.ResponseCache.Result;
+import fun.golinks.gateway.trace.TraceContext;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.netty.Connection;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * 响应缓存过滤器，在路由定义中按路由开启：
+ *
+ * <pre>
+ * filters:
+ *   - name: ResponseCache
+ *     args:
+ *       ttl: 30s
+ *       stale-while-revalidate: 60s
+ *       key-headers: Accept-Language
+ *       shared: true
+ * </pre>
+ * <p>
+ * 只处理 GET 请求，带 Authorization 的请求只有把 Authorization 列入 key-headers 时才缓存。上游响应需要满足：状态码 200、没有 Set-Cookie、Cache-Control 不含
+ * no-store / no-cache / private、Vary 中的请求头都已列入 key-headers；上游给出的 s-maxage / max-age 小于 ttl 时以上游为准。
+ * <p>
+ * 并发的未命中请求只有第一个访问上游，响应边返回边复制到堆外缓冲区，其余请求等待它完成后直接使用缓存结果。处于 stale-while-revalidate 期间的条目直接返回，同时在后台刷新。命中时按 If-None-Match 返回
+ * 304。shared 为 true 时本地未命中会先查询 Redis，写入时也同步到 Redis。
+ * <p>
+ * 过滤器排在 NettyWriteResponseFilter 之前，上游响应体经过这里装饰的响应写出，才能被复制。
+ */
+@Slf4j
+@Component
+public class ResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    private final ResponseCache responseCache;
+
+    public ResponseCacheGatewayFilterFactory(ResponseCache responseCache) {
+        super(Config.class);
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("ttl", "staleWhileRevalidate");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return new ResponseCacheFilter(config);
+    }
+
+    @Data
+    public static class Config {
+
+        /**
+         * 新鲜期
+         */
+        private Duration ttl = Duration.ofMinutes(1);
+
+        /**
+         * 新鲜期过后仍可返回旧响应（同时后台刷新）的时长
+         */
+        private Duration staleWhileRevalidate = Duration.ZERO;
+
+        /**
+         * 参与缓存 key 的请求头
+         */
+        private List<String> keyHeaders = new ArrayList<>();
+
+        /**
+         * 是否使用 Redis 共享缓存
+         */
+        private boolean shared = false;
+    }
+
+    private class ResponseCacheFilter implements GatewayFilter, Ordered {
+
+        private final Config config;
+        private final Set<String> keyHeaders = new HashSet<>();
+        private final long ttlMillis;
+        private final long staleMillis;
+
+        private ResponseCacheFilter(Config config) {
+            this.config = config;
+            for (String header : config.getKeyHeaders()) {
+                keyHeaders.add(header.toLowerCase(Locale.ROOT));
+            }
+            this.ttlMillis = config.getTtl().toMillis();
+            this.staleMillis = config.getStaleWhileRevalidate().toMillis();
+        }
+
+        @Override
+        public int getOrder() {
+            return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            if (!isCacheable(exchange.getRequest())) {
+                responseCache.record(Result.BYPASS);
+                return chain.filter(exchange);
+            }
+            String key = key(exchange);
+            CachedResponse cached = responseCache.getLocal(key);
+            if (cached != null) {
+                return serve(exchange, chain, key, cached);
+            }
+            Flight flight = responseCache.join(key);
+            if (!flight.isLeader()) {
+                responseCache.record(Result.COALESCED);
+                return flight.result().map(Optional::of).defaultIfEmpty(Optional.empty())
+                        .flatMap(response -> response.isPresent()
+                                ? write(exchange, response.get(), Result.COALESCED, System.currentTimeMillis())
+                                : chain.filter(exchange));
+            }
+            Mono<CachedResponse> shared = config.isShared() ? responseCache.getShared(key) : Mono.empty();
+            return shared.map(Optional::of).defaultIfEmpty(Optional.empty()).flatMap(response -> {
+                if (response.isPresent()) {
+                    flight.complete(response.get());
+                    return serve(exchange, chain, key, response.get());
+                }
+                return forward(exchange, chain, key, flight);
+            }).doFinally(signalType -> flight.complete(null));
+        }
+
+        private boolean isCacheable(ServerHttpRequest request) {
+            if (request.getMethod() != HttpMethod.GET) {
+                return false;
+            }
+            HttpHeaders headers = request.getHeaders();
+            if (headers.containsKey(HttpHeaders.RANGE)) {
+                return false;
+            }
+            if (headers.containsKey(HttpHeaders.AUTHORIZATION) && !keyHeaders.contains("authorization")) {
+                return false;
+            }
+            String cacheControl = headers.getCacheControl();
+            return cacheControl == null || !cacheControl.toLowerCase(Locale.ROOT).contains("no-store");
+        }
+
+        private String key(ServerWebExchange exchange) {
+            Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+            URI uri = exchange.getRequest().getURI();
+            StringBuilder sb = new StringBuilder(128);
+            sb.append(route == null ? "" : route.getId()).append(' ').append(uri.getRawPath());
+            if (uri.getRawQuery() != null) {
+                sb.append('?').append(uri.getRawQuery());
+            }
+            HttpHeaders headers = exchange.getRequest().getHeaders();
+            for (String header : config.getKeyHeaders()) {
+                sb.append('\n').append(header).append(':');
+                List<String> values = headers.get(header);
+                if (values != null) {
+                    sb.append(String.join(",", values));
+                }
+            }
+            return sb.toString();
+        }
+
+        private Mono<Void> serve(ServerWebExchange exchange, GatewayFilterChain chain, String key,
+                CachedResponse cached) {
+            long now = System.currentTimeMillis();
+            if (cached.isFresh(now)) {
+                responseCache.record(Result.HIT);
+                return write(exchange, cached, Result.HIT, now);
+            }
+            responseCache.record(Result.STALE);
+            revalidate(exchange, chain, key);
+            return write(exchange, cached, Result.STALE, now);
+        }
+
+        private Mono<Void> write(ServerWebExchange exchange, CachedResponse cached, Result result, long now) {
+            ServerHttpResponse response = exchange.getResponse();
+            HttpHeaders headers = response.getHeaders();
+            headers.addAll(cached.getHeaders());
+            headers.set(HttpHeaders.AGE, Long.toString(cached.ageSeconds(now)));
+            headers.set(ResponseCache.CACHE_STATUS_HEADER, result.name());
+            if (cached.matches(exchange.getRequest().getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH))) {
+                response.setStatusCode(HttpStatus.NOT_MODIFIED);
+                return response.setComplete();
+            }
+            response.setRawStatusCode(cached.getStatus());
+            ByteBuffer body = cached.getBody();
+            headers.setContentLength(body.remaining());
+            // 直接包装堆外缓冲区，不复制
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+        }
+
+        /**
+         * 首个未命中的请求：访问上游，响应写给客户端的同时复制一份用于缓存
+         */
+        private Mono<Void> forward(ServerWebExchange exchange, GatewayFilterChain chain, String key, Flight flight) {
+            responseCache.record(Result.MISS);
+            long now = System.currentTimeMillis();
+            exchange.getResponse().getHeaders().set(ResponseCache.CACHE_STATUS_HEADER, Result.MISS.name());
+            CapturingResponse response = new CapturingResponse(exchange.getResponse(), responseCache.getMaxEntrySize());
+            ServerWebExchange forwarded = exchange.mutate().request(withoutConditions(exchange.getRequest()))
+                    .response(response).build();
+            // 失败或取消时由外层的 doFinally 唤醒等待的请求
+            return chain.filter(forwarded).doOnSuccess(aVoid -> {
+                CachedResponse cached = toCachedResponse(response.getRawStatusCode(), response.getHeaders(),
+                        response.getCookies().isEmpty(), response.body(), now);
+                if (cached != null) {
+                    responseCache.put(key, cached, config.isShared());
+                }
+                flight.complete(cached);
+            });
+        }
+
+        /**
+         * 后台刷新过期条目，上游响应不写给客户端。后台请求使用独立的属性，路由过滤器写入的上游连接不会影响前台请求
+         */
+        private void revalidate(ServerWebExchange exchange, GatewayFilterChain chain, String key) {
+            if (!responseCache.startRevalidation(key)) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            DetachedResponse response = new DetachedResponse(exchange.getResponse().bufferFactory(),
+                    responseCache.getMaxEntrySize());
+            ServerWebExchange background = new BackgroundExchange(
+                    exchange.mutate().request(new BackgroundRequest(withoutConditions(exchange.getRequest())))
+                            .response(response).build(),
+                    exchange.getAttributes());
+            TraceContext traceContext = exchange.getAttribute(TraceContext.EXCHANGE_ATTR);
+            Mono.defer(() -> chain.filter(background)).then(Mono.defer(() -> drain(background, response)))
+                    .doFinally(signalType -> {
+                        if (signalType == SignalType.ON_COMPLETE) {
+                            CachedResponse cached = toCachedResponse(response.getRawStatusCode(), response.getHeaders(),
+                                    response.getCookies().isEmpty(), response.body(), now);
+                            if (cached != null) {
+                                responseCache.put(key, cached, config.isShared());
+                            }
+                        }
+                        responseCache.finishRevalidation(key);
+                        if (signalType != SignalType.ON_COMPLETE) {
+                            Connection connection = background.getAttribute(CLIENT_RESPONSE_CONN_ATTR);
+                            if (connection != null) {
+                                connection.dispose();
+                            }
+                        }
+                    })
+                    .contextWrite(context -> traceContext == null ? context
+                            : context.put(TraceContext.CONTEXT_KEY, traceContext))
+                    .subscribe(null, e -> log.warn("Failed to revalidate cached response: {}", e.getMessage()));
+        }
+
+        /**
+         * 按上游响应生成缓存条目，不可缓存时返回 null
+         */
+        private CachedResponse toCachedResponse(Integer status, HttpHeaders headers, boolean noCookies, ByteBuffer body,
+                long now) {
+            if (status == null || status != HttpStatus.OK.value() || body == null || !noCookies
+                    || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+                return null;
+            }
+            long ttl = ttlMillis;
+            long maxAge = -1L;
+            long sharedMaxAge = -1L;
+            String cacheControl = headers.getCacheControl();
+            if (cacheControl != null) {
+                for (String directive : StringUtils.split(cacheControl.toLowerCase(Locale.ROOT), ',')) {
+                    directive = directive.trim();
+                    if (directive.startsWith("no-store") || directive.startsWith("no-cache")
+                            || directive.startsWith("private")) {
+                        return null;
+                    } else if (directive.startsWith("s-maxage=")) {
+                        sharedMaxAge = seconds(directive.substring("s-maxage=".length()));
+                    } else if (directive.startsWith("max-age=")) {
+                        maxAge = seconds(directive.substring("max-age=".length()));
+                    }
+                }
+            }
+            long upstreamMaxAge = sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+            if (upstreamMaxAge >= 0) {
+                ttl = Math.min(ttl, TimeUnit.SECONDS.toMillis(upstreamMaxAge));
+            }
+            if (ttl <= 0) {
+                return null;
+            }
+            for (String vary : headers.getVary()) {
+                if (!keyHeaders.contains(vary.toLowerCase(Locale.ROOT))) {
+                    return null;
+                }
+            }
+            return CachedResponse.of(status, headers, body, now, ttl, staleMillis);
+        }
+    }
+
+    /**
+     * 上游响应体没有被写出时读完并释放，连接归还连接池
+     */
+    private static Mono<Void> drain(ServerWebExchange background, DetachedResponse response) {
+        Connection connection = background.getAttribute(CLIENT_RESPONSE_CONN_ATTR);
+        if (connection == null || response.isCommitted()) {
+            return Mono.empty();
+        }
+        return connection.inbound().receive().then();
+    }
+
+    private static long seconds(String value) {
+        try {
+            return Long.parseLong(StringUtils.strip(value.trim(), "\""));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * 去掉条件请求头，保证上游返回完整的响应体
+     */
+    private static ServerHttpRequest withoutConditions(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        if (!headers.containsKey(HttpHeaders.IF_NONE_MATCH) && !headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE)) {
+            return request;
+        }
+        return request.mutate().headers(httpHeaders -> {
+            httpHeaders.remove(HttpHeaders.IF_NONE_MATCH);
+            httpHeaders.remove(HttpHeaders.IF_MODIFIED_SINCE);
+        }).build();
+    }
+
+    /**
+     * 写给客户端的同时复制响应体
+     */
+    private static class CapturingResponse extends ServerHttpResponseDecorator {
+
+        private final int maxEntrySize;
+        private BodyCapture capture;
+        private boolean streaming;
+
+        private CapturingResponse(ServerHttpResponse delegate, int maxEntrySize) {
+            super(delegate);
+            this.maxEntrySize = maxEntrySize;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            BodyCapture bodyCapture = new BodyCapture(maxEntrySize, getHeaders().getContentLength());
+            capture = bodyCapture;
+            if (body instanceof Mono) {
+                return super.writeWith(Mono.from(body).doOnNext(bodyCapture::append));
+            }
+            return super.writeWith(Flux.from(body).doOnNext(bodyCapture::append));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            // 流式响应不缓存
+            streaming = true;
+            return super.writeAndFlushWith(body);
+        }
+
+        private ByteBuffer body() {
+            return streaming || capture == null ? null : capture.finish();
+        }
+    }
+
+    /**
+     * 后台刷新使用的 exchange，复制一份属性，路由过程中写入的属性只在后台请求中可见
+     */
+    private static class BackgroundExchange extends ServerWebExchangeDecorator {
+
+        private final Map<String, Object> attributes;
+
+        private BackgroundExchange(ServerWebExchange delegate, Map<String, Object> attributes) {
+            super(delegate);
+            this.attributes = new ConcurrentHashMap<>(attributes);
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+    }
+
+    /**
+     * 后台刷新使用的请求，GET 请求没有请求体，也不再读取已结束的客户端连接
+     */
+    private static class BackgroundRequest extends ServerHttpRequestDecorator {
+
+        private BackgroundRequest(ServerHttpRequest delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return Flux.empty();
+        }
+    }
+
+    /**
+     * 不关联客户端连接的响应，只收集状态码、响应头和响应体
+     */
+    private static class DetachedResponse implements ServerHttpResponse {
+
+        private final DataBufferFactory bufferFactory;
+        private final int maxEntrySize;
+        private final HttpHeaders headers = new HttpHeaders();
+        private final MultiValueMap<String, ResponseCookie> cookies = new LinkedMultiValueMap<>();
+        private Integer status;
+        private boolean committed;
+        private BodyCapture capture;
+
+        private DetachedResponse(DataBufferFactory bufferFactory, int maxEntrySize) {
+            this.bufferFactory = bufferFactory;
+            this.maxEntrySize = maxEntrySize;
+        }
+
+        @Override
+        public boolean setStatusCode(HttpStatus status) {
+            this.status = status == null ? null : status.value();
+            return true;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return status == null ? null : HttpStatus.resolve(status);
+        }
+
+        @Override
+        public boolean setRawStatusCode(Integer value) {
+            this.status = value;
+            return true;
+        }
+
+        @Override
+        public Integer getRawStatusCode() {
+            return status;
+        }
+
+        @Override
+        public MultiValueMap<String, ResponseCookie> getCookies() {
+            return cookies;
+        }
+
+        @Override
+        public void addCookie(ResponseCookie cookie) {
+            cookies.add(cookie.getName(), cookie);
+        }
+
+        @Override
+        public DataBufferFactory bufferFactory() {
+            return bufferFactory;
+        }
+
+        @Override
+        public void beforeCommit(Supplier<? extends Mono<Void>> action) {
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return committed;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            committed = true;
+            BodyCapture bodyCapture = new BodyCapture(maxEntrySize, headers.getContentLength());
+            capture = bodyCapture;
+            return Flux.from(body).doOnNext(dataBuffer -> {
+                bodyCapture.append(dataBuffer);
+                DataBufferUtils.release(dataBuffer);
+            }).then();
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            committed = true;
+            capture = null;
+            return Flux.from(body).concatMap(Flux::from).doOnNext(DataBufferUtils::release).then();
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            committed = true;
+            return Mono.empty();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        private ByteBuffer body() {
+            return capture == null ? null : capture.finish();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package fun.golinks.gateway.circuitbreaker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按时间窗口内失败率熔断的断路器。
+ * <ul>
+ * <li>CLOSED：正常放行，窗口内调用数不少于 minimumCalls 且失败率达到阈值时进入 OPEN</li>
+ * <li>OPEN：全部拒绝，openDuration 之后进入 HALF_OPEN</li>
+ * <li>HALF_OPEN：只放行 halfOpenCalls 个试探请求，全部成功后回到 CLOSED，任一失败重新进入 OPEN</li>
+ * </ul>
+ * 窗口分成若干个桶，计数使用 LongAdder，请求路径上只在桶轮换时短暂加锁。
+ */
+final class CircuitBreaker {
+
+    private static final int BUCKETS = 10;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long bucketNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    /**
+     * 进入 OPEN 或 HALF_OPEN 的时间
+     */
+    private volatile long stateSince;
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+
+    CircuitBreaker(int failureRateThreshold, int minimumCalls, long windowNanos, long openNanos, int halfOpenCalls) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.max(1, minimumCalls);
+        this.bucketNanos = Math.max(1, windowNanos / BUCKETS);
+        this.openNanos = openNanos;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    State getState() {
+        return state.get();
+    }
+
+    /**
+     * 是否放行请求
+     */
+    boolean tryAcquire(long now) {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (now - stateSince < openNanos) {
+                return false;
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                halfOpenSuccesses.set(0);
+                halfOpenPermits.set(halfOpenCalls);
+                stateSince = now;
+            }
+        } else if (now - stateSince >= openNanos && halfOpenPermits.get() <= 0) {
+            // 试探请求被取消、没有结果时重新发放名额，避免停留在 HALF_OPEN
+            halfOpenSuccesses.set(0);
+            halfOpenPermits.set(halfOpenCalls);
+            stateSince = now;
+        }
+        return halfOpenPermits.getAndDecrement() > 0;
+    }
+
+    void onSuccess(long now) {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            if (halfOpenSuccesses.incrementAndGet() >= halfOpenCalls
+                    && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                for (Bucket bucket : buckets) {
+                    bucket.reset(EMPTY);
+                }
+            }
+        } else if (current == State.CLOSED) {
+            bucket(now).calls.increment();
+        }
+    }
+
+    void onFailure(long now) {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            if (state.compareAndSet(State.HALF_OPEN, State.OPEN)) {
+                stateSince = now;
+            }
+        } else if (current == State.CLOSED) {
+            Bucket bucket = bucket(now);
+            bucket.calls.increment();
+            bucket.failures.increment();
+            if (isFailureRateExceeded(now) && state.compareAndSet(State.CLOSED, State.OPEN)) {
+                stateSince = now;
+            }
+        }
+    }
+
+    private Bucket bucket(long now) {
+        long epoch = now / bucketNanos;
+        Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) BUCKETS)];
+        if (bucket.epoch != epoch) {
+            bucket.reset(epoch);
+        }
+        return bucket;
+    }
+
+    private boolean isFailureRateExceeded(long now) {
+        long epoch = now / bucketNanos;
+        long calls = 0;
+        long failures = 0;
+        for (Bucket bucket : buckets) {
+            long bucketEpoch = bucket.epoch;
+            if (bucketEpoch != EMPTY && epoch - bucketEpoch < BUCKETS) {
+                calls += bucket.calls.sum();
+                failures += bucket.failures.sum();
+            }
+        }
+        return calls >= minimumCalls && failures * 100 >= calls * failureRateThreshold;
+    }
+
+    private static final class Bucket {
+
+        private volatile long epoch = EMPTY;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        private synchronized void reset(long next) {
+            if (next == EMPTY || epoch == EMPTY || epoch < next) {
+                calls.reset();
+                failures.reset();
+                epoch = next;
+            }
+        }
+    }
+}
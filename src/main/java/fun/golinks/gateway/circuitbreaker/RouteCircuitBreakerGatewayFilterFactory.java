@@ -0,0 +1,188 @@
+package fun.golinks.gateway.circuitbreaker;
+
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.metrics.RejectReason;
+import fun.golinks.gateway.web.ErrorResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
+
+/**
+ * 路由级断路器，上游整体不可用时直接返回 503，不再等待连接失败或超时。在路由定义中按路由开启：
+ *
+ * <pre>
+ * filters:
+ *   - name: RouteCircuitBreaker
+ *     args:
+ *       failure-rate-threshold: 50
+ *       minimum-calls: 20
+ *       window: 10s
+ *       open-duration: 30s
+ *       half-open-calls: 5
+ *       statuses: 500,502,503,504
+ * </pre>
+ * <p>
+ * 失败的判断与 OutlierDetection 相同：转发出错或上游返回 statuses 中的状态码。断路器状态按路由 ID 保存，Nacos 中的路由刷新后只要配置没有变化就沿用原来的状态，状态导出为
+ * gateway.circuit_breaker.state{route}（0 关闭、1 打开、2 半开）。路由刷新后不再存在的路由的断路器和状态指标随之删除。
+ */
+@Slf4j
+@Component
+public class RouteCircuitBreakerGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<RouteCircuitBreakerGatewayFilterFactory.Config>
+        implements ApplicationListener<RefreshRoutesResultEvent> {
+
+    private final GatewayMetrics gatewayMetrics;
+    private final MeterRegistry meterRegistry;
+    /**
+     * routeId -> 断路器
+     */
+    private final ConcurrentMap<String, Holder> breakers = new ConcurrentHashMap<>();
+
+    public RouteCircuitBreakerGatewayFilterFactory(GatewayMetrics gatewayMetrics, MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.gatewayMetrics = gatewayMetrics;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("failureRateThreshold", "openDuration");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId() == null ? "" : config.getRouteId();
+        CircuitBreaker circuitBreaker = breakers.compute(routeId, (id, holder) -> {
+            if (holder != null && holder.config.equals(config)) {
+                return holder;
+            }
+            Gauge gauge = holder != null ? holder.gauge
+                    : Gauge.builder("gateway.circuit_breaker.state", breakers, map -> {
+                        Holder current = map.get(id);
+                        return current == null ? 0 : current.circuitBreaker.getState().ordinal();
+                    }).description("Route circuit breaker state: 0 closed, 1 open, 2 half open").tag("route", id)
+                            .register(meterRegistry);
+            return new Holder(config, new CircuitBreaker(config.getFailureRateThreshold(), config.getMinimumCalls(),
+                    config.getWindow().toNanos(), config.getOpenDuration().toNanos(), config.getHalfOpenCalls()),
+                    gauge);
+        }).circuitBreaker;
+        return (exchange, chain) -> {
+            if (!circuitBreaker.tryAcquire(System.nanoTime())) {
+                gatewayMetrics.reject(RejectReason.CIRCUIT_OPEN, exchange);
+                exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+                        String.valueOf(Math.max(1L, config.getOpenDuration().getSeconds())));
+                return ErrorResponse.SERVICE_UNAVAILABLE.write(exchange);
+            }
+            return chain.filter(exchange).doOnSuccess(aVoid -> {
+                Integer status = exchange.getResponse().getRawStatusCode();
+                if (exchange.getAttribute(CLIENT_RESPONSE_ATTR) != null && status != null
+                        && config.getStatuses().contains(status)) {
+                    onFailure(routeId, circuitBreaker);
+                } else {
+                    circuitBreaker.onSuccess(System.nanoTime());
+                }
+            }).doOnError(e -> onFailure(routeId, circuitBreaker));
+        };
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess() || !(event.getSource() instanceof RouteLocator)) {
+            return;
+        }
+        ((RouteLocator) event.getSource()).getRoutes().map(Route::getId).collect(Collectors.toSet())
+                .subscribe(this::retain, e -> log.warn("Failed to clean up circuit breakers", e));
+    }
+
+    /**
+     * 删除已不在路由表中的路由的断路器和状态指标
+     */
+    private void retain(Set<String> routeIds) {
+        for (String routeId : breakers.keySet()) {
+            if (!routeIds.contains(routeId)) {
+                breakers.computeIfPresent(routeId, (id, holder) -> {
+                    meterRegistry.remove(holder.gauge);
+                    return null;
+                });
+            }
+        }
+    }
+
+    private static void onFailure(String routeId, CircuitBreaker circuitBreaker) {
+        CircuitBreaker.State before = circuitBreaker.getState();
+        circuitBreaker.onFailure(System.nanoTime());
+        if (before != CircuitBreaker.State.OPEN && circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+            log.warn("Circuit breaker of route {} opened", routeId);
+        }
+    }
+
+    private static final class Holder {
+
+        private final Config config;
+        private final CircuitBreaker circuitBreaker;
+        private final Gauge gauge;
+
+        private Holder(Config config, CircuitBreaker circuitBreaker, Gauge gauge) {
+            this.config = config;
+            this.circuitBreaker = circuitBreaker;
+            this.gauge = gauge;
+        }
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        /**
+         * 窗口内失败率达到多少（百分比）时打开
+         */
+        private int failureRateThreshold = 50;
+
+        /**
+         * 窗口内至少多少次调用才计算失败率
+         */
+        private int minimumCalls = 20;
+
+        /**
+         * 统计失败率的时间窗口
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * 打开后多久开始放行试探请求
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        /**
+         * 半开状态下放行的试探请求数
+         */
+        private int halfOpenCalls = 5;
+
+        /**
+         * 视为失败的上游状态码
+         */
+        private List<Integer> statuses = new ArrayList<>(Arrays.asList(500, 502, 503, 504));
+    }
+}
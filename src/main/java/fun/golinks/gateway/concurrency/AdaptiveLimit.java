@@ -0,0 +1,156 @@
+package fun.golinks.gateway.concurrency;
+
+import fun.golinks.gateway.properties.ConcurrencyLimitProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 根据 RTT 学习并发上限的梯度算法（参考 Netflix concurrency-limits 的 Gradient2）。
+ * <p>
+ * 长期 RTT 是窗口平均 RTT 的指数移动平均，代表没有排队时的延迟。每个窗口结束时计算梯度 {@code rttTolerance * longRtt / shortRtt}（限制在 0.5 ~ 1 之间），新上限为
+ * {@code limit * gradient + sqrt(limit)}：RTT 没有明显增长时上限按平方根缓慢增加，上游开始排队时按比例降低；窗口内出现失败时直接减半。
+ * <p>
+ * 请求路径上只有 CAS 和 LongAdder，没有锁；窗口由第一个发现它到期的请求通过 CAS 认领后完成计算。
+ */
+final class AdaptiveLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+    private final int minWindowSamples;
+    private final double longDecay;
+    private final double rttTolerance;
+    private final double smoothing;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile int limit;
+    private volatile double estimatedLimit;
+    private volatile double longRtt;
+
+    private final AtomicLong windowStart;
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final AtomicInteger maxInflight = new AtomicInteger();
+    private volatile boolean dropped;
+
+    AdaptiveLimit(ConcurrencyLimitProperties properties) {
+        this.minLimit = Math.max(1, properties.getMinLimit());
+        this.maxLimit = Math.max(minLimit, properties.getMaxLimit());
+        this.windowNanos = properties.getWindow().toNanos();
+        this.minWindowSamples = Math.max(1, properties.getMinWindowSamples());
+        this.longDecay = 2.0 / (Math.max(1, properties.getLongWindow()) + 1);
+        this.rttTolerance = properties.getRttTolerance();
+        this.smoothing = properties.getSmoothing();
+        this.estimatedLimit = Math.min(maxLimit, Math.max(minLimit, properties.getInitialLimit()));
+        this.limit = (int) estimatedLimit;
+        this.windowStart = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 占用一个并发名额，返回占用后的并发数；超过上限时返回 -1
+     */
+    int tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                return -1;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * 请求成功返回，释放名额并记录 RTT
+     */
+    void onSuccess(long startNanos, int inflightAtStart) {
+        long now = System.nanoTime();
+        inflight.decrementAndGet();
+        rttSum.add(now - startNanos);
+        samples.increment();
+        recordInflight(inflightAtStart);
+        maybeUpdate(now);
+    }
+
+    /**
+     * 请求失败或上游过载，释放名额，所在窗口结束时上限减半
+     */
+    void onDropped(int inflightAtStart) {
+        inflight.decrementAndGet();
+        dropped = true;
+        recordInflight(inflightAtStart);
+        maybeUpdate(System.nanoTime());
+    }
+
+    /**
+     * 请求被取消，只释放名额
+     */
+    void onIgnore() {
+        inflight.decrementAndGet();
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInflight() {
+        return inflight.get();
+    }
+
+    private void recordInflight(int value) {
+        int current = maxInflight.get();
+        while (value > current && !maxInflight.compareAndSet(current, value)) {
+            current = maxInflight.get();
+        }
+    }
+
+    private void maybeUpdate(long now) {
+        long start = windowStart.get();
+        if (now - start < windowNanos || (samples.sum() < minWindowSamples && !dropped)) {
+            return;
+        }
+        if (!windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        long count = samples.sumThenReset();
+        long sum = rttSum.sumThenReset();
+        int peakInflight = maxInflight.getAndSet(0);
+        boolean windowDropped = dropped;
+        dropped = false;
+        update(count == 0 ? 0 : (double) sum / count, peakInflight, windowDropped);
+    }
+
+    private void update(double shortRtt, int peakInflight, boolean windowDropped) {
+        double estimated = estimatedLimit;
+        if (windowDropped) {
+            setLimit(estimated / 2);
+            return;
+        }
+        if (shortRtt <= 0) {
+            return;
+        }
+        double previous = longRtt;
+        double longTerm = previous == 0 ? shortRtt : previous + (shortRtt - previous) * longDecay;
+        if (longTerm / shortRtt > 2) {
+            // 延迟大幅下降后加快长期 RTT 的收敛，避免上限长时间被高估
+            longTerm *= 0.95;
+        }
+        longRtt = longTerm;
+        if (peakInflight < estimated / 2) {
+            // 并发远没有达到上限，RTT 不反映上限是否合适
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longTerm / shortRtt));
+        double next = estimated * gradient + Math.sqrt(estimated);
+        setLimit(estimated * (1 - smoothing) + next * smoothing);
+    }
+
+    private void setLimit(double next) {
+        next = Math.max(minLimit, Math.min(maxLimit, next));
+        estimatedLimit = next;
+        limit = (int) next;
+    }
+}
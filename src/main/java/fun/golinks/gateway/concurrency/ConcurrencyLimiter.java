@@ -0,0 +1,156 @@
+package fun.golinks.gateway.concurrency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import fun.golinks.gateway.properties.ConcurrencyLimitProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按路由和上游实例维护自适应并发上限。
+ * <p>
+ * 每个路由、每个实例各有一个 {@link AdaptiveLimit}，请求需要同时拿到两者的名额才能转发。学到的上限和当前并发数导出为 gateway.concurrency.limit{scope, name} 和
+ * gateway.concurrency.inflight{scope, name}，空闲超过 idle-timeout 的路由或实例连同指标一起移除。
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.cloud.concurrency-limit", name = "enabled", havingValue = "true")
+public class ConcurrencyLimiter {
+
+    private static final String ROUTE_SCOPE = "route";
+    private static final String INSTANCE_SCOPE = "instance";
+
+    private final ConcurrencyLimitProperties concurrencyLimitProperties;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, Limited> routes;
+    private final Cache<String, Limited> instances;
+
+    public ConcurrencyLimiter(ConcurrencyLimitProperties concurrencyLimitProperties, MeterRegistry meterRegistry) {
+        this(concurrencyLimitProperties, meterRegistry, Ticker.systemTicker());
+    }
+
+    ConcurrencyLimiter(ConcurrencyLimitProperties concurrencyLimitProperties, MeterRegistry meterRegistry,
+            Ticker ticker) {
+        this.concurrencyLimitProperties = concurrencyLimitProperties;
+        this.meterRegistry = meterRegistry;
+        this.routes = newCache(ticker);
+        this.instances = newCache(ticker);
+    }
+
+    /**
+     * 指标在淘汰条目的同一个原子操作中删除，同一个 key 随后重新创建的条目一定能注册到自己的指标
+     */
+    private Cache<String, Limited> newCache(Ticker ticker) {
+        return Caffeine.newBuilder().expireAfterAccess(concurrencyLimitProperties.getIdleTimeout()).ticker(ticker)
+                .<String, Limited> evictionListener((key, limited, cause) -> {
+                    if (limited != null) {
+                        meterRegistry.remove(limited.limitGauge);
+                        meterRegistry.remove(limited.inflightGauge);
+                    }
+                }).build();
+    }
+
+    /**
+     * 申请转发名额，routeId 或 instance 为空时不限制对应维度；任一维度超过上限时返回 null
+     */
+    public Permit acquire(String routeId, String instance) {
+        AdaptiveLimit routeLimit = null;
+        int routeInflight = 0;
+        if (routeId != null && concurrencyLimitProperties.isPerRoute()) {
+            routeLimit = routes.get(routeId, key -> new Limited(ROUTE_SCOPE, key)).limit;
+            routeInflight = routeLimit.tryAcquire();
+            if (routeInflight < 0) {
+                return null;
+            }
+        }
+        AdaptiveLimit instanceLimit = null;
+        int instanceInflight = 0;
+        if (instance != null && concurrencyLimitProperties.isPerInstance()) {
+            instanceLimit = instances.get(instance, key -> new Limited(INSTANCE_SCOPE, key)).limit;
+            instanceInflight = instanceLimit.tryAcquire();
+            if (instanceInflight < 0) {
+                if (routeLimit != null) {
+                    routeLimit.onIgnore();
+                }
+                return null;
+            }
+        }
+        return new Permit(routeLimit, routeInflight, instanceLimit, instanceInflight);
+    }
+
+    /**
+     * 一个 AdaptiveLimit 和它的指标
+     */
+    private class Limited {
+
+        private final AdaptiveLimit limit = new AdaptiveLimit(concurrencyLimitProperties);
+        private final Gauge limitGauge;
+        private final Gauge inflightGauge;
+
+        private Limited(String scope, String name) {
+            this.limitGauge = Gauge.builder("gateway.concurrency.limit", limit, AdaptiveLimit::getLimit)
+                    .description("Learned concurrency limit").tag("scope", scope).tag("name", name)
+                    .register(meterRegistry);
+            this.inflightGauge = Gauge.builder("gateway.concurrency.inflight", limit, AdaptiveLimit::getInflight)
+                    .description("Requests in flight to the upstream").tag("scope", scope).tag("name", name)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 已占用的转发名额，请求结束时必须且只能调用一次 {@link #onSuccess()}、{@link #onDropped()} 或 {@link #onIgnore()}
+     */
+    public static final class Permit {
+
+        private final long startNanos = System.nanoTime();
+        private final AdaptiveLimit routeLimit;
+        private final int routeInflight;
+        private final AdaptiveLimit instanceLimit;
+        private final int instanceInflight;
+
+        private Permit(AdaptiveLimit routeLimit, int routeInflight, AdaptiveLimit instanceLimit, int instanceInflight) {
+            this.routeLimit = routeLimit;
+            this.routeInflight = routeInflight;
+            this.instanceLimit = instanceLimit;
+            this.instanceInflight = instanceInflight;
+        }
+
+        /**
+         * 上游正常返回，记录 RTT
+         */
+        public void onSuccess() {
+            if (routeLimit != null) {
+                routeLimit.onSuccess(startNanos, routeInflight);
+            }
+            if (instanceLimit != null) {
+                instanceLimit.onSuccess(startNanos, instanceInflight);
+            }
+        }
+
+        /**
+         * 上游超时、连接失败或返回过载状态码
+         */
+        public void onDropped() {
+            if (routeLimit != null) {
+                routeLimit.onDropped(routeInflight);
+            }
+            if (instanceLimit != null) {
+                instanceLimit.onDropped(instanceInflight);
+            }
+        }
+
+        /**
+         * 请求被取消，不作为样本
+         */
+        public void onIgnore() {
+            if (routeLimit != null) {
+                routeLimit.onIgnore();
+            }
+            if (instanceLimit != null) {
+                instanceLimit.onIgnore();
+            }
+        }
+    }
+}
@@ -1,7 +1,16 @@
 package fun.golinks.gateway.config;
 
+import fun.golinks.gateway.route.IndexedRoutePredicateHandlerMapping;
+import fun.golinks.gateway.route.NacosRouteLocator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ConfigurationService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsWebFilter;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
@@ -24,4 +33,17 @@ public class GatewayConfig {
         source.registerCorsConfiguration("/**", corsConfig);
         return new CorsWebFilter(source);
     }
-}
\ No newline at end of file
+
+    /**
+     * 替换默认的路由匹配，按索引只匹配候选路由
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.cloud.route-index", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public IndexedRoutePredicateHandlerMapping routePredicateHandlerMapping(FilteringWebHandler webHandler,
+            RouteLocator routeLocator, GlobalCorsProperties globalCorsProperties, Environment environment,
+            RouteDefinitionLocator routeDefinitionLocator, NacosRouteLocator nacosRouteLocator,
+            ConfigurationService configurationService) {
+        return new IndexedRoutePredicateHandlerMapping(webHandler, routeLocator, globalCorsProperties, environment,
+                routeDefinitionLocator, nacosRouteLocator, configurationService);
+    }
+}
@@ -0,0 +1,15 @@
+package fun.golinks.gateway.config;
+
+import fun.golinks.gateway.loadbalancer.PeakEwmaLoadBalancerConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 所有 lb:// 服务默认使用 P2C + Peak EWMA 负载均衡
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.cloud.load-balancing", name = "enabled", havingValue = "true", matchIfMissing = true)
+@LoadBalancerClients(defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)
+public class LoadBalancerConfig {
+}
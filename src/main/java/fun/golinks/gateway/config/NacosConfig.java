@@ -2,20 +2,17 @@ package fun.golinks.gateway.config;
 
 import com.alibaba.cloud.nacos.NacosConfigManager;
 import com.alibaba.nacos.api.config.listener.Listener;
-import fun.golinks.gateway.util.JsonUtil;
-import fun.golinks.gateway.util.YamlUtil;
+import fun.golinks.gateway.route.NacosRouteLocator;
+import fun.golinks.gateway.route.RouteChanges;
+import fun.golinks.gateway.util.ConfigUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 import org.springframework.cloud.gateway.route.RouteDefinition;
-import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
-import org.springframework.cloud.gateway.route.RouteDefinitionWriter;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Configuration;
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.concurrent.Executor;
@@ -29,14 +26,14 @@ public class NacosConfig implements InitializingBean {
 
     private static final String DATA_ID = "gateway-routes.yaml";
     private static final String GROUP = "infra-gateway";
-    private final RouteDefinitionWriter routeDefinitionWriter;
+    private final NacosRouteLocator nacosRouteLocator;
     private final ApplicationEventPublisher applicationEventPublisher;
     private final NacosConfigManager nacosConfigManager;
     private final ExecutorService refreshRoutesEventExecutorService = Executors.newSingleThreadExecutor();
 
-    public NacosConfig(RouteDefinitionWriter routeDefinitionWriter, ApplicationEventPublisher applicationEventPublisher,
+    public NacosConfig(NacosRouteLocator nacosRouteLocator, ApplicationEventPublisher applicationEventPublisher,
             NacosConfigManager nacosConfigManager) {
-        this.routeDefinitionWriter = routeDefinitionWriter;
+        this.nacosRouteLocator = nacosRouteLocator;
         this.applicationEventPublisher = applicationEventPublisher;
         this.nacosConfigManager = nacosConfigManager;
     }
@@ -48,42 +45,20 @@ public class NacosConfig implements InitializingBean {
                 log.warn("Config from Nacos is empty, skipping route update.");
                 return;
             }
-            List<RouteDefinition> routes = null;
-            if (JsonUtil.isJson(config)) {
-                routes = JsonUtil.toArray(config, RouteDefinition.class);
-            } else {
-                routes = YamlUtil.toArray(config, RouteDefinition.class);
-            }
+            List<RouteDefinition> routes = ConfigUtil.toArray(config, RouteDefinition.class);
             if (routes == null) {
                 return;
             }
-            if (routeDefinitionWriter instanceof RouteDefinitionLocator) {
-                RouteDefinitionLocator routeDefinitionLocator = (RouteDefinitionLocator) routeDefinitionWriter;
-                routeDefinitionLocator.getRouteDefinitions()
-                        .flatMap(routeDefinition -> routeDefinitionWriter.delete(Mono.just(routeDefinition.getId())))
-                        .thenMany(Flux.fromIterable(routes)
-                                .flatMap(route -> routeDefinitionWriter.save(Mono.just(route))))
-                        .subscribe(null, error -> log.error("Failed to update routes", error), () -> {
-                            refreshRoutesEventExecutorService.submit(new Runnable() {
-                                @Override
-                                public void run() {
-                                    applicationEventPublisher.publishEvent(new RefreshRoutesEvent(this));
-                                    log.info("Routes updated successfully.");
-                                }
-                            });
-                        });
-            } else {
-                Flux.fromIterable(routes).flatMap(route -> routeDefinitionWriter.save(Mono.just(route))).subscribe(null,
-                        error -> log.error("Failed to add new routes", error), () -> {
-                            refreshRoutesEventExecutorService.submit(new Runnable() {
-                                @Override
-                                public void run() {
-                                    applicationEventPublisher.publishEvent(new RefreshRoutesEvent(this));
-                                    log.info("New routes added successfully.");
-                                }
-                            });
-                        });
+            RouteChanges changes = nacosRouteLocator.update(routes);
+            if (changes.isEmpty()) {
+                log.info("Routes unchanged, skipping refresh.");
+                return;
             }
+            // 路由缓存只会重新读取快照，不会重新编译未变化的路由
+            refreshRoutesEventExecutorService.submit(() -> {
+                applicationEventPublisher.publishEvent(new RefreshRoutesEvent(this));
+                log.info("Routes updated successfully: {}", changes);
+            });
         } catch (Exception e) {
             log.error("Failed to update routes from Nacos", e);
         }
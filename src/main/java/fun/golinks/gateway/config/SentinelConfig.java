@@ -1,23 +1,34 @@
 package fun.golinks.gateway.config;
 
-import com.alibaba.csp.sentinel.adapter.gateway.common.SentinelGatewayConstants;
 import com.alibaba.csp.sentinel.adapter.gateway.common.api.ApiDefinition;
-import com.alibaba.csp.sentinel.adapter.gateway.common.api.ApiPathPredicateItem;
 import com.alibaba.csp.sentinel.adapter.gateway.common.api.GatewayApiDefinitionManager;
+import com.alibaba.csp.sentinel.adapter.gateway.common.rule.GatewayFlowRule;
+import com.alibaba.csp.sentinel.adapter.gateway.common.rule.GatewayRuleManager;
 import com.alibaba.csp.sentinel.adapter.gateway.sc.SentinelGatewayFilter;
 import com.alibaba.csp.sentinel.adapter.gateway.sc.callback.GatewayCallbackManager;
 import com.alibaba.csp.sentinel.adapter.gateway.sc.exception.SentinelGatewayBlockExceptionHandler;
+import com.alibaba.csp.sentinel.cluster.flow.rule.ClusterFlowRuleManager;
+import com.alibaba.csp.sentinel.cluster.registry.ConfigSupplierRegistry;
 import com.alibaba.csp.sentinel.datasource.ReadableDataSource;
 import com.alibaba.csp.sentinel.datasource.nacos.NacosDataSource;
+import com.alibaba.csp.sentinel.property.SentinelProperty;
 import com.alibaba.csp.sentinel.slots.block.flow.FlowRule;
 import com.alibaba.csp.sentinel.slots.block.flow.FlowRuleManager;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.TypeReference;
 import com.alibaba.nacos.api.PropertyKeyConst;
+import fun.golinks.gateway.ip.ClientIpResolver;
+import fun.golinks.gateway.jwt.JwtTokenCache;
+import fun.golinks.gateway.metrics.GatewayMetrics;
 import fun.golinks.gateway.properties.NacosProperties;
+import fun.golinks.gateway.properties.SentinelClusterProperties;
 import fun.golinks.gateway.properties.SentinelProperties;
+import fun.golinks.gateway.sentinel.ApiDefinitionConverter;
+import fun.golinks.gateway.sentinel.ClusterGroup;
+import fun.golinks.gateway.sentinel.ClusterStateApplier;
 import fun.golinks.gateway.sentinel.GatewayBlockRequestHandler;
-import org.springframework.beans.factory.InitializingBean;
+import fun.golinks.gateway.sentinel.GatewayRequestItemParser;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -31,14 +42,25 @@ import org.springframework.web.reactive.result.view.ViewResolver;
 
 import java.util.*;
 
+/**
+ * Sentinel 网关流控。网关规则（GatewayFlowRule，可带热点参数 paramItem）和 API 分组从 Nacos 加载，修改后实时生效。
+ * <p>
+ * 热点参数的计数由 Sentinel 按规则维护，每个规则只保留最近访问的有限个参数值（LRU），令牌扣减使用 CAS，少数热点租户被限流时不影响其他请求。
+ * <p>
+ * 开启集群流控时，集群规则是以路由 id 或 API 分组名为资源的普通 FlowRule（clusterMode=true），由集群分配中指定的网关节点作为嵌入式令牌服务端统一计数；令牌服务端不可用或请求令牌超时时按
+ * fallbackToLocalWhenFail 退化为本地限流。
+ */
 @Configuration
 @ImportAutoConfiguration(SentinelConfig.NacosConfiguration.class)
-public class SentinelConfig implements InitializingBean {
+public class SentinelConfig {
 
     private static final String DATA_TYPE = "data-type";
     private static final String RULE_TYPE = "rule-type";
     private static final String JSON_TYPE = "json";
-    private static final String FLOW_TYPE = "flow";
+    private static final String FLOW_TYPE = "gw-flow";
+    private static final String API_TYPE = "gw-api-group";
+    private static final String CLUSTER_FLOW_TYPE = "cluster-flow";
+    private static final String CLUSTER_MAP_TYPE = "cluster-map";
     private final List<ViewResolver> viewResolvers;
     private final ServerCodecConfigurer serverCodecConfigurer;
 
@@ -57,52 +79,71 @@ public class SentinelConfig implements InitializingBean {
 
     @Bean
     @Order(Ordered.HIGHEST_PRECEDENCE)
-    public GlobalFilter sentinelGatewayFilter() {
-        return new SentinelGatewayFilter();
+    public GlobalFilter sentinelGatewayFilter(ClientIpResolver clientIpResolver, JwtTokenCache jwtTokenCache) {
+        return new SentinelGatewayFilter(Ordered.HIGHEST_PRECEDENCE,
+                new GatewayRequestItemParser(clientIpResolver, jwtTokenCache));
     }
 
     @Bean
-    public GatewayBlockRequestHandler gatewayBlockRequestHandler() {
-        GatewayBlockRequestHandler gatewayBlockRequestHandler = new GatewayBlockRequestHandler();
+    public GatewayBlockRequestHandler gatewayBlockRequestHandler(GatewayMetrics gatewayMetrics) {
+        GatewayBlockRequestHandler gatewayBlockRequestHandler = new GatewayBlockRequestHandler(gatewayMetrics);
         GatewayCallbackManager.setBlockHandler(gatewayBlockRequestHandler);
         return gatewayBlockRequestHandler;
     }
 
-    @Override
-    public void afterPropertiesSet() {
-        /*
-         * 初始化自定义的API分组
-         */
-        try {
-            Set<ApiDefinition> definitions = Collections.synchronizedSet(new HashSet<>());
-            ApiDefinition sampleApi = new ApiDefinition("sample-api")
-                    .setPredicateItems(Collections.singleton(new ApiPathPredicateItem().setPattern("/sample/**")
-                            .setMatchStrategy(SentinelGatewayConstants.URL_MATCH_STRATEGY_PREFIX)));
-            definitions.add(sampleApi);
-            GatewayApiDefinitionManager.loadApiDefinitions(definitions);
-        } catch (Exception e) {
-            // 处理异常，例如记录日志或抛出运行时异常
-            throw new RuntimeException("Failed to load API definitions", e);
-        }
-    }
-
     @ConditionalOnProperty(prefix = "spring.cloud.sentinel.datasource", name = "type", havingValue = "nacos")
     public static class NacosConfiguration {
 
         public NacosConfiguration(SentinelProperties sentinelProperties) {
             NacosProperties nacosProperties = sentinelProperties.getDatasource().getNacos();
+            ReadableDataSource<String, Set<GatewayFlowRule>> flowRuleDataSource = new NacosDataSource<>(
+                    properties(nacosProperties, FLOW_TYPE), nacosProperties.getGroupId(), nacosProperties.getDataId(),
+                    source -> StringUtils.isBlank(source) ? new HashSet<>()
+                            : JSON.parseObject(source, new TypeReference<Set<GatewayFlowRule>>() {
+                            }));
+            GatewayRuleManager.register2Property(flowRuleDataSource.getProperty());
+            if (StringUtils.isNotBlank(nacosProperties.getApiDataId())) {
+                ReadableDataSource<String, Set<ApiDefinition>> apiDataSource = new NacosDataSource<>(
+                        properties(nacosProperties, API_TYPE), nacosProperties.getGroupId(),
+                        nacosProperties.getApiDataId(), new ApiDefinitionConverter());
+                GatewayApiDefinitionManager.register2Property(apiDataSource.getProperty());
+            }
+            SentinelClusterProperties clusterProperties = sentinelProperties.getCluster();
+            if (clusterProperties.isEnabled()) {
+                cluster(nacosProperties, clusterProperties);
+            }
+        }
+
+        private static void cluster(NacosProperties nacosProperties, SentinelClusterProperties clusterProperties) {
+            String namespace = clusterProperties.getNamespace();
+            ReadableDataSource<String, List<FlowRule>> clusterFlowDataSource = new NacosDataSource<>(
+                    properties(nacosProperties, CLUSTER_FLOW_TYPE), nacosProperties.getGroupId(),
+                    nacosProperties.getClusterFlowDataId(), source -> StringUtils.isBlank(source) ? new ArrayList<>()
+                            : JSON.parseObject(source, new TypeReference<List<FlowRule>>() {
+                            }));
+            SentinelProperty<List<FlowRule>> clusterFlowRules = clusterFlowDataSource.getProperty();
+            // 客户端按规则的 clusterConfig 请求令牌，失败时用同一条规则在本地计数
+            FlowRuleManager.register2Property(clusterFlowRules);
+            // 作为令牌服务端时，本节点所在命名空间的规则同样来自 Nacos
+            ClusterFlowRuleManager.setPropertySupplier(ns -> clusterFlowRules);
+            ConfigSupplierRegistry.setNamespaceSupplier(() -> namespace);
+            ReadableDataSource<String, List<ClusterGroup>> clusterMapDataSource = new NacosDataSource<>(
+                    properties(nacosProperties, CLUSTER_MAP_TYPE), nacosProperties.getGroupId(),
+                    nacosProperties.getClusterMapDataId(), source -> StringUtils.isBlank(source) ? new ArrayList<>()
+                            : JSON.parseObject(source, new TypeReference<List<ClusterGroup>>() {
+                            }));
+            clusterMapDataSource.getProperty().addListener(new ClusterStateApplier(clusterProperties));
+        }
+
+        private static Properties properties(NacosProperties nacosProperties, String ruleType) {
             Properties properties = new Properties();
             properties.put(PropertyKeyConst.SERVER_ADDR, nacosProperties.getAddress());
             properties.put(PropertyKeyConst.USERNAME, nacosProperties.getUsername());
             properties.put(PropertyKeyConst.PASSWORD, nacosProperties.getPassword());
             properties.put(PropertyKeyConst.NAMESPACE, nacosProperties.getNamespace());
             properties.put(DATA_TYPE, JSON_TYPE);
-            properties.put(RULE_TYPE, FLOW_TYPE);
-            ReadableDataSource<String, List<FlowRule>> flowRuleDataSource = new NacosDataSource<>(properties,
-                    nacosProperties.getGroupId(), nacosProperties.getDataId(),
-                    source -> JSON.parseObject(source, new TypeReference<List<FlowRule>>() {
-                    }));
-            FlowRuleManager.register2Property(flowRuleDataSource.getProperty());
+            properties.put(RULE_TYPE, ruleType);
+            return properties;
         }
     }
 
@@ -0,0 +1,91 @@
+package fun.golinks.gateway.filter;
+
+import fun.golinks.gateway.concurrency.ConcurrencyLimiter;
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.metrics.RejectReason;
+import fun.golinks.gateway.properties.ConcurrencyLimitProperties;
+import fun.golinks.gateway.web.ErrorResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.isAlreadyRouted;
+
+/**
+ * 自适应并发限制，在负载均衡选出实例之后、转发之前执行，路由或实例的并发数超过学到的上限时直接返回 503（或 429），不再排队等待上游。
+ * <p>
+ * 与 Sentinel 的固定阈值互补：Sentinel 按配置的 QPS 保护网关入口，这里根据上游实际的 RTT 随时调整上限。RTT 从转发开始计算到收到响应头为止；连接失败、超时以及上游返回 503、429 时视为过载。
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.cloud.concurrency-limit", name = "enabled", havingValue = "true")
+public class ConcurrencyLimitFilter implements GlobalFilter, Ordered {
+
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final GatewayMetrics gatewayMetrics;
+    private final ErrorResponse errorResponse;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimiter concurrencyLimiter,
+            ConcurrencyLimitProperties concurrencyLimitProperties, GatewayMetrics gatewayMetrics) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.gatewayMetrics = gatewayMetrics;
+        this.errorResponse = concurrencyLimitProperties.getRejectStatus() == HttpStatus.TOO_MANY_REQUESTS.value()
+                ? ErrorResponse.TOO_MANY_REQUESTS : ErrorResponse.SERVICE_UNAVAILABLE;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        if (url == null || isAlreadyRouted(exchange)
+                || !("http".equals(url.getScheme()) || "https".equals(url.getScheme()))) {
+            return chain.filter(exchange);
+        }
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(route == null ? null : route.getId(),
+                instance(exchange, url));
+        if (permit == null) {
+            gatewayMetrics.reject(RejectReason.CONCURRENCY_LIMITED, exchange);
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+            return errorResponse.write(exchange);
+        }
+        return chain.filter(exchange).doOnSuccess(aVoid -> {
+            HttpStatus status = exchange.getResponse().getStatusCode();
+            if (status == HttpStatus.SERVICE_UNAVAILABLE || status == HttpStatus.TOO_MANY_REQUESTS) {
+                permit.onDropped();
+            } else {
+                permit.onSuccess();
+            }
+        }).doOnError(e -> permit.onDropped()).doOnCancel(permit::onIgnore);
+    }
+
+    /**
+     * 负载均衡选出的实例，直连路由使用目标地址
+     */
+    private static String instance(ServerWebExchange exchange, URI url) {
+        Response<ServiceInstance> response = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (response != null && response.hasServer()) {
+            ServiceInstance instance = response.getServer();
+            return instance.getServiceId() + "/" + instance.getHost() + ":" + instance.getPort();
+        }
+        return url.getHost() + ":" + url.getPort();
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+}
@@ -1,93 +1,85 @@
 package fun.golinks.gateway.filter;
 
-import fun.golinks.gateway.util.JsonUtil;
-import fun.golinks.gateway.util.WebUtils;
-import fun.golinks.gateway.vo.ErrorResult;
+import fun.golinks.gateway.ip.ClientIpResolver;
+import fun.golinks.gateway.ip.IpAddress;
+import fun.golinks.gateway.ip.IpBanCache;
+import fun.golinks.gateway.ip.IpBlocklist;
+import fun.golinks.gateway.ip.IpRequestCounter;
+import fun.golinks.gateway.metrics.FilterTimer;
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.metrics.RejectReason;
+import fun.golinks.gateway.trace.TraceContext;
+import fun.golinks.gateway.web.ErrorResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.time.Duration;
-
 @Slf4j
 @Component
 public class IpBlockingFilter implements GlobalFilter, Ordered {
 
-    private static final long MAX_REQUEST_COUNT = 60L; // 最大请求次数
-    private static final Duration BAN_DURATION = Duration.ofMinutes(30); // 封禁时长
-    private static final String FORBIDDEN_MESSAGE = "很抱歉，您暂时无法访问此页面。可能是由于身份验证失败或您的请求触发了安全限制。请检查您的登录凭证是否正确，或稍后再试。如果问题持续存在，请联系我们的支持团队获取帮助。感谢您的理解！";
-    private static String FORBIDDEN_PAGE = FORBIDDEN_MESSAGE;
+    private final ClientIpResolver clientIpResolver;
+    private final IpBlocklist ipBlocklist;
+    private final IpBanCache ipBanCache;
+    private final IpRequestCounter ipRequestCounter;
+    private final GatewayMetrics gatewayMetrics;
+    private final FilterTimer filterTimer;
 
-    static {
-        try {
-            FORBIDDEN_PAGE = new String(Files.readAllBytes(Paths.get("src/main/resources/static/forbidden.html")));
-        } catch (Throwable e) {
-            log.warn("Failed to load forbidden page, using default message", e);
-        }
-    }
-
-    private final ReactiveRedisTemplate<String, String> redisTemplate;
-
-    public IpBlockingFilter(ReactiveRedisTemplate<String, String> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public IpBlockingFilter(ClientIpResolver clientIpResolver, IpBlocklist ipBlocklist, IpBanCache ipBanCache,
+            IpRequestCounter ipRequestCounter, GatewayMetrics gatewayMetrics) {
+        this.clientIpResolver = clientIpResolver;
+        this.ipBlocklist = ipBlocklist;
+        this.ipBanCache = ipBanCache;
+        this.ipRequestCounter = ipRequestCounter;
+        this.gatewayMetrics = gatewayMetrics;
+        this.filterTimer = gatewayMetrics.filterTimer(GatewayMetrics.IP_BLOCKING_FILTER);
     }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        String clientIp = WebUtils.getClientIp(exchange);
-        // 检查 IP 是否被封禁
-        return redisTemplate.opsForValue().get("banned:" + clientIp).defaultIfEmpty("false").flatMap(banned -> {
-            if ("true".equals(banned)) {
-                return forbiddenResponse(exchange);
-            }
-            return increment(exchange, chain, clientIp);
-        }).onErrorResume(e -> {
-            log.error("Redis operation failed", e);
-            return chain.filter(exchange);
-        });
+        return filterTimer.record(exchange, chain, this::doFilter);
     }
 
-    private Mono<Void> increment(ServerWebExchange exchange, GatewayFilterChain chain, String clientIp) {
-        String requestCounterKey = "request:" + clientIp;
-        return redisTemplate.opsForValue().increment(requestCounterKey).flatMap(count -> {
-            if (count == 1) {
-                // 第一次请求，设置过期时间
-                return redisTemplate.expire(requestCounterKey, Duration.ofMinutes(1)).then(chain.filter(exchange));
-            } else if (count >= MAX_REQUEST_COUNT) {
-                // 达到阈值，封禁 IP
-                return redisTemplate.opsForValue().set("banned:" + clientIp, "true", BAN_DURATION)
-                        .then(forbiddenResponse(exchange));
-            }
+    private Mono<Void> doFilter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        IpAddress clientAddress = clientIpResolver.getClientAddress(exchange);
+        if (clientAddress == null) {
             return chain.filter(exchange);
-        });
+        }
+        // 检查 IP 是否在黑名单网段中或被封禁，本地缓存命中时不访问 Redis
+        if (ipBlocklist.contains(clientAddress) || ipBanCache.isBanned(clientAddress)) {
+            return forbidden(exchange);
+        }
+        if (ipBanCache.isMirrorComplete()) {
+            return count(exchange, chain, clientAddress);
+        }
+        // 本地镜像不完整时，未命中的地址再查询 Redis 中的封禁记录
+        return redisFallback(ipBanCache.isBannedInRedis(clientAddress))
+                .flatMap(banned -> banned ? forbidden(exchange) : count(exchange, chain, clientAddress));
     }
 
-    private Mono<Void> forbiddenResponse(ServerWebExchange exchange) {
-        ServerHttpResponse response = exchange.getResponse();
-        if (WebUtils.acceptsHtml(exchange)) {
-            response.setStatusCode(HttpStatus.FORBIDDEN);
-            byte[] body = FORBIDDEN_PAGE.getBytes(Charset.defaultCharset());
-            response.getHeaders().add("Content-Type", "text/html;charset=UTF-8");
-            response.getHeaders().setContentLength(body.length);
-            return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
-        } else {
-            response.setStatusCode(HttpStatus.FORBIDDEN);
-            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
-            ErrorResult errorResult = new ErrorResult(HttpStatus.FORBIDDEN.value(), FORBIDDEN_MESSAGE);
-            return response
-                    .writeWith(Mono.just(response.bufferFactory().wrap(JsonUtil.toJson(errorResult).getBytes())));
-        }
+    private Mono<Void> count(ServerWebExchange exchange, GatewayFilterChain chain, IpAddress clientAddress) {
+        return redisFallback(ipRequestCounter.increment(clientAddress.toString()))
+                .flatMap(banned -> banned ? forbidden(exchange) : chain.filter(exchange));
+    }
+
+    /**
+     * Redis 不可用时放行
+     */
+    private Mono<Boolean> redisFallback(Mono<Boolean> banned) {
+        return banned.onErrorResume(e -> Mono.deferContextual(context -> {
+            gatewayMetrics.redisError(GatewayMetrics.IP_BLOCKING_FILTER);
+            TraceContext.runWithMdc(context, () -> log.error("Redis operation failed", e));
+            return Mono.just(false);
+        }));
+    }
+
+    private Mono<Void> forbidden(ServerWebExchange exchange) {
+        gatewayMetrics.reject(RejectReason.IP_BANNED, exchange);
+        return ErrorResponse.FORBIDDEN.write(exchange);
     }
 
     @Override
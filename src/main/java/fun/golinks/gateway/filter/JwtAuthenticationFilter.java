@@ -1,9 +1,11 @@
 package fun.golinks.gateway.filter;
 
-import fun.golinks.gateway.properties.JwtProperties;
-import fun.golinks.gateway.util.JsonUtil;
-import fun.golinks.gateway.util.WebUtils;
-import fun.golinks.gateway.vo.ErrorResult;
+import fun.golinks.gateway.jwt.JwtTokenCache;
+import fun.golinks.gateway.jwt.VerifiedToken;
+import fun.golinks.gateway.metrics.FilterTimer;
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.metrics.RejectReason;
+import fun.golinks.gateway.web.ErrorResponse;
 import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -11,19 +13,11 @@ import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import javax.annotation.Resource;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.Date;
-import java.util.Map;
+import java.util.Collection;
 
 /**
  * <pre>
@@ -35,21 +29,18 @@ import java.util.Map;
 @SuppressWarnings("all")
 public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
-    private static final String UNAUTHORIZED_MESSAGE = "Authentication Failed\nInvalid JWT Token\nPlease try logging in again or contact support if the issue persists.";
     private static final String AUTH_HEADER = "Authorization";
-    public static String UNAUTHORIZED_PAGE = UNAUTHORIZED_MESSAGE;
-
-    static {
-        try {
-            UNAUTHORIZED_PAGE = new String(
-                    Files.readAllBytes(Paths.get("src/main/resources/static/unauthorized.html")));
-        } catch (Throwable e) {
-            log.warn("", e);
-        }
-    }
+    public static final String CLAIMS_ATTR = "jwt-claims"; // 用于存储已验证 JWT 声明的属性名
 
-    @Resource
-    private JwtProperties jwtProperties;
+    private final JwtTokenCache jwtTokenCache;
+    private final GatewayMetrics gatewayMetrics;
+    private final FilterTimer filterTimer;
+
+    public JwtAuthenticationFilter(JwtTokenCache jwtTokenCache, GatewayMetrics gatewayMetrics) {
+        this.jwtTokenCache = jwtTokenCache;
+        this.gatewayMetrics = gatewayMetrics;
+        this.filterTimer = gatewayMetrics.filterTimer(GatewayMetrics.JWT_FILTER);
+    }
 
     /**
      * 过滤器方法，用于处理请求的授权验证和用户信息传递。 该方法会检查请求头中的 Authorization 字段，验证 JWT 的有效性， 并将 JWT 中的用户信息添加到请求头中，传递给下游服务。
@@ -62,59 +53,63 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
      * @return Mono<Void> 表示异步处理的结果，可能包含未授权的响应或继续执行过滤器链。
      */
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return filterTimer.record(exchange, chain, this::doFilter);
+    }
+
+    private Mono<Void> doFilter(ServerWebExchange exchange, GatewayFilterChain chain) {
         // 获取请求头中的 Authorization 字段
         HttpHeaders headers = exchange.getRequest().getHeaders();
         String authHeader = headers.getFirst(AUTH_HEADER);
 
-        // 如果 Authorization 头为空或不以 "Bearer " 开头，则直接继续执行过滤器链
+        // 如果 Authorization 头为空或不以 "Bearer " 开头，则删除伪造的 claim 请求头后继续执行过滤器链
         if (StringUtils.isBlank(authHeader) || !authHeader.startsWith("Bearer ")) {
-            return chain.filter(exchange);
+            return chain.filter(stripClaimHeaders(exchange));
         }
 
         // 从 Authorization 头中提取 JWT 令牌
         String token = authHeader.substring(7); // 移除 "Bearer " 前缀
 
-        // 解析 JWT 令牌并获取其中的声明信息
-        Claims claims = jwtProperties.parseToken(token);
-        if (claims == null) {
+        // 从缓存获取令牌的验证结果，未命中时解析 JWT 令牌
+        VerifiedToken verifiedToken = jwtTokenCache.get(token);
+        if (!verifiedToken.isValid()) {
             // 如果解析失败，返回未授权的响应
-            return unauthorizedResponse(exchange);
+            gatewayMetrics.reject(RejectReason.JWT_INVALID, exchange);
+            return ErrorResponse.UNAUTHORIZED.write(exchange);
         }
 
         // 检查 JWT 是否已过期
-        Date expiration = claims.getExpiration();
-        if (expiration != null && new Date().after(expiration)) {
+        if (verifiedToken.isExpired(System.currentTimeMillis())) {
             // 如果 JWT 已过期，返回未授权的响应
-            return unauthorizedResponse(exchange);
+            gatewayMetrics.reject(RejectReason.JWT_EXPIRED, exchange);
+            return ErrorResponse.UNAUTHORIZED.write(exchange);
         }
+        Claims claims = verifiedToken.getClaims();
+        exchange.getAttributes().put(CLAIMS_ATTR, claims);
 
-        // 将 JWT 中的用户信息添加到请求头中，传递给下游服务
+        // 将 JWT 中的用户信息添加到请求头中，传递给下游服务（请求头已随令牌缓存），客户端发送的同名请求头被替换
         ServerWebExchange modifiedExchange = exchange.mutate()
                 .request(exchange.getRequest().mutate().headers(httpHeaders -> {
-                    for (Map.Entry<String, Object> entry : claims.entrySet()) {
-                        httpHeaders.add(entry.getKey(), String.valueOf(entry.getValue()));
-                    }
+                    jwtTokenCache.getClaimHeaderNames().forEach(httpHeaders::remove);
+                    httpHeaders.putAll(verifiedToken.getHeaders());
                 }).build()).build();
 
         // 继续执行过滤器链，传递修改后的请求
         return chain.filter(modifiedExchange);
     }
 
-    private Mono<Void> unauthorizedResponse(ServerWebExchange exchange) {
-        ServerHttpResponse response = exchange.getResponse();
-        if (WebUtils.acceptsHtml(exchange)) {
-            response.setStatusCode(HttpStatus.UNAUTHORIZED);
-            byte[] body = UNAUTHORIZED_PAGE.getBytes(Charset.defaultCharset());
-            response.getHeaders().add("Content-Type", "text/html;charset=UTF-8");
-            response.getHeaders().setContentLength(body.length);
-            return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
-        } else {
-            response.setStatusCode(HttpStatus.UNAUTHORIZED);
-            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
-            ErrorResult errorResult = new ErrorResult(HttpStatus.UNAUTHORIZED.value(), UNAUTHORIZED_MESSAGE);
-            return response
-                    .writeWith(Mono.just(response.bufferFactory().wrap(JsonUtil.toJson(errorResult).getBytes())));
+    /**
+     * 删除客户端发送的 claim 请求头，这些请求头只能来自令牌；请求中没有时原样返回
+     */
+    private ServerWebExchange stripClaimHeaders(ServerWebExchange exchange) {
+        Collection<String> names = jwtTokenCache.getClaimHeaderNames();
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        for (String name : names) {
+            if (headers.containsKey(name)) {
+                return exchange.mutate()
+                        .request(request -> request.headers(httpHeaders -> names.forEach(httpHeaders::remove))).build();
+            }
         }
+        return exchange;
     }
 
     @Override
@@ -1,36 +1,26 @@
 package fun.golinks.gateway.filter;
 
-import fun.golinks.gateway.util.JsonUtil;
-import fun.golinks.gateway.util.WebUtils;
-import fun.golinks.gateway.vo.ErrorResult;
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.metrics.RejectReason;
+import fun.golinks.gateway.web.ErrorResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-
 @Slf4j
 @Component
 public class NotFoundPageFilter implements GlobalFilter, Ordered {
 
-    public static final String NOT_FOUND_MESSAGE = "页面未找到\n\n抱歉，您请求的页面不存在。请检查 URL 或稍后重试。";
-    public static String NOT_FOUND_HTML = NOT_FOUND_MESSAGE;
+    private final GatewayMetrics gatewayMetrics;
 
-    static {
-        try {
-            NOT_FOUND_HTML = new String(Files.readAllBytes(Paths.get("src/main/resources/static/404.html")));
-        } catch (Throwable e) {
-            log.warn("", e);
-        }
+    public NotFoundPageFilter(GatewayMetrics gatewayMetrics) {
+        this.gatewayMetrics = gatewayMetrics;
     }
 
     @Override
@@ -39,19 +29,8 @@ public class NotFoundPageFilter implements GlobalFilter, Ordered {
             ServerHttpResponse response = exchange.getResponse();
             HttpStatus status = response.getStatusCode();
             if (status == HttpStatus.NOT_FOUND && !response.isCommitted()) {
-                if (WebUtils.acceptsHtml(exchange)) {
-                    response.setStatusCode(HttpStatus.NOT_FOUND);
-                    byte[] body = NOT_FOUND_HTML.getBytes(Charset.defaultCharset());
-                    response.getHeaders().add("Content-Type", "text/html;charset=UTF-8");
-                    response.getHeaders().setContentLength(body.length);
-                    return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
-                } else {
-                    response.setStatusCode(HttpStatus.NOT_FOUND);
-                    response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
-                    ErrorResult errorResult = new ErrorResult(HttpStatus.NOT_FOUND.value(), NOT_FOUND_MESSAGE);
-                    return response.writeWith(
-                            Mono.just(response.bufferFactory().wrap(JsonUtil.toJson(errorResult).getBytes())));
-                }
+                gatewayMetrics.reject(RejectReason.NOT_FOUND, exchange);
+                return ErrorResponse.NOT_FOUND.write(exchange);
             }
             return Mono.empty();
         }));
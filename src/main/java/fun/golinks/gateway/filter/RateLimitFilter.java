@@ -0,0 +1,107 @@
+package fun.golinks.gateway.filter;
+
+import fun.golinks.gateway.ip.ClientIpResolver;
+import fun.golinks.gateway.ip.IpAddress;
+import fun.golinks.gateway.metrics.FilterTimer;
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.metrics.RejectReason;
+import fun.golinks.gateway.ratelimit.RateLimitDecision;
+import fun.golinks.gateway.ratelimit.RateLimitPolicy;
+import fun.golinks.gateway.ratelimit.RateLimitPolicyRepository;
+import fun.golinks.gateway.ratelimit.ScriptRateLimiter;
+import fun.golinks.gateway.trace.TraceContext;
+import fun.golinks.gateway.web.ErrorResponse;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 按路由和限流维度（IP、JWT subject、API Key）限流，策略从 Nacos 加载
+ */
+@Slf4j
+@Component
+public class RateLimitFilter implements GlobalFilter, Ordered {
+
+    private final RateLimitPolicyRepository rateLimitPolicyRepository;
+    private final ClientIpResolver clientIpResolver;
+    private final ScriptRateLimiter scriptRateLimiter;
+    private final GatewayMetrics gatewayMetrics;
+    private final FilterTimer filterTimer;
+
+    public RateLimitFilter(RateLimitPolicyRepository rateLimitPolicyRepository, ClientIpResolver clientIpResolver,
+            ScriptRateLimiter scriptRateLimiter, GatewayMetrics gatewayMetrics) {
+        this.rateLimitPolicyRepository = rateLimitPolicyRepository;
+        this.clientIpResolver = clientIpResolver;
+        this.scriptRateLimiter = scriptRateLimiter;
+        this.gatewayMetrics = gatewayMetrics;
+        this.filterTimer = gatewayMetrics.filterTimer(GatewayMetrics.RATE_LIMIT_FILTER);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return filterTimer.record(exchange, chain, this::doFilter);
+    }
+
+    private Mono<Void> doFilter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        List<RateLimitPolicy> policies = rateLimitPolicyRepository.getPolicies(route == null ? null : route.getId());
+        if (policies.isEmpty()) {
+            return chain.filter(exchange);
+        }
+        return Flux.fromIterable(policies).concatMap(policy -> acquire(exchange, policy))
+                .filter(decision -> !decision.isAllowed()).next().map(Optional::of).defaultIfEmpty(Optional.empty())
+                .flatMap(denied -> denied.isPresent() ? tooManyRequestsResponse(exchange, denied.get())
+                        : chain.filter(exchange));
+    }
+
+    private Mono<RateLimitDecision> acquire(ServerWebExchange exchange, RateLimitPolicy policy) {
+        String key = resolveKey(exchange, policy);
+        if (key == null) {
+            return Mono.empty();
+        }
+        return scriptRateLimiter.acquire(policy, key).onErrorResume(e -> Mono.deferContextual(context -> {
+            // Redis 不可用时放行
+            gatewayMetrics.redisError(GatewayMetrics.RATE_LIMIT_FILTER);
+            TraceContext.runWithMdc(context, () -> log.error("Rate limit script failed", e));
+            return Mono.just(RateLimitDecision.ALLOWED);
+        }));
+    }
+
+    private String resolveKey(ServerWebExchange exchange, RateLimitPolicy policy) {
+        switch (policy.getKeyType()) {
+        case JWT_SUBJECT:
+            Claims claims = exchange.getAttribute(JwtAuthenticationFilter.CLAIMS_ATTR);
+            return claims == null ? null : claims.getSubject();
+        case API_KEY:
+            return exchange.getRequest().getHeaders().getFirst(policy.getApiKeyHeader());
+        case IP:
+        default:
+            IpAddress clientAddress = clientIpResolver.getClientAddress(exchange);
+            return clientAddress == null ? null : clientAddress.toString();
+        }
+    }
+
+    private Mono<Void> tooManyRequestsResponse(ServerWebExchange exchange, RateLimitDecision decision) {
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1L, (decision.getRetryAfterMillis() + 999L) / 1000L)));
+        gatewayMetrics.reject(RejectReason.RATE_LIMITED, exchange);
+        return ErrorResponse.TOO_MANY_REQUESTS.write(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 3;
+    }
+}
@@ -1,67 +1,99 @@
 package fun.golinks.gateway.filter;
 
-import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
-import org.slf4j.MDC;
+import fun.golinks.gateway.accesslog.AccessLogWriter;
+import fun.golinks.gateway.metrics.FilterTimer;
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.trace.TraceContext;
+import org.reactivestreams.Publisher;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.net.URI;
-import java.util.UUID;
-import java.util.stream.Collectors;
-
-@Slf4j
 @Component
 public class TraceIdGlobalFilter implements GlobalFilter, Ordered {
 
-    private static final String TRACE_ID_HEADER = "trace-id"; // 自定义 trace-id 头名称
     private static final String START_TIME_ATTR = "start-time"; // 用于存储开始时间的属性名
 
+    private final AccessLogWriter accessLogWriter;
+    private final FilterTimer filterTimer;
+
+    public TraceIdGlobalFilter(AccessLogWriter accessLogWriter, GatewayMetrics gatewayMetrics) {
+        this.accessLogWriter = accessLogWriter;
+        this.filterTimer = gatewayMetrics.filterTimer(GatewayMetrics.TRACE_FILTER);
+    }
+
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        // 获取请求对象
-        ServerHttpRequest request = exchange.getRequest();
-        URI uri = request.getURI();
-        String method = request.getMethodValue();
-        HttpHeaders headers = request.getHeaders();
-        String queryParams = request.getQueryParams().entrySet().stream()
-                .map(entry -> entry.getKey() + "=" + String.join(",", entry.getValue()))
-                .collect(Collectors.joining("&"));
-
-        // 获取请求头中的 trace-id
-        String traceId = headers.getFirst(TRACE_ID_HEADER);
-        // 如果没有 trace-id，生成一个新的
-        if (StringUtils.isBlank(traceId)) {
-            traceId = UUID.randomUUID().toString();
-        }
-        MDC.put(TRACE_ID_HEADER, traceId);
+        return filterTimer.record(exchange, chain, this::doFilter);
+    }
+
+    private Mono<Void> doFilter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        // 沿用请求头中的 traceparent / trace-id，没有时生成新的 trace-id
+        TraceContext traceContext = TraceContext.from(exchange.getRequest().getHeaders());
+        exchange.getAttributes().put(TraceContext.EXCHANGE_ATTR, traceContext);
 
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         exchange.getAttributes().put(START_TIME_ATTR, startTime);
 
-        // 将 trace-id 添加到下游请求头
+        // 将 trace-id 和 traceparent 添加到下游请求头，并统计响应体字节数
+        String traceparent = traceContext.toTraceparent();
+        CountingResponse response = new CountingResponse(exchange.getResponse());
         ServerWebExchange modifiedExchange = exchange.mutate()
-                .request(exchange.getRequest().mutate().header(TRACE_ID_HEADER, traceId).build()).build();
-
-        log.info("Request received: method={}, uri={}, queryParams={}", method, uri, queryParams);
-        // 继续过滤器链
-        return chain.filter(modifiedExchange).doFinally(signalType -> {
-            long endTime = System.currentTimeMillis();
-            long costTime = endTime - startTime; // 转换为毫秒
-            log.info("Request completed: method={}, uri={}, status={}, duration={}ms", method, uri,
-                    exchange.getResponse().getStatusCode(), costTime);
-            MDC.remove(TRACE_ID_HEADER); // 只移除 trace-id
-        });
+                .request(exchange.getRequest().mutate().headers(headers -> {
+                    headers.set(TraceContext.TRACE_ID_HEADER, traceContext.getTraceId());
+                    if (traceparent != null) {
+                        headers.set(TraceContext.TRACEPARENT_HEADER, traceparent);
+                    }
+                }).build()).response(response).build();
+
+        // 后续过滤器同步执行的部分带上 MDC，执行完立即恢复；异步部分从 Reactor Context 读取链路信息
+        Mono<Void> result = traceContext.callWithMdc(() -> chain.filter(modifiedExchange));
+        // 请求完成后写入访问日志
+        return result.doFinally(signalType -> accessLogWriter.log(modifiedExchange, traceContext.getTraceId(),
+                startNanos, response.bytes))
+                .contextWrite(context -> context.put(TraceContext.CONTEXT_KEY, traceContext));
     }
 
     @Override
     public int getOrder() {
         return Ordered.HIGHEST_PRECEDENCE; // 设置最高优先级，确保最先执行
     }
-}
\ No newline at end of file
+
+    /**
+     * 统计写出的响应体字节数
+     */
+    private static class CountingResponse extends ServerHttpResponseDecorator {
+
+        private long bytes;
+
+        private CountingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            // 保留 Mono 类型，单个缓冲区的响应仍可由底层直接设置 Content-Length
+            if (body instanceof Mono) {
+                return super.writeWith(Mono.from(body).doOnNext(this::count));
+            }
+            return super.writeWith(Flux.from(body).doOnNext(this::count));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body).map(chunk -> Flux.from(chunk).doOnNext(this::count)));
+        }
+
+        private void count(DataBuffer dataBuffer) {
+            bytes += dataBuffer.readableByteCount();
+        }
+    }
+}
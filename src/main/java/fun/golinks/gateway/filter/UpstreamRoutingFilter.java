@@ -0,0 +1,77 @@
+package fun.golinks.gateway.filter;
+
+import fun.golinks.gateway.httpclient.UpstreamHttpClient;
+import fun.golinks.gateway.httpclient.UpstreamHttpClients;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+import static org.springframework.cloud.gateway.support.RouteMetadataUtils.CONNECT_TIMEOUT_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.isAlreadyRouted;
+
+/**
+ * 替换默认的 NettyRoutingFilter，按 {@link UpstreamHttpClients} 的配置为每个路由选择 HTTP 客户端和连接池。
+ * <p>
+ * 需要设置 spring.cloud.gateway.global-filter.netty-routing.enabled=false 关闭默认的过滤器。路由元数据 connect-timeout 和 response-timeout
+ * 仍然生效；配置项的 responseTimeoutMillis 与路由的 response-timeout 同时生效，先到的超时返回 504。
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.cloud.gateway.global-filter.netty-routing", name = "enabled", havingValue = "false")
+public class UpstreamRoutingFilter extends NettyRoutingFilter {
+
+    private final UpstreamHttpClients upstreamHttpClients;
+
+    public UpstreamRoutingFilter(HttpClient httpClient, ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+            HttpClientProperties properties, UpstreamHttpClients upstreamHttpClients) {
+        super(httpClient, headersFiltersProvider, properties);
+        this.upstreamHttpClients = upstreamHttpClients;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        URI requestUrl = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        boolean routable = route != null && requestUrl != null && !isAlreadyRouted(exchange)
+                && ("http".equalsIgnoreCase(requestUrl.getScheme())
+                        || "https".equalsIgnoreCase(requestUrl.getScheme()));
+        Mono<Void> result = super.filter(exchange, chain);
+        if (!routable) {
+            return result;
+        }
+        Duration responseTimeout = upstreamHttpClients.resolve(route).getResponseTimeout();
+        if (responseTimeout == null) {
+            return result;
+        }
+        return result.timeout(responseTimeout, Mono.error(() -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                "Response took longer than timeout: " + responseTimeout)));
+    }
+
+    @Override
+    protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+        UpstreamHttpClient upstreamHttpClient = upstreamHttpClients.resolve(route);
+        HttpClient httpClient = upstreamHttpClient.getHttpClient();
+        Object connectTimeout = route.getMetadata().get(CONNECT_TIMEOUT_ATTR);
+        if (connectTimeout != null) {
+            httpClient = httpClient.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout instanceof Number
+                    ? ((Number) connectTimeout).intValue() : Integer.parseInt(connectTimeout.toString()));
+        }
+        return httpClient;
+    }
+}
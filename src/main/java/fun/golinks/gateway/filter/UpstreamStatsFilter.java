@@ -0,0 +1,52 @@
+package fun.golinks.gateway.filter;
+
+import fun.golinks.gateway.loadbalancer.InstanceStats;
+import fun.golinks.gateway.loadbalancer.UpstreamStats;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.isAlreadyRouted;
+
+/**
+ * 为负载均衡统计每个实例的未完成请求数和延迟，在并发限制之后执行，被拒绝的请求不计入。
+ * <p>
+ * 延迟从转发开始计算到收到响应头为止，失败的请求同样计入（超时会推高延迟）；客户端取消的请求只减少未完成数。
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.cloud.load-balancing", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class UpstreamStatsFilter implements GlobalFilter, Ordered {
+
+    private final UpstreamStats upstreamStats;
+
+    public UpstreamStatsFilter(UpstreamStats upstreamStats) {
+        this.upstreamStats = upstreamStats;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Response<ServiceInstance> response = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (response == null || !response.hasServer() || isAlreadyRouted(exchange)) {
+            return chain.filter(exchange);
+        }
+        InstanceStats instanceStats = upstreamStats.get(response.getServer());
+        long start = System.nanoTime();
+        instanceStats.start();
+        return chain.filter(exchange).doFinally(
+                signalType -> instanceStats.complete(signalType == SignalType.CANCEL ? -1 : System.nanoTime() - start));
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 2;
+    }
+}
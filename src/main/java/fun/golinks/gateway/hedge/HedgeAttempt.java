@@ -0,0 +1,169 @@
+package fun.golinks.gateway.hedge;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+
+/**
+ * 一次上游调用。每次调用使用自己的属性和响应，互不影响；胜出的调用把属性、状态码、响应头和已写出的响应体交给真实的 exchange，之后由 NettyWriteResponseFilter 写出上游的响应体。
+ */
+final class HedgeAttempt extends ServerWebExchangeDecorator {
+
+    private final ServerHttpRequest request;
+    private final AttemptResponse response;
+    private final Map<String, Object> attributes;
+
+    HedgeAttempt(ServerWebExchange exchange, ServerHttpRequest request) {
+        super(exchange);
+        this.request = request;
+        this.response = new AttemptResponse(exchange.getResponse());
+        this.attributes = new ConcurrentHashMap<>(exchange.getAttributes());
+    }
+
+    @Override
+    public ServerHttpRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public ServerHttpResponse getResponse() {
+        return response;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * 把结果交给真实的 exchange
+     */
+    Mono<Void> commit(ServerWebExchange exchange) {
+        exchange.getAttributes().putAll(attributes);
+        return response.commitTo(exchange.getResponse());
+    }
+
+    /**
+     * 丢弃落选的调用，关闭已经建立的上游响应连接
+     */
+    void discard() {
+        response.discard();
+        Connection connection = (Connection) attributes.get(CLIENT_RESPONSE_CONN_ATTR);
+        if (connection != null) {
+            connection.dispose();
+        }
+    }
+
+    /**
+     * 先记录状态码、响应头和响应体，胜出后再写到真实的响应
+     */
+    private static final class AttemptResponse extends AbstractServerHttpResponse {
+
+        private final ServerHttpResponse delegate;
+        private final List<Supplier<? extends Mono<Void>>> commitActions = new ArrayList<>();
+        private Publisher<? extends DataBuffer> body;
+        private Publisher<? extends Publisher<? extends DataBuffer>> bodyWithFlush;
+        private boolean complete;
+
+        private AttemptResponse(ServerHttpResponse delegate) {
+            super(delegate.bufferFactory(), copy(delegate.getHeaders()));
+            this.delegate = delegate;
+        }
+
+        private static HttpHeaders copy(HttpHeaders headers) {
+            HttpHeaders copy = new HttpHeaders();
+            copy.putAll(headers);
+            return copy;
+        }
+
+        @Override
+        public <T> T getNativeResponse() {
+            return delegate instanceof AbstractServerHttpResponse
+                    ? ((AbstractServerHttpResponse) delegate).getNativeResponse() : null;
+        }
+
+        @Override
+        public void beforeCommit(Supplier<? extends Mono<Void>> action) {
+            commitActions.add(action);
+            super.beforeCommit(action);
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            complete = true;
+            return super.setComplete();
+        }
+
+        @Override
+        protected Mono<Void> writeWithInternal(Publisher<? extends DataBuffer> body) {
+            this.body = body;
+            return Mono.empty();
+        }
+
+        @Override
+        protected Mono<Void> writeAndFlushWithInternal(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            this.bodyWithFlush = body;
+            return Mono.empty();
+        }
+
+        @Override
+        protected void applyStatusCode() {
+        }
+
+        @Override
+        protected void applyHeaders() {
+        }
+
+        @Override
+        protected void applyCookies() {
+        }
+
+        private Mono<Void> commitTo(ServerHttpResponse target) {
+            Integer status = getRawStatusCode();
+            if (status != null) {
+                target.setRawStatusCode(status);
+            }
+            target.getHeaders().putAll(getHeaders());
+            for (List<ResponseCookie> cookies : getCookies().values()) {
+                cookies.forEach(target::addCookie);
+            }
+            if (!isCommitted()) {
+                // 响应体由后面的过滤器写出，提交前的回调交给真实的响应执行
+                commitActions.forEach(target::beforeCommit);
+                return Mono.empty();
+            }
+            if (body != null) {
+                return target.writeWith(body);
+            }
+            if (bodyWithFlush != null) {
+                return target.writeAndFlushWith(bodyWithFlush);
+            }
+            return complete ? target.setComplete() : Mono.empty();
+        }
+
+        private void discard() {
+            if (body != null) {
+                Flux.from(body).subscribe(DataBufferUtils::release, e -> {
+                });
+            }
+        }
+    }
+}
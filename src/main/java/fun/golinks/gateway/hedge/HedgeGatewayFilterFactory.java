@@ -0,0 +1,238 @@
+package fun.golinks.gateway.hedge;
+
+import fun.golinks.gateway.loadbalancer.PeakEwmaLoadBalancer;
+import fun.golinks.gateway.loadbalancer.UpstreamStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+/**
+ * 对冲请求，在路由定义中按路由开启：
+ *
+ * <pre>
+ * filters:
+ *   - name: Hedge
+ *     args:
+ *       delay: 200ms
+ *       percentile: 95
+ *       budget-percent: 10
+ *       max-burst: 10
+ *       retry-on-error: true
+ *       idempotent: false
+ * </pre>
+ * <p>
+ * 上游在 delay 内没有返回响应头时，向另一个实例再发一次相同的请求，先返回的响应胜出，另一个请求被取消。delay 为空时使用路由最近的 percentile 分位延迟（不低于
+ * min-delay），样本不足前不对冲。retry-on-error 为 true 时，首次请求转发出错（连接失败、超时）会立即重试一次。对冲和重试都要从重试预算中取令牌：每个请求存入 budget-percent% 个令牌，最多积累
+ * max-burst 个，额外的上游请求因此不超过原始请求的 budget-percent%。
+ * <p>
+ * 只处理 GET、HEAD 请求，idempotent 为 true 时处理全部方法（请求体会被缓存以便重发）。lb:// 路由的第二个请求会避开首次请求选中的实例。
+ */
+@Component
+public class HedgeGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgeGatewayFilterFactory.Config> {
+
+    private final Counter hedged;
+    private final Counter hedgeWon;
+    private final Counter budgetExhausted;
+
+    public HedgeGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.hedged = counter(meterRegistry, "hedged");
+        this.hedgeWon = counter(meterRegistry, "hedge_won");
+        this.budgetExhausted = counter(meterRegistry, "budget_exhausted");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("gateway.hedge.requests").description("Requests seen by the hedge filter")
+                .tag("result", result).register(meterRegistry);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("delay", "budgetPercent");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return new HedgeFilter(config);
+    }
+
+    @Data
+    public static class Config {
+
+        /**
+         * 发出第二个请求前等待的时间，为空时使用路由延迟的分位数
+         */
+        private Duration delay;
+
+        /**
+         * delay 为空时使用的延迟分位数
+         */
+        private double percentile = 95;
+
+        /**
+         * 按分位数计算的等待时间的下限
+         */
+        private Duration minDelay = Duration.ofMillis(10);
+
+        /**
+         * 额外请求占原始请求的最大比例（百分比）
+         */
+        private double budgetPercent = 10;
+
+        /**
+         * 重试预算最多积累的令牌数
+         */
+        private int maxBurst = 10;
+
+        /**
+         * 首次请求转发出错时是否立即重试
+         */
+        private boolean retryOnError = true;
+
+        /**
+         * 路由是否幂等，为 true 时所有方法都可以对冲
+         */
+        private boolean idempotent = false;
+    }
+
+    private class HedgeFilter implements GatewayFilter {
+
+        private final Config config;
+        private final RetryBudget budget;
+        private final LatencyPercentile latency;
+
+        private HedgeFilter(Config config) {
+            this.config = config;
+            this.budget = new RetryBudget(config.getBudgetPercent() / 100, config.getMaxBurst());
+            this.latency = new LatencyPercentile(config.getPercentile());
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            ServerHttpRequest request = exchange.getRequest();
+            if (!isHedgeable(request)) {
+                return chain.filter(exchange);
+            }
+            budget.deposit();
+            long delayNanos = delayNanos();
+            if (delayNanos < 0 && !config.isRetryOnError()) {
+                long start = System.nanoTime();
+                return chain.filter(exchange).doOnSuccess(aVoid -> latency.record(System.nanoTime() - start));
+            }
+            HttpHeaders headers = request.getHeaders();
+            if (headers.getContentLength() > 0 || headers.containsKey(HttpHeaders.TRANSFER_ENCODING)) {
+                // 请求体只能读一次，缓存后两个请求各自重放
+                return ServerWebExchangeUtils.cacheRequestBodyAndRequest(exchange,
+                        cached -> hedge(exchange.mutate().request(cached).build(), chain, delayNanos));
+            }
+            return hedge(exchange, chain, delayNanos);
+        }
+
+        private boolean isHedgeable(ServerHttpRequest request) {
+            HttpMethod method = request.getMethod();
+            return (config.isIdempotent() || method == HttpMethod.GET || method == HttpMethod.HEAD)
+                    && !request.getHeaders().containsKey(HttpHeaders.UPGRADE);
+        }
+
+        /**
+         * 发出第二个请求前等待的纳秒数，还没有延迟数据时返回 -1
+         */
+        private long delayNanos() {
+            if (config.getDelay() != null) {
+                return config.getDelay().toNanos();
+            }
+            long percentileNanos = latency.getNanos(System.nanoTime());
+            return percentileNanos < 0 ? -1 : Math.max(percentileNanos, config.getMinDelay().toNanos());
+        }
+
+        private Mono<Void> hedge(ServerWebExchange exchange, GatewayFilterChain chain, long delayNanos) {
+            AtomicReference<HedgeAttempt> winner = new AtomicReference<>();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Sinks.Empty<Void> primaryFailed = Sinks.empty();
+            HedgeAttempt primary = new HedgeAttempt(exchange, exchange.getRequest());
+            Mono<HedgeAttempt> first = attempt(primary, chain, winner).doOnError(e -> {
+                error.compareAndSet(null, e);
+                primaryFailed.tryEmitEmpty();
+            }).onErrorResume(e -> Mono.empty());
+            Mono<Void> trigger;
+            if (delayNanos < 0) {
+                trigger = primaryFailed.asMono();
+            } else if (config.isRetryOnError()) {
+                trigger = Mono.firstWithSignal(Mono.delay(Duration.ofNanos(delayNanos)).then(), primaryFailed.asMono());
+            } else {
+                trigger = Mono.delay(Duration.ofNanos(delayNanos)).then();
+            }
+            Mono<HedgeAttempt> second = trigger.then(Mono.defer(() -> {
+                if (winner.get() != null) {
+                    return Mono.empty();
+                }
+                if (!budget.tryWithdraw()) {
+                    budgetExhausted.increment();
+                    return Mono.empty();
+                }
+                hedged.increment();
+                HedgeAttempt hedge = new HedgeAttempt(exchange, exchange.getRequest());
+                return attempt(hedge, chain, winner).contextWrite(context -> excludePrimary(context, primary))
+                        .doOnNext(attempt -> hedgeWon.increment()).onErrorResume(e -> {
+                            error.compareAndSet(null, e);
+                            return Mono.empty();
+                        });
+            }));
+            return Flux.merge(first, second).next().switchIfEmpty(Mono.defer(() -> {
+                Throwable e = error.get();
+                return e == null ? Mono.empty() : Mono.error(e);
+            })).flatMap(attempt -> attempt.commit(exchange));
+        }
+
+        /**
+         * 执行一次调用，先完成的成功调用胜出，落选的调用被丢弃
+         */
+        private Mono<HedgeAttempt> attempt(HedgeAttempt attempt, GatewayFilterChain chain,
+                AtomicReference<HedgeAttempt> winner) {
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return chain.filter(attempt).then(Mono.fromSupplier(() -> {
+                    latency.record(System.nanoTime() - start);
+                    if (winner.compareAndSet(null, attempt)) {
+                        return attempt;
+                    }
+                    attempt.discard();
+                    return null;
+                }));
+            });
+        }
+
+        /**
+         * 第二个请求通过订阅上下文告诉负载均衡避开首次请求选中的实例
+         */
+        private Context excludePrimary(Context context, HedgeAttempt primary) {
+            Response<ServiceInstance> response = primary.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+            if (response == null || !response.hasServer()) {
+                return context;
+            }
+            return context.put(PeakEwmaLoadBalancer.EXCLUDED_INSTANCE_KEY, UpstreamStats.key(response.getServer()));
+        }
+    }
+}
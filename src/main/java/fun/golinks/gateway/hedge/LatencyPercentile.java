@@ -0,0 +1,54 @@
+package fun.golinks.gateway.hedge;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 路由延迟的分位数，用作对冲延迟。
+ * <p>
+ * 记录使用 HdrHistogram 的 {@link Recorder}（无锁、不分配内存）；每 5 秒由一个请求认领后汇总一次，样本不少于 20 个时更新分位数，否则继续累积到下一个周期。
+ */
+final class LatencyPercentile {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int MIN_SAMPLES = 20;
+
+    private final double percentile;
+    private final Recorder recorder = new Recorder(HIGHEST_MICROS, 2);
+    private final Histogram accumulated = new Histogram(HIGHEST_MICROS, 2);
+    private final AtomicLong lastUpdate = new AtomicLong(System.nanoTime());
+    private Histogram interval;
+    private volatile long valueNanos = -1;
+
+    LatencyPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    void record(long nanos) {
+        recorder.recordValue(Math.max(1, Math.min(HIGHEST_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos))));
+    }
+
+    /**
+     * 当前的分位数，样本不足时返回 -1
+     */
+    long getNanos(long now) {
+        long last = lastUpdate.get();
+        if (now - last >= INTERVAL_NANOS && lastUpdate.compareAndSet(last, now)) {
+            update();
+        }
+        return valueNanos;
+    }
+
+    private synchronized void update() {
+        interval = recorder.getIntervalHistogram(interval);
+        accumulated.add(interval);
+        if (accumulated.getTotalCount() >= MIN_SAMPLES) {
+            valueNanos = TimeUnit.MICROSECONDS.toNanos(accumulated.getValueAtPercentile(percentile));
+            accumulated.reset();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package fun.golinks.gateway.hedge;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算：每个请求存入 ratio 个令牌，每次对冲或重试取出 1 个，余额不超过 maxBurst。
+ * <p>
+ * 长期来看额外的请求不超过原始请求的 ratio 倍；每个网关节点各自按比例控制，整个集群的额外负载也不会超过这个比例。
+ */
+final class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    RetryBudget(double ratio, int maxBurst) {
+        this.deposit = Math.max(0, Math.round(ratio * SCALE));
+        this.capacity = Math.max(1, maxBurst) * SCALE;
+        this.balance = new AtomicLong(deposit == 0 ? 0 : capacity);
+    }
+
+    void deposit() {
+        while (true) {
+            long current = balance.get();
+            if (current >= capacity || balance.compareAndSet(current, Math.min(capacity, current + deposit))) {
+                return;
+            }
+        }
+    }
+
+    boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+}
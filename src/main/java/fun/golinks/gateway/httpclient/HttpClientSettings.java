@@ -0,0 +1,75 @@
+package fun.golinks.gateway.httpclient;
+
+import lombok.Data;
+import reactor.netty.http.HttpProtocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 上游 HTTP 客户端及连接池配置，未设置的项使用 Reactor Netty 的默认值
+ */
+@Data
+public class HttpClientSettings {
+
+    /**
+     * 服务名（对应 lb:// 路由）或 host:port，路由元数据 http-client 也可以直接指定
+     */
+    private String id;
+
+    /**
+     * 每个上游地址的最大连接数
+     */
+    private Integer maxConnections;
+
+    /**
+     * 等待获取连接的最大请求数，默认是 maxConnections 的两倍
+     */
+    private Integer pendingAcquireMaxCount;
+
+    /**
+     * 等待获取连接的超时时间（毫秒）
+     */
+    private Long pendingAcquireTimeoutMillis;
+
+    /**
+     * 连接空闲多久后关闭（毫秒）
+     */
+    private Long maxIdleTimeMillis;
+
+    /**
+     * 连接最长存活时间（毫秒）
+     */
+    private Long maxLifeTimeMillis;
+
+    /**
+     * 后台清理空闲和过期连接的间隔（毫秒），为空时只在获取连接时清理
+     */
+    private Long evictionIntervalMillis;
+
+    /**
+     * 与上游通信使用的协议：HTTP11、H2（TLS）、H2C（明文 HTTP/2）
+     */
+    private List<HttpProtocol> protocols = new ArrayList<>(Collections.singletonList(HttpProtocol.HTTP11));
+
+    /**
+     * 建立连接的超时时间（毫秒），路由元数据 connect-timeout 优先
+     */
+    private Integer connectTimeoutMillis;
+
+    /**
+     * 等待响应头的超时时间（毫秒），与路由元数据 response-timeout 同时设置时取较短的一个
+     */
+    private Long responseTimeoutMillis;
+
+    /**
+     * 启动或配置变化后为每个实例预先建立的连接数
+     */
+    private int warmupConnections;
+
+    /**
+     * 预热时发送 HEAD 请求的路径
+     */
+    private String warmupPath = "/";
+}
@@ -0,0 +1,44 @@
+package fun.golinks.gateway.httpclient;
+
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * 按配置创建的 HTTP 客户端及其连接池
+ */
+public final class UpstreamHttpClient {
+
+    private final HttpClientSettings settings;
+    private final HttpClient httpClient;
+    private final ConnectionProvider connectionProvider;
+    private final Duration responseTimeout;
+
+    UpstreamHttpClient(HttpClientSettings settings, HttpClient httpClient, ConnectionProvider connectionProvider) {
+        this.settings = settings;
+        this.httpClient = httpClient;
+        this.connectionProvider = connectionProvider;
+        this.responseTimeout = settings.getResponseTimeoutMillis() == null ? null
+                : Duration.ofMillis(settings.getResponseTimeoutMillis());
+    }
+
+    HttpClientSettings getSettings() {
+        return settings;
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    ConnectionProvider getConnectionProvider() {
+        return connectionProvider;
+    }
+
+    /**
+     * 等待响应头的超时时间，未设置时为 null
+     */
+    public Duration getResponseTimeout() {
+        return responseTimeout;
+    }
+}
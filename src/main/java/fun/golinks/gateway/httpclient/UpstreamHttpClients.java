@@ -0,0 +1,244 @@
+package fun.golinks.gateway.httpclient;
+
+import com.alibaba.cloud.nacos.NacosConfigManager;
+import com.alibaba.nacos.api.config.listener.Listener;
+import fun.golinks.gateway.util.ConfigUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.tcp.SslProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按服务或上游地址配置的 HTTP 客户端，从 Nacos 加载，配置变化时整体替换。
+ * <p>
+ * 每个配置项使用独立的连接池，连接池指标（活跃、空闲、等待中的连接数）由 Reactor Netty 以 reactor.netty.connection.provider.* 导出，name 标签为配置项 ID；获取连接的耗时导出为
+ * gateway.http_client.acquire{client}。配置没有变化的客户端沿用原来的连接池，被替换的连接池延迟一段时间后关闭，给进行中的请求留出时间。
+ */
+@Slf4j
+@Component
+public class UpstreamHttpClients implements InitializingBean, DisposableBean {
+
+    /**
+     * 路由元数据中指定客户端 ID 的 key
+     */
+    public static final String HTTP_CLIENT_METADATA = "http-client";
+
+    private static final String DATA_ID = "gateway-http-clients.yaml";
+    private static final String GROUP = "infra-gateway";
+    private static final Duration DISPOSE_DELAY = Duration.ofMinutes(1);
+
+    private final NacosConfigManager nacosConfigManager;
+    private final HttpClientProperties httpClientProperties;
+    private final HttpClient gatewayHttpClient;
+    private final ReactiveDiscoveryClient discoveryClient;
+    private final MeterRegistry meterRegistry;
+    private final Executor listenerExecutor = Executors.newSingleThreadExecutor();
+    private final UpstreamHttpClient defaultClient;
+    /**
+     * 小写的客户端 ID -> 客户端
+     */
+    private volatile Map<String, UpstreamHttpClient> clients = Collections.emptyMap();
+
+    public UpstreamHttpClients(NacosConfigManager nacosConfigManager, HttpClientProperties httpClientProperties,
+            HttpClient gatewayHttpClient, ReactiveDiscoveryClient discoveryClient, MeterRegistry meterRegistry) {
+        this.nacosConfigManager = nacosConfigManager;
+        this.httpClientProperties = httpClientProperties;
+        this.gatewayHttpClient = gatewayHttpClient;
+        this.discoveryClient = discoveryClient;
+        this.meterRegistry = meterRegistry;
+        HttpClientSettings defaultSettings = new HttpClientSettings();
+        defaultSettings.setId("default");
+        this.defaultClient = new UpstreamHttpClient(defaultSettings, timed(gatewayHttpClient, "default"), null);
+    }
+
+    /**
+     * 选择路由使用的客户端：路由元数据 http-client、lb:// 的服务名或上游主机、host:port，都没有配置时使用网关默认的客户端
+     */
+    public UpstreamHttpClient resolve(Route route) {
+        Map<String, UpstreamHttpClient> current = clients;
+        if (current.isEmpty()) {
+            return defaultClient;
+        }
+        UpstreamHttpClient client = null;
+        Object id = route.getMetadata().get(HTTP_CLIENT_METADATA);
+        if (id != null) {
+            client = current.get(id.toString().toLowerCase(Locale.ROOT));
+        }
+        URI uri = route.getUri();
+        if (client == null && uri.getHost() != null) {
+            String host = uri.getHost().toLowerCase(Locale.ROOT);
+            client = current.get(host);
+            if (client == null && uri.getPort() > 0) {
+                client = current.get(host + ":" + uri.getPort());
+            }
+        }
+        return client == null ? defaultClient : client;
+    }
+
+    void update(String config) {
+        List<HttpClientSettings> settingsList = StringUtils.isBlank(config) ? Collections.emptyList()
+                : ConfigUtil.toArray(config, HttpClientSettings.class);
+        if (settingsList == null) {
+            return;
+        }
+        Map<String, UpstreamHttpClient> previous = clients;
+        Map<String, UpstreamHttpClient> next = new HashMap<>();
+        for (HttpClientSettings settings : settingsList) {
+            if (StringUtils.isBlank(settings.getId()) || settings.getProtocols() == null
+                    || settings.getProtocols().isEmpty()) {
+                log.warn("Ignore invalid http client settings: {}", settings);
+                continue;
+            }
+            String key = settings.getId().toLowerCase(Locale.ROOT);
+            UpstreamHttpClient existing = previous.get(key);
+            if (existing != null && existing.getSettings().equals(settings)) {
+                next.put(key, existing);
+                continue;
+            }
+            UpstreamHttpClient created = create(settings);
+            next.put(key, created);
+            warmup(created);
+        }
+        clients = next;
+        for (Map.Entry<String, UpstreamHttpClient> entry : previous.entrySet()) {
+            if (next.get(entry.getKey()) != entry.getValue()) {
+                Mono.delay(DISPOSE_DELAY).then(entry.getValue().getConnectionProvider().disposeLater()).subscribe(null,
+                        e -> log.warn("Failed to dispose connection pool {}", entry.getKey(), e));
+            }
+        }
+        log.info("Http clients updated, size={}", next.size());
+    }
+
+    private UpstreamHttpClient create(HttpClientSettings settings) {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(settings.getId()).metrics(true);
+        if (settings.getMaxConnections() != null) {
+            builder.maxConnections(settings.getMaxConnections());
+        }
+        if (settings.getPendingAcquireMaxCount() != null) {
+            builder.pendingAcquireMaxCount(settings.getPendingAcquireMaxCount());
+        }
+        if (settings.getPendingAcquireTimeoutMillis() != null) {
+            builder.pendingAcquireTimeout(Duration.ofMillis(settings.getPendingAcquireTimeoutMillis()));
+        }
+        if (settings.getMaxIdleTimeMillis() != null) {
+            builder.maxIdleTime(Duration.ofMillis(settings.getMaxIdleTimeMillis()));
+        }
+        if (settings.getMaxLifeTimeMillis() != null) {
+            builder.maxLifeTime(Duration.ofMillis(settings.getMaxLifeTimeMillis()));
+        }
+        if (settings.getEvictionIntervalMillis() != null) {
+            builder.evictInBackground(Duration.ofMillis(settings.getEvictionIntervalMillis()));
+        }
+        ConnectionProvider connectionProvider = builder.build();
+        HttpClientProperties properties = httpClientProperties;
+        HttpClient httpClient = HttpClient.create(connectionProvider).compress(properties.isCompression())
+                .wiretap(properties.isWiretap()).httpResponseDecoder(spec -> {
+                    if (properties.getMaxHeaderSize() != null) {
+                        spec.maxHeaderSize((int) properties.getMaxHeaderSize().toBytes());
+                    }
+                    if (properties.getMaxInitialLineLength() != null) {
+                        spec.maxInitialLineLength((int) properties.getMaxInitialLineLength().toBytes());
+                    }
+                    return spec;
+                }).protocol(settings.getProtocols().toArray(new HttpProtocol[0]));
+        // 沿用网关默认客户端的 TLS 配置，只对 https 上游生效
+        SslProvider sslProvider = gatewayHttpClient.configuration().sslProvider();
+        if (sslProvider != null) {
+            httpClient = httpClient.secure(sslProvider);
+        } else if (settings.getProtocols().contains(HttpProtocol.H2)) {
+            httpClient = httpClient.secure();
+        }
+        Integer connectTimeout = settings.getConnectTimeoutMillis() != null ? settings.getConnectTimeoutMillis()
+                : properties.getConnectTimeout();
+        if (connectTimeout != null) {
+            httpClient = httpClient.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout);
+        }
+        return new UpstreamHttpClient(settings, timed(httpClient, settings.getId()), connectionProvider);
+    }
+
+    /**
+     * 记录从连接池获取连接（包括新建连接）的耗时
+     */
+    private HttpClient timed(HttpClient httpClient, String id) {
+        Timer timer = Timer.builder("gateway.http_client.acquire")
+                .description("Time spent acquiring an upstream connection").tag("client", id).register(meterRegistry);
+        return httpClient.mapConnect(connection -> Mono.defer(() -> {
+            long start = System.nanoTime();
+            return connection.doOnSuccess(conn -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        }));
+    }
+
+    /**
+     * 为服务的每个实例预先建立 warmupConnections 个连接，发送的是 HEAD 请求，结果只用于日志
+     */
+    private void warmup(UpstreamHttpClient client) {
+        HttpClientSettings settings = client.getSettings();
+        int connections = settings.getWarmupConnections();
+        if (connections <= 0) {
+            return;
+        }
+        HttpClient httpClient = client.getHttpClient();
+        httpClient.warmup().thenMany(discoveryClient.getInstances(settings.getId()))
+                .flatMap(instance -> Flux.range(0, connections).flatMap(i -> httpClient.head()
+                        .uri(instance.getUri() + settings.getWarmupPath()).responseContent().then(), connections)
+                        .then(Mono.just(1)).onErrorResume(e -> {
+                            log.warn("Failed to warm up connections to {}: {}", instance.getUri(), e.toString());
+                            return Mono.empty();
+                        }))
+                .count().subscribeOn(Schedulers.boundedElastic())
+                .subscribe(count -> log.info("Warmed up {} instances of {}", count, settings.getId()),
+                        e -> log.warn("Failed to warm up {}", settings.getId(), e));
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        update(nacosConfigManager.getConfigService().getConfig(DATA_ID, GROUP, 5000));
+        nacosConfigManager.getConfigService().addListener(DATA_ID, GROUP, new Listener() {
+            @Override
+            public void receiveConfigInfo(String configInfo) {
+                try {
+                    update(configInfo);
+                } catch (Exception e) {
+                    log.error("Failed to update http clients", e);
+                }
+            }
+
+            @Override
+            public Executor getExecutor() {
+                return listenerExecutor;
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        for (UpstreamHttpClient client : clients.values()) {
+            client.getConnectionProvider().dispose();
+        }
+    }
+}
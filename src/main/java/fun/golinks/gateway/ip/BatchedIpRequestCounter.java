@@ -0,0 +1,159 @@
+package fun.golinks.gateway.ip;
+
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地计数、批量同步到 Redis 的请求计数器。
+ * <p>
+ * 每个节点在内存中用 {@link LongAdder} 累加各 IP 的请求数，每隔 flush-interval 把增量分批写入 Redis（每批一次脚本调用），并读回集群范围内的滑动窗口计数。判断是否封禁时使用「上次读回的集群计数
+ * + 本地未同步增量」作为估计值。某个 IP 的未同步增量超过 batch-tolerance 时会提前触发一次同步，因此单个节点带来的计数误差不超过该值。每个同步周期的 Redis 往返次数与其中的不同 IP
+ * 数成正比，而与请求数无关。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "spring.cloud.ip-blocking", name = "counter-mode", havingValue = "batched")
+public class BatchedIpRequestCounter implements IpRequestCounter, InitializingBean, DisposableBean {
+
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    private final IpBanCache ipBanCache;
+    private final IpBlockingProperties ipBlockingProperties;
+    private final RequestCountScript countScript;
+    /**
+     * 尚未同步到 Redis 的增量
+     */
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    /**
+     * 上次同步时读回的集群总数
+     */
+    private final Map<String, WindowCount> totals = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Sinks.Many<Long> flushTrigger = Sinks.many().multicast().directBestEffort();
+    private Disposable flushTask;
+
+    public BatchedIpRequestCounter(ReactiveRedisTemplate<String, String> redisTemplate, IpBanCache ipBanCache,
+            IpBlockingProperties ipBlockingProperties) {
+        this.ipBanCache = ipBanCache;
+        this.ipBlockingProperties = ipBlockingProperties;
+        this.countScript = new RequestCountScript(redisTemplate, ipBlockingProperties);
+    }
+
+    @Override
+    public Mono<Boolean> increment(String ip) {
+        LongAdder adder = pending.computeIfAbsent(ip, key -> new LongAdder());
+        adder.increment();
+        long unflushed = adder.sum();
+        WindowCount known = totals.get(ip);
+        long estimate = unflushed;
+        if (known != null && known.expireAt > System.currentTimeMillis()) {
+            estimate += known.count;
+        }
+        if (estimate >= ipBlockingProperties.getMaxRequestCount()) {
+            return ipBanCache.ban(ip, ipBlockingProperties.getBanDuration()).thenReturn(true);
+        }
+        if (unflushed >= ipBlockingProperties.getBatchTolerance() && flushRequested.compareAndSet(false, true)) {
+            flushTrigger.tryEmitNext(0L);
+        }
+        return Mono.just(false);
+    }
+
+    /**
+     * 把本地增量同步到 Redis，并读回集群计数
+     */
+    Mono<Void> flush() {
+        flushRequested.set(false);
+        long now = System.currentTimeMillis();
+        totals.values().removeIf(windowCount -> windowCount.expireAt <= now);
+        List<String> ips = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta > 0) {
+                ips.add(entry.getKey());
+                deltas.add(delta);
+            } else if (pending.remove(entry.getKey(), entry.getValue())) {
+                // 移除空闲计数器后仍可能有并发写入，把它们并入下一轮
+                long late = entry.getValue().sum();
+                if (late > 0) {
+                    pending.computeIfAbsent(entry.getKey(), key -> new LongAdder()).add(late);
+                }
+            }
+        }
+        if (ips.isEmpty()) {
+            return Mono.empty();
+        }
+        int batches = (ips.size() + FLUSH_BATCH_SIZE - 1) / FLUSH_BATCH_SIZE;
+        return Flux.range(0, batches).concatMap(batch -> {
+            int from = batch * FLUSH_BATCH_SIZE;
+            int to = Math.min(from + FLUSH_BATCH_SIZE, ips.size());
+            return flush(ips.subList(from, to), deltas.subList(from, to));
+        }).then();
+    }
+
+    private Mono<Void> flush(List<String> ips, List<Long> deltas) {
+        return countScript.increment(ips, deltas).onErrorResume(e -> {
+            // 同步失败时把增量还回去，下一轮重试
+            for (int i = 0; i < ips.size(); i++) {
+                pending.computeIfAbsent(ips.get(i), key -> new LongAdder()).add(deltas.get(i));
+            }
+            log.warn("Failed to flush request counts of {} ips: {}", ips.size(), e.getMessage());
+            return Mono.empty();
+        }).flatMap(counts -> {
+            long expireAt = countScript.segmentEnd(System.currentTimeMillis());
+            List<Mono<Void>> bans = new ArrayList<>();
+            for (int i = 0; i < ips.size(); i++) {
+                String ip = ips.get(i);
+                long count = counts.get(i);
+                totals.put(ip, new WindowCount(count, expireAt));
+                if (count >= ipBlockingProperties.getMaxRequestCount() && !ipBanCache.isBanned(ip)) {
+                    bans.add(ipBanCache.ban(ip, ipBlockingProperties.getBanDuration()));
+                }
+            }
+            return Mono.when(bans);
+        });
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        flushTask = Flux.merge(Flux.interval(ipBlockingProperties.getFlushInterval()), flushTrigger.asFlux())
+                .onBackpressureDrop().concatMap(tick -> flush().onErrorResume(e -> {
+                    log.error("Failed to flush request counts", e);
+                    return Mono.empty();
+                }), 1).subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        if (flushTask != null) {
+            flushTask.dispose();
+        }
+    }
+
+    private static class WindowCount {
+
+        private final long count;
+        private final long expireAt;
+
+        private WindowCount(long count, long expireAt) {
+            this.count = count;
+            this.expireAt = expireAt;
+        }
+    }
+}
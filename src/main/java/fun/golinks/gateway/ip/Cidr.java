@@ -0,0 +1,65 @@
+package fun.golinks.gateway.ip;
+
+/**
+ * CIDR 网段，前缀长度按 128 位地址计算（IPv4 的 /n 对应 /96+n）
+ */
+public final class Cidr {
+
+    private final IpAddress address;
+    private final int prefixLength;
+
+    private Cidr(IpAddress address, int prefixLength) {
+        this.address = address;
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * 解析 {@code 10.0.0.0/8}、{@code 2001:db8::/32} 或单个地址（相当于 /32、/128），格式不正确时返回 null
+     */
+    public static Cidr parse(String s) {
+        if (s == null) {
+            return null;
+        }
+        String value = s.trim();
+        int slash = value.indexOf('/');
+        IpAddress address = IpAddress.parse(value, 0, slash < 0 ? value.length() : slash);
+        if (address == null) {
+            return null;
+        }
+        int maxLength = address.isIpv4() ? 32 : 128;
+        int length = maxLength;
+        if (slash >= 0) {
+            try {
+                length = Integer.parseInt(value.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (length < 0 || length > maxLength) {
+                return null;
+            }
+        }
+        return new Cidr(address, length + 128 - maxLength);
+    }
+
+    public IpAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * 按 128 位地址计算的前缀长度
+     */
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    /**
+     * 规范形式，单个地址不带前缀长度
+     */
+    @Override
+    public String toString() {
+        if (prefixLength == 128) {
+            return address.toString();
+        }
+        return address + "/" + (address.isIpv4() ? prefixLength - 96 : prefixLength);
+    }
+}
@@ -0,0 +1,191 @@
+package fun.golinks.gateway.ip;
+
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * 解析客户端 IP。
+ * <p>
+ * 只有直接连接网关的地址是可信代理（trusted-proxies）时才读取转发头：优先 {@code Forwarded}（RFC 7239 的 for 参数），其次 {@code X-Forwarded-For}，最后
+ * {@code X-Real-IP}。转发链从右向左逐跳检查，跳过可信代理，第一个不可信的地址就是客户端；客户端自己伪造的左侧条目不会被采用。遇到无法解析的条目（如 {@code unknown}）时停止，使用它右侧最近的代理地址。
+ * <p>
+ * 扫描直接在请求头字符串上按下标进行，不创建子串和数组。结果缓存在 exchange 属性中，同一请求的各个过滤器只解析一次。
+ */
+@Slf4j
+@Component
+public class ClientIpResolver {
+
+    public static final String CLIENT_ADDRESS_ATTR = "client-address";
+    public static final String FORWARDED = "Forwarded";
+    public static final String X_FORWARDED_FOR = "X-Forwarded-For";
+    public static final String X_REAL_IP = "X-Real-IP";
+
+    private final IpSet trustedProxies;
+
+    public ClientIpResolver(IpBlockingProperties ipBlockingProperties) {
+        IpSet proxies = IpSet.EMPTY;
+        for (String value : ipBlockingProperties.getTrustedProxies()) {
+            Cidr cidr = Cidr.parse(value);
+            if (cidr == null) {
+                log.warn("Ignore invalid trusted proxy {}", value);
+                continue;
+            }
+            proxies = proxies.add(cidr);
+        }
+        this.trustedProxies = proxies;
+    }
+
+    /**
+     * 客户端地址，无法确定时返回 null
+     */
+    public IpAddress getClientAddress(ServerWebExchange exchange) {
+        IpAddress address = exchange.getAttribute(CLIENT_ADDRESS_ATTR);
+        if (address == null) {
+            address = resolve(exchange.getRequest());
+            if (address != null) {
+                exchange.getAttributes().put(CLIENT_ADDRESS_ATTR, address);
+            }
+        }
+        return address;
+    }
+
+    /**
+     * 客户端地址的规范形式，无法确定时返回空字符串
+     */
+    public String getClientIp(ServerWebExchange exchange) {
+        IpAddress address = getClientAddress(exchange);
+        return address == null ? "" : address.toString();
+    }
+
+    /**
+     * 不读写缓存，直接根据请求解析客户端地址
+     */
+    public IpAddress resolve(ServerHttpRequest request) {
+        IpAddress remote = remoteAddress(request);
+        // 没有连接信息时（如测试中构造的请求）只能依据转发头
+        if (remote != null && !trustedProxies.contains(remote)) {
+            return remote;
+        }
+        HttpHeaders headers = request.getHeaders();
+        boolean forwarded = true;
+        List<String> values = headers.get(FORWARDED);
+        if (values == null) {
+            forwarded = false;
+            values = headers.get(X_FORWARDED_FOR);
+        }
+        if (values == null) {
+            String realIp = headers.getFirst(X_REAL_IP);
+            IpAddress address = realIp == null ? null : parseNode(realIp, 0, realIp.length());
+            return address == null ? remote : address;
+        }
+        IpAddress client = remote;
+        // 多个同名请求头按顺序拼接成一条转发链，最右侧是离网关最近的一跳
+        for (int i = values.size() - 1; i >= 0; i--) {
+            String value = values.get(i);
+            int end = value.length();
+            while (end >= 0) {
+                int start = value.lastIndexOf(',', end - 1) + 1;
+                IpAddress hop = forwarded ? parseForwardedElement(value, start, end) : parseNode(value, start, end);
+                if (hop == null) {
+                    return client;
+                }
+                if (!trustedProxies.contains(hop)) {
+                    return hop;
+                }
+                client = hop;
+                end = start - 1;
+            }
+        }
+        // 整条链都是可信代理时使用最左侧的地址
+        return client;
+    }
+
+    private static IpAddress remoteAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null) {
+            return null;
+        }
+        InetAddress address = remoteAddress.getAddress();
+        if (address == null) {
+            return null;
+        }
+        byte[] bytes = address.getAddress();
+        long high = 0;
+        long low = 0;
+        if (bytes.length == 4) {
+            low = 0xFFFF_0000_0000L;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            int shift = (bytes.length - 1 - i) * 8;
+            if (shift >= 64) {
+                high |= (bytes[i] & 0xFFL) << (shift - 64);
+            } else {
+                low |= (bytes[i] & 0xFFL) << shift;
+            }
+        }
+        return IpAddress.of(high, low);
+    }
+
+    /**
+     * 解析 Forwarded 中的一个元素（{@code for=192.0.2.60;proto=http;by=203.0.113.43}），取 for 参数
+     */
+    static IpAddress parseForwardedElement(String s, int start, int end) {
+        int pair = start;
+        while (pair < end) {
+            int pairEnd = s.indexOf(';', pair);
+            if (pairEnd < 0 || pairEnd > end) {
+                pairEnd = end;
+            }
+            while (pair < pairEnd && s.charAt(pair) == ' ') {
+                pair++;
+            }
+            if (pairEnd - pair > 4 && s.regionMatches(true, pair, "for=", 0, 4)) {
+                return parseNode(s, pair + 4, pairEnd);
+            }
+            pair = pairEnd + 1;
+        }
+        return null;
+    }
+
+    /**
+     * 解析一跳的地址，允许两侧的空白和引号、带方括号的 IPv6 以及端口：{@code "[2001:db8::17]:4711"}、{@code 192.0.2.60:8080}
+     */
+    static IpAddress parseNode(String s, int start, int end) {
+        while (start < end && s.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end - start >= 2 && s.charAt(start) == '"' && s.charAt(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        if (start < end && s.charAt(start) == '[') {
+            int close = s.indexOf(']', start);
+            if (close < 0 || close >= end) {
+                return null;
+            }
+            return IpAddress.parse(s, start + 1, close);
+        }
+        int colon = -1;
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == ':') {
+                if (colon >= 0) {
+                    // 多个冒号是不带方括号的 IPv6 地址
+                    return IpAddress.parse(s, start, end);
+                }
+                colon = i;
+            }
+        }
+        return IpAddress.parse(s, start, colon < 0 ? end : colon);
+    }
+}
@@ -0,0 +1,280 @@
+package fun.golinks.gateway.ip;
+
+/**
+ * 二进制形式的 IP 地址，统一表示为 128 位：IPv4 地址映射为 {@code ::ffff:a.b.c.d}，与 IPv4 映射的 IPv6 地址视为同一个地址。
+ * <p>
+ * 解析直接扫描字符，不创建中间字符串；{@link #toString()} 返回规范形式（IPv4 点分十进制，IPv6 按 RFC 5952 压缩并使用小写）。
+ */
+public final class IpAddress {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+
+    private final long high;
+    private final long low;
+    private String text;
+
+    private IpAddress(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static IpAddress of(long high, long low) {
+        return new IpAddress(high, low);
+    }
+
+    public static IpAddress parse(CharSequence s) {
+        return s == null ? null : parse(s, 0, s.length());
+    }
+
+    /**
+     * 解析 s 中 [start, end) 范围内的地址，IPv6 可以带 zone（{@code %eth0}，忽略）。格式不正确时返回 null
+     */
+    public static IpAddress parse(CharSequence s, int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == ':') {
+                return parseIpv6(s, start, end);
+            }
+        }
+        long ipv4 = parseIpv4(s, start, end);
+        return ipv4 < 0 ? null : new IpAddress(0L, IPV4_MAPPED_PREFIX | ipv4);
+    }
+
+    /**
+     * 解析点分十进制的 IPv4 地址，格式不正确时返回 -1
+     */
+    static long parseIpv4(CharSequence s, int start, int end) {
+        long value = 0;
+        int octets = 0;
+        int octet = -1;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits > 0 && octet == 0) {
+                    // 不接受前导零，避免与八进制写法混淆
+                    return -1;
+                }
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+                digits++;
+            } else if (c == '.') {
+                if (octet < 0 || octets == 3) {
+                    return -1;
+                }
+                value = (value << 8) | octet;
+                octets++;
+                octet = -1;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || octets != 3) {
+            return -1;
+        }
+        return (value << 8) | octet;
+    }
+
+    private static IpAddress parseIpv6(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == '%') {
+                end = i;
+                break;
+            }
+        }
+        // "::" 之前的分组累积在 head，之后的累积在 tail，最后按缺少的分组数移位合并
+        long headHigh = 0;
+        long headLow = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+        int headGroups = 0;
+        int tailGroups = 0;
+        boolean compressed = false;
+        int i = start;
+        if (end - start >= 2 && s.charAt(i) == ':' && s.charAt(i + 1) == ':') {
+            compressed = true;
+            i += 2;
+        } else if (s.charAt(i) == ':') {
+            return null;
+        }
+        while (i < end) {
+            int groupStart = i;
+            int group = 0;
+            while (i < end && s.charAt(i) != ':' && s.charAt(i) != '.') {
+                int digit = Character.digit(s.charAt(i), 16);
+                if (digit < 0 || i - groupStart >= 4) {
+                    return null;
+                }
+                group = (group << 4) | digit;
+                i++;
+            }
+            if (i < end && s.charAt(i) == '.') {
+                // 末尾内嵌的 IPv4 地址，占两个分组
+                long ipv4 = parseIpv4(s, groupStart, end);
+                if (ipv4 < 0) {
+                    return null;
+                }
+                for (int k = 0; k < 2; k++) {
+                    int part = (int) ((ipv4 >>> (16 - 16 * k)) & 0xFFFF);
+                    if (compressed) {
+                        tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+                        tailLow = (tailLow << 16) | part;
+                        tailGroups++;
+                    } else {
+                        headHigh = (headHigh << 16) | (headLow >>> 48);
+                        headLow = (headLow << 16) | part;
+                        headGroups++;
+                    }
+                }
+                i = end;
+                break;
+            }
+            if (i == groupStart) {
+                return null;
+            }
+            if (compressed) {
+                tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+                tailLow = (tailLow << 16) | group;
+                tailGroups++;
+            } else {
+                headHigh = (headHigh << 16) | (headLow >>> 48);
+                headLow = (headLow << 16) | group;
+                headGroups++;
+            }
+            if (i < end) {
+                // 当前字符是 ':'
+                i++;
+                if (i < end && s.charAt(i) == ':') {
+                    if (compressed) {
+                        return null;
+                    }
+                    compressed = true;
+                    i++;
+                } else if (i == end) {
+                    return null;
+                }
+            }
+        }
+        int groups = headGroups + tailGroups;
+        if (compressed ? groups > 7 : groups != 8) {
+            return null;
+        }
+        int shift = 16 * (8 - headGroups);
+        long high;
+        long low;
+        if (shift >= 128) {
+            high = 0;
+            low = 0;
+        } else if (shift >= 64) {
+            high = headLow << (shift - 64);
+            low = 0;
+        } else if (shift == 0) {
+            high = headHigh;
+            low = headLow;
+        } else {
+            high = (headHigh << shift) | (headLow >>> (64 - shift));
+            low = headLow << shift;
+        }
+        return new IpAddress(high | tailHigh, low | tailLow);
+    }
+
+    /**
+     * 高 64 位
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * 低 64 位
+     */
+    public long getLow() {
+        return low;
+    }
+
+    public boolean isIpv4() {
+        return high == 0 && (low & 0xFFFF_FFFF_0000_0000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IpAddress)) {
+            return false;
+        }
+        IpAddress that = (IpAddress) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high) * 31 + Long.hashCode(low);
+    }
+
+    @Override
+    public String toString() {
+        String result = text;
+        if (result == null) {
+            result = isIpv4() ? formatIpv4() : formatIpv6();
+            text = result;
+        }
+        return result;
+    }
+
+    private String formatIpv4() {
+        StringBuilder sb = new StringBuilder(15);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            sb.append((low >>> shift) & 0xFF);
+            if (shift > 0) {
+                sb.append('.');
+            }
+        }
+        return sb.toString();
+    }
+
+    private int group(int index) {
+        long half = index < 4 ? high : low;
+        return (int) ((half >>> (48 - 16 * (index & 3))) & 0xFFFF);
+    }
+
+    private String formatIpv6() {
+        // 找出最长的连续全零分组（至少两个），压缩为 "::"
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < 8;) {
+            if (group(i) != 0) {
+                i++;
+                continue;
+            }
+            int j = i;
+            while (j < 8 && group(j) == 0) {
+                j++;
+            }
+            if (j - i > bestLength) {
+                bestStart = i;
+                bestLength = j - i;
+            }
+            i = j;
+        }
+        StringBuilder sb = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                sb.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') {
+                sb.append(':');
+            }
+            sb.append(Integer.toHexString(group(i)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,280 @@
+package fun.golinks.gateway.ip;
+
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.UnaryOperator;
+
+/**
+ * 两级 IP 封禁缓存：进程内缓存 + Redis。
+ * <p>
+ * 封禁状态以 Redis 中的 {@code banned:<ip>} 为准，本地缓存只是它的镜像。节点封禁 IP 时写入 Redis 并通过 pub/sub 广播，其他节点收到消息后同步到本地，已知被封禁的 IP 无需再访问
+ * Redis。每次订阅生效（包括断线重连）后都会扫描一次 Redis 中已有的封禁记录，补上订阅中断期间错过的通知。
+ * <p>
+ * 本地镜像是一个带过期时间的 {@link IpSet}，单个地址按 /32（IPv6 为 /128）保存，也可以直接封禁整个网段（{@code banned:10.0.0.0/8}）。查找不加锁，修改时复制路径后替换引用。
+ * 过期的条目按过期时间顺序逐个删除；镜像已满时淘汰最早过期的条目。
+ * <p>
+ * 镜像不完整时（订阅中断、扫描还没完成，或者有条目被淘汰且还没过期），本地未命中的地址需要再用 {@link #isBannedInRedis(IpAddress)} 查询 Redis。
+ */
+@Slf4j
+@Component
+public class IpBanCache implements InitializingBean, DisposableBean {
+
+    public static final String BANNED_KEY_PREFIX = "banned:";
+    private static final String BAN_COMMAND = "ban";
+    private static final String UNBAN_COMMAND = "unban";
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final IpBlockingProperties ipBlockingProperties;
+    /**
+     * 封禁的地址和网段，过期时间为封禁截止时间（毫秒）
+     */
+    private volatile IpSet bannedIps = IpSet.EMPTY;
+    /**
+     * 镜像中每个条目的过期时间，与 {@link #expirations} 一起只在 {@link #update(UnaryOperator)} 的锁内修改
+     */
+    private final Map<String, Long> expireAts = new HashMap<>();
+    /**
+     * 按过期时间排序的条目，重新封禁或解封后留下的旧记录在出队时跳过
+     */
+    private final PriorityQueue<Ban> expirations = new PriorityQueue<>(Comparator.comparingLong(Ban::getExpireAt));
+    /**
+     * 订阅中断或者订阅后的扫描还没完成
+     */
+    private volatile boolean degraded;
+    /**
+     * 被淘汰的条目中最晚的过期时间，在此之前镜像不完整
+     */
+    private volatile long evictedUntil;
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    public IpBanCache(ReactiveRedisTemplate<String, String> redisTemplate, IpBlockingProperties ipBlockingProperties) {
+        this.redisTemplate = redisTemplate;
+        this.ipBlockingProperties = ipBlockingProperties;
+    }
+
+    /**
+     * 仅查询本地缓存，不访问 Redis
+     */
+    public boolean isBanned(IpAddress address) {
+        return bannedIps.contains(address, System.currentTimeMillis());
+    }
+
+    public boolean isBanned(String ip) {
+        IpAddress address = IpAddress.parse(ip);
+        return address != null && isBanned(address);
+    }
+
+    /**
+     * 本地镜像是否包含 Redis 中全部的封禁记录，不完整时本地未命中的地址需要再查询 Redis
+     */
+    public boolean isMirrorComplete() {
+        return !degraded && evictedUntil <= System.currentTimeMillis();
+    }
+
+    /**
+     * 查询 Redis 中这个地址的封禁记录，只匹配单个地址，不匹配网段
+     */
+    public Mono<Boolean> isBannedInRedis(IpAddress address) {
+        return redisTemplate.hasKey(BANNED_KEY_PREFIX + address);
+    }
+
+    /**
+     * 封禁 IP 或网段：写入本地缓存和 Redis，并通知其他节点
+     */
+    public Mono<Void> ban(String ip, Duration duration) {
+        banLocally(ip, duration.toMillis());
+        return redisTemplate.opsForValue().set(BANNED_KEY_PREFIX + ip, "true", duration)
+                .then(redisTemplate.convertAndSend(ipBlockingProperties.getBanChannel(),
+                        BAN_COMMAND + " " + ip + " " + duration.toMillis()))
+                .then();
+    }
+
+    /**
+     * 解除封禁：删除 Redis 记录，并通知所有节点清理本地缓存
+     */
+    public Mono<Void> unban(String ip) {
+        unbanLocally(ip);
+        return redisTemplate.delete(BANNED_KEY_PREFIX + ip)
+                .then(redisTemplate.convertAndSend(ipBlockingProperties.getBanChannel(), UNBAN_COMMAND + " " + ip))
+                .then();
+    }
+
+    public long size() {
+        return bannedIps.size();
+    }
+
+    private void banLocally(String ip, long ttlMillis) {
+        Cidr cidr = Cidr.parse(ip);
+        if (cidr == null || ttlMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expireAt = now + ttlMillis;
+        update(current -> {
+            String key = cidr.toString();
+            current = expire(current, now);
+            if (!expireAts.containsKey(key) && current.size() >= ipBlockingProperties.getBanCacheMaximumSize()) {
+                current = evict(current);
+            }
+            expireAts.put(key, expireAt);
+            expirations.add(new Ban(cidr, expireAt));
+            compact();
+            return current.add(cidr, expireAt);
+        });
+    }
+
+    private void unbanLocally(String ip) {
+        Cidr cidr = Cidr.parse(ip);
+        if (cidr != null) {
+            update(current -> {
+                expireAts.remove(cidr.toString());
+                return current.remove(cidr);
+            });
+        }
+    }
+
+    /**
+     * 删除到 now 已经过期的条目
+     */
+    private IpSet expire(IpSet current, long now) {
+        Ban ban;
+        while ((ban = expirations.peek()) != null && ban.getExpireAt() <= now) {
+            expirations.poll();
+            if (isCurrent(ban)) {
+                expireAts.remove(ban.getKey());
+                current = current.remove(ban.getCidr());
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 淘汰最早过期的条目，它在过期之前只能通过 Redis 查到
+     */
+    private IpSet evict(IpSet current) {
+        Ban ban;
+        while ((ban = expirations.poll()) != null) {
+            if (isCurrent(ban)) {
+                expireAts.remove(ban.getKey());
+                evictedUntil = Math.max(evictedUntil, ban.getExpireAt());
+                return current.remove(ban.getCidr());
+            }
+        }
+        return current;
+    }
+
+    private boolean isCurrent(Ban ban) {
+        Long expireAt = expireAts.get(ban.getKey());
+        return expireAt != null && expireAt == ban.getExpireAt();
+    }
+
+    /**
+     * 旧记录过多时按当前条目重建队列
+     */
+    private void compact() {
+        if (expirations.size() > 2 * expireAts.size() + 64) {
+            expirations.removeIf(ban -> !isCurrent(ban));
+        }
+    }
+
+    private synchronized void update(UnaryOperator<IpSet> operator) {
+        bannedIps = operator.apply(bannedIps);
+    }
+
+    private void onMessage(String message) {
+        String[] parts = StringUtils.split(message, ' ');
+        if (parts.length == 3 && BAN_COMMAND.equals(parts[0])) {
+            long ttlMillis;
+            try {
+                ttlMillis = Long.parseLong(parts[2]);
+            } catch (NumberFormatException e) {
+                // 丢弃格式错误的消息，不能让异常中断订阅
+                log.warn("Invalid ip ban message: {}", message);
+                return;
+            }
+            banLocally(parts[1], ttlMillis);
+        } else if (parts.length == 2 && UNBAN_COMMAND.equals(parts[0])) {
+            unbanLocally(parts[1]);
+        } else {
+            log.warn("Unknown ip ban message: {}", message);
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        degraded = true;
+        // 订阅其他节点的封禁通知，连接断开后自动重连；每次订阅生效后重新扫描，扫描失败时同样重新订阅
+        subscriptions.add(
+                Flux.defer(() -> redisTemplate.listenToLater(ChannelTopic.of(ipBlockingProperties.getBanChannel())))
+                        .flatMap(messages -> Mono
+                                .when(messages.doOnNext(message -> onMessage(message.getMessage())).then(), preload()))
+                        .doOnError(e -> {
+                            degraded = true;
+                            log.warn("Ip ban channel subscription failed, retrying: {}", e.getMessage());
+                        })
+                        .retryWhen(
+                                Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                        .subscribe());
+    }
+
+    /**
+     * 加载 Redis 中已有的封禁记录，完成后镜像恢复完整
+     */
+    private Mono<Void> preload() {
+        return redisTemplate.scan(ScanOptions.scanOptions().match(BANNED_KEY_PREFIX + "*").count(1000).build())
+                .flatMap(key -> redisTemplate.getExpire(key)
+                        .doOnNext(ttl -> banLocally(key.substring(BANNED_KEY_PREFIX.length()), ttl.toMillis())))
+                .then(Mono.fromRunnable(() -> {
+                    degraded = false;
+                    log.info("Preloaded {} banned ips from redis", bannedIps.size());
+                }));
+    }
+
+    @Override
+    public void destroy() {
+        subscriptions.dispose();
+    }
+
+    private static final class Ban {
+
+        private final Cidr cidr;
+        private final String key;
+        private final long expireAt;
+
+        private Ban(Cidr cidr, long expireAt) {
+            this.cidr = cidr;
+            this.key = cidr.toString();
+            this.expireAt = expireAt;
+        }
+
+        Cidr getCidr() {
+            return cidr;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        long getExpireAt() {
+            return expireAt;
+        }
+    }
+}
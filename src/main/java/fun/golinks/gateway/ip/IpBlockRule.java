@@ -0,0 +1,23 @@
+package fun.golinks.gateway.ip;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 静态封禁规则，一组网段，例如某个 ASN 宣告的全部前缀
+ */
+@Data
+public class IpBlockRule {
+
+    /**
+     * 规则名称，仅用于日志
+     */
+    private String name;
+
+    /**
+     * 网段列表，支持 IPv4、IPv6 的 CIDR 或单个地址
+     */
+    private List<String> cidrs = new ArrayList<>();
+}
@@ -0,0 +1,90 @@
+package fun.golinks.gateway.ip;
+
+import com.alibaba.cloud.nacos.NacosConfigManager;
+import com.alibaba.nacos.api.config.listener.Listener;
+import fun.golinks.gateway.util.ConfigUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * 从 Nacos 加载的静态网段黑名单，配置变化时构建新的 {@link IpSet} 后整体替换
+ */
+@Slf4j
+@Component
+public class IpBlocklist implements InitializingBean {
+
+    private static final String DATA_ID = "gateway-ip-blocklist.yaml";
+    private static final String GROUP = "infra-gateway";
+    private final NacosConfigManager nacosConfigManager;
+    private final Executor listenerExecutor = Executors.newSingleThreadExecutor();
+    private volatile IpSet blocked = IpSet.EMPTY;
+
+    public IpBlocklist(NacosConfigManager nacosConfigManager) {
+        this.nacosConfigManager = nacosConfigManager;
+    }
+
+    public boolean contains(IpAddress address) {
+        return blocked.contains(address);
+    }
+
+    /**
+     * 当前生效的网段数量
+     */
+    public int size() {
+        return blocked.size();
+    }
+
+    void update(String config) {
+        if (StringUtils.isBlank(config)) {
+            blocked = IpSet.EMPTY;
+            log.info("Ip blocklist cleared.");
+            return;
+        }
+        List<IpBlockRule> rules = ConfigUtil.toArray(config, IpBlockRule.class);
+        if (rules == null) {
+            return;
+        }
+        IpSet next = IpSet.EMPTY;
+        for (IpBlockRule rule : rules) {
+            if (rule.getCidrs() == null) {
+                continue;
+            }
+            for (String value : rule.getCidrs()) {
+                Cidr cidr = Cidr.parse(value);
+                if (cidr == null) {
+                    log.warn("Ignore invalid cidr {} in ip block rule {}", value, rule.getName());
+                    continue;
+                }
+                next = next.add(cidr);
+            }
+        }
+        blocked = next;
+        log.info("Ip blocklist updated, rules={}, cidrs={}", rules.size(), next.size());
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        update(nacosConfigManager.getConfigService().getConfig(DATA_ID, GROUP, 5000));
+        nacosConfigManager.getConfigService().addListener(DATA_ID, GROUP, new Listener() {
+            @Override
+            public void receiveConfigInfo(String configInfo) {
+                try {
+                    update(configInfo);
+                } catch (Exception e) {
+                    log.error("Failed to update ip blocklist", e);
+                }
+            }
+
+            @Override
+            public Executor getExecutor() {
+                return listenerExecutor;
+            }
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package fun.golinks.gateway.ip;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 客户端 IP 请求计数器
+ */
+public interface IpRequestCounter {
+
+    String REQUEST_KEY_PREFIX = "request:";
+    String COUNT_SCRIPT = "scripts/ip_request_count.lua";
+
+    /**
+     * 记录一次请求，达到阈值时封禁该 IP
+     *
+     * @param ip
+     *            客户端 IP
+     *
+     * @return 该 IP 是否已被封禁
+     */
+    Mono<Boolean> increment(String ip);
+}
@@ -0,0 +1,226 @@
+package fun.golinks.gateway.ip;
+
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * 由 CIDR 网段组成的不可变 IP 集合，使用路径压缩的二叉前缀树（Patricia trie）。
+ * <p>
+ * 查找只沿树向下比较 128 位的前缀，不分配内存，深度不超过网段数和 128 中的较小者。修改时只复制从根到被修改节点的路径，返回新的集合，原集合不变，适合用 volatile
+ * 引用整体替换。每个网段可以带过期时间，过期的网段在查找时忽略，由 {@link #retain(LongPredicate)} 清理。
+ */
+public final class IpSet {
+
+    /**
+     * 永不过期
+     */
+    public static final long PERMANENT = Long.MAX_VALUE;
+    /**
+     * 只用于分叉的中间节点
+     */
+    private static final long BRANCH = Long.MIN_VALUE;
+
+    public static final IpSet EMPTY = new IpSet(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private IpSet(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 网段数量，包括还没有清理的过期网段
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 地址是否落在某个网段内，不考虑过期时间，用于只有永久网段的集合
+     */
+    public boolean contains(IpAddress address) {
+        return contains(address, 0L);
+    }
+
+    /**
+     * 地址是否落在某个到 now（毫秒）仍未过期的网段内
+     */
+    public boolean contains(IpAddress address, long now) {
+        long high = address.getHigh();
+        long low = address.getLow();
+        Node node = root;
+        while (node != null && matches(high, low, node.high, node.low, node.prefixLength)) {
+            if (node.expireAt > now) {
+                return true;
+            }
+            if (node.prefixLength == 128) {
+                return false;
+            }
+            node = bit(high, low, node.prefixLength) == 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    public IpSet add(Cidr cidr) {
+        return add(cidr, PERMANENT);
+    }
+
+    /**
+     * 加入网段，已存在时更新过期时间
+     */
+    public IpSet add(Cidr cidr, long expireAt) {
+        IpAddress address = cidr.getAddress();
+        int[] added = new int[1];
+        Node newRoot = insert(root, address.getHigh(), address.getLow(), cidr.getPrefixLength(), expireAt, added);
+        return new IpSet(newRoot, size + added[0]);
+    }
+
+    /**
+     * 移除与 cidr 完全相同的网段，不影响包含它或被它包含的网段
+     */
+    public IpSet remove(Cidr cidr) {
+        IpAddress address = cidr.getAddress();
+        int[] removed = new int[1];
+        Node newRoot = delete(root, address.getHigh(), address.getLow(), cidr.getPrefixLength(), removed);
+        return removed[0] == 0 ? this : new IpSet(newRoot, size - 1);
+    }
+
+    /**
+     * 只保留过期时间满足条件的网段，重新构建整棵树
+     */
+    public IpSet retain(LongPredicate expireAtFilter) {
+        IpSet[] result = { EMPTY };
+        forEach(root, node -> {
+            if (expireAtFilter.test(node.expireAt)) {
+                int[] added = new int[1];
+                result[0] = new IpSet(
+                        insert(result[0].root, node.high, node.low, node.prefixLength, node.expireAt, added),
+                        result[0].size + added[0]);
+            }
+        });
+        return result[0];
+    }
+
+    private static void forEach(Node node, Consumer<Node> consumer) {
+        if (node == null) {
+            return;
+        }
+        if (node.expireAt != BRANCH) {
+            consumer.accept(node);
+        }
+        forEach(node.left, consumer);
+        forEach(node.right, consumer);
+    }
+
+    private static Node insert(Node node, long high, long low, int length, long expireAt, int[] added) {
+        if (node == null) {
+            added[0] = 1;
+            return new Node(high, low, length, expireAt, null, null);
+        }
+        int common = Math.min(commonPrefixLength(high, low, node.high, node.low), Math.min(length, node.prefixLength));
+        if (common == node.prefixLength) {
+            if (length == node.prefixLength) {
+                if (node.expireAt == BRANCH) {
+                    added[0] = 1;
+                }
+                return new Node(node.high, node.low, length, expireAt, node.left, node.right);
+            }
+            if (bit(high, low, node.prefixLength) == 0) {
+                return new Node(node.high, node.low, node.prefixLength, node.expireAt,
+                        insert(node.left, high, low, length, expireAt, added), node.right);
+            }
+            return new Node(node.high, node.low, node.prefixLength, node.expireAt, node.left,
+                    insert(node.right, high, low, length, expireAt, added));
+        }
+        added[0] = 1;
+        if (common == length) {
+            // 新网段包含当前节点
+            return bit(node.high, node.low, length) == 0 ? new Node(high, low, length, expireAt, node, null)
+                    : new Node(high, low, length, expireAt, null, node);
+        }
+        Node leaf = new Node(high, low, length, expireAt, null, null);
+        return bit(high, low, common) == 0 ? new Node(high, low, common, BRANCH, leaf, node)
+                : new Node(high, low, common, BRANCH, node, leaf);
+    }
+
+    private static Node delete(Node node, long high, long low, int length, int[] removed) {
+        if (node == null || node.prefixLength > length || !matches(high, low, node.high, node.low, node.prefixLength)) {
+            return node;
+        }
+        if (node.prefixLength == length) {
+            if (node.expireAt == BRANCH) {
+                return node;
+            }
+            removed[0] = 1;
+            return branch(node, node.left, node.right);
+        }
+        if (bit(high, low, node.prefixLength) == 0) {
+            Node left = delete(node.left, high, low, length, removed);
+            return left == node.left ? node : node.expireAt == BRANCH ? branch(node, left, node.right)
+                    : new Node(node.high, node.low, node.prefixLength, node.expireAt, left, node.right);
+        }
+        Node right = delete(node.right, high, low, length, removed);
+        return right == node.right ? node : node.expireAt == BRANCH ? branch(node, node.left, right)
+                : new Node(node.high, node.low, node.prefixLength, node.expireAt, node.left, right);
+    }
+
+    /**
+     * 中间节点只有一个子节点时用子节点代替
+     */
+    private static Node branch(Node node, Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return new Node(node.high, node.low, node.prefixLength, BRANCH, left, right);
+    }
+
+    private static boolean matches(long high, long low, long prefixHigh, long prefixLow, int length) {
+        if (length <= 64) {
+            return length == 0 || ((high ^ prefixHigh) >>> (64 - length)) == 0;
+        }
+        return high == prefixHigh && ((low ^ prefixLow) >>> (128 - length)) == 0;
+    }
+
+    private static int bit(long high, long low, int index) {
+        return (int) (index < 64 ? (high >>> (63 - index)) & 1 : (low >>> (127 - index)) & 1);
+    }
+
+    private static int commonPrefixLength(long high1, long low1, long high2, long low2) {
+        long diff = high1 ^ high2;
+        if (diff != 0) {
+            return Long.numberOfLeadingZeros(diff);
+        }
+        diff = low1 ^ low2;
+        return diff == 0 ? 128 : 64 + Long.numberOfLeadingZeros(diff);
+    }
+
+    private static final class Node {
+
+        /**
+         * 前缀，prefixLength 之后的位为 0
+         */
+        private final long high;
+        private final long low;
+        private final int prefixLength;
+        /**
+         * 网段的过期时间，中间节点为 {@link #BRANCH}
+         */
+        private final long expireAt;
+        private final Node left;
+        private final Node right;
+
+        private Node(long high, long low, int prefixLength, long expireAt, Node left, Node right) {
+            this.high = prefixLength >= 64 ? high : prefixLength == 0 ? 0 : high & (-1L << (64 - prefixLength));
+            this.low = prefixLength <= 64 ? 0 : prefixLength == 128 ? low : low & (-1L << (128 - prefixLength));
+            this.prefixLength = prefixLength;
+            this.expireAt = expireAt;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package fun.golinks.gateway.ip;
+
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 每个请求直接在 Redis 中计数，计数、设置过期时间和读回滑动窗口估计值在同一个 Lua 脚本中原子完成
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.cloud.ip-blocking", name = "counter-mode", havingValue = "redis", matchIfMissing = true)
+public class RedisIpRequestCounter implements IpRequestCounter {
+
+    private static final List<Long> ONE = Collections.singletonList(1L);
+
+    private final IpBanCache ipBanCache;
+    private final IpBlockingProperties ipBlockingProperties;
+    private final RequestCountScript countScript;
+
+    public RedisIpRequestCounter(ReactiveRedisTemplate<String, String> redisTemplate, IpBanCache ipBanCache,
+            IpBlockingProperties ipBlockingProperties) {
+        this.ipBanCache = ipBanCache;
+        this.ipBlockingProperties = ipBlockingProperties;
+        this.countScript = new RequestCountScript(redisTemplate, ipBlockingProperties);
+    }
+
+    @Override
+    public Mono<Boolean> increment(String ip) {
+        return countScript.increment(Collections.singletonList(ip), ONE).flatMap(counts -> {
+            if (counts.get(0) >= ipBlockingProperties.getMaxRequestCount()) {
+                // 达到阈值，封禁 IP
+                return ipBanCache.ban(ip, ipBlockingProperties.getBanDuration()).thenReturn(true);
+            }
+            return Mono.just(false);
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package fun.golinks.gateway.ip;
+
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import fun.golinks.gateway.util.RedisScriptUtil;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 滑动窗口请求计数脚本。
+ * <p>
+ * 窗口按自身长度分段，每个 IP 每个分段一个计数键，估计值为当前分段的计数加上上一分段计数中仍落在窗口内的部分。一批 IP 的增量在同一次脚本调用中写入并读回。
+ */
+final class RequestCountScript {
+
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> script = RedisScriptUtil.listScript(IpRequestCounter.COUNT_SCRIPT);
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final IpBlockingProperties ipBlockingProperties;
+
+    RequestCountScript(ReactiveRedisTemplate<String, String> redisTemplate, IpBlockingProperties ipBlockingProperties) {
+        this.redisTemplate = redisTemplate;
+        this.ipBlockingProperties = ipBlockingProperties;
+    }
+
+    /**
+     * 累加各 IP 的增量
+     *
+     * @return 与 ips 一一对应的窗口内估计请求数
+     */
+    Mono<List<Long>> increment(List<String> ips, List<Long> deltas) {
+        long window = ipBlockingProperties.getWindow().toMillis();
+        long now = System.currentTimeMillis();
+        long segment = now / window;
+        List<String> keys = new ArrayList<>(ips.size() * 2);
+        List<String> args = new ArrayList<>(ips.size() + 2);
+        args.add(String.valueOf(window));
+        args.add(String.valueOf(now % window));
+        for (int i = 0; i < ips.size(); i++) {
+            String key = IpRequestCounter.REQUEST_KEY_PREFIX + ips.get(i) + ':';
+            keys.add(key + segment);
+            keys.add(key + (segment - 1));
+            args.add(String.valueOf(deltas.get(i)));
+        }
+        return redisTemplate.execute(script, keys, args).next().map(result -> {
+            List<Long> counts = new ArrayList<>(result.size());
+            for (Object count : result) {
+                counts.add(((Number) count).longValue());
+            }
+            return counts;
+        });
+    }
+
+    /**
+     * 当前分段结束的时间，之后上一分段的权重会变化，读回的估计值不再可用
+     */
+    long segmentEnd(long now) {
+        long window = ipBlockingProperties.getWindow().toMillis();
+        return (now / window + 1) * window;
+    }
+}
@@ -0,0 +1,92 @@
+package fun.golinks.gateway.jwt;
+
+import fun.golinks.gateway.properties.JwtProperties;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 把 claims 投影为转发给下游的请求头。
+ * <p>
+ * 按 claim-headers 白名单选择并重命名 claim，限制请求头数量和单个值的长度，避免过大的 claim 被附加到每个上游请求上。结果随令牌一起缓存，每个令牌只计算一次。
+ */
+@Slf4j
+class ClaimHeaderProjection {
+
+    private final JwtProperties jwtProperties;
+
+    ClaimHeaderProjection(JwtProperties jwtProperties) {
+        this.jwtProperties = jwtProperties;
+    }
+
+    HttpHeaders project(Claims claims) {
+        HttpHeaders headers = new HttpHeaders();
+        Map<String, String> claimHeaders = jwtProperties.getClaimHeaders();
+        if (claimHeaders.isEmpty()) {
+            for (Map.Entry<String, Object> entry : claims.entrySet()) {
+                add(headers, entry.getKey(), entry.getValue());
+            }
+        } else {
+            for (Map.Entry<String, String> entry : claimHeaders.entrySet()) {
+                add(headers, entry.getValue(), claims.get(entry.getKey()));
+            }
+        }
+        return HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
+    /**
+     * claim-headers 中配置的请求头名称
+     */
+    Collection<String> claimHeaderNames() {
+        return jwtProperties.getClaimHeaders().values();
+    }
+
+    /**
+     * 是否是 claim-headers 中配置的请求头名称，不区分大小写
+     */
+    boolean isClaimHeader(String name) {
+        for (String header : jwtProperties.getClaimHeaders().values()) {
+            if (header.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(HttpHeaders headers, String name, Object claim) {
+        if (claim == null || !isToken(name)) {
+            return;
+        }
+        if (headers.size() >= jwtProperties.getMaxClaimHeaders()) {
+            log.debug("Too many claim headers, skip {}", name);
+            return;
+        }
+        String value = String.valueOf(claim);
+        if (value.length() > jwtProperties.getMaxClaimHeaderLength()) {
+            log.debug("Claim header {} is too long, length={}", name, value.length());
+            return;
+        }
+        headers.add(name, value);
+    }
+
+    /**
+     * 请求头名称只允许 RFC 7230 token 字符
+     */
+    private static boolean isToken(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "!#$%&'*+-.^_`|~".indexOf(c) >= 0;
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
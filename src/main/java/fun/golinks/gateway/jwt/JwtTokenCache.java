@@ -0,0 +1,157 @@
+package fun.golinks.gateway.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import fun.golinks.gateway.properties.JwtProperties;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已验证令牌缓存。
+ * <p>
+ * 以令牌的 SHA-256 摘要为键缓存解密后的 claims 及其转发请求头，条目在令牌的 exp 时间过期；无效和已过期的令牌另有一个较小的缓存，只保留一小段时间。重复出现的令牌只需要一次摘要计算和一次查表，不再重复做
+ * AES-GCM 解密。
+ */
+@Component
+public class JwtTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtProperties jwtProperties;
+    private final ClaimHeaderProjection claimHeaderProjection;
+    private final Cache<TokenDigest, VerifiedToken> cache;
+    private final Cache<TokenDigest, VerifiedToken> invalidTokens;
+
+    public JwtTokenCache(JwtProperties jwtProperties, MeterRegistry meterRegistry) {
+        this.jwtProperties = jwtProperties;
+        this.claimHeaderProjection = new ClaimHeaderProjection(jwtProperties);
+        this.cache = Caffeine.newBuilder().maximumSize(jwtProperties.getTokenCacheMaximumSize()).recordStats()
+                .expireAfter(new Expiry<TokenDigest, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(TokenDigest key, VerifiedToken token, long currentTime) {
+                        if (token.getExpireAt() <= 0) {
+                            return Long.MAX_VALUE;
+                        }
+                        return TimeUnit.MILLISECONDS
+                                .toNanos(Math.max(0L, token.getExpireAt() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(TokenDigest key, VerifiedToken token, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(TokenDigest key, VerifiedToken token, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                }).build();
+        this.invalidTokens = Caffeine.newBuilder().maximumSize(jwtProperties.getInvalidTokenCacheMaximumSize())
+                .expireAfterWrite(jwtProperties.getInvalidTokenCacheTtl()).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.token");
+        CaffeineCacheMetrics.monitor(meterRegistry, invalidTokens, "jwt.invalid_token");
+    }
+
+    /**
+     * 获取令牌的验证结果，未命中时解密并缓存
+     */
+    public VerifiedToken get(String token) {
+        TokenDigest key = digest(token);
+        VerifiedToken verifiedToken = cache.getIfPresent(key);
+        if (verifiedToken != null) {
+            return verifiedToken;
+        }
+        verifiedToken = invalidTokens.getIfPresent(key);
+        if (verifiedToken != null) {
+            return verifiedToken;
+        }
+        verifiedToken = verify(token);
+        boolean accepted = verifiedToken.isValid() && !verifiedToken.isExpired(System.currentTimeMillis());
+        (accepted ? cache : invalidTokens).put(key, verifiedToken);
+        return verifiedToken;
+    }
+
+    /**
+     * 是否是 claim-headers 中配置的请求头名称，这些请求头的值只能来自令牌
+     */
+    public boolean isClaimHeader(String name) {
+        return claimHeaderProjection.isClaimHeader(name);
+    }
+
+    /**
+     * claim-headers 中配置的请求头名称，转发前删除客户端发送的同名请求头
+     */
+    public Collection<String> getClaimHeaderNames() {
+        return claimHeaderProjection.claimHeaderNames();
+    }
+
+    private VerifiedToken verify(String token) {
+        Claims claims = jwtProperties.parseToken(token);
+        if (claims == null) {
+            return VerifiedToken.INVALID;
+        }
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(claims, claimHeaderProjection.project(claims),
+                expiration == null ? 0L : expiration.getTime());
+    }
+
+    private static TokenDigest digest(String token) {
+        MessageDigest messageDigest = SHA_256.get();
+        ByteBuffer hash = ByteBuffer.wrap(messageDigest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new TokenDigest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+    }
+
+    /**
+     * SHA-256 摘要，避免在内存中长期保存令牌原文
+     */
+    private static final class TokenDigest {
+
+        private final long h0;
+        private final long h1;
+        private final long h2;
+        private final long h3;
+
+        private TokenDigest(long h0, long h1, long h2, long h3) {
+            this.h0 = h0;
+            this.h1 = h1;
+            this.h2 = h2;
+            this.h3 = h3;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TokenDigest)) {
+                return false;
+            }
+            TokenDigest that = (TokenDigest) o;
+            return h0 == that.h0 && h1 == that.h1 && h2 == that.h2 && h3 == that.h3;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) h0;
+        }
+    }
+}
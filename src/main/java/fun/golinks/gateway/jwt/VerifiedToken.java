@@ -0,0 +1,40 @@
+package fun.golinks.gateway.jwt;
+
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * 已验证的令牌，claims 为 null 表示令牌无效
+ */
+@Getter
+public class VerifiedToken {
+
+    static final VerifiedToken INVALID = new VerifiedToken(null, HttpHeaders.EMPTY, 0L);
+
+    private final Claims claims;
+
+    /**
+     * 转发给下游的请求头（只读）
+     */
+    private final HttpHeaders headers;
+
+    /**
+     * 过期时间（毫秒），0 表示不过期
+     */
+    private final long expireAt;
+
+    VerifiedToken(Claims claims, HttpHeaders headers, long expireAt) {
+        this.claims = claims;
+        this.headers = headers;
+        this.expireAt = expireAt;
+    }
+
+    public boolean isValid() {
+        return claims != null;
+    }
+
+    public boolean isExpired(long now) {
+        return expireAt > 0 && expireAt <= now;
+    }
+}
@@ -0,0 +1,133 @@
+package fun.golinks.gateway.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个上游实例的负载统计：Peak EWMA 延迟和未完成的请求数。
+ * <p>
+ * 延迟高于当前值时直接取新值（对变慢立即反应），否则按距上次采样的时间指数衰减后加权平均；读取时同样按空闲时间衰减，长时间没有请求的实例会重新被尝试。
+ */
+public final class InstanceStats {
+
+    /**
+     * 还没有延迟样本、但已有请求在进行中的实例的代价，保证新实例在第一个响应返回前只会收到少量请求
+     */
+    private static final double PENALTY = 1.0e12;
+
+    private final double decayNanos;
+    private final long firstSeenNanos;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile double ewmaNanos;
+    private volatile long stampNanos;
+    private volatile double weight = 1;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long ejectedUntilNanos;
+    /**
+     * 连续被摘除的次数，决定下一次摘除的时长，由 {@link UpstreamStats} 加锁修改
+     */
+    private int ejections;
+
+    InstanceStats(long decayNanos, long firstSeenNanos) {
+        this.decayNanos = Math.max(1, decayNanos);
+        this.firstSeenNanos = firstSeenNanos;
+        this.stampNanos = firstSeenNanos;
+    }
+
+    public void start() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * 请求结束，rttNanos 小于 0 时只减少未完成数
+     */
+    public void complete(long rttNanos) {
+        outstanding.decrementAndGet();
+        if (rttNanos >= 0) {
+            observe(rttNanos);
+        }
+    }
+
+    private synchronized void observe(long rttNanos) {
+        long now = System.nanoTime();
+        double current = ewmaNanos;
+        if (current == 0 || rttNanos > current) {
+            ewmaNanos = rttNanos;
+        } else {
+            double w = Math.exp(-Math.max(0, now - stampNanos) / decayNanos);
+            ewmaNanos = current * w + rttNanos * (1 - w);
+        }
+        stampNanos = now;
+    }
+
+    /**
+     * 按空闲时间衰减后的延迟 EWMA
+     */
+    double getLatencyNanos(long now) {
+        double current = ewmaNanos;
+        if (current == 0) {
+            return 0;
+        }
+        return current * Math.exp(-Math.max(0, now - stampNanos) / decayNanos);
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    double getWeight() {
+        return weight;
+    }
+
+    void setWeight(double weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * 记录一次失败，返回连续失败次数
+     */
+    int recordFailure() {
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    void recordSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    boolean isEjected(long now) {
+        long until = ejectedUntilNanos;
+        return until != 0 && now - until < 0;
+    }
+
+    /**
+     * 摘除到 now + baseNanos * 2^(n-1)（不超过 maxNanos），上次摘除结束后超过 maxNanos 没有再被摘除时 n 从 1 重新开始
+     */
+    long eject(long now, long baseNanos, long maxNanos) {
+        long previous = ejectedUntilNanos;
+        if (previous == 0 || now - previous > maxNanos) {
+            ejections = 0;
+        }
+        ejections++;
+        long duration = Math.min(maxNanos, baseNanos << Math.min(ejections - 1, 20));
+        consecutiveFailures.set(0);
+        ejectedUntilNanos = now + duration;
+        return ejectedUntilNanos;
+    }
+
+    long getFirstSeenNanos() {
+        return firstSeenNanos;
+    }
+
+    /**
+     * 负载代价：延迟 × (未完成数 + 1)，还没有样本时未完成数为 0 则代价为 0、否则为惩罚值
+     */
+    double cost(long now) {
+        double latency = getLatencyNanos(now);
+        int pending = outstanding.get();
+        if (latency == 0) {
+            return pending == 0 ? 0 : PENALTY + pending;
+        }
+        return latency * (pending + 1);
+    }
+}
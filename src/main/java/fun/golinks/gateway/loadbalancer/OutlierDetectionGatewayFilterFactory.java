@@ -0,0 +1,141 @@
+package fun.golinks.gateway.loadbalancer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+/**
+ * 被动异常检测，在路由定义中按路由开启：
+ *
+ * <pre>
+ * filters:
+ *   - name: OutlierDetection
+ *     args:
+ *       consecutive-errors: 5
+ *       statuses: 500,502,503,504
+ *       slow-call-threshold: 3s
+ *       base-ejection-time: 30s
+ *       max-ejection-time: 5m
+ *       max-ejection-percent: 50
+ * </pre>
+ * <p>
+ * 根据负载均衡选出的实例的响应判断成败：转发出错（连接失败、超时）、上游返回 statuses 中的状态码或收到响应头的时间超过 slow-call-threshold 视为失败。实例连续失败 consecutive-errors
+ * 次后从负载均衡中摘除，摘除时长从 base-ejection-time 开始每次翻倍，最长 max-ejection-time；同一服务被摘除的实例不超过 max-ejection-percent。
+ * 实例统计按服务共享，多个路由指向同一服务时各自按自己的配置判断。
+ */
+@Slf4j
+@Component
+public class OutlierDetectionGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<OutlierDetectionGatewayFilterFactory.Config> {
+
+    private final UpstreamStats upstreamStats;
+    private final MeterRegistry meterRegistry;
+    /**
+     * serviceId -> 摘除次数
+     */
+    private final ConcurrentMap<String, Counter> ejections = new ConcurrentHashMap<>();
+
+    public OutlierDetectionGatewayFilterFactory(UpstreamStats upstreamStats, MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.upstreamStats = upstreamStats;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("consecutiveErrors", "baseEjectionTime");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        long slowCallNanos = config.getSlowCallThreshold() == null ? Long.MAX_VALUE
+                : config.getSlowCallThreshold().toNanos();
+        return (exchange, chain) -> {
+            long start = System.nanoTime();
+            return chain.filter(exchange).doOnSuccess(aVoid -> {
+                if (exchange.getAttribute(CLIENT_RESPONSE_ATTR) == null) {
+                    // 没有转发到上游，例如被并发限制拒绝
+                    return;
+                }
+                Integer status = exchange.getResponse().getRawStatusCode();
+                boolean failed = (status != null && config.getStatuses().contains(status))
+                        || System.nanoTime() - start > slowCallNanos;
+                record(exchange, config, failed);
+            }).doOnError(e -> record(exchange, config, true));
+        };
+    }
+
+    private void record(ServerWebExchange exchange, Config config, boolean failed) {
+        Response<ServiceInstance> response = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (response == null || !response.hasServer()) {
+            return;
+        }
+        ServiceInstance instance = response.getServer();
+        InstanceStats instanceStats = upstreamStats.get(instance);
+        if (!failed) {
+            instanceStats.recordSuccess();
+            return;
+        }
+        if (instanceStats.recordFailure() >= config.getConsecutiveErrors() && upstreamStats.eject(instance,
+                config.getBaseEjectionTime(), config.getMaxEjectionTime(), config.getMaxEjectionPercent())) {
+            log.warn("Ejected {} after {} consecutive errors", UpstreamStats.key(instance),
+                    config.getConsecutiveErrors());
+            ejections.computeIfAbsent(instance.getServiceId(),
+                    serviceId -> Counter.builder("gateway.outlier.ejections")
+                            .description("Instances ejected by outlier detection").tag("service", serviceId)
+                            .register(meterRegistry))
+                    .increment();
+        }
+    }
+
+    @Data
+    public static class Config {
+
+        /**
+         * 连续失败多少次后摘除
+         */
+        private int consecutiveErrors = 5;
+
+        /**
+         * 视为失败的上游状态码
+         */
+        private List<Integer> statuses = new ArrayList<>(Arrays.asList(500, 502, 503, 504));
+
+        /**
+         * 收到响应头的时间超过这个值视为失败，为空时不按延迟判断
+         */
+        private Duration slowCallThreshold;
+
+        /**
+         * 第一次摘除的时长
+         */
+        private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+        /**
+         * 摘除时长的上限
+         */
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+        /**
+         * 同一服务最多摘除的实例比例（百分比）
+         */
+        private int maxEjectionPercent = 50;
+    }
+}
@@ -0,0 +1,110 @@
+package fun.golinks.gateway.loadbalancer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.SelectedInstanceCallback;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * P2C（power of two choices）+ Peak EWMA 负载均衡。
+ * <p>
+ * 每次随机取两个实例，选择代价较低的一个。代价为 {@code 延迟 EWMA × (未完成请求数 + 1) / (权重 × 预热系数)}：变慢或 GC 停顿的实例因为延迟和积压的请求升高而很快失去流量，恢复后随着 EWMA
+ * 衰减重新分到流量。只比较两个实例，避免所有请求同时涌向同一个“最优”实例。被 OutlierDetection 摘除的实例不参与选择。
+ * <p>
+ * 订阅上下文中带 {@link #EXCLUDED_INSTANCE_KEY} 时（对冲请求），还有其他实例可选就避开它指定的实例。
+ */
+@Slf4j
+public class PeakEwmaLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    /**
+     * 需要避开的实例，值为 {@link UpstreamStats#key(ServiceInstance)}。放在 Reactor 订阅上下文中而不是请求头里，客户端无法伪造
+     */
+    public static final String EXCLUDED_INSTANCE_KEY = PeakEwmaLoadBalancer.class.getName() + ".excludedInstance";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final String serviceId;
+    private final UpstreamStats upstreamStats;
+
+    public PeakEwmaLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+            String serviceId, UpstreamStats upstreamStats) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.serviceId = serviceId;
+        this.upstreamStats = upstreamStats;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return Mono.deferContextual(context -> supplier.get(request).next().map(instances -> {
+            Response<ServiceInstance> response = choose(instances,
+                    context.<String> getOrEmpty(EXCLUDED_INSTANCE_KEY).orElse(null));
+            if (supplier instanceof SelectedInstanceCallback && response.hasServer()) {
+                ((SelectedInstanceCallback) supplier).selectedServiceInstance(response.getServer());
+            }
+            return response;
+        }));
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+        return choose(instances, null);
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> instances, String excludedInstance) {
+        if (instances.isEmpty()) {
+            log.warn("No servers available for service: {}", serviceId);
+            return new EmptyResponse();
+        }
+        upstreamStats.refresh(serviceId, instances);
+        long now = System.nanoTime();
+        List<ServiceInstance> candidates = upstreamStats.available(serviceId, instances, now);
+        if (excludedInstance != null && candidates.size() > 1) {
+            candidates = exclude(candidates, excludedInstance);
+        }
+        int size = candidates.size();
+        if (size == 1) {
+            return new DefaultResponse(candidates.get(0));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = candidates.get(first);
+        ServiceInstance b = candidates.get(second);
+        return new DefaultResponse(score(a, now) <= score(b, now) ? a : b);
+    }
+
+    private static List<ServiceInstance> exclude(List<ServiceInstance> candidates, String excludedInstance) {
+        List<ServiceInstance> remaining = new ArrayList<>(candidates.size());
+        for (ServiceInstance candidate : candidates) {
+            if (!excludedInstance.equals(UpstreamStats.key(candidate))) {
+                remaining.add(candidate);
+            }
+        }
+        return remaining.isEmpty() ? candidates : remaining;
+    }
+
+    private double score(ServiceInstance instance, long now) {
+        InstanceStats instanceStats = upstreamStats.get(instance);
+        double weight = instanceStats.getWeight() * upstreamStats.warmupFactor(instanceStats, now);
+        if (weight <= 0) {
+            return Double.MAX_VALUE;
+        }
+        return instanceStats.cost(now) / weight;
+    }
+}
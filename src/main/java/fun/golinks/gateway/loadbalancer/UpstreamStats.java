@@ -0,0 +1,179 @@
+package fun.golinks.gateway.loadbalancer;
+
+import fun.golinks.gateway.properties.LoadBalancingProperties;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 所有服务实例的负载统计，由负载均衡器读取、由 UpstreamStatsFilter 在转发开始和结束时更新。
+ * <p>
+ * 实例列表变化时为新实例建立统计、更新权重（Nacos 的 nacos.weight 元数据）并清理已下线的实例；服务第一次出现时已有的实例视为已预热，之后新注册的实例从首次出现开始预热。
+ * <p>
+ * 连续失败的实例由 OutlierDetection 过滤器摘除，摘除期内负载均衡器跳过它们。
+ */
+@Component
+public class UpstreamStats {
+
+    private final long decayNanos;
+    private final long warmupNanos;
+    private final String weightMetadataKey;
+    /**
+     * serviceId/host:port -> 统计
+     */
+    private final ConcurrentMap<String, InstanceStats> stats = new ConcurrentHashMap<>();
+    /**
+     * serviceId -> 上次看到的实例列表及其 key
+     */
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    public UpstreamStats(LoadBalancingProperties loadBalancingProperties) {
+        this.decayNanos = loadBalancingProperties.getDecayTime().toNanos();
+        this.warmupNanos = loadBalancingProperties.getWarmup().toNanos();
+        this.weightMetadataKey = loadBalancingProperties.getWeightMetadataKey();
+    }
+
+    public static String key(ServiceInstance instance) {
+        return instance.getServiceId() + "/" + instance.getHost() + ":" + instance.getPort();
+    }
+
+    /**
+     * 获取实例的统计，不存在时按已预热创建
+     */
+    public InstanceStats get(ServiceInstance instance) {
+        String key = key(instance);
+        InstanceStats instanceStats = stats.get(key);
+        if (instanceStats == null) {
+            instanceStats = stats.computeIfAbsent(key,
+                    k -> new InstanceStats(decayNanos, System.nanoTime() - warmupNanos));
+        }
+        return instanceStats;
+    }
+
+    /**
+     * 负载均衡器每次拿到实例列表时调用，列表对象没有变化时直接返回
+     */
+    void refresh(String serviceId, List<ServiceInstance> instances) {
+        Snapshot snapshot = snapshots.get(serviceId);
+        if (snapshot != null && snapshot.instances == instances) {
+            return;
+        }
+        synchronized (this) {
+            snapshot = snapshots.get(serviceId);
+            if (snapshot != null && snapshot.instances == instances) {
+                return;
+            }
+            long now = System.nanoTime();
+            // 服务第一次出现（通常是网关刚启动）时实例已经在运行，不需要预热
+            long firstSeen = snapshot == null ? now - warmupNanos : now;
+            Set<String> keys = new HashSet<>();
+            for (ServiceInstance instance : instances) {
+                String key = key(instance);
+                keys.add(key);
+                stats.computeIfAbsent(key, k -> new InstanceStats(decayNanos, firstSeen)).setWeight(weight(instance));
+            }
+            if (snapshot != null) {
+                for (String key : snapshot.keys) {
+                    if (!keys.contains(key)) {
+                        stats.remove(key);
+                    }
+                }
+            }
+            Snapshot next = new Snapshot(instances, keys);
+            if (snapshot != null) {
+                next.ejectedUntilNanos = snapshot.ejectedUntilNanos;
+            }
+            snapshots.put(serviceId, next);
+        }
+    }
+
+    /**
+     * 去掉被摘除的实例；没有实例处于摘除期时直接返回原列表，全部被摘除时也返回原列表
+     */
+    List<ServiceInstance> available(String serviceId, List<ServiceInstance> instances, long now) {
+        Snapshot snapshot = snapshots.get(serviceId);
+        if (snapshot == null || snapshot.ejectedUntilNanos == 0 || now - snapshot.ejectedUntilNanos >= 0) {
+            return instances;
+        }
+        List<ServiceInstance> available = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (!get(instance).isEjected(now)) {
+                available.add(instance);
+            }
+        }
+        return available.isEmpty() ? instances : available;
+    }
+
+    /**
+     * 尝试把实例从负载均衡中摘除，已经被摘除或者服务中被摘除的实例比例会超过 maxEjectionPercent 时返回 false
+     */
+    public synchronized boolean eject(ServiceInstance instance, Duration baseEjectionTime, Duration maxEjectionTime,
+            int maxEjectionPercent) {
+        long now = System.nanoTime();
+        InstanceStats instanceStats = get(instance);
+        Snapshot snapshot = snapshots.get(instance.getServiceId());
+        if (snapshot == null || instanceStats.isEjected(now)) {
+            return false;
+        }
+        int ejected = 0;
+        for (String key : snapshot.keys) {
+            InstanceStats other = stats.get(key);
+            if (other != null && other.isEjected(now)) {
+                ejected++;
+            }
+        }
+        if ((ejected + 1) * 100L > (long) snapshot.keys.size() * maxEjectionPercent) {
+            return false;
+        }
+        long until = instanceStats.eject(now, baseEjectionTime.toNanos(), maxEjectionTime.toNanos());
+        if (snapshot.ejectedUntilNanos == 0 || until - snapshot.ejectedUntilNanos > 0) {
+            snapshot.ejectedUntilNanos = until;
+        }
+        return true;
+    }
+
+    private double weight(ServiceInstance instance) {
+        String value = instance.getMetadata() == null ? null : instance.getMetadata().get(weightMetadataKey);
+        if (value == null) {
+            return 1;
+        }
+        try {
+            return Math.max(0, Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * 预热进度，0.1 ~ 1
+     */
+    double warmupFactor(InstanceStats instanceStats, long now) {
+        if (warmupNanos <= 0) {
+            return 1;
+        }
+        double progress = (double) (now - instanceStats.getFirstSeenNanos()) / warmupNanos;
+        return Math.max(0.1, Math.min(1.0, progress));
+    }
+
+    private static final class Snapshot {
+
+        private final List<ServiceInstance> instances;
+        private final Set<String> keys;
+        /**
+         * 服务中最晚结束的摘除时间，过了这个时间就不需要再过滤实例列表
+         */
+        private volatile long ejectedUntilNanos;
+
+        private Snapshot(List<ServiceInstance> instances, Set<String> keys) {
+            this.instances = instances;
+            this.keys = keys;
+        }
+    }
+}
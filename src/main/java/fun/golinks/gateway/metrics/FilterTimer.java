@@ -0,0 +1,52 @@
+package fun.golinks.gateway.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个过滤器的耗时统计。
+ * <p>
+ * 只统计过滤器自身的耗时：从进入过滤器到调用下一个过滤器为止；如果过滤器直接返回响应（例如拒绝请求），统计到响应写完为止。下游过滤器和后端服务的耗时不计入。
+ */
+public class FilterTimer {
+
+    private final Timer timer;
+
+    FilterTimer(Timer timer) {
+        this.timer = timer;
+    }
+
+    public Mono<Void> record(ServerWebExchange exchange, GatewayFilterChain chain, GatewayFilter filter) {
+        TimedChain timedChain = new TimedChain(chain);
+        return filter.filter(exchange, timedChain).doFinally(signalType -> timedChain.stop());
+    }
+
+    private class TimedChain implements GatewayFilterChain {
+
+        private final GatewayFilterChain delegate;
+        private final long startNanos = System.nanoTime();
+        private boolean stopped;
+
+        private TimedChain(GatewayFilterChain delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange) {
+            stop();
+            return delegate.filter(exchange);
+        }
+
+        private void stop() {
+            if (!stopped) {
+                stopped = true;
+                timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package fun.golinks.gateway.metrics;
+
+import fun.golinks.gateway.ip.IpBanCache;
+import fun.golinks.gateway.ip.IpBlocklist;
+import fun.golinks.gateway.ratelimit.RateLimitPolicyRepository;
+import fun.golinks.gateway.route.IndexedRoutePredicateHandlerMapping;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * 网关自身的指标，导出到 Prometheus。
+ * <ul>
+ * <li>gateway.filter.duration{filter}：各全局过滤器自身的耗时直方图</li>
+ * <li>gateway.requests.rejected{reason, route}：按原因和路由统计的拒绝次数</li>
+ * <li>gateway.redis.errors{component}：Redis 调用失败次数</li>
+ * <li>gateway.ip_ban.cache.size、gateway.ip_blocklist.size、gateway.rate_limit.policies、gateway.routes.index.size：各子系统的状态</li>
+ * <li>gateway.ip_ban.mirror.complete：封禁名单的本地镜像是否完整（1 完整，0 未命中时还要查询 Redis）</li>
+ * </ul>
+ * 所有 Meter 在启动时或第一次出现某个路由时注册并缓存，请求路径上只做查表，不会创建 Tags。JWT 令牌缓存的指标见 cache.*{cache="jwt.token"}。
+ */
+@Component
+public class GatewayMetrics {
+
+    public static final String TRACE_FILTER = "trace";
+    public static final String JWT_FILTER = "jwt";
+    public static final String IP_BLOCKING_FILTER = "ip_blocking";
+    public static final String RATE_LIMIT_FILTER = "rate_limit";
+    public static final String RESPONSE_CACHE = "response_cache";
+    public static final String NO_ROUTE = "none";
+    private static final String[] FILTERS = { TRACE_FILTER, JWT_FILTER, IP_BLOCKING_FILTER, RATE_LIMIT_FILTER };
+    private static final String[] REDIS_COMPONENTS = { IP_BLOCKING_FILTER, RATE_LIMIT_FILTER, RESPONSE_CACHE };
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, FilterTimer> filterTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> redisErrors = new ConcurrentHashMap<>();
+    /**
+     * reason -> routeId -> counter
+     */
+    private final Map<RejectReason, Map<String, Counter>> rejections = new EnumMap<>(RejectReason.class);
+
+    public GatewayMetrics(MeterRegistry meterRegistry, IpBanCache ipBanCache, IpBlocklist ipBlocklist,
+            RateLimitPolicyRepository rateLimitPolicyRepository,
+            ObjectProvider<IndexedRoutePredicateHandlerMapping> handlerMappingProvider) {
+        this.meterRegistry = meterRegistry;
+        for (String filter : FILTERS) {
+            filterTimers.put(filter, new FilterTimer(newTimer(filter)));
+        }
+        for (String component : REDIS_COMPONENTS) {
+            redisErrors.put(component, Counter.builder("gateway.redis.errors").description("Failed Redis calls")
+                    .tag("component", component).register(meterRegistry));
+        }
+        for (RejectReason reason : RejectReason.values()) {
+            Map<String, Counter> counters = new ConcurrentHashMap<>();
+            counters.put(NO_ROUTE, rejectionCounter(reason, NO_ROUTE));
+            rejections.put(reason, counters);
+        }
+        Gauge.builder("gateway.ip_ban.cache.size", ipBanCache, IpBanCache::size)
+                .description("Banned ips mirrored in the local cache").register(meterRegistry);
+        Gauge.builder("gateway.ip_ban.mirror.complete", ipBanCache, cache -> cache.isMirrorComplete() ? 1 : 0)
+                .description("Whether the local ban mirror is complete, 0 means misses fall back to redis")
+                .register(meterRegistry);
+        Gauge.builder("gateway.ip_blocklist.size", ipBlocklist, IpBlocklist::size)
+                .description("Cidrs in the static ip blocklist").register(meterRegistry);
+        Gauge.builder("gateway.rate_limit.policies", rateLimitPolicyRepository, RateLimitPolicyRepository::size)
+                .description("Loaded rate limit policies").register(meterRegistry);
+        Gauge.builder("gateway.routes.index.size", handlerMappingProvider, provider -> {
+            IndexedRoutePredicateHandlerMapping handlerMapping = provider.getIfAvailable();
+            return handlerMapping == null ? 0 : handlerMapping.getIndexedRouteCount();
+        }).description("Routes in the route matching index").register(meterRegistry);
+    }
+
+    private Timer newTimer(String filter) {
+        return Timer.builder("gateway.filter.duration").description("Time spent in the gateway global filter itself")
+                .tag("filter", filter).publishPercentileHistogram().minimumExpectedValue(Duration.ofNanos(1000))
+                .maximumExpectedValue(Duration.ofSeconds(5)).register(meterRegistry);
+    }
+
+    private Counter rejectionCounter(RejectReason reason, String routeId) {
+        return Counter.builder("gateway.requests.rejected").description("Requests rejected by the gateway")
+                .tag("reason", reason.getTag()).tag("route", routeId).register(meterRegistry);
+    }
+
+    /**
+     * 获取过滤器的耗时统计
+     */
+    public FilterTimer filterTimer(String filter) {
+        FilterTimer filterTimer = filterTimers.get(filter);
+        if (filterTimer == null) {
+            filterTimer = filterTimers.computeIfAbsent(filter, name -> new FilterTimer(newTimer(name)));
+        }
+        return filterTimer;
+    }
+
+    /**
+     * 记录一次拒绝，路由取自 exchange
+     */
+    public void reject(RejectReason reason, ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        String routeId = route == null ? NO_ROUTE : route.getId();
+        Map<String, Counter> counters = rejections.get(reason);
+        Counter counter = counters.get(routeId);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(routeId, id -> rejectionCounter(reason, id));
+        }
+        counter.increment();
+    }
+
+    public void redisError(String component) {
+        Counter counter = redisErrors.get(component);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
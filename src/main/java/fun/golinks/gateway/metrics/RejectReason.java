@@ -0,0 +1,35 @@
+package fun.golinks.gateway.metrics;
+
+import lombok.Getter;
+
+/**
+ * 请求被网关拒绝的原因
+ */
+@Getter
+public enum RejectReason {
+
+    IP_BANNED("ip_banned"),
+
+    JWT_INVALID("jwt_invalid"),
+
+    JWT_EXPIRED("jwt_expired"),
+
+    RATE_LIMITED("rate_limited"),
+
+    SENTINEL_BLOCKED("sentinel_blocked"),
+
+    CONCURRENCY_LIMITED("concurrency_limited"),
+
+    CIRCUIT_OPEN("circuit_open"),
+
+    NOT_FOUND("not_found");
+
+    /**
+     * 指标中的 reason 标签值
+     */
+    private final String tag;
+
+    RejectReason(String tag) {
+        this.tag = tag;
+    }
+}
@@ -0,0 +1,57 @@
+package fun.golinks.gateway.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 访问日志配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "spring.cloud.access-log")
+public class AccessLogProperties {
+
+    /**
+     * 是否记录访问日志
+     */
+    private boolean enabled = true;
+
+    /**
+     * 日志文件路径，滚动后的文件以时间戳为后缀
+     */
+    private String path = "logs/access.log";
+
+    /**
+     * 环形缓冲区容量（会向上取整为 2 的幂），写满时丢弃新记录
+     */
+    private int bufferSize = 16384;
+
+    /**
+     * 每批最多写入的记录数
+     */
+    private int batchSize = 1024;
+
+    /**
+     * 缓冲区为空时写入线程的等待间隔
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * 单个日志文件的最大大小
+     */
+    private DataSize maxFileSize = DataSize.ofMegabytes(256);
+
+    /**
+     * 保留的滚动文件个数
+     */
+    private int maxHistory = 10;
+
+    /**
+     * 采样率（0~1），5xx 响应始终记录
+     */
+    private double sampleRate = 1.0D;
+}
@@ -0,0 +1,81 @@
+package fun.golinks.gateway.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 自适应并发限制配置，路由和实例两个维度使用相同的参数，各自独立学习并发上限
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "spring.cloud.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    /**
+     * 是否开启自适应并发限制
+     */
+    private boolean enabled = false;
+
+    /**
+     * 是否按路由限制
+     */
+    private boolean perRoute = true;
+
+    /**
+     * 是否按上游实例限制
+     */
+    private boolean perInstance = true;
+
+    /**
+     * 初始并发上限
+     */
+    private int initialLimit = 20;
+
+    /**
+     * 并发上限的下界
+     */
+    private int minLimit = 5;
+
+    /**
+     * 并发上限的上界
+     */
+    private int maxLimit = 1000;
+
+    /**
+     * 采样窗口，每个窗口结束时根据窗口内的平均 RTT 调整一次上限
+     */
+    private Duration window = Duration.ofMillis(500);
+
+    /**
+     * 窗口内至少需要的样本数，不足时延长窗口
+     */
+    private int minWindowSamples = 10;
+
+    /**
+     * 长期 RTT 的平滑窗口数，长期 RTT 作为没有排队时的基准
+     */
+    private int longWindow = 600;
+
+    /**
+     * 允许的 RTT 增长倍数，短期 RTT 超过长期 RTT 的这个倍数时开始降低上限
+     */
+    private double rttTolerance = 1.5;
+
+    /**
+     * 每次调整时新上限所占的权重
+     */
+    private double smoothing = 0.2;
+
+    /**
+     * 超过上限时返回的状态码，429 或 503
+     */
+    private int rejectStatus = 503;
+
+    /**
+     * 路由或实例在这段时间内没有请求时丢弃学到的上限
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+}
@@ -0,0 +1,65 @@
+package fun.golinks.gateway.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * IP 封禁配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "spring.cloud.ip-blocking")
+public class IpBlockingProperties {
+
+    /**
+     * 统计窗口内允许的最大请求次数
+     */
+    private long maxRequestCount = 60L;
+
+    /**
+     * 请求计数的滑动窗口长度
+     */
+    private Duration window = Duration.ofMinutes(1);
+
+    /**
+     * 封禁时长
+     */
+    private Duration banDuration = Duration.ofMinutes(30);
+
+    /**
+     * 本地封禁缓存最大条目数
+     */
+    private long banCacheMaximumSize = 100_000L;
+
+    /**
+     * 节点间同步封禁状态的 Redis 频道
+     */
+    private String banChannel = "gateway:ip-ban";
+
+    /**
+     * 计数模式：redis（每个请求访问一次 Redis）/ batched（本地计数，批量同步到 Redis）
+     */
+    private String counterMode = "redis";
+
+    /**
+     * batched 模式下同步到 Redis 的间隔
+     */
+    private Duration flushInterval = Duration.ofMillis(100);
+
+    /**
+     * batched 模式下单个节点允许的最大计数误差，某个 IP 的未同步增量达到该值时立即同步
+     */
+    private long batchTolerance = 10L;
+
+    /**
+     * 可信代理的地址或网段，只有直接连接网关的地址属于这些网段时才读取 Forwarded、X-Forwarded-For 和 X-Real-IP，默认为回环地址和内网地址
+     */
+    private List<String> trustedProxies = new ArrayList<>(
+            Arrays.asList("127.0.0.0/8", "10.0.0.0/8", "172.16.0.0/12", "192.168.0.0/16", "::1", "fc00::/7"));
+}
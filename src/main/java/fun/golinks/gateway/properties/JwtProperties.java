@@ -1,15 +1,21 @@
 package fun.golinks.gateway.properties;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Slf4j
@@ -22,6 +28,53 @@ public class JwtProperties {
 
     private SecretKey key = new SecretKeySpec(keyBytes, "AES");
 
+    /**
+     * 预先构建的解析器，线程安全，密钥变化时重建
+     */
+    private JwtParser parser = Jwts.parser().decryptWith(key).build();
+
+    /**
+     * 已验证令牌缓存的最大条目数
+     */
+    @Getter
+    @Setter
+    private long tokenCacheMaximumSize = 100_000L;
+
+    /**
+     * 无效令牌缓存的最大条目数，与已验证令牌分开存放，大量随机令牌不会挤掉有效令牌
+     */
+    @Getter
+    @Setter
+    private long invalidTokenCacheMaximumSize = 10_000L;
+
+    /**
+     * 无效令牌在缓存中保留的时长，避免重复解密同一个无效令牌
+     */
+    @Getter
+    @Setter
+    private Duration invalidTokenCacheTtl = Duration.ofMinutes(1);
+
+    /**
+     * 转发给下游的 claim 及其请求头名称（claim -> header），为空时按原名转发全部 claim
+     */
+    @Getter
+    @Setter
+    private Map<String, String> claimHeaders = new LinkedHashMap<>();
+
+    /**
+     * 最多转发的 claim 请求头数量
+     */
+    @Getter
+    @Setter
+    private int maxClaimHeaders = 32;
+
+    /**
+     * 单个 claim 请求头值的最大长度，超过时不转发
+     */
+    @Getter
+    @Setter
+    private int maxClaimHeaderLength = 1024;
+
     public void setSecretKey(String secretKey) {
         if (secretKey.getBytes().length < 32) {
             log.error("Secret key is too short, it must be at least 32 bytes long");
@@ -30,19 +83,28 @@ public class JwtProperties {
         this.secretKey = secretKey;
         this.keyBytes = Arrays.copyOf(secretKey.getBytes(), 32);
         this.key = new SecretKeySpec(keyBytes, "AES");
+        this.parser = Jwts.parser().decryptWith(key).build();
     }
 
+    /**
+     * 解密令牌，令牌无效时返回 null。已过期的令牌仍然返回其 claims，由调用方根据 exp 判断
+     */
     public Claims parseToken(String token) {
         try {
-            return Jwts.parser().decryptWith(key).build().parseEncryptedClaims(token).getPayload();
+            return parser.parseEncryptedClaims(token).getPayload();
+        } catch (ExpiredJwtException e) {
+            log.debug("Expired JWT token: {}", e.getMessage());
+            return e.getClaims();
         } catch (Throwable e) {
-            log.error("Invalid JWT token", e);
+            log.warn("Invalid JWT token: {}", e.toString());
             return null;
         }
     }
 
     public boolean isInvalid(String token) {
-        return parseToken(token) == null;
+        Claims claims = parseToken(token);
+        return claims == null
+                || (claims.getExpiration() != null && claims.getExpiration().getTime() <= System.currentTimeMillis());
     }
 
     public String generatorToken(String subject, Map<String, Object> claims, long expirationMillis) {
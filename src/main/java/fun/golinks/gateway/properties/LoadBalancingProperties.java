@@ -0,0 +1,36 @@
+package fun.golinks.gateway.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * lb:// 路由的负载均衡配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "spring.cloud.load-balancing")
+public class LoadBalancingProperties {
+
+    /**
+     * 是否使用 P2C + Peak EWMA 负载均衡，关闭时使用 Spring Cloud LoadBalancer 默认的轮询
+     */
+    private boolean enabled = true;
+
+    /**
+     * 延迟 EWMA 的衰减时间常数，越小越快忘记历史延迟
+     */
+    private Duration decayTime = Duration.ofSeconds(10);
+
+    /**
+     * 新注册实例的预热时长，期间权重从 10% 线性增长到 100%
+     */
+    private Duration warmup = Duration.ofSeconds(60);
+
+    /**
+     * 实例元数据中表示权重的 key
+     */
+    private String weightMetadataKey = "nacos.weight";
+}
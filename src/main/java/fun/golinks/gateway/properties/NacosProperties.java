@@ -34,7 +34,22 @@ public class NacosProperties {
     private String groupId;
 
     /**
-     * 数据id
+     * 数据id（网关流控规则）
      */
     private String dataId;
+
+    /**
+     * API 分组的数据id，为空时不加载 API 分组
+     */
+    private String apiDataId;
+
+    /**
+     * 集群流控规则的数据id
+     */
+    private String clusterFlowDataId;
+
+    /**
+     * 集群分配（令牌服务端及其客户端）的数据id
+     */
+    private String clusterMapDataId;
 }
@@ -0,0 +1,37 @@
+package fun.golinks.gateway.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 响应缓存配置，缓存时长等按路由配置见 ResponseCache 过滤器
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "spring.cloud.response-cache")
+public class ResponseCacheProperties {
+
+    /**
+     * 本地缓存的最大容量（按响应体和响应头大小计算），响应体存放在堆外内存中，需要相应调整 -XX:MaxDirectMemorySize
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+
+    /**
+     * 单个响应体的最大大小，超过时不缓存
+     */
+    private DataSize maxEntrySize = DataSize.ofMegabytes(1);
+
+    /**
+     * 合并请求时等待首个请求返回的最长时间，超时后自行请求上游
+     */
+    private Duration maxWait = Duration.ofSeconds(3);
+
+    /**
+     * 共享缓存在 Redis 中的 key 前缀
+     */
+    private String redisKeyPrefix = "gateway:response-cache:";
+}
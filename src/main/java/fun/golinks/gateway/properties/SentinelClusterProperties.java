@@ -0,0 +1,37 @@
+package fun.golinks.gateway.properties;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * sentinel集群流控配置
+ */
+@Data
+public class SentinelClusterProperties {
+
+    /**
+     * 是否开启集群流控
+     */
+    private boolean enabled = false;
+
+    /**
+     * 当前节点在集群分配中的标识，默认为 ip@端口
+     */
+    private String machineId;
+
+    /**
+     * 令牌服务端上集群规则的命名空间，同一组网关使用相同的值
+     */
+    private String namespace = "infra-gateway";
+
+    /**
+     * 向令牌服务端请求令牌的超时时间，超时按集群规则的 fallbackToLocalWhenFail 处理
+     */
+    private Duration requestTimeout = Duration.ofMillis(20);
+
+    /**
+     * 令牌服务端关闭空闲客户端连接的时间
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+}
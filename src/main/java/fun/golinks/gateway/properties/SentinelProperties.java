@@ -16,4 +16,9 @@ public class SentinelProperties {
      * 数据源
      */
     private DataSourceProperties datasource = new DataSourceProperties();
+
+    /**
+     * 集群流控
+     */
+    private SentinelClusterProperties cluster = new SentinelClusterProperties();
 }
@@ -0,0 +1,32 @@
+package fun.golinks.gateway.ratelimit;
+
+/**
+ * 限流算法，每种算法对应一个原子执行的 Redis Lua 脚本
+ */
+public enum RateLimitAlgorithm {
+
+    /**
+     * 令牌桶，允许不超过 burst 的突发
+     */
+    TOKEN_BUCKET("scripts/token_bucket.lua"),
+
+    /**
+     * 通用信元速率算法，请求按固定间隔平滑放行
+     */
+    GCRA("scripts/gcra.lua"),
+
+    /**
+     * 滑动窗口日志，精确统计任意窗口内的请求数
+     */
+    SLIDING_LOG("scripts/sliding_log.lua");
+
+    private final String script;
+
+    RateLimitAlgorithm(String script) {
+        this.script = script;
+    }
+
+    public String getScript() {
+        return script;
+    }
+}
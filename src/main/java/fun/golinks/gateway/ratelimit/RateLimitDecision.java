@@ -0,0 +1,29 @@
+package fun.golinks.gateway.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 限流判定结果
+ */
+@Data
+@AllArgsConstructor
+public class RateLimitDecision {
+
+    public static final RateLimitDecision ALLOWED = new RateLimitDecision(true, -1L, 0L);
+
+    /**
+     * 是否放行
+     */
+    private final boolean allowed;
+
+    /**
+     * 剩余配额，未知时为 -1
+     */
+    private final long remaining;
+
+    /**
+     * 被拒绝时建议的重试等待时间（毫秒）
+     */
+    private final long retryAfterMillis;
+}
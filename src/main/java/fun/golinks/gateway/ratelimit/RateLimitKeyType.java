@@ -0,0 +1,22 @@
+package fun.golinks.gateway.ratelimit;
+
+/**
+ * 限流维度
+ */
+public enum RateLimitKeyType {
+
+    /**
+     * 客户端 IP
+     */
+    IP,
+
+    /**
+     * JWT 中的 subject
+     */
+    JWT_SUBJECT,
+
+    /**
+     * 请求头中的 API Key
+     */
+    API_KEY
+}
@@ -0,0 +1,58 @@
+package fun.golinks.gateway.ratelimit;
+
+import lombok.Data;
+
+/**
+ * 限流策略
+ */
+@Data
+public class RateLimitPolicy {
+
+    /**
+     * 策略 ID，用于区分 Redis 中的限流状态
+     */
+    private String id;
+
+    /**
+     * 生效的路由 ID，为空时对所有路由生效
+     */
+    private String routeId;
+
+    /**
+     * 限流维度
+     */
+    private RateLimitKeyType keyType = RateLimitKeyType.IP;
+
+    /**
+     * keyType 为 API_KEY 时读取的请求头
+     */
+    private String apiKeyHeader = "X-Api-Key";
+
+    /**
+     * 限流算法
+     */
+    private RateLimitAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET;
+
+    /**
+     * 统计时间窗口内允许的请求数
+     */
+    private long limit;
+
+    /**
+     * 统计时间窗口（秒）
+     */
+    private long intervalSec = 1L;
+
+    /**
+     * 允许的突发请求数，为 0 时等于 limit，SLIDING_LOG 算法不使用该值
+     */
+    private long burst;
+
+    public long capacity() {
+        return burst > 0 ? burst : limit;
+    }
+
+    public long intervalMillis() {
+        return intervalSec * 1000L;
+    }
+}
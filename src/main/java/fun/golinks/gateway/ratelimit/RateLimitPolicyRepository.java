@@ -0,0 +1,123 @@
+package fun.golinks.gateway.ratelimit;
+
+import com.alibaba.cloud.nacos.NacosConfigManager;
+import com.alibaba.nacos.api.config.listener.Listener;
+import fun.golinks.gateway.util.ConfigUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * 从 Nacos 加载限流策略，配置变化时整体替换
+ */
+@Slf4j
+@Component
+public class RateLimitPolicyRepository implements InitializingBean {
+
+    private static final String DATA_ID = "gateway-rate-limits.yaml";
+    private static final String GROUP = "infra-gateway";
+    private final NacosConfigManager nacosConfigManager;
+    private final Executor listenerExecutor = Executors.newSingleThreadExecutor();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList());
+
+    public RateLimitPolicyRepository(NacosConfigManager nacosConfigManager) {
+        this.nacosConfigManager = nacosConfigManager;
+    }
+
+    /**
+     * 获取对指定路由生效的策略
+     */
+    public List<RateLimitPolicy> getPolicies(String routeId) {
+        Snapshot current = snapshot;
+        if (routeId == null) {
+            return current.globalPolicies;
+        }
+        return current.routePolicies.getOrDefault(routeId, current.globalPolicies);
+    }
+
+    /**
+     * 当前生效的策略数量
+     */
+    public int size() {
+        return snapshot.size;
+    }
+
+    private void updatePolicies(String config) {
+        if (StringUtils.isBlank(config)) {
+            snapshot = new Snapshot(Collections.emptyList());
+            log.info("Rate limit policies cleared.");
+            return;
+        }
+        List<RateLimitPolicy> policies = ConfigUtil.toArray(config, RateLimitPolicy.class);
+        if (policies == null) {
+            return;
+        }
+        List<RateLimitPolicy> validPolicies = new ArrayList<>();
+        for (RateLimitPolicy policy : policies) {
+            if (StringUtils.isBlank(policy.getId()) || policy.getLimit() <= 0 || policy.getIntervalSec() <= 0) {
+                log.warn("Ignore invalid rate limit policy: {}", policy);
+                continue;
+            }
+            validPolicies.add(policy);
+        }
+        snapshot = new Snapshot(validPolicies);
+        log.info("Rate limit policies updated, size={}", validPolicies.size());
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        updatePolicies(nacosConfigManager.getConfigService().getConfig(DATA_ID, GROUP, 5000));
+        nacosConfigManager.getConfigService().addListener(DATA_ID, GROUP, new Listener() {
+            @Override
+            public void receiveConfigInfo(String configInfo) {
+                try {
+                    updatePolicies(configInfo);
+                } catch (Exception e) {
+                    log.error("Failed to update rate limit policies", e);
+                }
+            }
+
+            @Override
+            public Executor getExecutor() {
+                return listenerExecutor;
+            }
+        });
+    }
+
+    /**
+     * 不可变的策略快照，按路由预先分组，避免请求时过滤
+     */
+    private static class Snapshot {
+
+        private final List<RateLimitPolicy> globalPolicies;
+        private final Map<String, List<RateLimitPolicy>> routePolicies;
+        private final int size;
+
+        private Snapshot(List<RateLimitPolicy> policies) {
+            List<RateLimitPolicy> globals = new ArrayList<>();
+            Map<String, List<RateLimitPolicy>> byRoute = new HashMap<>();
+            for (RateLimitPolicy policy : policies) {
+                if (StringUtils.isBlank(policy.getRouteId())) {
+                    globals.add(policy);
+                } else {
+                    byRoute.computeIfAbsent(policy.getRouteId(), key -> new ArrayList<>()).add(policy);
+                }
+            }
+            for (List<RateLimitPolicy> routePolicies : byRoute.values()) {
+                routePolicies.addAll(globals);
+            }
+            this.globalPolicies = Collections.unmodifiableList(globals);
+            this.routePolicies = byRoute;
+            this.size = policies.size();
+        }
+    }
+}
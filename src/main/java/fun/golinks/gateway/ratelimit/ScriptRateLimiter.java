@@ -0,0 +1,71 @@
+package fun.golinks.gateway.ratelimit;
+
+import fun.golinks.gateway.util.RedisScriptUtil;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于 Redis Lua 脚本的限流器，每次判定只有一次原子的脚本调用
+ */
+@Component
+public class ScriptRateLimiter {
+
+    private static final String KEY_PREFIX = "rate-limit:";
+    private static final String PERMITS = "1";
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    @SuppressWarnings("rawtypes")
+    private final Map<RateLimitAlgorithm, RedisScript<List>> scripts = new EnumMap<>(RateLimitAlgorithm.class);
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ScriptRateLimiter(ReactiveRedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            scripts.put(algorithm, RedisScriptUtil.listScript(algorithm.getScript()));
+        }
+    }
+
+    /**
+     * 申请一次请求许可
+     *
+     * @param policy
+     *            限流策略
+     * @param key
+     *            限流维度的取值，例如客户端 IP
+     *
+     * @return 判定结果
+     */
+    public Mono<RateLimitDecision> acquire(RateLimitPolicy policy, String key) {
+        List<String> keys = Collections.singletonList(KEY_PREFIX + policy.getId() + ":" + key);
+        return redisTemplate.execute(scripts.get(policy.getAlgorithm()), keys, args(policy)).next()
+                .map(result -> new RateLimitDecision(((Number) result.get(0)).longValue() == 1L,
+                        ((Number) result.get(1)).longValue(), ((Number) result.get(2)).longValue()));
+    }
+
+    private List<String> args(RateLimitPolicy policy) {
+        double intervalMillis = policy.intervalMillis();
+        switch (policy.getAlgorithm()) {
+        case GCRA:
+            return Arrays.asList(String.valueOf(intervalMillis / policy.getLimit()),
+                    String.valueOf(policy.capacity()), PERMITS);
+        case SLIDING_LOG:
+            return Arrays.asList(String.valueOf(policy.intervalMillis()), String.valueOf(policy.getLimit()), PERMITS,
+                    instanceId + "-" + sequence.incrementAndGet());
+        case TOKEN_BUCKET:
+        default:
+            return Arrays.asList(String.valueOf(policy.getLimit() / intervalMillis), String.valueOf(policy.capacity()),
+                    PERMITS);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package fun.golinks.gateway.route;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR;
+
+/**
+ * 使用 {@link RouteIndex} 的路由匹配。
+ * <p>
+ * 路由缓存刷新完成（{@link RefreshRoutesResultEvent}）后立即丢弃旧索引并异步重建，请求只对索引给出的候选路由按顺序执行断言。索引建好之前（包括重建失败时）回退到逐个匹配全部路由，
+ * 不会使用与路由缓存不一致的旧索引。
+ */
+@Slf4j
+public class IndexedRoutePredicateHandlerMapping extends RoutePredicateHandlerMapping
+        implements ApplicationListener<RefreshRoutesResultEvent> {
+
+    private final RouteLocator routeLocator;
+    private final RouteDefinitionLocator routeDefinitionLocator;
+    private final NacosRouteLocator nacosRouteLocator;
+    private final ConfigurationService configurationService;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile RouteIndex routeIndex;
+
+    public IndexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator,
+            GlobalCorsProperties globalCorsProperties, Environment environment,
+            RouteDefinitionLocator routeDefinitionLocator, NacosRouteLocator nacosRouteLocator,
+            ConfigurationService configurationService) {
+        super(webHandler, routeLocator, globalCorsProperties, environment);
+        this.routeLocator = routeLocator;
+        this.routeDefinitionLocator = routeDefinitionLocator;
+        this.nacosRouteLocator = nacosRouteLocator;
+        this.configurationService = configurationService;
+    }
+
+    /**
+     * 索引中的路由数量，索引未建立时为 0
+     */
+    public int getIndexedRouteCount() {
+        RouteIndex index = this.routeIndex;
+        return index == null ? 0 : index.size();
+    }
+
+    @Override
+    protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+        RouteIndex index = this.routeIndex;
+        if (index == null) {
+            return super.lookupRoute(exchange);
+        }
+        return Flux.fromIterable(index.candidates(exchange.getRequest()))
+                .concatMap(route -> Mono.just(route).filterWhen(r -> {
+                    exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, r.getId());
+                    return r.getPredicate().apply(exchange);
+                }).doOnError(e -> log.error("Error applying predicate for route: {}", route.getId(), e))
+                        .onErrorResume(e -> Mono.empty()))
+                .next().map(route -> {
+                    validateRoute(route, exchange);
+                    return route;
+                });
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess()) {
+            return;
+        }
+        long current;
+        synchronized (generation) {
+            current = generation.incrementAndGet();
+            // 旧索引可能包含已删除的路由、缺少新增的路由
+            routeIndex = null;
+        }
+        Mono.zip(routeLocator.getRoutes().collectList(),
+                routeDefinitionLocator.getRouteDefinitions().collectMap(RouteDefinition::getId)).subscribe(tuple -> {
+                    Map<String, RouteDefinition> definitions = tuple.getT2();
+                    RouteIndex index = RouteIndex.build(tuple.getT1(), route -> {
+                        if (nacosRouteLocator.getRouteDefinitions().containsKey(route.getId())) {
+                            return nacosRouteLocator.getRouteDefinition(route);
+                        }
+                        return definitions.get(route.getId());
+                    }, configurationService);
+                    // 只保留最新一次刷新的结果
+                    synchronized (generation) {
+                        if (generation.get() != current) {
+                            return;
+                        }
+                        routeIndex = index;
+                    }
+                    log.info("Route index rebuilt: {} routes, {} host buckets", index.size(),
+                            index.hostBuckets());
+                }, e -> log.error("Failed to rebuild route index, matching all routes until the next refresh", e));
+    }
+}
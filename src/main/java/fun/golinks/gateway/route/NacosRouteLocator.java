@@ -0,0 +1,200 @@
+package fun.golinks.gateway.route;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Nacos 路由定位器。
+ * <p>
+ * 持有 Nacos 路由定义及编译后的 {@link Route} 的不可变快照。重载时按路由 ID 和内容比较新旧定义，只编译新增和变更的路由，删除已移除的路由，最后一次性替换快照，
+ * 不会出现路由表被清空一半的中间状态。编译失败的路由保留旧版本。
+ */
+@Slf4j
+@Component
+public class NacosRouteLocator implements RouteLocator {
+
+    private static final Duration COMPILE_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ObjectProvider<List<RoutePredicateFactory>> predicatesProvider;
+    private final ObjectProvider<List<GatewayFilterFactory>> gatewayFiltersProvider;
+    private final GatewayProperties gatewayProperties;
+    private final ConfigurationService configurationService;
+    private final Timer reloadTimer;
+    private final Counter addedCounter;
+    private final Counter updatedCounter;
+    private final Counter removedCounter;
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+
+    public NacosRouteLocator(ObjectProvider<List<RoutePredicateFactory>> predicatesProvider,
+            ObjectProvider<List<GatewayFilterFactory>> gatewayFiltersProvider, GatewayProperties gatewayProperties,
+            ConfigurationService configurationService, MeterRegistry meterRegistry) {
+        this.predicatesProvider = predicatesProvider;
+        this.gatewayFiltersProvider = gatewayFiltersProvider;
+        this.gatewayProperties = gatewayProperties;
+        this.configurationService = configurationService;
+        this.reloadTimer = Timer.builder("gateway.routes.reload").description("Time spent reloading routes from Nacos")
+                .register(meterRegistry);
+        this.addedCounter = changeCounter(meterRegistry, "added");
+        this.updatedCounter = changeCounter(meterRegistry, "updated");
+        this.removedCounter = changeCounter(meterRegistry, "removed");
+        meterRegistry.gauge("gateway.routes.nacos", this, locator -> locator.snapshot.routes.size());
+    }
+
+    private static Counter changeCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("gateway.routes.changes").description("Routes changed by Nacos reloads")
+                .tag("type", type).register(meterRegistry);
+    }
+
+    @Override
+    public Flux<Route> getRoutes() {
+        return Flux.fromIterable(snapshot.routes.values());
+    }
+
+    /**
+     * 当前生效的路由定义
+     */
+    public Map<String, RouteDefinition> getRouteDefinitions() {
+        return snapshot.definitions;
+    }
+
+    /**
+     * 返回路由对应的定义，路由不属于当前快照时返回 null
+     */
+    public RouteDefinition getRouteDefinition(Route route) {
+        Snapshot current = snapshot;
+        if (current.routes.get(route.getId()) != route) {
+            return null;
+        }
+        return current.definitions.get(route.getId());
+    }
+
+    /**
+     * 按差异更新路由
+     *
+     * @param routeDefinitions
+     *            Nacos 中最新的全部路由定义
+     *
+     * @return 变化统计
+     */
+    public synchronized RouteChanges update(List<RouteDefinition> routeDefinitions) {
+        long start = System.nanoTime();
+        Snapshot current = snapshot;
+        Map<String, RouteDefinition> definitions = new LinkedHashMap<>();
+        List<RouteDefinition> changed = new ArrayList<>();
+        int added = 0;
+        int updated = 0;
+        for (RouteDefinition definition : routeDefinitions) {
+            if (definition.getId() == null) {
+                log.warn("Ignore route without id: {}", definition);
+                continue;
+            }
+            definitions.put(definition.getId(), definition);
+            RouteDefinition previous = current.definitions.get(definition.getId());
+            if (previous == null) {
+                added++;
+                changed.add(definition);
+            } else if (previous.hashCode() != definition.hashCode() || !Objects.equals(previous, definition)) {
+                updated++;
+                changed.add(definition);
+            }
+        }
+        int removed = 0;
+        for (String id : current.definitions.keySet()) {
+            if (!definitions.containsKey(id)) {
+                removed++;
+            }
+        }
+        RouteChanges changes = new RouteChanges(added, updated, removed);
+        if (changes.isEmpty()) {
+            return changes;
+        }
+
+        Map<String, Route> compiled = compile(changed);
+        for (RouteDefinition definition : changed) {
+            if (!compiled.containsKey(definition.getId())) {
+                // 编译失败，保留旧版本
+                log.warn("Failed to compile route {}, keep the previous version", definition.getId());
+                RouteDefinition previous = current.definitions.get(definition.getId());
+                if (previous == null) {
+                    definitions.remove(definition.getId());
+                } else {
+                    definitions.put(definition.getId(), previous);
+                }
+            }
+        }
+        Map<String, Route> routes = new LinkedHashMap<>();
+        for (String id : definitions.keySet()) {
+            Route route = compiled.get(id);
+            if (route == null) {
+                route = current.routes.get(id);
+            }
+            if (route != null) {
+                routes.put(id, route);
+            }
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(definitions), Collections.unmodifiableMap(routes));
+
+        addedCounter.increment(added);
+        updatedCounter.increment(updated);
+        removedCounter.increment(removed);
+        reloadTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        return changes;
+    }
+
+    /**
+     * 逐个编译路由定义，单个定义出错不影响其他路由
+     */
+    private Map<String, Route> compile(List<RouteDefinition> definitions) {
+        if (definitions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<RoutePredicateFactory> predicates = predicatesProvider.getIfAvailable(Collections::emptyList);
+        List<GatewayFilterFactory> gatewayFilters = gatewayFiltersProvider.getIfAvailable(Collections::emptyList);
+        Map<String, Route> routes = new LinkedHashMap<>();
+        for (RouteDefinition definition : definitions) {
+            try {
+                RouteDefinitionRouteLocator compiler = new RouteDefinitionRouteLocator(() -> Flux.just(definition),
+                        predicates, gatewayFilters, gatewayProperties, configurationService);
+                Route route = compiler.getRoutes().next().block(COMPILE_TIMEOUT);
+                if (route != null) {
+                    routes.put(definition.getId(), route);
+                }
+            } catch (Exception e) {
+                log.error("Failed to compile route {}", definition.getId(), e);
+            }
+        }
+        return routes;
+    }
+
+    private static class Snapshot {
+
+        private final Map<String, RouteDefinition> definitions;
+        private final Map<String, Route> routes;
+
+        private Snapshot(Map<String, RouteDefinition> definitions, Map<String, Route> routes) {
+            this.definitions = definitions;
+            this.routes = routes;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package fun.golinks.gateway.route;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 一次路由重载的变化统计
+ */
+@Data
+@AllArgsConstructor
+public class RouteChanges {
+
+    private final int added;
+    private final int updated;
+    private final int removed;
+
+    public boolean isEmpty() {
+        return added == 0 && updated == 0 && removed == 0;
+    }
+}
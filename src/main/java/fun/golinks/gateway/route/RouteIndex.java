@@ -0,0 +1,300 @@
+package fun.golinks.gateway.route;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.cloud.gateway.handler.predicate.HostRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 路由匹配索引。
+ * <p>
+ * 根据路由定义中的 Path、Host、Method 断言建立索引：Path 取通配符之前的字面量前缀放入按路径段组织的前缀树，Host 为字面量时按主机名分桶（每个桶一棵前缀树），
+ * Method 记录为位掩码。匹配时沿请求路径遍历前缀树，只收集路径上各节点挂载的路由作为候选，再按原始顺序逐个执行完整断言，因此结果与顺序扫描一致，开销与路径深度相关而与路由数量无关。
+ * <p>
+ * 索引只用于缩小候选范围：无法索引的断言（正则、通配主机名、自定义断言等）对应的维度不做限制，这类路由总是作为候选参与完整匹配。
+ */
+@Slf4j
+final class RouteIndex {
+
+    private static final int[] EMPTY = new int[0];
+    private static final String PATH = new PathRoutePredicateFactory().name();
+    private static final String HOST = new HostRoutePredicateFactory().name();
+    private static final String METHOD = new MethodRoutePredicateFactory().name();
+
+    private final Route[] routes;
+    /**
+     * 每个路由允许的请求方法，0 表示不限制
+     */
+    private final int[] methodMasks;
+    /**
+     * 不限制主机名的路由
+     */
+    private final Node anyHost;
+    /**
+     * 主机名 -> 只允许该主机名的路由
+     */
+    private final Map<String, Node> hosts;
+
+    private RouteIndex(Route[] routes, int[] methodMasks, Node anyHost, Map<String, Node> hosts) {
+        this.routes = routes;
+        this.methodMasks = methodMasks;
+        this.anyHost = anyHost;
+        this.hosts = hosts;
+    }
+
+    /**
+     * 构建索引
+     *
+     * @param routes
+     *            按匹配顺序排列的全部路由
+     * @param definitions
+     *            路由对应的定义，找不到定义的路由不建立索引
+     * @param configurationService
+     *            用于按网关相同的方式绑定断言参数
+     */
+    static RouteIndex build(List<Route> routes, Function<Route, RouteDefinition> definitions,
+            ConfigurationService configurationService) {
+        PathRoutePredicateFactory pathFactory = new PathRoutePredicateFactory();
+        HostRoutePredicateFactory hostFactory = new HostRoutePredicateFactory();
+        MethodRoutePredicateFactory methodFactory = new MethodRoutePredicateFactory();
+        Node anyHost = new Node();
+        Map<String, Node> hosts = new HashMap<>();
+        int[] methodMasks = new int[routes.size()];
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            RouteDefinition definition = definitions.apply(route);
+            List<String[]> prefixes = null;
+            List<String> routeHosts = null;
+            if (definition != null) {
+                try {
+                    for (PredicateDefinition predicate : definition.getPredicates()) {
+                        if (prefixes == null && PATH.equals(predicate.getName())) {
+                            prefixes = pathPrefixes(configurationService.with(pathFactory).name(PATH)
+                                    .properties(predicate.getArgs()).bind().getPatterns());
+                        } else if (routeHosts == null && HOST.equals(predicate.getName())) {
+                            routeHosts = literalHosts(configurationService.with(hostFactory).name(HOST)
+                                    .properties(predicate.getArgs()).bind().getPatterns());
+                        } else if (METHOD.equals(predicate.getName())) {
+                            methodMasks[i] |= methodMask(configurationService.with(methodFactory).name(METHOD)
+                                    .properties(predicate.getArgs()).bind().getMethods());
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to index route {}, it will always be evaluated: {}", route.getId(),
+                            e.getMessage());
+                    prefixes = null;
+                    routeHosts = null;
+                    methodMasks[i] = 0;
+                }
+            }
+            if (prefixes == null) {
+                prefixes = Collections.singletonList(new String[0]);
+            }
+            if (routeHosts == null) {
+                insert(anyHost, prefixes, i);
+            } else {
+                for (String host : routeHosts) {
+                    insert(hosts.computeIfAbsent(host, key -> new Node()), prefixes, i);
+                }
+            }
+        }
+        return new RouteIndex(routes.toArray(new Route[0]), methodMasks, anyHost, hosts);
+    }
+
+    private static void insert(Node root, List<String[]> prefixes, int routeIndex) {
+        for (String[] prefix : prefixes) {
+            Node node = root;
+            for (String segment : prefix) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            node.add(routeIndex);
+        }
+    }
+
+    /**
+     * 提取每个路径模式的字面量前缀，任一模式无法解析时返回 null
+     */
+    private static List<String[]> pathPrefixes(List<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return null;
+        }
+        List<String[]> prefixes = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            if (pattern == null || !pattern.startsWith("/")) {
+                return null;
+            }
+            List<String> prefix = new ArrayList<>();
+            for (String segment : StringUtils.split(pattern, '/')) {
+                if (!isLiteralSegment(segment)) {
+                    break;
+                }
+                prefix.add(segment);
+            }
+            prefixes.add(prefix.toArray(new String[0]));
+        }
+        return prefixes;
+    }
+
+    private static boolean isLiteralSegment(String segment) {
+        return StringUtils.containsNone(segment, '*', '?', '{', '}', '%', ';');
+    }
+
+    /**
+     * 全部为字面量主机名时返回主机名列表，否则返回 null
+     */
+    private static List<String> literalHosts(List<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return null;
+        }
+        for (String pattern : patterns) {
+            if (StringUtils.isEmpty(pattern) || StringUtils.containsAny(pattern, '*', '?', '{', '}')
+                    || !isNormalHost(pattern)) {
+                return null;
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * Host 断言按 . 分段匹配并忽略空段，含空段的主机名不能按字符串相等比较
+     */
+    private static boolean isNormalHost(String host) {
+        return !host.contains("..") && host.charAt(0) != '.' && host.charAt(host.length() - 1) != '.';
+    }
+
+    private static int methodMask(HttpMethod[] methods) {
+        int mask = 0;
+        if (methods != null) {
+            for (HttpMethod method : methods) {
+                mask |= 1 << method.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 按索引匹配的请求路径，必须与 PathRoutePredicateFactory 使用同一个路径，否则会漏掉逐个断言时能匹配的路由。当前版本的 Path 断言匹配 URI 的原始路径（包含 context path），不是
+     * pathWithinApplication
+     */
+    private static PathContainer matchPath(ServerHttpRequest request) {
+        return PathContainer.parsePath(request.getURI().getRawPath());
+    }
+
+    /**
+     * 返回可能匹配该请求的路由，保持原始顺序
+     */
+    List<Route> candidates(ServerHttpRequest request) {
+        String host = request.getHeaders().getFirst(HttpHeaders.HOST);
+        if (host != null && !host.isEmpty() && !isNormalHost(host)) {
+            return Arrays.asList(routes);
+        }
+        PathContainer path = matchPath(request);
+        Collector collector = new Collector();
+        collect(anyHost, path, collector);
+        if (host != null) {
+            Node hostRoot = hosts.get(host);
+            if (hostRoot != null) {
+                collect(hostRoot, path, collector);
+            }
+        }
+        int[] indexes = collector.sortedDistinct();
+        HttpMethod method = request.getMethod();
+        int bit = method == null ? 0 : 1 << method.ordinal();
+        List<Route> candidates = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            int mask = methodMasks[index];
+            if (mask == 0 || (mask & bit) != 0) {
+                candidates.add(routes[index]);
+            }
+        }
+        return candidates;
+    }
+
+    private static void collect(Node root, PathContainer path, Collector collector) {
+        Node node = root;
+        collector.add(node.routeIndexes, node.size);
+        for (PathContainer.Element element : path.elements()) {
+            if (!(element instanceof PathContainer.PathSegment)) {
+                continue;
+            }
+            node = node.children.get(((PathContainer.PathSegment) element).valueToMatch());
+            if (node == null) {
+                return;
+            }
+            collector.add(node.routeIndexes, node.size);
+        }
+    }
+
+    int size() {
+        return routes.length;
+    }
+
+    int hostBuckets() {
+        return hosts.size();
+    }
+
+    /**
+     * 前缀树节点，挂载字面量前缀恰好到此为止的路由（按路由顺序递增）
+     */
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private int[] routeIndexes = EMPTY;
+        private int size;
+
+        private void add(int routeIndex) {
+            if (size > 0 && routeIndexes[size - 1] == routeIndex) {
+                return;
+            }
+            if (size == routeIndexes.length) {
+                routeIndexes = Arrays.copyOf(routeIndexes, Math.max(4, size * 2));
+            }
+            routeIndexes[size++] = routeIndex;
+        }
+    }
+
+    private static final class Collector {
+
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int[] source, int length) {
+            if (length == 0) {
+                return;
+            }
+            if (size + length > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + length));
+            }
+            System.arraycopy(source, 0, values, size, length);
+            size += length;
+        }
+
+        private int[] sortedDistinct() {
+            Arrays.sort(values, 0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct == 0 || values[distinct - 1] != values[i]) {
+                    values[distinct++] = values[i];
+                }
+            }
+            return Arrays.copyOf(values, distinct);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package fun.golinks.gateway.sentinel;
+
+import com.alibaba.csp.sentinel.adapter.gateway.common.SentinelGatewayConstants;
+import com.alibaba.csp.sentinel.adapter.gateway.common.api.ApiDefinition;
+import com.alibaba.csp.sentinel.adapter.gateway.common.api.ApiPathPredicateItem;
+import com.alibaba.csp.sentinel.adapter.gateway.common.api.ApiPredicateItem;
+import com.alibaba.csp.sentinel.datasource.Converter;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 把 Nacos 中的 API 分组转换为 {@link ApiDefinition}。predicateItems 在 Sentinel 中是接口类型，无法直接反序列化，这里按 Sentinel 控制台的格式逐项构建：
+ *
+ * <pre>
+ * [{"apiName": "sample-api", "predicateItems": [{"pattern": "/sample/**", "matchStrategy": 1}]}]
+ * </pre>
+ *
+ * matchStrategy：0 精确匹配，1 前缀匹配，2 正则匹配。
+ */
+public class ApiDefinitionConverter implements Converter<String, Set<ApiDefinition>> {
+
+    @Override
+    public Set<ApiDefinition> convert(String source) {
+        Set<ApiDefinition> definitions = new HashSet<>();
+        if (StringUtils.isBlank(source)) {
+            return definitions;
+        }
+        JSONArray array = JSON.parseArray(source);
+        for (int i = 0; i < array.size(); i++) {
+            JSONObject object = array.getJSONObject(i);
+            Set<ApiPredicateItem> predicateItems = new HashSet<>();
+            JSONArray items = object.getJSONArray("predicateItems");
+            if (items != null) {
+                for (int j = 0; j < items.size(); j++) {
+                    JSONObject item = items.getJSONObject(j);
+                    Integer matchStrategy = item.getInteger("matchStrategy");
+                    predicateItems.add(new ApiPathPredicateItem().setPattern(item.getString("pattern"))
+                            .setMatchStrategy(matchStrategy == null ? SentinelGatewayConstants.URL_MATCH_STRATEGY_EXACT
+                                    : matchStrategy));
+                }
+            }
+            definitions.add(new ApiDefinition(object.getString("apiName")).setPredicateItems(predicateItems));
+        }
+        return definitions;
+    }
+}
@@ -0,0 +1,38 @@
+package fun.golinks.gateway.sentinel;
+
+import lombok.Data;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 集群分配中的一组：一个令牌服务端和向它请求令牌的客户端
+ */
+@Data
+public class ClusterGroup {
+
+    /**
+     * 令牌服务端节点的标识
+     */
+    private String machineId;
+
+    /**
+     * 客户端连接令牌服务端使用的地址
+     */
+    private String ip;
+
+    /**
+     * 令牌服务端监听的端口
+     */
+    private Integer port;
+
+    /**
+     * 令牌服务端自身允许处理的最大 QPS，为空时使用 Sentinel 的默认值
+     */
+    private Double maxAllowedQps;
+
+    /**
+     * 客户端节点的标识
+     */
+    private Set<String> clientSet = new HashSet<>();
+}
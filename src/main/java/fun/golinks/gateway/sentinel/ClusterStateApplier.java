@@ -0,0 +1,74 @@
+package fun.golinks.gateway.sentinel;
+
+import com.alibaba.csp.sentinel.cluster.ClusterStateManager;
+import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientAssignConfig;
+import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientConfig;
+import com.alibaba.csp.sentinel.cluster.client.config.ClusterClientConfigManager;
+import com.alibaba.csp.sentinel.cluster.server.config.ClusterServerConfigManager;
+import com.alibaba.csp.sentinel.cluster.server.config.ServerTransportConfig;
+import com.alibaba.csp.sentinel.property.SimplePropertyListener;
+import fun.golinks.gateway.properties.SentinelClusterProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 根据 Nacos 中的集群分配切换当前节点的角色：分配中 machineId 为当前节点的是嵌入式令牌服务端，clientSet 包含当前节点的是令牌客户端，都不是时停止集群流控，集群规则退化为按
+ * fallbackToLocalWhenFail 在本地计数。分配变化时实时切换。
+ */
+@Slf4j
+public class ClusterStateApplier extends SimplePropertyListener<List<ClusterGroup>> {
+
+    private final SentinelClusterProperties clusterProperties;
+
+    public ClusterStateApplier(SentinelClusterProperties clusterProperties) {
+        this.clusterProperties = clusterProperties;
+        ClusterClientConfigManager.applyNewConfig(
+                new ClusterClientConfig().setRequestTimeout((int) clusterProperties.getRequestTimeout().toMillis()));
+    }
+
+    @Override
+    public void configUpdate(List<ClusterGroup> groups) {
+        String machineId = clusterProperties.getMachineId();
+        ClusterGroup group = find(groups, machineId);
+        int mode = mode(group, machineId);
+        if (mode == ClusterStateManager.CLUSTER_SERVER) {
+            ClusterServerConfigManager.loadGlobalTransportConfig(
+                    new ServerTransportConfig(group.getPort(), (int) clusterProperties.getIdleTimeout().getSeconds()));
+            if (group.getMaxAllowedQps() != null) {
+                ClusterServerConfigManager.setMaxAllowedQps(group.getMaxAllowedQps());
+            }
+            ClusterServerConfigManager.loadServerNamespaceSet(Collections.singleton(clusterProperties.getNamespace()));
+        } else if (mode == ClusterStateManager.CLUSTER_CLIENT) {
+            ClusterClientConfigManager
+                    .applyNewAssignConfig(new ClusterClientAssignConfig(group.getIp(), group.getPort()));
+        }
+        log.info("Sentinel cluster mode of {} changed to {}, group={}", machineId, mode, group);
+        ClusterStateManager.applyState(mode);
+    }
+
+    /**
+     * 当前节点所在的组，不在任何组中时返回 null
+     */
+    static ClusterGroup find(List<ClusterGroup> groups, String machineId) {
+        if (groups == null || machineId == null) {
+            return null;
+        }
+        for (ClusterGroup group : groups) {
+            if (machineId.equals(group.getMachineId())
+                    || (group.getClientSet() != null && group.getClientSet().contains(machineId))) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    static int mode(ClusterGroup group, String machineId) {
+        if (group == null || group.getPort() == null) {
+            return ClusterStateManager.CLUSTER_NOT_STARTED;
+        }
+        return machineId.equals(group.getMachineId()) ? ClusterStateManager.CLUSTER_SERVER
+                : ClusterStateManager.CLUSTER_CLIENT;
+    }
+}
@@ -0,0 +1,141 @@
+package fun.golinks.gateway.singleflight;
+
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一次被多个请求共享的上游调用。
+ * <p>
+ * 首个请求（leader）访问上游，其余请求（follower）在 leader 的响应开始写出之前加入。响应开始写出时关闭，不再接受新的 follower；没有 follower 时 leader 不复制响应体。follower
+ * 收到的是 leader 的状态码、响应头和响应体分片的副本。
+ * <p>
+ * 响应体分片保留到结束，供稍后订阅的 follower 重放，总大小超过上限时以 {@link BodyTooLargeException} 结束并丢弃已保留的分片。
+ */
+final class Flight {
+
+    private static final int CLOSED = -1;
+
+    private final Sinks.One<Head> head = Sinks.one();
+    private final Sinks.Many<byte[]> body = Sinks.many().replay().all();
+    private final long maxBodySize;
+    private long bodySize;
+    /**
+     * follower 数量，关闭后为 {@link #CLOSED}
+     */
+    private final AtomicInteger followers = new AtomicInteger();
+
+    Flight(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * 作为 follower 加入，已关闭或 follower 数量达到上限时返回 false
+     */
+    boolean join(int maxFollowers) {
+        while (true) {
+            int current = followers.get();
+            if (current == CLOSED || current >= maxFollowers) {
+                return false;
+            }
+            if (followers.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 关闭，返回关闭时的 follower 数量；已经关闭过时返回 -1
+     */
+    int close() {
+        return followers.getAndSet(CLOSED);
+    }
+
+    /**
+     * 共享响应的状态码和响应头，leader 的响应不能共享或 leader 失败时为空
+     */
+    Mono<Head> head() {
+        return head.asMono();
+    }
+
+    Flux<byte[]> body() {
+        return body.asFlux();
+    }
+
+    /**
+     * 共享 leader 的响应，streaming 为 true 时 follower 边收边写，否则等响应体完整后再写
+     */
+    void share(int status, HttpHeaders headers, boolean streaming) {
+        head.tryEmitValue(new Head(status, headers, streaming));
+    }
+
+    /**
+     * 不共享 leader 的响应，follower 各自访问上游
+     */
+    void reject() {
+        head.tryEmitEmpty();
+    }
+
+    /**
+     * 只由 leader 的写出线程调用
+     */
+    void next(byte[] chunk) {
+        if (bodySize > maxBodySize) {
+            return;
+        }
+        bodySize += chunk.length;
+        if (bodySize > maxBodySize) {
+            body.tryEmitError(new BodyTooLargeException());
+            return;
+        }
+        body.tryEmitNext(chunk);
+    }
+
+    void complete() {
+        body.tryEmitComplete();
+    }
+
+    void error(Throwable e) {
+        body.tryEmitError(e);
+    }
+
+    static final class Head {
+
+        private final int status;
+        private final HttpHeaders headers;
+        private final boolean streaming;
+
+        private Head(int status, HttpHeaders headers, boolean streaming) {
+            this.status = status;
+            this.headers = headers;
+            this.streaming = streaming;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        boolean isStreaming() {
+            return streaming;
+        }
+    }
+
+    /**
+     * 响应体超过共享上限
+     */
+    static final class BodyTooLargeException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private BodyTooLargeException() {
+            super("Shared response body exceeds the limit", null, false, false);
+        }
+    }
+}
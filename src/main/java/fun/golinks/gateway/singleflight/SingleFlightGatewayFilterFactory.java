@@ -0,0 +1,343 @@
+package fun.golinks.gateway.singleflight;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * 合并相同的并发请求，在路由定义中按路由开启：
+ *
+ * <pre>
+ * filters:
+ *   - name: SingleFlight
+ *     args:
+ *       key-query-params: id,page
+ *       key-headers: Accept-Language
+ *       max-followers: 64
+ *       max-wait: 2s
+ *       max-body-size: 1MB
+ * </pre>
+ * <p>
+ * key 由路由、请求方法、路径、查询参数（key-query-params 为空时使用全部参数，与顺序无关）和 key-headers 组成。同一个 key 的上游请求进行中、响应还没开始写出时到达的请求不再访问上游，
+ * 而是等待首个请求的响应，状态码、响应头和响应体按分片复制给每个等待的请求。响应开始写出后到达的请求重新发起一次上游调用，不做缓存。
+ * <p>
+ * 只处理 GET 请求；带 Authorization 或 Cookie 的请求只有把对应请求头列入 key-headers 时才合并。等待超过 max-wait、等待的请求超过 max-followers、上游响应带
+ * Set-Cookie 或首个请求失败时，请求各自访问上游。
+ * <p>
+ * 共享的响应体保留在堆内供 follower 重放，总大小不超过 max-body-size：Content-Length 超过上限的响应不共享；没有 Content-Length 的响应由 follower
+ * 收齐后再写出，中途超过上限时 follower 各自访问上游。流式响应（writeAndFlushWith）不共享。过滤器排在 NettyWriteResponseFilter 之前，上游响应体经过 leader 的响应写出。
+ */
+@Component
+public class SingleFlightGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<SingleFlightGatewayFilterFactory.Config> {
+
+    /**
+     * 不复制给 follower 的响应头
+     */
+    private static final Set<String> EXCLUDED_HEADERS = new HashSet<>(
+            Arrays.asList("connection", "keep-alive", "te", "trailer", "transfer-encoding", "upgrade"));
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+    private final Counter fallbacks;
+    private final Counter overflows;
+
+    public SingleFlightGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.leaders = counter(meterRegistry, "leader");
+        this.followers = counter(meterRegistry, "follower");
+        this.fallbacks = counter(meterRegistry, "fallback");
+        this.overflows = counter(meterRegistry, "overflow");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("gateway.single_flight.requests")
+                .description("Requests seen by the single-flight filter").tag("result", result).register(meterRegistry);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("maxFollowers", "maxWait");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return new SingleFlightFilter(config);
+    }
+
+    @Data
+    public static class Config {
+
+        /**
+         * 参与 key 的查询参数，为空时使用全部查询参数
+         */
+        private List<String> keyQueryParams = new ArrayList<>();
+
+        /**
+         * 参与 key 的请求头
+         */
+        private List<String> keyHeaders = new ArrayList<>();
+
+        /**
+         * 每次上游调用最多共享给多少个请求
+         */
+        private int maxFollowers = 64;
+
+        /**
+         * 等待首个请求的响应头的最长时间
+         */
+        private Duration maxWait = Duration.ofSeconds(2);
+
+        /**
+         * 共享的响应体的最大大小
+         */
+        private DataSize maxBodySize = DataSize.ofMegabytes(1);
+    }
+
+    private class SingleFlightFilter implements GatewayFilter, Ordered {
+
+        private final Config config;
+        private final Set<String> keyHeaders = new HashSet<>();
+
+        private SingleFlightFilter(Config config) {
+            this.config = config;
+            for (String header : config.getKeyHeaders()) {
+                keyHeaders.add(header.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        @Override
+        public int getOrder() {
+            return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            if (!isShareable(exchange.getRequest())) {
+                return chain.filter(exchange);
+            }
+            String key = key(exchange);
+            Flight flight = flights.get(key);
+            if (flight == null) {
+                Flight created = new Flight(config.getMaxBodySize().toBytes());
+                flight = flights.putIfAbsent(key, created);
+                if (flight == null) {
+                    return lead(exchange, chain, key, created);
+                }
+            }
+            if (!flight.join(config.getMaxFollowers())) {
+                // 首个请求的响应已经开始写出，或者等待的请求已满
+                overflows.increment();
+                return chain.filter(exchange);
+            }
+            return follow(exchange, chain, flight);
+        }
+
+        private boolean isShareable(ServerHttpRequest request) {
+            if (request.getMethod() != HttpMethod.GET) {
+                return false;
+            }
+            HttpHeaders headers = request.getHeaders();
+            return (!headers.containsKey(HttpHeaders.AUTHORIZATION) || keyHeaders.contains("authorization"))
+                    && (!headers.containsKey(HttpHeaders.COOKIE) || keyHeaders.contains("cookie"));
+        }
+
+        private String key(ServerWebExchange exchange) {
+            ServerHttpRequest request = exchange.getRequest();
+            Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+            URI uri = request.getURI();
+            StringBuilder sb = new StringBuilder(128);
+            sb.append(route == null ? "" : route.getId()).append(' ').append(request.getMethodValue()).append(' ')
+                    .append(uri.getRawPath());
+            if (config.getKeyQueryParams().isEmpty()) {
+                if (uri.getRawQuery() != null) {
+                    for (Map.Entry<String, List<String>> param : new TreeMap<>(request.getQueryParams()).entrySet()) {
+                        sb.append('&').append(param.getKey()).append('=').append(param.getValue());
+                    }
+                }
+            } else {
+                for (String name : config.getKeyQueryParams()) {
+                    List<String> values = request.getQueryParams().get(name);
+                    sb.append('&').append(name).append('=').append(values == null ? "" : values);
+                }
+            }
+            HttpHeaders headers = request.getHeaders();
+            for (String header : config.getKeyHeaders()) {
+                List<String> values = headers.get(header);
+                sb.append('\n').append(header).append(':').append(values == null ? "" : values);
+            }
+            return sb.toString();
+        }
+
+        private Mono<Void> lead(ServerWebExchange exchange, GatewayFilterChain chain, String key, Flight flight) {
+            leaders.increment();
+            LeaderResponse response = new LeaderResponse(exchange.getResponse(), key, flight,
+                    config.getMaxBodySize().toBytes());
+            return chain.filter(exchange.mutate().response(response).build()).doFinally(response::finish);
+        }
+
+        private Mono<Void> follow(ServerWebExchange exchange, GatewayFilterChain chain, Flight flight) {
+            followers.increment();
+            return flight.head().timeout(config.getMaxWait(), Mono.empty()).map(Optional::of)
+                    .defaultIfEmpty(Optional.empty()).flatMap(head -> {
+                        if (!head.isPresent()) {
+                            fallbacks.increment();
+                            return chain.filter(exchange);
+                        }
+                        ServerHttpResponse response = exchange.getResponse();
+                        DataBufferFactory bufferFactory = response.bufferFactory();
+                        if (head.get().isStreaming()) {
+                            writeHead(response, head.get());
+                            return response.writeWith(flight.body().map(bufferFactory::wrap));
+                        }
+                        // 收齐之前不提交响应，超过上限时还能自行访问上游
+                        return flight.body().collectList().map(Optional::of)
+                                .onErrorReturn(Flight.BodyTooLargeException.class, Optional.empty()).flatMap(chunks -> {
+                                    if (!chunks.isPresent()) {
+                                        fallbacks.increment();
+                                        return chain.filter(exchange);
+                                    }
+                                    writeHead(response, head.get());
+                                    return response.writeWith(Flux.fromIterable(chunks.get()).map(bufferFactory::wrap));
+                                });
+                    });
+        }
+
+        private void writeHead(ServerHttpResponse response, Flight.Head head) {
+            response.setRawStatusCode(head.getStatus());
+            response.getHeaders().addAll(head.getHeaders());
+        }
+    }
+
+    /**
+     * leader 的响应：开始写出时决定是否共享，共享时把每个分片复制给 follower
+     */
+    private class LeaderResponse extends ServerHttpResponseDecorator {
+
+        private final String key;
+        private final Flight flight;
+        private final long maxBodySize;
+        private boolean closed;
+        private boolean sharing;
+
+        private LeaderResponse(ServerHttpResponse delegate, String key, Flight flight, long maxBodySize) {
+            super(delegate);
+            this.key = key;
+            this.flight = flight;
+            this.maxBodySize = maxBodySize;
+        }
+
+        /**
+         * 关闭 Flight，没有 follower 或响应不能共享时返回 false
+         */
+        private boolean open(boolean shareable) {
+            closed = true;
+            flights.remove(key, flight);
+            int count = flight.close();
+            HttpHeaders headers = getHeaders();
+            long contentLength = headers.getContentLength();
+            if (count <= 0 || !shareable || contentLength > maxBodySize || headers.containsKey(HttpHeaders.SET_COOKIE)
+                    || !getCookies().isEmpty()) {
+                flight.reject();
+                return false;
+            }
+            HttpHeaders shared = new HttpHeaders();
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (!EXCLUDED_HEADERS.contains(entry.getKey().toLowerCase(Locale.ROOT))) {
+                    shared.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+                }
+            }
+            Integer status = getRawStatusCode();
+            flight.share(status == null ? 200 : status, HttpHeaders.readOnlyHttpHeaders(shared), contentLength >= 0);
+            sharing = true;
+            return true;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!open(true)) {
+                return super.writeWith(body);
+            }
+            // 保留 Mono 类型，单个缓冲区的响应仍可由底层直接设置 Content-Length
+            if (body instanceof Mono) {
+                return super.writeWith(Mono.from(body).doOnNext(this::copy).doOnSuccess(dataBuffer -> flight.complete())
+                        .doOnError(flight::error));
+            }
+            return super.writeWith(
+                    Flux.from(body).doOnNext(this::copy).doOnComplete(flight::complete).doOnError(flight::error));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            // 流式响应可能一直不结束，不共享
+            open(false);
+            return super.writeAndFlushWith(body);
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            if (!closed && open(true)) {
+                flight.complete();
+            }
+            return super.setComplete();
+        }
+
+        private void copy(DataBuffer dataBuffer) {
+            byte[] chunk = new byte[dataBuffer.readableByteCount()];
+            dataBuffer.asByteBuffer().get(chunk);
+            flight.next(chunk);
+        }
+
+        /**
+         * leader 结束：还没有写出响应时让 follower 各自访问上游，共享中途失败或取消时结束 follower 的响应
+         */
+        private void finish(SignalType signalType) {
+            if (!closed) {
+                closed = true;
+                flights.remove(key, flight);
+                flight.close();
+                flight.reject();
+            } else if (sharing && signalType != SignalType.ON_COMPLETE) {
+                flight.error(new CancellationException("Leader request terminated with " + signalType));
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package fun.golinks.gateway.trace;
+
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.MDC;
+import org.springframework.http.HttpHeaders;
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * 请求的链路信息，兼容 W3C Trace Context（traceparent）。
+ * <p>
+ * 由 TraceIdGlobalFilter 创建后写入 Reactor {@link reactor.util.context.Context} 和 exchange 属性，不再绑定到线程的 MDC 上；需要在异步回调中打印带
+ * trace-id 的日志时， 通过 {@link #runWithMdc(ContextView, Runnable)} 临时设置 MDC。id 使用 {@link ThreadLocalRandom} 生成，避免
+ * {@code UUID.randomUUID()} 的 SecureRandom 竞争。
+ */
+@Getter
+public final class TraceContext {
+
+    public static final String CONTEXT_KEY = TraceContext.class.getName();
+    public static final String EXCHANGE_ATTR = "trace-context";
+    public static final String TRACE_ID_HEADER = "trace-id";
+    public static final String SPAN_ID_HEADER = "span-id";
+    public static final String TRACEPARENT_HEADER = "traceparent";
+    private static final String VERSION = "00";
+    private static final String SAMPLED = "01";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String traceId;
+    private final String spanId;
+    /**
+     * 上游的 span-id，没有时为 null
+     */
+    private final String parentSpanId;
+    private final String flags;
+
+    private TraceContext(String traceId, String spanId, String parentSpanId, String flags) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.flags = flags;
+    }
+
+    /**
+     * 根据请求头创建当前节点的链路信息：优先沿用 traceparent，其次沿用 trace-id，都没有时生成新的 trace-id
+     */
+    public static TraceContext from(HttpHeaders headers) {
+        String traceparent = headers.getFirst(TRACEPARENT_HEADER);
+        if (isValidTraceparent(traceparent)) {
+            return new TraceContext(traceparent.substring(3, 35), newSpanId(), traceparent.substring(36, 52),
+                    traceparent.substring(53, 55));
+        }
+        String traceId = headers.getFirst(TRACE_ID_HEADER);
+        if (StringUtils.isBlank(traceId)) {
+            traceId = newTraceId();
+        }
+        return new TraceContext(traceId, newSpanId(), null, SAMPLED);
+    }
+
+    public static String newTraceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = random.nextLong();
+        long low;
+        do {
+            low = random.nextLong();
+        } while (high == 0 && low == 0);
+        char[] chars = new char[32];
+        writeHex(high, chars, 0);
+        writeHex(low, chars, 16);
+        return new String(chars);
+    }
+
+    public static String newSpanId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        char[] chars = new char[16];
+        writeHex(id, chars, 0);
+        return new String(chars);
+    }
+
+    private static void writeHex(long value, char[] chars, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) value & 0xf];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * 校验 version 为 00 的 traceparent：00-{32 位 trace-id}-{16 位 parent-id}-{2 位 flags}，id 不能全为 0
+     */
+    static boolean isValidTraceparent(String traceparent) {
+        if (traceparent == null || traceparent.length() != 55 || !traceparent.startsWith(VERSION)
+                || traceparent.charAt(2) != '-' || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-') {
+            return false;
+        }
+        return isHex(traceparent, 3, 35) && isHex(traceparent, 36, 52) && isHex(traceparent, 53, 55);
+    }
+
+    private static boolean isHex(String value, int from, int to) {
+        boolean zero = true;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+            zero &= c == '0';
+        }
+        return !zero || to - from == 2;
+    }
+
+    /**
+     * trace-id 符合 W3C 格式时返回传给下游的 traceparent，否则返回 null
+     */
+    public String toTraceparent() {
+        if (traceId.length() != 32 || !isHex(traceId, 0, 32)) {
+            return null;
+        }
+        return VERSION + '-' + traceId + '-' + spanId + '-' + flags;
+    }
+
+    public static TraceContext get(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, null);
+    }
+
+    /**
+     * 在 MDC 中带上 Reactor Context 里的 trace-id / span-id 执行 action，执行完立即恢复 MDC 原来的值，不会遗留到同一线程的其他请求
+     */
+    public static void runWithMdc(ContextView context, Runnable action) {
+        TraceContext traceContext = get(context);
+        if (traceContext == null) {
+            action.run();
+            return;
+        }
+        traceContext.runWithMdc(action);
+    }
+
+    public void runWithMdc(Runnable action) {
+        callWithMdc(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 在 MDC 中带上 trace-id / span-id 执行 action，外层已有的值在执行完后恢复
+     */
+    public <T> T callWithMdc(Supplier<T> action) {
+        String outerTraceId = MDC.get(TRACE_ID_HEADER);
+        String outerSpanId = MDC.get(SPAN_ID_HEADER);
+        MDC.put(TRACE_ID_HEADER, traceId);
+        MDC.put(SPAN_ID_HEADER, spanId);
+        try {
+            return action.get();
+        } finally {
+            restore(TRACE_ID_HEADER, outerTraceId);
+            restore(SPAN_ID_HEADER, outerSpanId);
+        }
+    }
+
+    private static void restore(String key, String value) {
+        if (value == null) {
+            MDC.remove(key);
+        } else {
+            MDC.put(key, value);
+        }
+    }
+}
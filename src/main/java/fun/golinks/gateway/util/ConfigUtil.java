@@ -0,0 +1,41 @@
+package fun.golinks.gateway.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * Nacos 配置文档解析工具，支持 JSON 和 YAML 两种格式
+ */
+@Slf4j
+public class ConfigUtil {
+
+    /**
+     * 解析数组格式的配置文档。
+     * <p>
+     * 根据第一个非空白字符判断格式，只解析一遍：以 {@code [} 或 {@code {} 开头时按 JSON 解析，失败再按 YAML 解析（YAML 流式写法也可能以它们开头），其他情况直接按 YAML 解析。
+     *
+     * @return 解析结果，解析失败时返回 null
+     */
+    public static <T> List<T> toArray(String content, Class<T> clazz) {
+        if (looksLikeJson(content)) {
+            try {
+                return JsonUtil.arrayReader(clazz).readValue(content);
+            } catch (JsonProcessingException e) {
+                log.debug("Config is not valid json, fallback to yaml", e);
+            }
+        }
+        return YamlUtil.toArray(content, clazz);
+    }
+
+    private static boolean looksLikeJson(String content) {
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '[' || c == '{';
+            }
+        }
+        return false;
+    }
+}
@@ -1,28 +1,45 @@
 package fun.golinks.gateway.util;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * JSON 工具类。ObjectMapper 及按类型创建的 ObjectReader/ObjectWriter 都是线程安全的，全局共享，避免每次调用重建序列化器缓存
+ */
 @Slf4j
 public class JsonUtil {
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectWriter WRITER = OBJECT_MAPPER.writer();
+    private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> ARRAY_READERS = new ConcurrentHashMap<>();
+
+    /**
+     * 校验内容是否为合法 JSON，只做流式扫描，不构建树
+     */
     public static boolean isJson(String content) {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.readTree(content);
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(content)) {
+            while (parser.nextToken() != null) {
+                // 扫描到文档结束
+            }
             return true;
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
             return false;
         }
     }
 
     public static String toJson(Object object) {
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            return objectMapper.writeValueAsString(object);
+            return WRITER.writeValueAsString(object);
         } catch (JsonProcessingException e) {
             log.error("", e);
             return "";
@@ -31,8 +48,7 @@ public class JsonUtil {
 
     public static <T> T toObject(String content, Class<T> clazz) {
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            return objectMapper.readValue(content, clazz);
+            return reader(clazz).readValue(content);
         } catch (JsonProcessingException e) {
             log.error("", e);
             return null;
@@ -41,12 +57,25 @@ public class JsonUtil {
 
     public static <T> List<T> toArray(String content, Class<T> clazz) {
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            return objectMapper.readValue(content,
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, clazz));
+            return arrayReader(clazz).readValue(content);
         } catch (JsonProcessingException e) {
             log.error("", e);
             return null;
         }
     }
+
+    /**
+     * 获取指定类型的共享 ObjectReader
+     */
+    public static ObjectReader reader(Class<?> clazz) {
+        return READERS.computeIfAbsent(clazz, OBJECT_MAPPER::readerFor);
+    }
+
+    /**
+     * 获取 {@code List<clazz>} 类型的共享 ObjectReader
+     */
+    public static ObjectReader arrayReader(Class<?> clazz) {
+        return ARRAY_READERS.computeIfAbsent(clazz, key -> OBJECT_MAPPER
+                .readerFor(OBJECT_MAPPER.getTypeFactory().constructCollectionType(List.class, key)));
+    }
 }
@@ -0,0 +1,22 @@
+package fun.golinks.gateway.util;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+import java.util.List;
+
+public class RedisScriptUtil {
+
+    /**
+     * 从 classpath 加载返回数组的 Lua 脚本
+     */
+    @SuppressWarnings("rawtypes")
+    public static RedisScript<List> listScript(String path) {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(List.class);
+        return script;
+    }
+}
@@ -1,29 +1,46 @@
 package fun.golinks.gateway.util;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * YAML 工具类，与 {@link JsonUtil} 一样共享 ObjectMapper 及按类型创建的 ObjectReader/ObjectWriter
+ */
 @Slf4j
 public class YamlUtil {
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(new YAMLFactory());
+    private static final ObjectWriter WRITER = OBJECT_MAPPER.writer();
+    private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> ARRAY_READERS = new ConcurrentHashMap<>();
+
+    /**
+     * 校验内容是否为合法 YAML，只做流式扫描，不构建树
+     */
     public static boolean isYaml(String content) {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            objectMapper.readTree(content);
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(content)) {
+            while (parser.nextToken() != null) {
+                // 扫描到文档结束
+            }
             return true;
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
             return false;
         }
     }
 
     public static <T> T toObject(String content, Class<T> clazz) {
         try {
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            return objectMapper.readValue(content, clazz);
+            return reader(clazz).readValue(content);
         } catch (JsonProcessingException e) {
             log.error("", e);
             return null;
@@ -32,8 +49,7 @@ public class YamlUtil {
 
     public static String toYaml(Object object) {
         try {
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            return objectMapper.writeValueAsString(object);
+            return WRITER.writeValueAsString(object);
         } catch (JsonProcessingException e) {
             log.error("", e);
             return null;
@@ -42,12 +58,25 @@ public class YamlUtil {
 
     public static <T> List<T> toArray(String content, Class<T> clazz) {
         try {
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            return objectMapper.readValue(content,
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, clazz));
+            return arrayReader(clazz).readValue(content);
         } catch (JsonProcessingException e) {
             log.error("", e);
             return null;
         }
     }
+
+    /**
+     * 获取指定类型的共享 ObjectReader
+     */
+    public static ObjectReader reader(Class<?> clazz) {
+        return READERS.computeIfAbsent(clazz, OBJECT_MAPPER::readerFor);
+    }
+
+    /**
+     * 获取 {@code List<clazz>} 类型的共享 ObjectReader
+     */
+    public static ObjectReader arrayReader(Class<?> clazz) {
+        return ARRAY_READERS.computeIfAbsent(clazz, key -> OBJECT_MAPPER
+                .readerFor(OBJECT_MAPPER.getTypeFactory().constructCollectionType(List.class, key)));
+    }
 }
@@ -0,0 +1,74 @@
+package fun.golinks.gateway.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * 根据 Accept 请求头决定错误响应使用 HTML 还是 JSON。
+ * <p>
+ * 常见取值（{@code *}{@code /*}、{@code application/json}、以 {@code text/html} 开头的浏览器请求头）直接比较字符串；其余取值完整解析一次后按原始字符串缓存，浏览器的
+ * Accept 只有少数几种写法，缓存命中后不再解析和排序。缓存有容量上限，过长的请求头不缓存，随机构造的请求头只会退化为逐次解析。
+ */
+public final class AcceptNegotiator {
+
+    private static final int CACHE_MAXIMUM_SIZE = 1024;
+    private static final int MAX_CACHED_LENGTH = 512;
+    private static final String TEXT_HTML = "text/html";
+    private static final Cache<String, Boolean> CACHE = Caffeine.newBuilder().maximumSize(CACHE_MAXIMUM_SIZE).build();
+
+    private AcceptNegotiator() {
+    }
+
+    public static boolean acceptsHtml(HttpHeaders headers) {
+        List<String> values = headers.get(HttpHeaders.ACCEPT);
+        if (values == null || values.isEmpty()) {
+            return false;
+        }
+        if (values.size() > 1) {
+            // 多个 Accept 请求头很少见，不缓存
+            return parse(headers);
+        }
+        return acceptsHtml(values.get(0));
+    }
+
+    /**
+     * 单个 Accept 请求头的协商结果
+     */
+    public static boolean acceptsHtml(String accept) {
+        if (accept.isEmpty() || accept.equals("*/*") || accept.equals(MediaType.APPLICATION_JSON_VALUE)) {
+            return false;
+        }
+        if (accept.startsWith(TEXT_HTML) && (accept.length() == TEXT_HTML.length()
+                || accept.charAt(TEXT_HTML.length()) == ',' || accept.charAt(TEXT_HTML.length()) == ';')) {
+            return true;
+        }
+        if (accept.length() > MAX_CACHED_LENGTH) {
+            return parse(accept);
+        }
+        return CACHE.get(accept, AcceptNegotiator::parse);
+    }
+
+    /**
+     * 完整解析：忽略不带参数的 {@code *}{@code /*}，任意一项与 text/html 兼容即返回 HTML
+     */
+    public static boolean parse(String accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, accept);
+        return parse(headers);
+    }
+
+    private static boolean parse(HttpHeaders headers) {
+        try {
+            List<MediaType> acceptedMediaTypes = headers.getAccept();
+            acceptedMediaTypes.remove(MediaType.ALL);
+            return acceptedMediaTypes.stream().anyMatch(MediaType.TEXT_HTML::isCompatibleWith);
+        } catch (InvalidMediaTypeException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package fun.golinks.gateway.web;
+
+import fun.golinks.gateway.util.JsonUtil;
+import fun.golinks.gateway.util.WebUtils;
+import fun.golinks.gateway.vo.ErrorResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 网关的错误响应。
+ * <p>
+ * 页面模板从 classpath 加载，HTML 和 JSON 响应体在启动时按 UTF-8 编码一次，之后以只读、不可释放的 Netty 缓冲区共享给所有请求，Content-Length 也预先计算好。
+ */
+public enum ErrorResponse {
+
+    UNAUTHORIZED(HttpStatus.UNAUTHORIZED, "static/unauthorized.html",
+            "Authentication Failed\nInvalid JWT Token\nPlease try logging in again or contact support if the issue persists."),
+
+    FORBIDDEN(HttpStatus.FORBIDDEN, "static/forbidden.html",
+            "很抱歉，您暂时无法访问此页面。可能是由于身份验证失败或您的请求触发了安全限制。请检查您的登录凭证是否正确，或稍后再试。如果问题持续存在，请联系我们的支持团队获取帮助。感谢您的理解！"),
+
+    NOT_FOUND(HttpStatus.NOT_FOUND, "static/404.html", "页面未找到\n\n抱歉，您请求的页面不存在。请检查 URL 或稍后重试。"),
+
+    TOO_MANY_REQUESTS(HttpStatus.TOO_MANY_REQUESTS, "static/too-many-requests.html", "尊敬的用户，您好！\n" + "\n"
+            + "由于您的访问频率过高，已触发网站的流量限制保护。这是为了确保所有用户都能公平、稳定地使用我们的服务而设置的安全机制。请您稍作调整后重试。"),
+
+    SERVICE_UNAVAILABLE(HttpStatus.SERVICE_UNAVAILABLE, "static/service-unavailable.html",
+            "尊敬的用户，您好！\n\n当前访问人数较多，服务暂时繁忙，请您稍后重试。");
+
+    private static final String HTML_CONTENT_TYPE = "text/html;charset=UTF-8";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
+    private final HttpStatus status;
+    private final String message;
+    private final Body html;
+    private final Body json;
+
+    ErrorResponse(HttpStatus status, String template, String message) {
+        this.status = status;
+        this.message = message;
+        this.html = new Body(loadTemplate(template, message), HTML_CONTENT_TYPE);
+        this.json = new Body(JsonUtil.toJson(new ErrorResult(status.value(), message)).getBytes(StandardCharsets.UTF_8),
+                JSON_CONTENT_TYPE);
+    }
+
+    private static byte[] loadTemplate(String template, String message) {
+        try (InputStream inputStream = new ClassPathResource(template).getInputStream()) {
+            return StreamUtils.copyToByteArray(inputStream);
+        } catch (Throwable e) {
+            // 枚举常量初始化时静态字段尚未就绪，这里直接获取 Logger
+            LoggerFactory.getLogger(ErrorResponse.class).warn("Failed to load {}, using default message", template, e);
+            return message.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * 根据 Accept 请求头写出 HTML 或 JSON 错误响应
+     */
+    public Mono<Void> write(ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        Body body = WebUtils.acceptsHtml(exchange) ? html : json;
+        response.setStatusCode(status);
+        body.writeHeaders(response.getHeaders());
+        return response.writeWith(Mono.just(body.toDataBuffer(response.bufferFactory())));
+    }
+
+    /**
+     * 以 {@link ServerResponse} 的形式返回错误响应，供 Sentinel 等基于函数式端点的回调使用
+     */
+    public Mono<ServerResponse> toServerResponse(ServerWebExchange exchange) {
+        Body body = WebUtils.acceptsHtml(exchange) ? html : json;
+        return ServerResponse.status(status).headers(body::writeHeaders).body((outputMessage,
+                context) -> outputMessage.writeWith(Mono.just(body.toDataBuffer(outputMessage.bufferFactory()))));
+    }
+
+    /**
+     * 预编码的响应体
+     */
+    private static class Body {
+
+        private final byte[] bytes;
+        private final ByteBuf buffer;
+        private final String contentType;
+
+        private Body(byte[] bytes, String contentType) {
+            this.bytes = bytes;
+            this.buffer = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(bytes).asReadOnly());
+            this.contentType = contentType;
+        }
+
+        private void writeHeaders(HttpHeaders headers) {
+            headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+            headers.setContentLength(bytes.length);
+        }
+
+        private DataBuffer toDataBuffer(DataBufferFactory bufferFactory) {
+            if (bufferFactory instanceof NettyDataBufferFactory) {
+                // 共享底层内存，只复制读写索引
+                return ((NettyDataBufferFactory) bufferFactory).wrap(buffer.duplicate());
+            }
+            return bufferFactory.wrap(bytes);
+        }
+    }
+}
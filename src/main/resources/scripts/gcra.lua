@@ -0,0 +1,25 @@
+-- GCRA（通用信元速率算法）
+-- KEYS[1]: 理论到达时间 TAT
+-- ARGV[1]: 请求发放间隔（毫秒）
+-- ARGV[2]: 突发容量（请求数）
+-- ARGV[3]: 本次申请的数量
+-- 返回: {是否允许(1/0), 剩余可突发数量, 建议重试等待毫秒数}
+redis.replicate_commands()
+local interval = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+local quantity = tonumber(ARGV[3])
+local tolerance = interval * capacity
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local tat = tonumber(redis.call('GET', KEYS[1])) or now
+if tat < now then
+    tat = now
+end
+local newTat = tat + interval * quantity
+local diff = newTat - now
+if diff > tolerance then
+    return { 0, 0, math.ceil(diff - tolerance) }
+end
+redis.call('SET', KEYS[1], newTat, 'PX', math.ceil(diff))
+return { 1, math.floor((tolerance - diff) / interval), 0 }
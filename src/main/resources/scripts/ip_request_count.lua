@@ -0,0 +1,21 @@
+-- 批量累加 IP 请求计数（滑动窗口）
+-- 窗口按自身长度分段，估计值为当前分段的计数加上上一分段计数中仍落在窗口内的部分
+-- KEYS[2i-1]: 第 i 个 IP 当前分段的计数键
+-- KEYS[2i]: 第 i 个 IP 上一分段的计数键
+-- ARGV[1]: 窗口长度（毫秒）
+-- ARGV[2]: 当前分段已经过去的毫秒数
+-- ARGV[2+i]: 第 i 个 IP 的增量
+-- 返回: 各 IP 滑动窗口内的估计请求数
+local window = tonumber(ARGV[1])
+local weight = (window - tonumber(ARGV[2])) / window
+local counts = {}
+for i = 1, #KEYS / 2 do
+    local delta = tonumber(ARGV[2 + i])
+    local count = redis.call('INCRBY', KEYS[2 * i - 1], delta)
+    if count == delta then
+        redis.call('PEXPIRE', KEYS[2 * i - 1], window * 2)
+    end
+    local previous = tonumber(redis.call('GET', KEYS[2 * i]) or '0')
+    counts[i] = count + math.floor(previous * weight)
+end
+return counts
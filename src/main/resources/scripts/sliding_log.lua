@@ -0,0 +1,29 @@
+-- 滑动窗口日志
+-- KEYS[1]: 请求日志（zset，score 为请求时间）
+-- ARGV[1]: 窗口长度（毫秒）
+-- ARGV[2]: 窗口内允许的请求数
+-- ARGV[3]: 本次申请的数量
+-- ARGV[4]: 本次请求的唯一标识
+-- 返回: {是否允许(1/0), 窗口内剩余请求数, 建议重试等待毫秒数}
+redis.replicate_commands()
+local window = tonumber(ARGV[1])
+local limit = tonumber(ARGV[2])
+local quantity = tonumber(ARGV[3])
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)
+local count = redis.call('ZCARD', KEYS[1])
+if count + quantity > limit then
+    local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+    local retry = window
+    if oldest[2] then
+        retry = math.max(0, tonumber(oldest[2]) + window - now)
+    end
+    return { 0, math.max(0, limit - count), retry }
+end
+for i = 1, quantity do
+    redis.call('ZADD', KEYS[1], now, ARGV[4] .. ':' .. i)
+end
+redis.call('PEXPIRE', KEYS[1], window)
+return { 1, limit - count - quantity, 0 }
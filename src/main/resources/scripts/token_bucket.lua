@@ -0,0 +1,29 @@
+-- 令牌桶
+-- KEYS[1]: 桶状态（hash: tokens, ts）
+-- ARGV[1]: 每毫秒补充的令牌数
+-- ARGV[2]: 桶容量
+-- ARGV[3]: 本次申请的令牌数
+-- 返回: {是否允许(1/0), 剩余令牌数, 建议重试等待毫秒数}
+redis.replicate_commands()
+local rate = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1]) or capacity
+local ts = tonumber(state[2]) or now
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate)
+
+local allowed = 0
+local retry = 0
+if tokens >= requested then
+    allowed = 1
+    tokens = tokens - requested
+else
+    retry = math.ceil((requested - tokens) / rate)
+end
+redis.call('HSET', KEYS[1], 'tokens', tokens, 'ts', now)
+redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate))
+return { allowed, math.floor(tokens), retry }
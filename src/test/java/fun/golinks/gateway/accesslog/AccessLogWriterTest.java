@@ -0,0 +1,71 @@
+package fun.golinks.gateway.accesslog;
+
+import fun.golinks.gateway.ip.ClientIpResolver;
+import fun.golinks.gateway.properties.AccessLogProperties;
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class AccessLogWriterTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testWriteJsonLines() throws IOException, InterruptedException {
+        AccessLogProperties accessLogProperties = new AccessLogProperties();
+        File file = new File(tempDir, "access.log");
+        accessLogProperties.setPath(file.getPath());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AccessLogWriter accessLogWriter = new AccessLogWriter(accessLogProperties,
+                new ClientIpResolver(new IpBlockingProperties()), meterRegistry);
+        accessLogWriter.afterPropertiesSet();
+
+        MockServerWebExchange exchange = MockServerWebExchange
+                .from(MockServerHttpRequest.post("/sample/\"quoted\"").header("X-Forwarded-For", "10.0.0.1"));
+        exchange.getResponse().setStatusCode(HttpStatus.CREATED);
+        accessLogWriter.log(exchange, "trace-1", System.nanoTime(), 42L);
+        accessLogWriter.destroy();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        Assertions.assertEquals(1, lines.size());
+        String line = lines.get(0);
+        Assertions.assertTrue(line.contains("\"traceId\":\"trace-1\""), line);
+        Assertions.assertTrue(line.contains("\"method\":\"POST\""), line);
+        Assertions.assertTrue(line.contains("\"path\":\"/sample/%22quoted%22\""), line);
+        Assertions.assertTrue(line.contains("\"status\":201"), line);
+        Assertions.assertTrue(line.contains("\"bytes\":42"), line);
+        Assertions.assertTrue(line.contains("\"clientIp\":\"10.0.0.1\""), line);
+        Assertions.assertEquals(1.0, meterRegistry.get("gateway.access_log.records").tag("result", "written")
+                .functionCounter().count());
+    }
+
+    @Test
+    public void testRingBufferFull() {
+        AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(4);
+        for (int i = 0; i < ringBuffer.capacity(); i++) {
+            long index = ringBuffer.claim();
+            Assertions.assertEquals(i, index);
+            ringBuffer.get(index).setStatus(200 + i);
+            ringBuffer.publish(index);
+        }
+        Assertions.assertEquals(-1, ringBuffer.claim());
+        int[] statuses = new int[ringBuffer.capacity()];
+        int[] count = new int[1];
+        Assertions.assertEquals(ringBuffer.capacity(),
+                ringBuffer.drain(record -> statuses[count[0]++] = record.getStatus(), Integer.MAX_VALUE));
+        Assertions.assertArrayEquals(new int[] { 200, 201, 202, 203 }, statuses);
+        Assertions.assertEquals(ringBuffer.capacity(), ringBuffer.claim());
+    }
+}
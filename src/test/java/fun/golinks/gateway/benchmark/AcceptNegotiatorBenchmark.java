@@ -0,0 +1,79 @@
+package fun.golinks.gateway.benchmark;
+
+import fun.golinks.gateway.util.WebUtils;
+import fun.golinks.gateway.web.AcceptNegotiator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 错误响应的 Accept 协商基准测试：快速路径、缓存命中，以及作为对照的完整解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AcceptNegotiatorBenchmark {
+
+    private static final String BROWSER_ACCEPT = "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,"
+            + "image/webp,image/apng,*/*;q=0.8,application/signed-exchange;v=b3;q=0.7";
+    /**
+     * 不在快速路径上，第一次解析后命中缓存
+     */
+    private static final String XHR_ACCEPT = "application/json, text/plain, */*";
+
+    private MockServerWebExchange browserExchange;
+    private MockServerWebExchange apiExchange;
+    private MockServerWebExchange xhrExchange;
+
+    @Setup
+    public void setup() {
+        browserExchange = MockServerWebExchange
+                .from(MockServerHttpRequest.get("/").header(HttpHeaders.ACCEPT, BROWSER_ACCEPT));
+        apiExchange = MockServerWebExchange
+                .from(MockServerHttpRequest.get("/").header(HttpHeaders.ACCEPT, "application/json"));
+        xhrExchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").header(HttpHeaders.ACCEPT, XHR_ACCEPT));
+    }
+
+    @Benchmark
+    public boolean acceptsHtmlBrowser() {
+        return WebUtils.acceptsHtml(browserExchange);
+    }
+
+    @Benchmark
+    public boolean acceptsHtmlApi() {
+        return WebUtils.acceptsHtml(apiExchange);
+    }
+
+    @Benchmark
+    public boolean acceptsHtmlCached() {
+        return WebUtils.acceptsHtml(xhrExchange);
+    }
+
+    @Benchmark
+    public boolean acceptsHtmlParsed() {
+        return AcceptNegotiator.parse(XHR_ACCEPT);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AcceptNegotiatorBenchmark.class.getSimpleName()).addProfiler("gc")
+                .build()).run();
+    }
+}
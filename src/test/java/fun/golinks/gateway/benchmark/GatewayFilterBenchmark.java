@@ -0,0 +1,245 @@
+package fun.golinks.gateway.benchmark;
+
+import com.github.microwww.redis.RedisServer;
+import fun.golinks.gateway.accesslog.AccessLogWriter;
+import fun.golinks.gateway.filter.IpBlockingFilter;
+import fun.golinks.gateway.filter.JwtAuthenticationFilter;
+import fun.golinks.gateway.filter.NotFoundPageFilter;
+import fun.golinks.gateway.filter.TraceIdGlobalFilter;
+import fun.golinks.gateway.ip.BatchedIpRequestCounter;
+import fun.golinks.gateway.ip.ClientIpResolver;
+import fun.golinks.gateway.ip.IpBanCache;
+import fun.golinks.gateway.ip.IpBlocklist;
+import fun.golinks.gateway.ip.IpRequestCounter;
+import fun.golinks.gateway.ip.RedisIpRequestCounter;
+import fun.golinks.gateway.jwt.JwtTokenCache;
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.properties.AccessLogProperties;
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import fun.golinks.gateway.properties.JwtProperties;
+import fun.golinks.gateway.ratelimit.RateLimitPolicyRepository;
+import fun.golinks.gateway.route.IndexedRoutePredicateHandlerMapping;
+import fun.golinks.gateway.util.LuaRedis;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.adapter.DefaultServerWebExchange;
+import org.springframework.web.server.i18n.AcceptHeaderLocaleContextResolver;
+import org.springframework.web.server.i18n.LocaleContextResolver;
+import org.springframework.web.server.session.DefaultWebSessionManager;
+import org.springframework.web.server.session.WebSessionManager;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局过滤器基准测试，每次调用都会新建一个 {@link ServerWebExchange}，其开销可参考 {@link #baseline()}。
+ * <p>
+ * Redis 默认使用内嵌的 microwww redis-server 代替。IP 计数使用线上的 {@link RedisIpRequestCounter} 和 {@link BatchedIpRequestCounter}，内嵌服务不支持 Lua 脚本，
+ * 计数脚本改由进程内的 {@link LuaRedis} 执行，不包含网络往返；指定 {@code -Dbenchmark.redis=host:port} 时全部使用真实的 Redis。运行期间日志级别调为 WARN，访问日志写入临时目录。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GatewayFilterBenchmark {
+
+    private static final GatewayFilterChain CHAIN = exchange -> Mono.empty();
+    private static final GatewayFilterChain NOT_FOUND_CHAIN = exchange -> {
+        exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+        return Mono.empty();
+    };
+    private static final ServerCodecConfigurer CODEC_CONFIGURER = ServerCodecConfigurer.create();
+    private static final WebSessionManager SESSION_MANAGER = new DefaultWebSessionManager();
+    private static final LocaleContextResolver LOCALE_CONTEXT_RESOLVER = new AcceptHeaderLocaleContextResolver();
+    private static final String BANNED_IP = "10.0.0.1";
+
+    private final AccessLogProperties accessLogProperties = new AccessLogProperties();
+    private final ClientIpResolver clientIpResolver = new ClientIpResolver(new IpBlockingProperties());
+    private final AccessLogWriter accessLogWriter = new AccessLogWriter(accessLogProperties, clientIpResolver,
+            new SimpleMeterRegistry());
+    private JwtAuthenticationFilter jwtAuthenticationFilter;
+    private TraceIdGlobalFilter traceIdGlobalFilter;
+    private NotFoundPageFilter notFoundPageFilter;
+    private IpBlockingFilter ipBlockingFilter;
+    private IpBlockingFilter batchedIpBlockingFilter;
+    private BatchedIpRequestCounter batchedIpRequestCounter;
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private String token;
+    private long ipSequence;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        accessLogProperties.setPath(System.getProperty("java.io.tmpdir") + "/infra-gateway-benchmark/access.log");
+        accessLogWriter.afterPropertiesSet();
+
+        JwtProperties jwtProperties = new JwtProperties();
+        JwtTokenCache jwtTokenCache = new JwtTokenCache(jwtProperties, new SimpleMeterRegistry());
+        token = jwtProperties.generatorToken("benchmark", Collections.singletonMap("role", "admin"),
+                TimeUnit.DAYS.toMillis(1));
+
+        String redisAddress = System.getProperty("benchmark.redis");
+        String host = "127.0.0.1";
+        int port;
+        if (redisAddress == null || redisAddress.isEmpty()) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            redisServer = new RedisServer();
+            redisServer.listener(host, port);
+        } else {
+            host = redisAddress.substring(0, redisAddress.lastIndexOf(':'));
+            port = Integer.parseInt(redisAddress.substring(redisAddress.lastIndexOf(':') + 1));
+        }
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        connectionFactory.afterPropertiesSet();
+        ReactiveRedisTemplate<String, String> redisTemplate = new ReactiveRedisTemplate<>(connectionFactory,
+                RedisSerializationContext.string());
+        ReactiveRedisTemplate<String, String> scriptRedisTemplate = redisServer == null ? redisTemplate
+                : new LuaRedis().template();
+        IpBlockingProperties ipBlockingProperties = new IpBlockingProperties();
+        ipBlockingProperties.setMaxRequestCount(Long.MAX_VALUE);
+        IpBanCache ipBanCache = new IpBanCache(redisTemplate, ipBlockingProperties);
+        ipBanCache.ban(BANNED_IP, Duration.ofDays(1)).block();
+        IpRequestCounter ipRequestCounter = new RedisIpRequestCounter(scriptRedisTemplate, ipBanCache,
+                ipBlockingProperties);
+        // 使用真实的黑名单和限流策略（空），避免 Mockito 的调用开销计入被测路径
+        IpBlocklist ipBlocklist = new IpBlocklist(null);
+        GatewayMetrics gatewayMetrics = new GatewayMetrics(new SimpleMeterRegistry(), ipBanCache, ipBlocklist,
+                new RateLimitPolicyRepository(null),
+                new StaticListableBeanFactory().getBeanProvider(IndexedRoutePredicateHandlerMapping.class));
+        traceIdGlobalFilter = new TraceIdGlobalFilter(accessLogWriter, gatewayMetrics);
+        notFoundPageFilter = new NotFoundPageFilter(gatewayMetrics);
+        jwtAuthenticationFilter = new JwtAuthenticationFilter(jwtTokenCache, gatewayMetrics);
+        ipBlockingFilter = new IpBlockingFilter(clientIpResolver, ipBlocklist, ipBanCache, ipRequestCounter,
+                gatewayMetrics);
+        batchedIpRequestCounter = new BatchedIpRequestCounter(scriptRedisTemplate, ipBanCache, ipBlockingProperties);
+        batchedIpRequestCounter.afterPropertiesSet();
+        batchedIpBlockingFilter = new IpBlockingFilter(clientIpResolver, ipBlocklist, ipBanCache,
+                batchedIpRequestCounter, gatewayMetrics);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        batchedIpRequestCounter.destroy();
+        accessLogWriter.destroy();
+        connectionFactory.destroy();
+        if (redisServer != null) {
+            redisServer.close();
+        }
+    }
+
+    /**
+     * {@link MockServerWebExchange} 每次都会新建 {@link ServerCodecConfigurer}，开销远大于被测过滤器，这里复用这些组件
+     */
+    private static ServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> builder) {
+        return new DefaultServerWebExchange(builder.header(HttpHeaders.ACCEPT, "application/json").build(),
+                new MockServerHttpResponse(), SESSION_MANAGER, CODEC_CONFIGURER, LOCALE_CONTEXT_RESOLVER);
+    }
+
+    @Benchmark
+    public ServerWebExchange baseline() {
+        return exchange(MockServerHttpRequest.get("/sample/users?page=1&size=20"));
+    }
+
+    @Benchmark
+    public void traceId() {
+        traceIdGlobalFilter.filter(exchange(MockServerHttpRequest.get("/sample/users?page=1&size=20")), CHAIN)
+                .block();
+    }
+
+    @Benchmark
+    public void jwtWithoutToken() {
+        jwtAuthenticationFilter.filter(exchange(MockServerHttpRequest.get("/sample/users")), CHAIN).block();
+    }
+
+    @Benchmark
+    public void jwtCachedToken() {
+        jwtAuthenticationFilter.filter(
+                exchange(MockServerHttpRequest.get("/sample/users").header(HttpHeaders.AUTHORIZATION,
+                        "Bearer " + token)),
+                CHAIN).block();
+    }
+
+    @Benchmark
+    public void jwtInvalidToken() {
+        jwtAuthenticationFilter.filter(exchange(
+                MockServerHttpRequest.get("/sample/users").header(HttpHeaders.AUTHORIZATION, "Bearer invalid")),
+                CHAIN).block();
+    }
+
+    @Benchmark
+    public void ipBlockingBanned() {
+        ipBlockingFilter.filter(
+                exchange(MockServerHttpRequest.get("/sample/users").header("X-Forwarded-For", BANNED_IP)), CHAIN)
+                .block();
+    }
+
+    /**
+     * 轮换 IP，避免所有请求集中在同一个计数 key 上
+     */
+    private String nextIp() {
+        return "10.1." + ((ipSequence >> 8) & 0xff) + "." + (ipSequence++ & 0xff);
+    }
+
+    @Benchmark
+    public void ipBlockingCounted() {
+        ipBlockingFilter.filter(
+                exchange(MockServerHttpRequest.get("/sample/users").header("X-Forwarded-For", nextIp())), CHAIN)
+                .block();
+    }
+
+    @Benchmark
+    public void ipBlockingCountedBatched() {
+        batchedIpBlockingFilter.filter(
+                exchange(MockServerHttpRequest.get("/sample/users").header("X-Forwarded-For", nextIp())), CHAIN)
+                .block();
+    }
+
+    @Benchmark
+    public void notFoundPage() {
+        notFoundPageFilter.filter(exchange(MockServerHttpRequest.get("/missing")), NOT_FOUND_CHAIN).block();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GatewayFilterBenchmark.class.getSimpleName()).addProfiler("gc")
+                .build()).run();
+    }
+}
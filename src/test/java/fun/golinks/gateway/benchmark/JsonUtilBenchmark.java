@@ -0,0 +1,123 @@
+package fun.golinks.gateway.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import fun.golinks.gateway.util.ConfigUtil;
+import fun.golinks.gateway.util.JsonUtil;
+import fun.golinks.gateway.util.YamlUtil;
+import fun.golinks.gateway.vo.ErrorResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonUtil / YamlUtil 基准测试，legacy 开头的方法是改造前每次调用新建 ObjectMapper 的实现
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonUtilBenchmark {
+
+    private static final int ROUTE_COUNT = 50;
+
+    private final ErrorResult errorResult = new ErrorResult(403, "Access Denied");
+    private String jsonRoutes;
+    private String yamlRoutes;
+
+    @Setup
+    public void setup() {
+        StringBuilder json = new StringBuilder("[");
+        StringBuilder yaml = new StringBuilder();
+        for (int i = 0; i < ROUTE_COUNT; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"route-").append(i).append("\",\"uri\":\"lb://service-").append(i)
+                    .append("\",\"predicates\":[\"Path=/service-").append(i)
+                    .append("/**\"],\"filters\":[\"StripPrefix=1\"]}");
+            yaml.append("- id: route-").append(i).append("\n  uri: lb://service-").append(i)
+                    .append("\n  predicates:\n  - Path=/service-").append(i)
+                    .append("/**\n  filters:\n  - StripPrefix=1\n");
+        }
+        jsonRoutes = json.append(']').toString();
+        yamlRoutes = yaml.toString();
+    }
+
+    @Benchmark
+    public String legacyToJson() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsString(errorResult);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtil.toJson(errorResult);
+    }
+
+    @Benchmark
+    public List<RouteDefinition> legacyParseJsonRoutes() throws JsonProcessingException {
+        return legacyParseRoutes(jsonRoutes);
+    }
+
+    @Benchmark
+    public List<RouteDefinition> parseJsonRoutes() {
+        return ConfigUtil.toArray(jsonRoutes, RouteDefinition.class);
+    }
+
+    @Benchmark
+    public List<RouteDefinition> legacyParseYamlRoutes() throws JsonProcessingException {
+        return legacyParseRoutes(yamlRoutes);
+    }
+
+    @Benchmark
+    public List<RouteDefinition> parseYamlRoutes() {
+        return ConfigUtil.toArray(yamlRoutes, RouteDefinition.class);
+    }
+
+    @Benchmark
+    public boolean isJson() {
+        return JsonUtil.isJson(jsonRoutes);
+    }
+
+    @Benchmark
+    public boolean isYaml() {
+        return YamlUtil.isYaml(yamlRoutes);
+    }
+
+    /**
+     * 改造前 NacosConfig 的解析方式：先完整解析一遍判断是否为 JSON，再用新的 ObjectMapper 解析第二遍
+     */
+    private static List<RouteDefinition> legacyParseRoutes(String content) throws JsonProcessingException {
+        boolean json;
+        try {
+            new ObjectMapper().readTree(content);
+            json = true;
+        } catch (JsonProcessingException e) {
+            json = false;
+        }
+        ObjectMapper objectMapper = json ? new ObjectMapper() : new ObjectMapper(new YAMLFactory());
+        return objectMapper.readValue(content,
+                objectMapper.getTypeFactory().constructCollectionType(List.class, RouteDefinition.class));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonUtilBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package fun.golinks.gateway.benchmark;
+
+import fun.golinks.gateway.ip.ClientIpResolver;
+import fun.golinks.gateway.ip.IpAddress;
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import fun.golinks.gateway.properties.JwtProperties;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClientIpResolver 与 JwtProperties.parseToken 基准测试，请求在 setup 中创建并复用；Accept 协商见 AcceptNegotiatorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebUtilsBenchmark {
+
+    private final JwtProperties jwtProperties = new JwtProperties();
+    private final ClientIpResolver clientIpResolver = new ClientIpResolver(new IpBlockingProperties());
+    private MockServerWebExchange forwardedExchange;
+    private MockServerWebExchange remoteExchange;
+    private MockServerWebExchange rfc7239Exchange;
+    private String token;
+
+    @Setup
+    public void setup() {
+        forwardedExchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .remoteAddress(new InetSocketAddress("10.0.0.4", 52311))
+                .header("X-Forwarded-For", "198.51.100.1, 203.0.113.7, 10.0.0.2, 10.0.0.3"));
+        remoteExchange = MockServerWebExchange
+                .from(MockServerHttpRequest.get("/").remoteAddress(new InetSocketAddress("198.51.100.9", 52311)));
+        rfc7239Exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .remoteAddress(new InetSocketAddress("10.0.0.4", 52311))
+                .header("Forwarded", "for=\"[2001:db8:cafe::17]:4711\";proto=https, for=10.0.0.2;by=10.0.0.3"));
+        token = jwtProperties.generatorToken("benchmark", Collections.singletonMap("role", "admin"),
+                TimeUnit.DAYS.toMillis(1));
+    }
+
+    /**
+     * 不经过 exchange 属性缓存，测量完整的解析开销
+     */
+    @Benchmark
+    public IpAddress clientIpForwarded() {
+        return clientIpResolver.resolve(forwardedExchange.getRequest());
+    }
+
+    @Benchmark
+    public IpAddress clientIpRfc7239() {
+        return clientIpResolver.resolve(rfc7239Exchange.getRequest());
+    }
+
+    @Benchmark
+    public IpAddress clientIpRemoteAddress() {
+        return clientIpResolver.resolve(remoteExchange.getRequest());
+    }
+
+    @Benchmark
+    public Claims parseToken() {
+        return jwtProperties.parseToken(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WebUtilsBenchmark.class.getSimpleName()).addProfiler("gc").build())
+                .run();
+    }
+}
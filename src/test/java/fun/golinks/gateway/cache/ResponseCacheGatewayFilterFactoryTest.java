@@ -0,0 +1,247 @@
+package fun.golinks.gateway.cache;
+
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.properties.ResponseCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.Connection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResponseCacheGatewayFilterFactoryTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private ResponseCache responseCache;
+    private GatewayFilter filter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        responseCache = new ResponseCache(new ResponseCacheProperties(), Mockito.mock(ReactiveRedisTemplate.class),
+                Mockito.mock(GatewayMetrics.class), new SimpleMeterRegistry());
+        filter = new ResponseCacheGatewayFilterFactory(responseCache)
+                .apply(new ResponseCacheGatewayFilterFactory.Config());
+    }
+
+    private GatewayFilterChain upstream(String body, String... headers) {
+        return exchange -> {
+            upstreamCalls.incrementAndGet();
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.OK);
+            for (int i = 0; i < headers.length; i += 2) {
+                response.getHeaders().add(headers[i], headers[i + 1]);
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            response.getHeaders().setContentLength(bytes.length);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(bytes)));
+        };
+    }
+
+    private MockServerWebExchange get(MockServerHttpRequest.BaseBuilder<?> request, GatewayFilterChain chain) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    @Test
+    public void testHitAndNotModified() {
+        GatewayFilterChain chain = upstream("hello", HttpHeaders.CONTENT_TYPE, "text/plain");
+        MockServerWebExchange miss = get(MockServerHttpRequest.get("/sample/users?page=1"), chain);
+        Assertions.assertEquals("hello", miss.getResponse().getBodyAsString().block());
+        Assertions.assertEquals("MISS", miss.getResponse().getHeaders().getFirst(ResponseCache.CACHE_STATUS_HEADER));
+
+        MockServerWebExchange hit = get(MockServerHttpRequest.get("/sample/users?page=1"), chain);
+        Assertions.assertEquals(1, upstreamCalls.get());
+        Assertions.assertEquals("hello", hit.getResponse().getBodyAsString().block());
+        Assertions.assertEquals("HIT", hit.getResponse().getHeaders().getFirst(ResponseCache.CACHE_STATUS_HEADER));
+        Assertions.assertEquals("text/plain", hit.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        String etag = hit.getResponse().getHeaders().getETag();
+        Assertions.assertNotNull(etag);
+
+        MockServerWebExchange notModified = get(
+                MockServerHttpRequest.get("/sample/users?page=1").header(HttpHeaders.IF_NONE_MATCH, etag), chain);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, notModified.getResponse().getStatusCode());
+        Assertions.assertEquals(1, upstreamCalls.get());
+
+        get(MockServerHttpRequest.get("/sample/users?page=2"), chain);
+        Assertions.assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    public void testUncacheableResponse() {
+        GatewayFilterChain chain = upstream("hello", HttpHeaders.SET_COOKIE, "session=1");
+        get(MockServerHttpRequest.get("/sample/users"), chain);
+        get(MockServerHttpRequest.get("/sample/users"), chain);
+        Assertions.assertEquals(2, upstreamCalls.get());
+
+        GatewayFilterChain noStore = upstream("hello", HttpHeaders.CACHE_CONTROL, "no-store");
+        get(MockServerHttpRequest.get("/sample/orders"), noStore);
+        get(MockServerHttpRequest.get("/sample/orders"), noStore);
+        Assertions.assertEquals(4, upstreamCalls.get());
+
+        get(MockServerHttpRequest.get("/sample/private").header(HttpHeaders.AUTHORIZATION, "Bearer token"),
+                upstream("hello"));
+        get(MockServerHttpRequest.get("/sample/private").header(HttpHeaders.AUTHORIZATION, "Bearer token"),
+                upstream("hello"));
+        Assertions.assertEquals(6, upstreamCalls.get());
+    }
+
+    @Test
+    public void testCoalesceConcurrentMisses() {
+        Sinks.Empty<Void> release = Sinks.empty();
+        GatewayFilterChain upstream = upstream("hello");
+        GatewayFilterChain slow = exchange -> release.asMono().then(upstream.filter(exchange));
+
+        MockServerWebExchange leader = MockServerWebExchange.from(MockServerHttpRequest.get("/sample/hot"));
+        MockServerWebExchange follower = MockServerWebExchange.from(MockServerHttpRequest.get("/sample/hot"));
+        Mono<Void> leaderResult = filter.filter(leader, slow).cache();
+        Mono<Void> followerResult = filter.filter(follower, slow).cache();
+        leaderResult.subscribe();
+        followerResult.subscribe();
+        release.tryEmitEmpty();
+        leaderResult.block();
+        followerResult.block();
+
+        Assertions.assertEquals(1, upstreamCalls.get());
+        Assertions.assertEquals("hello", follower.getResponse().getBodyAsString().block());
+        Assertions.assertEquals("COALESCED",
+                follower.getResponse().getHeaders().getFirst(ResponseCache.CACHE_STATUS_HEADER));
+    }
+
+    /**
+     * 模拟 NettyRoutingFilter：设置响应头，把上游连接放进 exchange 属性，由 NettyWriteResponseFilter 写出响应体
+     */
+    private GlobalFilter routing(String body) {
+        return new RoutingFilter(body);
+    }
+
+    private class RoutingFilter implements GlobalFilter, Ordered {
+
+        private final String body;
+
+        private RoutingFilter(String body) {
+            this.body = body;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            upstreamCalls.incrementAndGet();
+            Connection connection = Mockito.mock(Connection.class, Mockito.RETURNS_DEEP_STUBS);
+            Mockito.when(connection.inbound().receive()).thenReturn(ByteBufFlux.fromString(Mono.just(body)));
+            exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR, connection);
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            exchange.getResponse().getHeaders().setContentLength(body.length());
+            return chain.filter(exchange);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+
+    @Test
+    public void testThroughFilteringWebHandler() {
+        Route route = Route.async().id("sample").uri("http://localhost").predicate(exchange -> true)
+                .filter(filter).build();
+        FilteringWebHandler handler = new FilteringWebHandler(
+                Arrays.asList(new NettyWriteResponseFilter(Collections.emptyList()), routing("hello")));
+        MockServerWebExchange miss = MockServerWebExchange.from(MockServerHttpRequest.get("/sample/users"));
+        miss.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        handler.handle(miss).block();
+        Assertions.assertEquals("hello", miss.getResponse().getBodyAsString().block());
+
+        MockServerWebExchange hit = MockServerWebExchange.from(MockServerHttpRequest.get("/sample/users"));
+        hit.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        handler.handle(hit).block();
+        Assertions.assertEquals(1, upstreamCalls.get());
+        Assertions.assertEquals("hello", hit.getResponse().getBodyAsString().block());
+        Assertions.assertEquals("HIT", hit.getResponse().getHeaders().getFirst(ResponseCache.CACHE_STATUS_HEADER));
+    }
+
+    @Test
+    public void testRevalidateInBackground() {
+        ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config();
+        config.setTtl(Duration.ofMillis(1));
+        config.setStaleWhileRevalidate(Duration.ofMinutes(1));
+        Route route = Route.async().id("sample").uri("http://localhost").predicate(exchange -> true)
+                .filter(new ResponseCacheGatewayFilterFactory(responseCache).apply(config)).build();
+        FilteringWebHandler first = new FilteringWebHandler(
+                Arrays.asList(new NettyWriteResponseFilter(Collections.emptyList()), routing("v1")));
+        MockServerWebExchange miss = MockServerWebExchange.from(MockServerHttpRequest.get("/sample/users"));
+        miss.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        first.handle(miss).block();
+
+        FilteringWebHandler second = new FilteringWebHandler(
+                Arrays.asList(new NettyWriteResponseFilter(Collections.emptyList()), routing("v2")));
+        MockServerWebExchange stale = MockServerWebExchange.from(MockServerHttpRequest.get("/sample/users"));
+        stale.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        sleep(5);
+        second.handle(stale).block();
+        Assertions.assertEquals("v1", stale.getResponse().getBodyAsString().block());
+        Assertions.assertEquals("STALE", stale.getResponse().getHeaders().getFirst(ResponseCache.CACHE_STATUS_HEADER));
+        // 后台路由写入的上游连接不出现在前台请求中
+        Assertions.assertNull(stale.getAttribute(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR));
+        Assertions.assertEquals(2, upstreamCalls.get());
+
+        MockServerWebExchange refreshed = MockServerWebExchange.from(MockServerHttpRequest.get("/sample/users"));
+        refreshed.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        second.handle(refreshed).block();
+        Assertions.assertEquals("v2", refreshed.getResponse().getBodyAsString().block());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testEncodeAndDecode() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+        headers.add(HttpHeaders.SET_COOKIE, "session=1");
+        ByteBuffer body = ByteBuffer.allocateDirect(2);
+        body.put(new byte[] { '{', '}' });
+        body.flip();
+        CachedResponse response = CachedResponse.of(200, headers, body, System.currentTimeMillis(), 60_000L, 0L);
+        Assertions.assertNull(response.getHeaders().getFirst(HttpHeaders.SET_COOKIE));
+        Assertions.assertTrue(response.matches(response.getEtag()));
+
+        CachedResponse decoded = CachedResponse.decode(response.encode());
+        Assertions.assertNotNull(decoded);
+        Assertions.assertEquals(response.getEtag(), decoded.getEtag());
+        Assertions.assertEquals("application/json", decoded.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        Assertions.assertEquals(response.getBody(), decoded.getBody());
+        Assertions.assertTrue(decoded.getBody().isDirect());
+        Assertions.assertNull(CachedResponse.decode("not base64"));
+    }
+}
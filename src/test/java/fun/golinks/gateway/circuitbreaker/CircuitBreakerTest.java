@@ -0,0 +1,57 @@
+package fun.golinks.gateway.circuitbreaker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreakerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(50, 4, 10 * SECOND, 30 * SECOND, 2);
+
+    @Test
+    public void testOpenOnFailureRate() {
+        long now = 0;
+        circuitBreaker.onSuccess(now);
+        circuitBreaker.onFailure(now);
+        circuitBreaker.onSuccess(now);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.onFailure(now);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assertions.assertFalse(circuitBreaker.tryAcquire(now + SECOND));
+    }
+
+    @Test
+    public void testForgetOldCalls() {
+        circuitBreaker.onFailure(0);
+        circuitBreaker.onFailure(0);
+        circuitBreaker.onFailure(0);
+        // 窗口之外的失败不再计入
+        circuitBreaker.onFailure(20 * SECOND);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testHalfOpen() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onFailure(0);
+        }
+        long now = 31 * SECOND;
+        Assertions.assertTrue(circuitBreaker.tryAcquire(now));
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        Assertions.assertTrue(circuitBreaker.tryAcquire(now));
+        Assertions.assertFalse(circuitBreaker.tryAcquire(now));
+        circuitBreaker.onFailure(now);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        now += 31 * SECOND;
+        Assertions.assertTrue(circuitBreaker.tryAcquire(now));
+        Assertions.assertTrue(circuitBreaker.tryAcquire(now));
+        circuitBreaker.onSuccess(now);
+        circuitBreaker.onSuccess(now);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assertions.assertTrue(circuitBreaker.tryAcquire(now));
+    }
+}
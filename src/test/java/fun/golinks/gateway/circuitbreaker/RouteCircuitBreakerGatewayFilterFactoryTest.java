@@ -0,0 +1,59 @@
+package fun.golinks.gateway.circuitbreaker;
+
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+public class RouteCircuitBreakerGatewayFilterFactoryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RouteCircuitBreakerGatewayFilterFactory factory = new RouteCircuitBreakerGatewayFilterFactory(
+            Mockito.mock(GatewayMetrics.class), meterRegistry);
+
+    private static RouteCircuitBreakerGatewayFilterFactory.Config config(String routeId) {
+        RouteCircuitBreakerGatewayFilterFactory.Config config = new RouteCircuitBreakerGatewayFilterFactory.Config();
+        config.setRouteId(routeId);
+        return config;
+    }
+
+    private static Route route(String id) {
+        return Route.async().id(id).uri("lb://" + id).predicate(exchange -> true).build();
+    }
+
+    private int gauges() {
+        return meterRegistry.find("gateway.circuit_breaker.state").gauges().size();
+    }
+
+    @Test
+    public void testRemoveOnRefresh() {
+        factory.apply(config("order"));
+        factory.apply(config("user"));
+        // 配置变化时重建断路器，沿用原来的指标
+        RouteCircuitBreakerGatewayFilterFactory.Config changed = config("user");
+        changed.setOpenDuration(Duration.ofSeconds(10));
+        factory.apply(changed);
+        Assertions.assertEquals(2, gauges());
+
+        RouteLocator routeLocator = () -> Flux.just(route("order"), route("pay"));
+        // 刷新失败时不做清理
+        factory.onApplicationEvent(new RefreshRoutesResultEvent(routeLocator, new IllegalStateException()));
+        Assertions.assertEquals(2, gauges());
+
+        factory.onApplicationEvent(new RefreshRoutesResultEvent(routeLocator));
+        Assertions.assertEquals(1, gauges());
+        Assertions.assertNotNull(meterRegistry.find("gateway.circuit_breaker.state").tag("route", "order").gauge());
+        Assertions.assertNull(meterRegistry.find("gateway.circuit_breaker.state").tag("route", "user").gauge());
+
+        // 路由重新加入后重新注册
+        factory.apply(config("user"));
+        Assertions.assertEquals(2, gauges());
+    }
+}
@@ -0,0 +1,77 @@
+package fun.golinks.gateway.concurrency;
+
+import fun.golinks.gateway.properties.ConcurrencyLimitProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveLimitTest {
+
+    private static AdaptiveLimit newLimit(int initialLimit) {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setInitialLimit(initialLimit);
+        properties.setMinLimit(1);
+        properties.setMaxLimit(50);
+        // 每个样本都单独作为一个窗口
+        properties.setWindow(Duration.ZERO);
+        properties.setMinWindowSamples(1);
+        return new AdaptiveLimit(properties);
+    }
+
+    /**
+     * 占满当前上限，然后以给定的 RTT 全部返回
+     */
+    private static void saturate(AdaptiveLimit limit, long rttMillis) {
+        int acquired = 0;
+        while (limit.tryAcquire() > 0) {
+            acquired++;
+        }
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(rttMillis);
+        for (int inflight = acquired; inflight > 0; inflight--) {
+            limit.onSuccess(start, inflight);
+        }
+    }
+
+    @Test
+    public void testRejectOverLimit() {
+        AdaptiveLimit limit = newLimit(3);
+        Assertions.assertEquals(1, limit.tryAcquire());
+        Assertions.assertEquals(2, limit.tryAcquire());
+        Assertions.assertEquals(3, limit.tryAcquire());
+        Assertions.assertEquals(-1, limit.tryAcquire());
+        limit.onIgnore();
+        Assertions.assertEquals(3, limit.tryAcquire());
+    }
+
+    @Test
+    public void testGrowWhileRttStable() {
+        AdaptiveLimit limit = newLimit(10);
+        for (int i = 0; i < 20; i++) {
+            saturate(limit, 10);
+        }
+        Assertions.assertTrue(limit.getLimit() > 10, "limit " + limit.getLimit());
+        Assertions.assertEquals(0, limit.getInflight());
+    }
+
+    @Test
+    public void testShrinkWhenRttGrows() {
+        AdaptiveLimit limit = newLimit(10);
+        for (int i = 0; i < 20; i++) {
+            saturate(limit, 10);
+        }
+        int learned = limit.getLimit();
+        saturate(limit, 100);
+        Assertions.assertTrue(limit.getLimit() < learned, learned + " -> " + limit.getLimit());
+    }
+
+    @Test
+    public void testHalveOnDrop() {
+        AdaptiveLimit limit = newLimit(40);
+        int inflight = limit.tryAcquire();
+        limit.onDropped(inflight);
+        Assertions.assertEquals(20, limit.getLimit());
+        Assertions.assertEquals(0, limit.getInflight());
+    }
+}
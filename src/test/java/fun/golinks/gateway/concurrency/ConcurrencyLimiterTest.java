@@ -0,0 +1,39 @@
+package fun.golinks.gateway.concurrency;
+
+import fun.golinks.gateway.properties.ConcurrencyLimitProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+    private final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(new ConcurrencyLimitProperties(),
+            meterRegistry, nanos::get);
+
+    private Collection<Gauge> inflight(String scope, String name) {
+        return meterRegistry.find("gateway.concurrency.inflight").tag("scope", scope).tag("name", name).gauges();
+    }
+
+    @Test
+    public void testReRegisterAfterIdle() {
+        ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire("order", "10.0.0.1:8080");
+        Assertions.assertEquals(1.0, inflight("route", "order").iterator().next().value());
+        permit.onSuccess();
+
+        // 空闲超时后重新出现的路由使用新的上限，指标指向新的上限
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        concurrencyLimiter.acquire("order", "10.0.0.1:8080");
+        concurrencyLimiter.acquire("order", null);
+        Collection<Gauge> gauges = inflight("route", "order");
+        Assertions.assertEquals(1, gauges.size());
+        Assertions.assertEquals(2.0, gauges.iterator().next().value());
+        Assertions.assertEquals(1.0, inflight("instance", "10.0.0.1:8080").iterator().next().value());
+    }
+}
@@ -0,0 +1,109 @@
+package fun.golinks.gateway.filter;
+
+import fun.golinks.gateway.ip.IpBanCache;
+import fun.golinks.gateway.ip.IpBlocklist;
+import fun.golinks.gateway.jwt.JwtTokenCache;
+import fun.golinks.gateway.metrics.GatewayMetrics;
+import fun.golinks.gateway.metrics.RejectReason;
+import fun.golinks.gateway.properties.JwtProperties;
+import fun.golinks.gateway.ratelimit.RateLimitPolicyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class JwtAuthenticationFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JwtProperties jwtProperties = new JwtProperties();
+    private final JwtAuthenticationFilter jwtAuthenticationFilter = new JwtAuthenticationFilter(
+            new JwtTokenCache(jwtProperties, meterRegistry), gatewayMetrics());
+    private final AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+
+    @SuppressWarnings("unchecked")
+    private GatewayMetrics gatewayMetrics() {
+        return new GatewayMetrics(meterRegistry, Mockito.mock(IpBanCache.class), Mockito.mock(IpBlocklist.class),
+                Mockito.mock(RateLimitPolicyRepository.class), Mockito.mock(ObjectProvider.class));
+    }
+
+    /**
+     * headers 为请求头名称和值交替排列
+     */
+    private MockServerWebExchange filter(String token, String... headers) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/sample/users");
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            request.header(headers[i], headers[i + 1]);
+        }
+        if (token != null) {
+            request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        jwtAuthenticationFilter.filter(exchange, e -> {
+            forwarded.set(e);
+            return Mono.empty();
+        }).block();
+        return exchange;
+    }
+
+    private double rejected(RejectReason reason) {
+        return meterRegistry.get("gateway.requests.rejected").tag("reason", reason.getTag())
+                .tag("route", GatewayMetrics.NO_ROUTE).counter().count();
+    }
+
+    @Test
+    public void testExpiredToken() {
+        String token = jwtProperties.generatorToken("xincao", Collections.emptyMap(), -TimeUnit.MINUTES.toMillis(1));
+        // 第二次从无效令牌缓存中取到同一个过期结果
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertEquals(HttpStatus.UNAUTHORIZED, filter(token).getResponse().getStatusCode());
+        }
+        Assertions.assertNull(forwarded.get());
+        Assertions.assertEquals(2.0, rejected(RejectReason.JWT_EXPIRED));
+        Assertions.assertEquals(0.0, rejected(RejectReason.JWT_INVALID));
+    }
+
+    @Test
+    public void testInvalidToken() {
+        Assertions.assertEquals(HttpStatus.UNAUTHORIZED, filter("invalid-token").getResponse().getStatusCode());
+        Assertions.assertNull(forwarded.get());
+        Assertions.assertEquals(1.0, rejected(RejectReason.JWT_INVALID));
+        Assertions.assertEquals(0.0, rejected(RejectReason.JWT_EXPIRED));
+    }
+
+    @Test
+    public void testReplaceClaimHeaders() {
+        jwtProperties.getClaimHeaders().put("sub", "X-User-Id");
+        jwtProperties.getClaimHeaders().put("tenant", "X-Tenant-Id");
+        String token = jwtProperties.generatorToken("xincao", Collections.emptyMap(), TimeUnit.DAYS.toMillis(1));
+        // 令牌中的值替换客户端发送的同名请求头，令牌中没有的 claim 对应的请求头也被删除
+        filter(token, "x-user-id", "admin", "X-Tenant-Id", "other", "X-Source", "app");
+        HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+        Assertions.assertEquals(Collections.singletonList("xincao"), headers.get("X-User-Id"));
+        Assertions.assertFalse(headers.containsKey("X-Tenant-Id"));
+        Assertions.assertEquals("app", headers.getFirst("X-Source"));
+    }
+
+    @Test
+    public void testStripClaimHeadersWithoutToken() {
+        jwtProperties.getClaimHeaders().put("sub", "X-User-Id");
+        filter(null, "X-User-Id", "admin", "X-Source", "app");
+        HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+        Assertions.assertFalse(headers.containsKey("X-User-Id"));
+        Assertions.assertEquals("app", headers.getFirst("X-Source"));
+
+        // 没有伪造的请求头时不修改请求
+        MockServerWebExchange exchange = filter(null, "X-Source", "app");
+        Assertions.assertSame(exchange, forwarded.get());
+    }
+}
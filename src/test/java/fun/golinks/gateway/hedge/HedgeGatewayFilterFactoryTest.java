@@ -0,0 +1,102 @@
+package fun.golinks.gateway.hedge;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgeGatewayFilterFactoryTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    private GatewayFilter filter(double budgetPercent) {
+        HedgeGatewayFilterFactory.Config config = new HedgeGatewayFilterFactory.Config();
+        config.setDelay(Duration.ofMillis(50));
+        config.setBudgetPercent(budgetPercent);
+        return new HedgeGatewayFilterFactory(new SimpleMeterRegistry()).apply(config);
+    }
+
+    /**
+     * 首次调用等待 first 之后才返回，之后的调用立即返回，响应体为调用序号
+     */
+    private GatewayFilterChain upstream(Mono<Void> first) {
+        return exchange -> {
+            int call = upstreamCalls.incrementAndGet();
+            return (call == 1 ? first : Mono.<Void>empty()).then(Mono.defer(() -> {
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.OK);
+                return response.writeWith(Mono.just(response.bufferFactory()
+                        .wrap(String.valueOf(call).getBytes(StandardCharsets.UTF_8))));
+            })).doOnCancel(cancelled::countDown);
+        };
+    }
+
+    private MockServerWebExchange run(GatewayFilter filter, GatewayFilterChain chain,
+            MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, chain).block(Duration.ofSeconds(5));
+        return exchange;
+    }
+
+    @Test
+    public void testHedgeWins() throws InterruptedException {
+        MockServerWebExchange exchange = run(filter(10), upstream(Mono.never()),
+                MockServerHttpRequest.get("/sample"));
+        Assertions.assertEquals(2, upstreamCalls.get());
+        Assertions.assertEquals("2", exchange.getResponse().getBodyAsString().block());
+        // 落选的首次调用被取消
+        Assertions.assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        Assertions.assertEquals("2", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    public void testRetryOnError() {
+        MockServerWebExchange exchange = run(filter(10),
+                upstream(Mono.error(new ConnectException("refused"))), MockServerHttpRequest.get("/sample"));
+        Assertions.assertEquals(2, upstreamCalls.get());
+        Assertions.assertEquals("2", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    public void testBudgetExhausted() {
+        MockServerWebExchange exchange = run(filter(0), upstream(Mono.delay(Duration.ofMillis(200)).then()),
+                MockServerHttpRequest.get("/sample"));
+        Assertions.assertEquals(1, upstreamCalls.get());
+        Assertions.assertEquals("1", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    public void testSkipNonIdempotentMethod() {
+        run(filter(10), upstream(Mono.delay(Duration.ofMillis(200)).then()), MockServerHttpRequest.post("/sample"));
+        Assertions.assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void testRetryBudget() {
+        RetryBudget budget = new RetryBudget(0.1, 2);
+        Assertions.assertTrue(budget.tryWithdraw());
+        Assertions.assertTrue(budget.tryWithdraw());
+        Assertions.assertFalse(budget.tryWithdraw());
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        Assertions.assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        Assertions.assertTrue(budget.tryWithdraw());
+    }
+}
@@ -0,0 +1,68 @@
+package fun.golinks.gateway.httpclient;
+
+import com.alibaba.cloud.nacos.NacosConfigManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.route.Route;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.Collections;
+
+public class UpstreamHttpClientsTest {
+
+    private static final String CONFIG = "- id: Sample\n" + "  maxConnections: 50\n" + "  responseTimeoutMillis: 3000\n"
+            + "- id: legacy.internal:8080\n" + "  protocols: [H2C]\n" + "- id: shared\n"
+            + "  pendingAcquireTimeoutMillis: 100\n";
+
+    private final UpstreamHttpClients upstreamHttpClients = new UpstreamHttpClients(
+            Mockito.mock(NacosConfigManager.class), new HttpClientProperties(), HttpClient.create(),
+            Mockito.mock(ReactiveDiscoveryClient.class), new SimpleMeterRegistry());
+
+    private static Route route(String uri, String httpClient) {
+        Route.AsyncBuilder builder = Route.async().id("route").uri(uri).predicate(exchange -> true);
+        if (httpClient != null) {
+            builder.metadata(Collections.singletonMap(UpstreamHttpClients.HTTP_CLIENT_METADATA, httpClient));
+        }
+        return builder.build();
+    }
+
+    private String resolve(String uri, String httpClient) {
+        return upstreamHttpClients.resolve(route(uri, httpClient)).getSettings().getId();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        upstreamHttpClients.destroy();
+    }
+
+    @Test
+    public void testResolve() {
+        Assertions.assertEquals("default", resolve("lb://sample", null));
+        upstreamHttpClients.update(CONFIG);
+        Assertions.assertEquals("Sample", resolve("lb://sample", null));
+        Assertions.assertEquals(Duration.ofSeconds(3),
+                upstreamHttpClients.resolve(route("lb://sample", null)).getResponseTimeout());
+        Assertions.assertEquals("legacy.internal:8080", resolve("http://legacy.internal:8080", null));
+        Assertions.assertEquals("shared", resolve("lb://other", "shared"));
+        Assertions.assertEquals("default", resolve("lb://other", null));
+    }
+
+    @Test
+    public void testKeepUnchangedClients() {
+        upstreamHttpClients.update(CONFIG);
+        UpstreamHttpClient sample = upstreamHttpClients.resolve(route("lb://sample", null));
+        UpstreamHttpClient shared = upstreamHttpClients.resolve(route("lb://other", "shared"));
+        upstreamHttpClients
+                .update(CONFIG.replace("pendingAcquireTimeoutMillis: 100", "pendingAcquireTimeoutMillis: 200"));
+        Assertions.assertSame(sample, upstreamHttpClients.resolve(route("lb://sample", null)));
+        Assertions.assertNotSame(shared, upstreamHttpClients.resolve(route("lb://other", "shared")));
+        upstreamHttpClients.update("");
+        Assertions.assertEquals("default", resolve("lb://sample", null));
+    }
+}
@@ -0,0 +1,118 @@
+package fun.golinks.gateway.ip;
+
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchedIpRequestCounterTest {
+
+    /**
+     * 模拟 Redis 中各 IP 的集群计数
+     */
+    private final Map<String, Long> clusterCounts = new HashMap<>();
+    private final AtomicInteger scriptCalls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final IpBlockingProperties ipBlockingProperties = new IpBlockingProperties();
+    private IpBanCache ipBanCache;
+    private BatchedIpRequestCounter counter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ReactiveRedisTemplate<String, String> redisTemplate = Mockito.mock(ReactiveRedisTemplate.class);
+        ReactiveValueOperations<String, String> valueOperations = Mockito.mock(ReactiveValueOperations.class);
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        Mockito.when(valueOperations.set(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                ArgumentMatchers.any(Duration.class))).thenReturn(Mono.just(true));
+        Mockito.when(redisTemplate.convertAndSend(ArgumentMatchers.anyString(), ArgumentMatchers.anyString()))
+                .thenReturn(Mono.just(1L));
+        Mockito.when(redisTemplate.execute(ArgumentMatchers.any(RedisScript.class), ArgumentMatchers.anyList(),
+                ArgumentMatchers.anyList())).thenAnswer(invocation -> {
+                    scriptCalls.incrementAndGet();
+                    if (failures.getAndDecrement() > 0) {
+                        return Flux.error(new IllegalStateException("connection reset"));
+                    }
+                    List<String> keys = invocation.getArgument(1);
+                    List<String> args = invocation.getArgument(2);
+                    List<Long> counts = new ArrayList<>();
+                    for (int i = 0; i < keys.size() / 2; i++) {
+                        String key = keys.get(2 * i);
+                        String ip = key.substring(IpRequestCounter.REQUEST_KEY_PREFIX.length(), key.lastIndexOf(':'));
+                        counts.add(clusterCounts.merge(ip, Long.parseLong(args.get(2 + i)), Long::sum));
+                    }
+                    return Flux.just(counts);
+                });
+        ipBlockingProperties.setMaxRequestCount(10);
+        ipBlockingProperties.setBatchTolerance(100);
+        ipBanCache = new IpBanCache(redisTemplate, ipBlockingProperties);
+        counter = new BatchedIpRequestCounter(redisTemplate, ipBanCache, ipBlockingProperties);
+    }
+
+    @Test
+    public void testFlushInBatches() {
+        for (int i = 0; i < BatchedIpRequestCounter.FLUSH_BATCH_SIZE + 1; i++) {
+            counter.increment("10.0." + (i / 256) + "." + (i % 256)).block();
+        }
+        counter.increment("10.0.0.0").block();
+        counter.flush().block();
+        // 501 个 IP 分两批，每批一次脚本调用
+        Assertions.assertEquals(2, scriptCalls.get());
+        Assertions.assertEquals(2L, clusterCounts.get("10.0.0.0"));
+        Assertions.assertEquals(1L, clusterCounts.get("10.0.1.244"));
+
+        // 没有新的增量时不访问 Redis
+        counter.flush().block();
+        Assertions.assertEquals(2, scriptCalls.get());
+    }
+
+    @Test
+    public void testMergeClusterCount() {
+        // 其他节点已经同步了 8 次请求
+        clusterCounts.put("10.0.0.1", 8L);
+        counter.increment("10.0.0.1").block();
+        counter.flush().block();
+        Assertions.assertFalse(ipBanCache.isBanned("10.0.0.1"));
+        // 读回的集群计数 9 加上本地未同步的 1 次达到阈值
+        Assertions.assertTrue(counter.increment("10.0.0.1").block());
+        Assertions.assertTrue(ipBanCache.isBanned("10.0.0.1"));
+    }
+
+    @Test
+    public void testBanAfterFlush() {
+        clusterCounts.put("10.0.0.1", 9L);
+        Assertions.assertFalse(counter.increment("10.0.0.1").block());
+        counter.flush().block();
+        Assertions.assertTrue(ipBanCache.isBanned("10.0.0.1"));
+    }
+
+    @Test
+    public void testRestoreDeltasOnFailure() {
+        for (int i = 0; i < 3; i++) {
+            counter.increment("10.0.0.1").block();
+        }
+        failures.set(1);
+        counter.flush().block();
+        Assertions.assertNull(clusterCounts.get("10.0.0.1"));
+
+        // 失败的增量并入下一轮
+        counter.increment("10.0.0.1").block();
+        counter.flush().block();
+        Assertions.assertEquals(2, scriptCalls.get());
+        Assertions.assertEquals(4L, clusterCounts.get("10.0.0.1"));
+    }
+}
@@ -0,0 +1,66 @@
+package fun.golinks.gateway.ip;
+
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.net.InetSocketAddress;
+
+public class ClientIpResolverTest {
+
+    private static final InetSocketAddress PROXY = new InetSocketAddress("10.0.0.4", 52311);
+
+    private final ClientIpResolver clientIpResolver = new ClientIpResolver(new IpBlockingProperties());
+
+    private String resolve(MockServerHttpRequest.BaseBuilder<?> builder) {
+        return clientIpResolver.getClientIp(MockServerWebExchange.from(builder));
+    }
+
+    @Test
+    public void testUntrustedRemoteAddress() {
+        // 直接连接的客户端伪造的转发头不被采用
+        Assertions.assertEquals("198.51.100.9", resolve(MockServerHttpRequest.get("/")
+                .remoteAddress(new InetSocketAddress("198.51.100.9", 52311)).header("X-Forwarded-For", "1.2.3.4")));
+    }
+
+    @Test
+    public void testForwardedFor() {
+        // 从右向左跳过可信代理，最左侧伪造的条目被忽略
+        Assertions.assertEquals("203.0.113.7", resolve(MockServerHttpRequest.get("/").remoteAddress(PROXY)
+                .header("X-Forwarded-For", "1.2.3.4, 203.0.113.7, 10.0.0.2")));
+        Assertions.assertEquals("203.0.113.7", resolve(MockServerHttpRequest.get("/").remoteAddress(PROXY)
+                .header("X-Forwarded-For", "1.2.3.4").header("X-Forwarded-For", "203.0.113.7:8080,10.0.0.2")));
+        // 无法解析的条目右侧最近的代理
+        Assertions.assertEquals("10.0.0.2", resolve(MockServerHttpRequest.get("/").remoteAddress(PROXY)
+                .header("X-Forwarded-For", "1.2.3.4, unknown, 10.0.0.2")));
+        // 整条链都是可信代理
+        Assertions.assertEquals("10.0.0.1", resolve(MockServerHttpRequest.get("/").remoteAddress(PROXY)
+                .header("X-Forwarded-For", "10.0.0.1, 10.0.0.2")));
+        Assertions.assertEquals("203.0.113.7",
+                resolve(MockServerHttpRequest.get("/").remoteAddress(PROXY).header("X-Real-IP", "203.0.113.7")));
+        Assertions.assertEquals("10.0.0.4", resolve(MockServerHttpRequest.get("/").remoteAddress(PROXY)));
+    }
+
+    @Test
+    public void testRfc7239() {
+        Assertions.assertEquals("2001:db8:cafe::17", resolve(MockServerHttpRequest.get("/").remoteAddress(PROXY)
+                .header("Forwarded", "for=1.2.3.4, For=\"[2001:db8:cafe::17]:4711\";proto=https, for=10.0.0.2")));
+        Assertions.assertEquals("203.0.113.7", resolve(MockServerHttpRequest.get("/").remoteAddress(PROXY)
+                .header("Forwarded", "proto=http;for=203.0.113.7:80").header("X-Forwarded-For", "1.2.3.4")));
+        Assertions.assertEquals("10.0.0.4", resolve(MockServerHttpRequest.get("/").remoteAddress(PROXY)
+                .header("Forwarded", "for=_hidden")));
+    }
+
+    @Test
+    public void testCachedInExchange() {
+        MockServerWebExchange exchange = MockServerWebExchange
+                .from(MockServerHttpRequest.get("/").header("X-Forwarded-For", "::FFFF:203.0.113.7"));
+        IpAddress address = clientIpResolver.getClientAddress(exchange);
+        Assertions.assertEquals("203.0.113.7", address.toString());
+        Assertions.assertSame(address, exchange.getAttribute(ClientIpResolver.CLIENT_ADDRESS_ATTR));
+        Assertions.assertSame(address, clientIpResolver.getClientAddress(exchange));
+        Assertions.assertEquals("", resolve(MockServerHttpRequest.get("/")));
+    }
+}
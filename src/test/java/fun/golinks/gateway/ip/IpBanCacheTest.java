@@ -0,0 +1,106 @@
+package fun.golinks.gateway.ip;
+
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.Topic;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+public class IpBanCacheTest {
+
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    private IpBanCache ipBanCache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = Mockito.mock(ReactiveRedisTemplate.class);
+        ReactiveValueOperations<String, String> valueOperations = Mockito.mock(ReactiveValueOperations.class);
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        Mockito.when(valueOperations.set(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                ArgumentMatchers.any(Duration.class))).thenReturn(Mono.just(true));
+        Mockito.when(redisTemplate.convertAndSend(ArgumentMatchers.anyString(), ArgumentMatchers.anyString()))
+                .thenReturn(Mono.just(1L));
+        IpBlockingProperties ipBlockingProperties = new IpBlockingProperties();
+        ipBlockingProperties.setBanCacheMaximumSize(2);
+        ipBanCache = new IpBanCache(redisTemplate, ipBlockingProperties);
+    }
+
+    @Test
+    public void testEvictEarliestExpiry() {
+        ipBanCache.ban("10.0.0.1", Duration.ofMinutes(1)).block();
+        ipBanCache.ban("10.0.0.2", Duration.ofMinutes(3)).block();
+        // 重新封禁时更新过期时间，不占用新的位置
+        ipBanCache.ban("10.0.0.1", Duration.ofMinutes(2)).block();
+        Assertions.assertEquals(2, ipBanCache.size());
+        Assertions.assertTrue(ipBanCache.isMirrorComplete());
+
+        ipBanCache.ban("10.0.0.3", Duration.ofMinutes(4)).block();
+        Assertions.assertEquals(2, ipBanCache.size());
+        Assertions.assertFalse(ipBanCache.isBanned("10.0.0.1"));
+        Assertions.assertTrue(ipBanCache.isBanned("10.0.0.2"));
+        Assertions.assertTrue(ipBanCache.isBanned("10.0.0.3"));
+        // 被淘汰的条目过期之前，未命中的地址需要查询 Redis
+        Assertions.assertFalse(ipBanCache.isMirrorComplete());
+        Mockito.when(redisTemplate.hasKey("banned:10.0.0.1")).thenReturn(Mono.just(true));
+        Assertions.assertTrue(ipBanCache.isBannedInRedis(IpAddress.parse("10.0.0.1")).block());
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testRescanAfterResubscribe() throws InterruptedException {
+        // 第一次订阅断开，重新订阅后扫描到断开期间的封禁
+        Mockito.when(redisTemplate.listenToLater(ArgumentMatchers.<Topic> any()))
+                .thenReturn((Mono) Mono.just(Flux.error(new IllegalStateException("disconnected"))))
+                .thenReturn((Mono) Mono.just(Flux.never()));
+        Mockito.when(redisTemplate.scan(ArgumentMatchers.any(ScanOptions.class))).thenReturn(Flux.empty())
+                .thenReturn(Flux.just("banned:10.0.0.9"));
+        Mockito.when(redisTemplate.getExpire("banned:10.0.0.9")).thenReturn(Mono.just(Duration.ofMinutes(1)));
+        ipBanCache.afterPropertiesSet();
+        try {
+            for (int i = 0; i < 50 && !ipBanCache.isBanned("10.0.0.9"); i++) {
+                Thread.sleep(100);
+            }
+            Assertions.assertTrue(ipBanCache.isBanned("10.0.0.9"));
+            Assertions.assertTrue(ipBanCache.isMirrorComplete());
+        } finally {
+            ipBanCache.destroy();
+        }
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testIgnoreMalformedMessage() throws InterruptedException {
+        Flux<ReactiveSubscription.Message<String, String>> messages = Flux
+                .<ReactiveSubscription.Message<String, String>> just(
+                        new ReactiveSubscription.ChannelMessage<>("ip-ban", "ban 10.0.0.7 abc"),
+                        new ReactiveSubscription.ChannelMessage<>("ip-ban", "ban 10.0.0.8 60000"))
+                .concatWith(Flux.never());
+        Mockito.when(redisTemplate.listenToLater(ArgumentMatchers.<Topic> any()))
+                .thenReturn((Mono) Mono.just(messages));
+        Mockito.when(redisTemplate.scan(ArgumentMatchers.any(ScanOptions.class))).thenReturn(Flux.empty());
+        ipBanCache.afterPropertiesSet();
+        try {
+            for (int i = 0; i < 50 && !ipBanCache.isBanned("10.0.0.8"); i++) {
+                Thread.sleep(100);
+            }
+            // 格式错误的消息被丢弃，订阅没有中断
+            Assertions.assertTrue(ipBanCache.isBanned("10.0.0.8"));
+            Assertions.assertFalse(ipBanCache.isBanned("10.0.0.7"));
+            Assertions.assertTrue(ipBanCache.isMirrorComplete());
+            Mockito.verify(redisTemplate).listenToLater(ArgumentMatchers.<Topic> any());
+        } finally {
+            ipBanCache.destroy();
+        }
+    }
+}
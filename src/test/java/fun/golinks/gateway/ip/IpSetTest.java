@@ -0,0 +1,82 @@
+package fun.golinks.gateway.ip;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class IpSetTest {
+
+    @Test
+    public void testParseAndFormat() {
+        Assertions.assertEquals("10.0.0.1", IpAddress.parse("10.0.0.1").toString());
+        Assertions.assertEquals("2001:db8::1", IpAddress.parse("2001:0DB8:0:0:0:0:0:1").toString());
+        Assertions.assertEquals("2001:db8:0:1:1:1:1:1", IpAddress.parse("2001:db8::1:1:1:1:1").toString());
+        Assertions.assertEquals("::", IpAddress.parse("::").toString());
+        Assertions.assertEquals("fe80::1", IpAddress.parse("fe80::1%eth0").toString());
+        // IPv4 映射的 IPv6 地址与 IPv4 地址相同
+        Assertions.assertEquals(IpAddress.parse("192.168.1.1"), IpAddress.parse("::ffff:192.168.1.1"));
+        Assertions.assertEquals("192.168.1.1", IpAddress.parse("::FFFF:c0a8:101").toString());
+        Assertions.assertNull(IpAddress.parse(""));
+        Assertions.assertNull(IpAddress.parse("unknown"));
+        Assertions.assertNull(IpAddress.parse("256.0.0.1"));
+        Assertions.assertNull(IpAddress.parse("010.0.0.1"));
+        Assertions.assertNull(IpAddress.parse("1.2.3"));
+        Assertions.assertNull(IpAddress.parse("1::2::3"));
+        Assertions.assertNull(IpAddress.parse("1:2:3:4:5:6:7:8:9"));
+        Assertions.assertEquals("10.0.0.0/8", Cidr.parse("10.0.0.0/8").toString());
+        Assertions.assertEquals("2001:db8::1", Cidr.parse("2001:db8::1/128").toString());
+        Assertions.assertNull(Cidr.parse("10.0.0.0/33"));
+        Assertions.assertNull(Cidr.parse("10.0.0.0/x"));
+    }
+
+    @Test
+    public void testContains() {
+        IpSet ipSet = IpSet.EMPTY.add(Cidr.parse("10.0.0.0/8")).add(Cidr.parse("192.168.1.1"))
+                .add(Cidr.parse("2001:db8::/32"));
+        Assertions.assertEquals(3, ipSet.size());
+        Assertions.assertTrue(ipSet.contains(IpAddress.parse("10.255.0.1")));
+        Assertions.assertFalse(ipSet.contains(IpAddress.parse("11.0.0.1")));
+        Assertions.assertTrue(ipSet.contains(IpAddress.parse("192.168.1.1")));
+        Assertions.assertFalse(ipSet.contains(IpAddress.parse("192.168.1.2")));
+        Assertions.assertTrue(ipSet.contains(IpAddress.parse("2001:db8:ffff::1")));
+        Assertions.assertFalse(ipSet.contains(IpAddress.parse("2001:db9::1")));
+        Assertions.assertTrue(ipSet.contains(IpAddress.parse("::ffff:10.1.2.3")));
+        Assertions.assertFalse(IpSet.EMPTY.contains(IpAddress.parse("10.0.0.1")));
+    }
+
+    @Test
+    public void testNestedAndRemove() {
+        IpSet original = IpSet.EMPTY.add(Cidr.parse("10.0.0.0/8")).add(Cidr.parse("10.1.0.0/16"))
+                .add(Cidr.parse("10.1.2.3"));
+        IpSet ipSet = original.remove(Cidr.parse("10.0.0.0/8"));
+        Assertions.assertEquals(2, ipSet.size());
+        Assertions.assertFalse(ipSet.contains(IpAddress.parse("10.2.0.1")));
+        Assertions.assertTrue(ipSet.contains(IpAddress.parse("10.1.0.1")));
+        ipSet = ipSet.remove(Cidr.parse("10.1.0.0/16"));
+        Assertions.assertFalse(ipSet.contains(IpAddress.parse("10.1.0.1")));
+        Assertions.assertTrue(ipSet.contains(IpAddress.parse("10.1.2.3")));
+        // 不存在的网段不影响集合
+        Assertions.assertSame(ipSet, ipSet.remove(Cidr.parse("10.1.2.0/24")));
+        // 修改不影响原集合
+        Assertions.assertEquals(3, original.size());
+        Assertions.assertTrue(original.contains(IpAddress.parse("10.2.0.1")));
+    }
+
+    @Test
+    public void testExpire() {
+        IpSet ipSet = IpSet.EMPTY.add(Cidr.parse("10.0.0.1"), 1000).add(Cidr.parse("10.0.0.0/24"), 2000)
+                .add(Cidr.parse("10.0.0.2"), 500);
+        IpAddress address = IpAddress.parse("10.0.0.1");
+        Assertions.assertTrue(ipSet.contains(address, 999));
+        // 自身过期后仍被未过期的网段覆盖
+        Assertions.assertTrue(ipSet.contains(address, 1500));
+        Assertions.assertFalse(ipSet.contains(address, 2000));
+        // 重复加入时更新过期时间
+        ipSet = ipSet.add(Cidr.parse("10.0.0.1"), 3000);
+        Assertions.assertEquals(3, ipSet.size());
+        Assertions.assertTrue(ipSet.contains(address, 2500));
+        IpSet retained = ipSet.retain(expireAt -> expireAt > 1000);
+        Assertions.assertEquals(2, retained.size());
+        Assertions.assertSame(retained, retained.remove(Cidr.parse("10.0.0.2")));
+        Assertions.assertTrue(retained.contains(address, 2500));
+    }
+}
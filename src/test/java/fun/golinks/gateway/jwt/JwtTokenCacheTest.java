@@ -0,0 +1,70 @@
+package fun.golinks.gateway.jwt;
+
+import fun.golinks.gateway.properties.JwtProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class JwtTokenCacheTest {
+
+    private final JwtProperties jwtProperties = new JwtProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JwtTokenCache jwtTokenCache = new JwtTokenCache(jwtProperties, meterRegistry);
+
+    @Test
+    public void testCachedToken() {
+        String token = jwtProperties.generatorToken("xincao", Collections.singletonMap("role", "admin"),
+                TimeUnit.DAYS.toMillis(1));
+        VerifiedToken first = jwtTokenCache.get(token);
+        VerifiedToken second = jwtTokenCache.get(token);
+        Assertions.assertTrue(first.isValid());
+        Assertions.assertEquals("xincao", first.getClaims().getSubject());
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "jwt.token").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    public void testClaimHeaders() {
+        jwtProperties.getClaimHeaders().put("sub", "X-User-Id");
+        jwtProperties.getClaimHeaders().put("role", "X-User-Role");
+        jwtProperties.setMaxClaimHeaderLength(8);
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("role", "admin");
+        claims.put("profile", "ignored");
+        String token = jwtProperties.generatorToken("a-very-long-subject", claims, TimeUnit.DAYS.toMillis(1));
+        HttpHeaders headers = jwtTokenCache.get(token).getHeaders();
+        Assertions.assertEquals("admin", headers.getFirst("X-User-Role"));
+        Assertions.assertFalse(headers.containsKey("X-User-Id"));
+        Assertions.assertFalse(headers.containsKey("profile"));
+    }
+
+    @Test
+    public void testInvalidToken() {
+        VerifiedToken verifiedToken = jwtTokenCache.get("invalid-token");
+        Assertions.assertFalse(verifiedToken.isValid());
+        Assertions.assertSame(verifiedToken, jwtTokenCache.get("invalid-token"));
+        // 无效令牌不进入已验证令牌缓存
+        Assertions.assertEquals(0.0, meterRegistry.get("cache.size").tag("cache", "jwt.token").gauge().value());
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "jwt.invalid_token")
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    public void testExpiredToken() {
+        String token = jwtProperties.generatorToken("xincao", Collections.emptyMap(), -TimeUnit.MINUTES.toMillis(1));
+        VerifiedToken verifiedToken = jwtTokenCache.get(token);
+        // 过期令牌能解密，但不进入已验证令牌缓存
+        Assertions.assertTrue(verifiedToken.isValid());
+        Assertions.assertTrue(verifiedToken.isExpired(System.currentTimeMillis()));
+        Assertions.assertSame(verifiedToken, jwtTokenCache.get(token));
+        Assertions.assertEquals(0.0, meterRegistry.get("cache.size").tag("cache", "jwt.token").gauge().value());
+        Assertions.assertTrue(jwtProperties.isInvalid(token));
+    }
+}
@@ -0,0 +1,144 @@
+package fun.golinks.gateway.loadbalancer;
+
+import fun.golinks.gateway.properties.LoadBalancingProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import reactor.util.context.Context;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class PeakEwmaLoadBalancerTest {
+
+    private final UpstreamStats upstreamStats = new UpstreamStats(new LoadBalancingProperties());
+
+    @SuppressWarnings("unchecked")
+    private final PeakEwmaLoadBalancer loadBalancer = new PeakEwmaLoadBalancer(Mockito.mock(ObjectProvider.class),
+            "sample", upstreamStats);
+
+    private static ServiceInstance instance(String host, String weight) {
+        return new DefaultServiceInstance(host, "sample", host, 8080, false,
+                weight == null ? Collections.emptyMap() : Collections.singletonMap("nacos.weight", weight));
+    }
+
+    private void record(ServiceInstance instance, long rttMillis) {
+        InstanceStats instanceStats = upstreamStats.get(instance);
+        instanceStats.start();
+        instanceStats.complete(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+    }
+
+    private Map<String, Integer> choose(List<ServiceInstance> instances, int times) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < times; i++) {
+            counts.merge(loadBalancer.choose(instances).getServer().getHost(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    public void testAvoidSlowInstance() {
+        List<ServiceInstance> instances = Arrays.asList(instance("a", null), instance("b", null),
+                instance("slow", null));
+        loadBalancer.choose(instances);
+        record(instances.get(0), 10);
+        record(instances.get(1), 10);
+        record(instances.get(2), 500);
+        Map<String, Integer> counts = choose(instances, 1000);
+        Assertions.assertNull(counts.get("slow"));
+        Assertions.assertEquals(1000, counts.get("a") + counts.get("b"));
+    }
+
+    @Test
+    public void testPreferLessOutstanding() {
+        List<ServiceInstance> instances = Arrays.asList(instance("a", null), instance("b", null));
+        loadBalancer.choose(instances);
+        record(instances.get(0), 10);
+        record(instances.get(1), 10);
+        for (int i = 0; i < 3; i++) {
+            upstreamStats.get(instances.get(0)).start();
+        }
+        Assertions.assertEquals("b", loadBalancer.choose(instances).getServer().getHost());
+    }
+
+    @Test
+    public void testWeightAndWarmup() {
+        List<ServiceInstance> instances = new ArrayList<>(Arrays.asList(instance("a", "1"), instance("zero", "0")));
+        loadBalancer.choose(instances);
+        Assertions.assertNull(choose(instances, 100).get("zero"));
+
+        // 之后新注册的实例需要预热，延迟相同时先分到较少的流量
+        List<ServiceInstance> scaled = Arrays.asList(instance("a", "1"), instance("new", "1"));
+        loadBalancer.choose(scaled);
+        record(scaled.get(0), 10);
+        record(scaled.get(1), 10);
+        Assertions.assertNull(choose(scaled, 100).get("new"));
+    }
+
+    @Test
+    public void testSkipEjectedInstance() {
+        List<ServiceInstance> instances = Arrays.asList(instance("a", null), instance("b", null),
+                instance("c", null));
+        loadBalancer.choose(instances);
+        Duration ejectionTime = Duration.ofMinutes(1);
+        Assertions.assertTrue(upstreamStats.eject(instances.get(0), ejectionTime, ejectionTime, 50));
+        // 再摘除一个就超过 50%
+        Assertions.assertFalse(upstreamStats.eject(instances.get(1), ejectionTime, ejectionTime, 50));
+        Map<String, Integer> counts = choose(instances, 100);
+        Assertions.assertNull(counts.get("a"));
+        Assertions.assertEquals(100, counts.get("b") + counts.get("c"));
+    }
+
+    @Test
+    public void testExcludeInstance() {
+        List<ServiceInstance> instances = Arrays.asList(instance("a", null), instance("b", null));
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals("b", loadBalancer.choose(instances, UpstreamStats.key(instances.get(0)))
+                    .getServer().getHost());
+        }
+        // 只剩一个实例时仍然选择它
+        Assertions.assertEquals("a", loadBalancer
+                .choose(Collections.singletonList(instances.get(0)), UpstreamStats.key(instances.get(0)))
+                .getServer().getHost());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExcludeInstanceFromContext() {
+        ServiceInstance a = instance("a", null);
+        ServiceInstance b = instance("b", null);
+        ObjectProvider<ServiceInstanceListSupplier> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getIfAvailable(Mockito.any())).thenReturn(ServiceInstanceListSuppliers.from("sample", a, b));
+        PeakEwmaLoadBalancer contextual = new PeakEwmaLoadBalancer(provider, "sample", upstreamStats);
+        // 客户端请求头不能影响选择，只认订阅上下文
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-Gateway-Excluded-Instance", UpstreamStats.key(a));
+        Request<RequestDataContext> request = new DefaultRequest<>(new RequestDataContext(
+                new RequestData(HttpMethod.GET, URI.create("http://sample"), headers, null, null)));
+        for (int i = 0; i < 100; i++) {
+            Response<ServiceInstance> response = contextual.choose(request)
+                    .contextWrite(Context.of(PeakEwmaLoadBalancer.EXCLUDED_INSTANCE_KEY, UpstreamStats.key(b)))
+                    .block();
+            Assertions.assertEquals("a", response.getServer().getHost());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package fun.golinks.gateway.metrics;
+
+import fun.golinks.gateway.ip.IpBanCache;
+import fun.golinks.gateway.ip.IpBlocklist;
+import fun.golinks.gateway.ratelimit.RateLimitPolicyRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+public class GatewayMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final IpBanCache ipBanCache = Mockito.mock(IpBanCache.class);
+    private final GatewayMetrics gatewayMetrics = gatewayMetrics();
+
+    @SuppressWarnings("unchecked")
+    private GatewayMetrics gatewayMetrics() {
+        return new GatewayMetrics(meterRegistry, ipBanCache, Mockito.mock(IpBlocklist.class),
+                Mockito.mock(RateLimitPolicyRepository.class), Mockito.mock(ObjectProvider.class));
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/sample/users"));
+    }
+
+    private Timer timer(String filter) {
+        return meterRegistry.get("gateway.filter.duration").tag("filter", filter).timer();
+    }
+
+    private double rejected(RejectReason reason, String routeId) {
+        return meterRegistry.get("gateway.requests.rejected").tag("reason", reason.getTag()).tag("route", routeId)
+                .counter().count();
+    }
+
+    @Test
+    public void testFilterTimerExcludesDownstream() {
+        FilterTimer filterTimer = gatewayMetrics.filterTimer(GatewayMetrics.JWT_FILTER);
+        Assertions.assertSame(filterTimer, gatewayMetrics.filterTimer(GatewayMetrics.JWT_FILTER));
+        // 下游耗时 200ms，不计入过滤器自身的耗时
+        GatewayFilterChain slowChain = exchange -> Mono.delay(Duration.ofMillis(200)).then();
+        filterTimer.record(exchange(), slowChain, (exchange, chain) -> chain.filter(exchange)).block();
+        Timer timer = timer(GatewayMetrics.JWT_FILTER);
+        Assertions.assertEquals(1, timer.count());
+        Assertions.assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) < 200);
+    }
+
+    @Test
+    public void testFilterTimerUntilResponse() {
+        FilterTimer filterTimer = gatewayMetrics.filterTimer(GatewayMetrics.IP_BLOCKING_FILTER);
+        // 过滤器直接返回响应时统计到响应写完为止
+        filterTimer.record(exchange(), exchange -> Mono.empty(), (exchange, chain) -> Mono.fromRunnable(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })).block();
+        Timer timer = timer(GatewayMetrics.IP_BLOCKING_FILTER);
+        Assertions.assertEquals(1, timer.count());
+        Assertions.assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 100);
+
+        // 新的过滤器名称按需注册
+        gatewayMetrics.filterTimer("custom").record(exchange(), exchange -> Mono.empty(),
+                (exchange, chain) -> chain.filter(exchange)).block();
+        Assertions.assertEquals(1, timer("custom").count());
+    }
+
+    @Test
+    public void testReject() {
+        gatewayMetrics.reject(RejectReason.JWT_INVALID, exchange());
+        MockServerWebExchange exchange = exchange();
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR,
+                Route.async().id("sample-route").uri("lb://sample").predicate(e -> true).build());
+        gatewayMetrics.reject(RejectReason.JWT_INVALID, exchange);
+        gatewayMetrics.reject(RejectReason.JWT_INVALID, exchange);
+        Assertions.assertEquals(1.0, rejected(RejectReason.JWT_INVALID, GatewayMetrics.NO_ROUTE));
+        Assertions.assertEquals(2.0, rejected(RejectReason.JWT_INVALID, "sample-route"));
+        // 没有路由的计数器在启动时注册
+        Assertions.assertEquals(0.0, rejected(RejectReason.IP_BANNED, GatewayMetrics.NO_ROUTE));
+    }
+
+    @Test
+    public void testRedisErrorsAndGauges() {
+        gatewayMetrics.redisError(GatewayMetrics.RATE_LIMIT_FILTER);
+        // 未知组件忽略
+        gatewayMetrics.redisError("unknown");
+        Assertions.assertEquals(1.0, meterRegistry.get("gateway.redis.errors")
+                .tag("component", GatewayMetrics.RATE_LIMIT_FILTER).counter().count());
+        Assertions.assertNull(meterRegistry.find("gateway.redis.errors").tag("component", "unknown").counter());
+
+        Mockito.when(ipBanCache.size()).thenReturn(3L);
+        Assertions.assertEquals(3.0, meterRegistry.get("gateway.ip_ban.cache.size").gauge().value());
+        Assertions.assertEquals(0.0, meterRegistry.get("gateway.ip_ban.mirror.complete").gauge().value());
+        Mockito.when(ipBanCache.isMirrorComplete()).thenReturn(true);
+        Assertions.assertEquals(1.0, meterRegistry.get("gateway.ip_ban.mirror.complete").gauge().value());
+        Assertions.assertEquals(0.0, meterRegistry.get("gateway.routes.index.size").gauge().value());
+    }
+}
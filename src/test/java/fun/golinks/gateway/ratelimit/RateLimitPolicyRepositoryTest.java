@@ -0,0 +1,89 @@
+package fun.golinks.gateway.ratelimit;
+
+import com.alibaba.cloud.nacos.NacosConfigManager;
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.config.listener.Listener;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+public class RateLimitPolicyRepositoryTest {
+
+    private static final String POLICIES = "- id: global-ip\n  limit: 100\n"
+            + "- id: sample-api-key\n  routeId: sample-route\n  keyType: API_KEY\n  algorithm: SLIDING_LOG\n"
+            + "  limit: 10\n  intervalSec: 60\n"
+            // 无效策略：limit 为 0、缺少 id
+            + "- id: invalid-limit\n  limit: 0\n- limit: 10\n";
+
+    private ConfigService configService;
+    private RateLimitPolicyRepository repository;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        configService = Mockito.mock(ConfigService.class);
+        NacosConfigManager nacosConfigManager = Mockito.mock(NacosConfigManager.class);
+        Mockito.when(nacosConfigManager.getConfigService()).thenReturn(configService);
+        Mockito.when(configService.getConfig(ArgumentMatchers.eq("gateway-rate-limits.yaml"),
+                ArgumentMatchers.eq("infra-gateway"), ArgumentMatchers.anyLong())).thenReturn(POLICIES);
+        repository = new RateLimitPolicyRepository(nacosConfigManager);
+        repository.afterPropertiesSet();
+    }
+
+    private static String ids(List<RateLimitPolicy> policies) {
+        StringBuilder ids = new StringBuilder();
+        for (RateLimitPolicy policy : policies) {
+            ids.append(ids.length() == 0 ? "" : ",").append(policy.getId());
+        }
+        return ids.toString();
+    }
+
+    private Listener listener() throws Exception {
+        ArgumentCaptor<Listener> listener = ArgumentCaptor.forClass(Listener.class);
+        Mockito.verify(configService).addListener(ArgumentMatchers.eq("gateway-rate-limits.yaml"),
+                ArgumentMatchers.eq("infra-gateway"), listener.capture());
+        return listener.getValue();
+    }
+
+    @Test
+    public void testLookup() {
+        Assertions.assertEquals(2, repository.size());
+        // 路由策略在前，全局策略同样生效
+        Assertions.assertEquals("sample-api-key,global-ip", ids(repository.getPolicies("sample-route")));
+        RateLimitPolicy policy = repository.getPolicies("sample-route").get(0);
+        Assertions.assertEquals(RateLimitKeyType.API_KEY, policy.getKeyType());
+        Assertions.assertEquals(RateLimitAlgorithm.SLIDING_LOG, policy.getAlgorithm());
+        Assertions.assertEquals(60_000L, policy.intervalMillis());
+        // 没有专属策略的路由和未匹配路由的请求只使用全局策略
+        Assertions.assertEquals("global-ip", ids(repository.getPolicies("other-route")));
+        Assertions.assertEquals("global-ip", ids(repository.getPolicies(null)));
+        // 默认值
+        RateLimitPolicy global = repository.getPolicies(null).get(0);
+        Assertions.assertEquals(RateLimitKeyType.IP, global.getKeyType());
+        Assertions.assertEquals(RateLimitAlgorithm.TOKEN_BUCKET, global.getAlgorithm());
+        Assertions.assertEquals(100L, global.capacity());
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        Listener listener = listener();
+        listener.receiveConfigInfo("[{\"id\": \"route-only\", \"routeId\": \"sample-route\", \"limit\": 5}]");
+        Assertions.assertEquals(1, repository.size());
+        Assertions.assertEquals("route-only", ids(repository.getPolicies("sample-route")));
+        Assertions.assertTrue(repository.getPolicies("other-route").isEmpty());
+
+        // 解析失败时保留原有策略
+        listener.receiveConfigInfo("- id: [broken");
+        Assertions.assertEquals(1, repository.size());
+        Assertions.assertEquals("route-only", ids(repository.getPolicies("sample-route")));
+
+        // 配置被清空时删除全部策略
+        listener.receiveConfigInfo("");
+        Assertions.assertEquals(0, repository.size());
+        Assertions.assertTrue(repository.getPolicies("sample-route").isEmpty());
+    }
+}
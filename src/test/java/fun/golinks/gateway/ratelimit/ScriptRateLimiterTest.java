@@ -0,0 +1,123 @@
+package fun.golinks.gateway.ratelimit;
+
+import fun.golinks.gateway.util.LuaRedis;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ScriptRateLimiterTest {
+
+    private final LuaRedis redis = new LuaRedis();
+    private final ScriptRateLimiter scriptRateLimiter = new ScriptRateLimiter(redis.template());
+
+    private static RateLimitPolicy policy(RateLimitAlgorithm algorithm, long limit, long intervalSec, long burst) {
+        RateLimitPolicy policy = new RateLimitPolicy();
+        policy.setId(algorithm.name().toLowerCase());
+        policy.setAlgorithm(algorithm);
+        policy.setLimit(limit);
+        policy.setIntervalSec(intervalSec);
+        policy.setBurst(burst);
+        return policy;
+    }
+
+    private RateLimitDecision acquire(RateLimitPolicy policy) {
+        return scriptRateLimiter.acquire(policy, "10.0.0.1").block();
+    }
+
+    private void assertAllowed(RateLimitPolicy policy, long remaining) {
+        RateLimitDecision decision = acquire(policy);
+        Assertions.assertTrue(decision.isAllowed());
+        Assertions.assertEquals(remaining, decision.getRemaining());
+    }
+
+    private void assertDenied(RateLimitPolicy policy, long retryAfterMillis) {
+        RateLimitDecision decision = acquire(policy);
+        Assertions.assertFalse(decision.isAllowed());
+        Assertions.assertEquals(retryAfterMillis, decision.getRetryAfterMillis());
+    }
+
+    @Test
+    public void testTokenBucket() {
+        // 每秒 10 个令牌，桶容量 5
+        RateLimitPolicy policy = policy(RateLimitAlgorithm.TOKEN_BUCKET, 10, 1, 5);
+        for (int i = 4; i >= 0; i--) {
+            assertAllowed(policy, i);
+        }
+        assertDenied(policy, 100);
+
+        // 100ms 补充一个令牌
+        redis.advance(99);
+        Assertions.assertFalse(acquire(policy).isAllowed());
+        redis.advance(1);
+        assertAllowed(policy, 0);
+        assertDenied(policy, 100);
+
+        // 长时间空闲后最多补满桶容量
+        redis.advance(10_000);
+        for (int i = 4; i >= 0; i--) {
+            assertAllowed(policy, i);
+        }
+        assertDenied(policy, 100);
+    }
+
+    @Test
+    public void testTokenBucketWithoutBurst() {
+        RateLimitPolicy policy = policy(RateLimitAlgorithm.TOKEN_BUCKET, 3, 1, 0);
+        for (int i = 2; i >= 0; i--) {
+            assertAllowed(policy, i);
+        }
+        assertDenied(policy, 334);
+    }
+
+    @Test
+    public void testGcra() {
+        // 每 100ms 放行一个请求，最多突发 2 个
+        RateLimitPolicy policy = policy(RateLimitAlgorithm.GCRA, 10, 1, 2);
+        assertAllowed(policy, 1);
+        assertAllowed(policy, 0);
+        assertDenied(policy, 100);
+
+        redis.advance(99);
+        assertDenied(policy, 1);
+        redis.advance(1);
+        assertAllowed(policy, 0);
+        assertDenied(policy, 100);
+
+        // 空闲之后突发额度恢复，但不会超过容量
+        redis.advance(10_000);
+        assertAllowed(policy, 1);
+        assertAllowed(policy, 0);
+        assertDenied(policy, 100);
+    }
+
+    @Test
+    public void testSlidingLog() {
+        // 任意 1 秒内最多 3 个请求
+        RateLimitPolicy policy = policy(RateLimitAlgorithm.SLIDING_LOG, 3, 1, 0);
+        assertAllowed(policy, 2);
+        redis.advance(400);
+        assertAllowed(policy, 1);
+        assertAllowed(policy, 0);
+        assertDenied(policy, 600);
+
+        // 第一个请求恰好滑出窗口时释放一个名额
+        redis.advance(599);
+        assertDenied(policy, 1);
+        redis.advance(1);
+        assertAllowed(policy, 0);
+        // 后两个请求仍在窗口内
+        assertDenied(policy, 400);
+    }
+
+    @Test
+    public void testSeparateKeys() {
+        RateLimitPolicy policy = policy(RateLimitAlgorithm.SLIDING_LOG, 1, 1, 0);
+        assertAllowed(policy, 0);
+        assertDenied(policy, 1000);
+        Assertions.assertTrue(scriptRateLimiter.acquire(policy, "10.0.0.2").block().isAllowed());
+
+        // 不同策略的状态互不影响
+        RateLimitPolicy other = policy(RateLimitAlgorithm.SLIDING_LOG, 1, 1, 0);
+        other.setId("other");
+        Assertions.assertTrue(scriptRateLimiter.acquire(other, "10.0.0.1").block().isAllowed());
+    }
+}
@@ -0,0 +1,148 @@
+package fun.golinks.gateway.route;
+
+import com.alibaba.cloud.nacos.NacosConfigManager;
+import com.alibaba.nacos.api.config.ConfigService;
+import fun.golinks.gateway.config.NacosConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.filter.FilterDefinition;
+import org.springframework.cloud.gateway.filter.factory.AddRequestHeaderGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class NacosRouteLocatorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NacosRouteLocator locator = locator();
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private NacosRouteLocator locator() {
+        ObjectProvider<List<RoutePredicateFactory>> predicates = Mockito.mock(ObjectProvider.class);
+        Mockito.when(predicates.getIfAvailable(ArgumentMatchers.any()))
+                .thenReturn(Collections.singletonList(new PathRoutePredicateFactory()));
+        ObjectProvider<List<GatewayFilterFactory>> filters = Mockito.mock(ObjectProvider.class);
+        Mockito.when(filters.getIfAvailable(ArgumentMatchers.any()))
+                .thenReturn(Collections.singletonList(new AddRequestHeaderGatewayFilterFactory()));
+        ConfigurationService configurationService = new ConfigurationService(new DefaultListableBeanFactory(),
+                DefaultFormattingConversionService::new, LocalValidatorFactoryBean::new);
+        return new NacosRouteLocator(predicates, filters, new GatewayProperties(), configurationService,
+                meterRegistry);
+    }
+
+    private static RouteDefinition definition(String id, String path) {
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId(id);
+        definition.setUri(URI.create("lb://" + id));
+        definition.getPredicates().add(new PredicateDefinition("Path=" + path));
+        return definition;
+    }
+
+    private Map<String, Route> routes() {
+        Map<String, Route> routes = new LinkedHashMap<>();
+        for (Route route : locator.getRoutes().collectList().block()) {
+            routes.put(route.getId(), route);
+        }
+        return routes;
+    }
+
+    private double changes(String type) {
+        return meterRegistry.get("gateway.routes.changes").tag("type", type).counter().count();
+    }
+
+    @Test
+    public void testDiff() {
+        RouteChanges changes = locator.update(Arrays.asList(definition("order", "/order/**"),
+                definition("user", "/user/**"), definition("pay", "/pay/**")));
+        Assertions.assertEquals(new RouteChanges(3, 0, 0), changes);
+        Map<String, Route> before = routes();
+        Assertions.assertEquals(Arrays.asList("order", "user", "pay"), Arrays.asList(before.keySet().toArray()));
+
+        // 相同内容的新对象不算变更
+        Assertions.assertTrue(locator.update(Arrays.asList(definition("order", "/order/**"),
+                definition("user", "/user/**"), definition("pay", "/pay/**"))).isEmpty());
+
+        RouteDefinition user = definition("user", "/user/**");
+        user.getFilters().add(new FilterDefinition("AddRequestHeader=X-Source, gateway"));
+        changes = locator
+                .update(Arrays.asList(definition("order", "/order/**"), user, definition("stock", "/stock/**")));
+        Assertions.assertEquals(new RouteChanges(1, 1, 1), changes);
+        Map<String, Route> after = routes();
+        Assertions.assertEquals(Arrays.asList("order", "user", "stock"), Arrays.asList(after.keySet().toArray()));
+        // 未变化的路由不重新编译
+        Assertions.assertSame(before.get("order"), after.get("order"));
+        Assertions.assertNotSame(before.get("user"), after.get("user"));
+        Assertions.assertEquals(1, after.get("user").getFilters().size());
+        Assertions.assertSame(user, locator.getRouteDefinition(after.get("user")));
+        // 被替换的旧路由不再属于当前快照
+        Assertions.assertNull(locator.getRouteDefinition(before.get("user")));
+        Assertions.assertNull(locator.getRouteDefinition(before.get("pay")));
+
+        Assertions.assertEquals(4.0, changes("added"));
+        Assertions.assertEquals(1.0, changes("updated"));
+        Assertions.assertEquals(1.0, changes("removed"));
+        Assertions.assertEquals(3.0, meterRegistry.get("gateway.routes.nacos").gauge().value());
+    }
+
+    @Test
+    public void testKeepPreviousVersionOnCompileFailure() {
+        locator.update(Collections.singletonList(definition("order", "/order/**")));
+        Route previous = routes().get("order");
+
+        RouteDefinition broken = definition("order", "/order/**");
+        broken.getPredicates().add(new PredicateDefinition("Unknown=1"));
+        RouteDefinition brokenNew = definition("user", "/user/**");
+        brokenNew.getFilters().add(new FilterDefinition("Unknown=1"));
+        locator.update(Arrays.asList(broken, brokenNew));
+        Map<String, Route> routes = routes();
+        Assertions.assertEquals(Collections.singleton("order"), routes.keySet());
+        Assertions.assertSame(previous, routes.get("order"));
+        Assertions.assertEquals(1, locator.getRouteDefinition(previous).getPredicates().size());
+    }
+
+    @Test
+    public void testEmptyRoutes() {
+        locator.update(Arrays.asList(definition("order", "/order/**"), definition("user", "/user/**")));
+        // 配置中的路由列表为空时删除全部路由
+        Assertions.assertEquals(new RouteChanges(0, 0, 2), locator.update(Collections.emptyList()));
+        Assertions.assertTrue(routes().isEmpty());
+        Assertions.assertTrue(locator.getRouteDefinitions().isEmpty());
+        // 没有路由时再次收到空列表不做任何事
+        Assertions.assertTrue(locator.update(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testBlankConfigKeepsRoutes() throws Exception {
+        locator.update(Collections.singletonList(definition("order", "/order/**")));
+        ConfigService configService = Mockito.mock(ConfigService.class);
+        Mockito.when(configService.getConfig(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                ArgumentMatchers.anyLong())).thenReturn("  ");
+        NacosConfigManager nacosConfigManager = Mockito.mock(NacosConfigManager.class);
+        Mockito.when(nacosConfigManager.getConfigService()).thenReturn(configService);
+        ApplicationEventPublisher publisher = Mockito.mock(ApplicationEventPublisher.class);
+        // Nacos 返回空配置（读取失败或配置被误删）时不清空路由，也不发布刷新事件
+        new NacosConfig(locator, publisher, nacosConfigManager).afterPropertiesSet();
+        Assertions.assertEquals(Collections.singleton("order"), routes().keySet());
+        Mockito.verifyNoInteractions(publisher);
+    }
+}
@@ -0,0 +1,132 @@
+package fun.golinks.gateway.route;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.AsyncPredicate;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class RouteIndexTest {
+
+    private final ConfigurationService configurationService = new ConfigurationService(
+            new DefaultListableBeanFactory(), DefaultFormattingConversionService::new, LocalValidatorFactoryBean::new);
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, RouteDefinition> definitions = new HashMap<>();
+
+    private void route(String id, String... predicates) {
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId(id);
+        definition.setUri(URI.create("lb://" + id));
+        for (String predicate : predicates) {
+            definition.getPredicates().add(new PredicateDefinition(predicate));
+        }
+        definitions.put(id, definition);
+        routes.add(Route.async().id(id).uri(definition.getUri()).asyncPredicate(AsyncPredicate.from(e -> true))
+                .build());
+    }
+
+    private List<String> candidates(MockServerHttpRequest request) {
+        RouteIndex index = RouteIndex.build(routes, route -> definitions.get(route.getId()), configurationService);
+        return index.candidates(request).stream().map(Route::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPathPrefix() {
+        route("order", "Path=/order/**");
+        route("order-detail", "Path=/order/detail/{id}");
+        route("user", "Path=/user/**,/account/**");
+        route("any", "Header=X-Request-Id");
+        route("regex", "Path=/{service}/api/**");
+        Assertions.assertEquals(Arrays.asList("order", "order-detail", "any", "regex"),
+                candidates(MockServerHttpRequest.get("/order/detail/1").build()));
+        Assertions.assertEquals(Arrays.asList("user", "any", "regex"),
+                candidates(MockServerHttpRequest.get("/account/1").build()));
+        Assertions.assertEquals(Arrays.asList("any", "regex"),
+                candidates(MockServerHttpRequest.get("/").build()));
+    }
+
+    private static boolean pathMatches(MockServerHttpRequest request, String pattern) {
+        PathRoutePredicateFactory.Config config = new PathRoutePredicateFactory.Config();
+        config.setPatterns(Collections.singletonList(pattern));
+        return new PathRoutePredicateFactory().apply(config).test(MockServerWebExchange.from(request));
+    }
+
+    @Test
+    public void testContextPath() {
+        route("order", "Path=/order/**");
+        route("api-order", "Path=/api/order/**");
+        MockServerHttpRequest request = MockServerHttpRequest.get("/api/order/1").contextPath("/api").build();
+        // 索引与 Path 断言使用同一个路径，配置 context path 时结果一致
+        Assertions.assertEquals(Collections.singletonList("api-order"), candidates(request));
+        Assertions.assertTrue(pathMatches(request, "/api/order/**"));
+        Assertions.assertFalse(pathMatches(request, "/order/**"));
+    }
+
+    @Test
+    public void testHostAndMethod() {
+        route("api", "Host=api.golinks.fun", "Path=/v1/**");
+        route("wildcard", "Host=**.golinks.fun", "Path=/v1/**");
+        route("post", "Method=POST", "Path=/v1/**");
+        Assertions.assertEquals(Arrays.asList("api", "wildcard"),
+                candidates(MockServerHttpRequest.get("/v1/users").header("Host", "api.golinks.fun").build()));
+        Assertions.assertEquals(Arrays.asList("wildcard", "post"),
+                candidates(MockServerHttpRequest.post("/v1/users").header("Host", "www.golinks.fun").build()));
+    }
+
+    @Test
+    public void testDropIndexOnRefresh() {
+        route("order", "Path=/order/**");
+        RouteLocator routeLocator = Mockito.mock(RouteLocator.class);
+        RouteDefinitionLocator routeDefinitionLocator = Mockito.mock(RouteDefinitionLocator.class);
+        Mockito.when(routeDefinitionLocator.getRouteDefinitions()).thenReturn(Flux.fromIterable(definitions.values()));
+        NacosRouteLocator nacosRouteLocator = Mockito.mock(NacosRouteLocator.class);
+        Mockito.when(nacosRouteLocator.getRouteDefinitions()).thenReturn(Collections.emptyMap());
+        IndexedRoutePredicateHandlerMapping mapping = new IndexedRoutePredicateHandlerMapping(
+                new FilteringWebHandler(Collections.emptyList()), routeLocator, new GlobalCorsProperties(),
+                new MockEnvironment(), routeDefinitionLocator, nacosRouteLocator, configurationService);
+
+        Mockito.when(routeLocator.getRoutes()).thenReturn(Flux.fromIterable(routes));
+        mapping.onApplicationEvent(new RefreshRoutesResultEvent(this));
+        Assertions.assertEquals(1, mapping.getIndexedRouteCount());
+
+        // 重建完成之前不再使用旧索引
+        Sinks.Many<Route> pending = Sinks.many().unicast().onBackpressureBuffer();
+        Mockito.when(routeLocator.getRoutes()).thenReturn(pending.asFlux());
+        mapping.onApplicationEvent(new RefreshRoutesResultEvent(this));
+        Assertions.assertEquals(0, mapping.getIndexedRouteCount());
+        routes.forEach(pending::tryEmitNext);
+        pending.tryEmitComplete();
+        Assertions.assertEquals(1, mapping.getIndexedRouteCount());
+
+        // 重建失败时不恢复旧索引
+        Mockito.when(routeLocator.getRoutes()).thenReturn(Flux.error(new IllegalStateException("broken")));
+        mapping.onApplicationEvent(new RefreshRoutesResultEvent(this));
+        Assertions.assertEquals(0, mapping.getIndexedRouteCount());
+    }
+}
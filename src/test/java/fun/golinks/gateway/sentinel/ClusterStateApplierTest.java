@@ -0,0 +1,41 @@
+package fun.golinks.gateway.sentinel;
+
+import com.alibaba.csp.sentinel.cluster.ClusterStateManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class ClusterStateApplierTest {
+
+    private static ClusterGroup group(String machineId, Integer port, String... clients) {
+        ClusterGroup group = new ClusterGroup();
+        group.setMachineId(machineId);
+        group.setIp("127.0.0.1");
+        group.setPort(port);
+        group.setClientSet(new HashSet<>(Arrays.asList(clients)));
+        return group;
+    }
+
+    private static int mode(List<ClusterGroup> groups, String machineId) {
+        return ClusterStateApplier.mode(ClusterStateApplier.find(groups, machineId), machineId);
+    }
+
+    @Test
+    public void testMode() {
+        List<ClusterGroup> groups = Arrays.asList(group("127.0.0.1@10100", 18730, "127.0.0.1@10101"),
+                group("127.0.0.1@10200", 18731, "127.0.0.1@10201"));
+        Assertions.assertEquals(ClusterStateManager.CLUSTER_SERVER, mode(groups, "127.0.0.1@10100"));
+        Assertions.assertEquals(ClusterStateManager.CLUSTER_CLIENT, mode(groups, "127.0.0.1@10101"));
+        Assertions.assertEquals(18731, ClusterStateApplier.find(groups, "127.0.0.1@10201").getPort());
+        // 不在分配中、分配为空或缺少端口时不参与集群流控
+        Assertions.assertEquals(ClusterStateManager.CLUSTER_NOT_STARTED, mode(groups, "127.0.0.1@10102"));
+        Assertions.assertEquals(ClusterStateManager.CLUSTER_NOT_STARTED, mode(null, "127.0.0.1@10100"));
+        Assertions.assertEquals(ClusterStateManager.CLUSTER_NOT_STARTED, mode(groups, null));
+        Assertions.assertEquals(ClusterStateManager.CLUSTER_NOT_STARTED,
+                mode(Collections.singletonList(group("127.0.0.1@10100", null)), "127.0.0.1@10100"));
+    }
+}
@@ -0,0 +1,85 @@
+package fun.golinks.gateway.sentinel;
+
+import com.alibaba.csp.sentinel.adapter.gateway.common.SentinelGatewayConstants;
+import com.alibaba.csp.sentinel.adapter.gateway.common.api.ApiDefinition;
+import com.alibaba.csp.sentinel.adapter.gateway.common.api.ApiPathPredicateItem;
+import fun.golinks.gateway.ip.ClientIpResolver;
+import fun.golinks.gateway.jwt.JwtTokenCache;
+import fun.golinks.gateway.properties.IpBlockingProperties;
+import fun.golinks.gateway.properties.JwtProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class GatewayRequestItemParserTest {
+
+    private final JwtProperties jwtProperties = jwtProperties();
+    private final GatewayRequestItemParser parser = new GatewayRequestItemParser(
+            new ClientIpResolver(new IpBlockingProperties()),
+            new JwtTokenCache(jwtProperties, new SimpleMeterRegistry()));
+
+    private static JwtProperties jwtProperties() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.getClaimHeaders().put("tenant", "X-Tenant-Id");
+        return jwtProperties;
+    }
+
+    @Test
+    public void testRemoteAddress() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .remoteAddress(new InetSocketAddress("10.0.0.4", 52311)).header("X-Forwarded-For", "203.0.113.7"));
+        Assertions.assertEquals("203.0.113.7", parser.getRemoteAddress(exchange));
+    }
+
+    @Test
+    public void testClaimHeader() {
+        String token = jwtProperties.generatorToken("user-1", Collections.singletonMap("tenant", "acme"),
+                TimeUnit.HOURS.toMillis(1));
+        MockServerWebExchange exchange = MockServerWebExchange
+                .from(MockServerHttpRequest.get("/").header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .header("X-Tenant-Id", "spoofed").header("X-Api-Key", "key-1"));
+        // 令牌中的 claim 优先于客户端发送的同名请求头
+        Assertions.assertEquals("acme", parser.getHeader(exchange, "X-Tenant-Id"));
+        Assertions.assertEquals("key-1", parser.getHeader(exchange, "X-Api-Key"));
+    }
+
+    @Test
+    public void testSpoofedClaimHeaderWithoutToken() {
+        // 没有有效令牌时不使用客户端发送的 claim 请求头
+        MockServerWebExchange exchange = MockServerWebExchange
+                .from(MockServerHttpRequest.get("/").header("x-tenant-id", "spoofed").header("X-Api-Key", "key-1"));
+        Assertions.assertNull(parser.getHeader(exchange, "X-Tenant-Id"));
+        Assertions.assertEquals("key-1", parser.getHeader(exchange, "X-Api-Key"));
+        exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer invalid").header("X-Tenant-Id", "spoofed"));
+        Assertions.assertNull(parser.getHeader(exchange, "X-Tenant-Id"));
+        // 令牌中没有这个 claim
+        String token = jwtProperties.generatorToken("user-1", Collections.emptyMap(), TimeUnit.HOURS.toMillis(1));
+        exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token).header("X-Tenant-Id", "spoofed"));
+        Assertions.assertNull(parser.getHeader(exchange, "X-Tenant-Id"));
+    }
+
+    @Test
+    public void testApiDefinitionConverter() {
+        Set<ApiDefinition> definitions = new ApiDefinitionConverter().convert(
+                "[{\"apiName\":\"sample-api\",\"predicateItems\":[{\"pattern\":\"/sample/**\",\"matchStrategy\":1},"
+                        + "{\"pattern\":\"/health\"}]}]");
+        Assertions.assertEquals(1, definitions.size());
+        ApiDefinition definition = definitions.iterator().next();
+        Assertions.assertEquals("sample-api", definition.getApiName());
+        Assertions.assertTrue(definition.getPredicateItems().contains(new ApiPathPredicateItem()
+                .setPattern("/sample/**").setMatchStrategy(SentinelGatewayConstants.URL_MATCH_STRATEGY_PREFIX)));
+        Assertions.assertTrue(definition.getPredicateItems().contains(new ApiPathPredicateItem().setPattern("/health")
+                .setMatchStrategy(SentinelGatewayConstants.URL_MATCH_STRATEGY_EXACT)));
+        Assertions.assertTrue(new ApiDefinitionConverter().convert("").isEmpty());
+    }
+}
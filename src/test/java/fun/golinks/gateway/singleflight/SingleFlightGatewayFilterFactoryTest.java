@@ -0,0 +1,202 @@
+package fun.golinks.gateway.singleflight;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.Connection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightGatewayFilterFactoryTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final Sinks.Empty<Void> release = Sinks.empty();
+
+    private GatewayFilter filter(int maxFollowers) {
+        return filter(maxFollowers, DataSize.ofMegabytes(1));
+    }
+
+    private GatewayFilter filter(int maxFollowers, DataSize maxBodySize) {
+        SingleFlightGatewayFilterFactory.Config config = new SingleFlightGatewayFilterFactory.Config();
+        config.setMaxFollowers(maxFollowers);
+        config.setMaxBodySize(maxBodySize);
+        return new SingleFlightGatewayFilterFactory(new SimpleMeterRegistry()).apply(config);
+    }
+
+    /**
+     * 等到 release 之后才返回的上游，响应体分两片写出
+     */
+    private GatewayFilterChain upstream(String... headers) {
+        return exchange -> {
+            upstreamCalls.incrementAndGet();
+            return release.asMono().then(Mono.defer(() -> {
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.OK);
+                for (int i = 0; i < headers.length; i += 2) {
+                    response.getHeaders().add(headers[i], headers[i + 1]);
+                }
+                Flux<DataBuffer> body = Flux.just("hel", "lo").map(
+                        chunk -> response.bufferFactory().wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+                return response.writeWith(body);
+            }));
+        };
+    }
+
+    private List<MockServerWebExchange> run(GatewayFilter filter, GatewayFilterChain chain, String... paths) {
+        List<MockServerWebExchange> exchanges = new ArrayList<>();
+        List<Mono<Void>> results = new ArrayList<>();
+        for (String path : paths) {
+            MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+            exchanges.add(exchange);
+            Mono<Void> result = filter.filter(exchange, chain).cache();
+            result.subscribe();
+            results.add(result);
+        }
+        release.tryEmitEmpty();
+        results.forEach(Mono::block);
+        return exchanges;
+    }
+
+    @Test
+    public void testShareUpstreamCall() {
+        List<MockServerWebExchange> exchanges = run(filter(64), upstream(HttpHeaders.CONTENT_TYPE, "text/plain"),
+                "/sample/hot?b=2&a=1", "/sample/hot?a=1&b=2", "/sample/hot?a=1&b=2", "/sample/cold");
+        Assertions.assertEquals(2, upstreamCalls.get());
+        for (MockServerWebExchange exchange : exchanges) {
+            Assertions.assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+            Assertions.assertEquals("hello", exchange.getResponse().getBodyAsString().block());
+            Assertions.assertEquals("text/plain",
+                    exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        }
+    }
+
+    /**
+     * 模拟 NettyRoutingFilter：等到 release 之后设置响应头，把上游连接放进 exchange 属性，由 NettyWriteResponseFilter 写出响应体
+     */
+    private class RoutingFilter implements GlobalFilter, Ordered {
+
+        private final boolean contentLength;
+
+        private RoutingFilter(boolean contentLength) {
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            upstreamCalls.incrementAndGet();
+            return release.asMono().then(Mono.defer(() -> {
+                Connection connection = Mockito.mock(Connection.class, Mockito.RETURNS_DEEP_STUBS);
+                Mockito.when(connection.inbound().receive())
+                        .thenReturn(ByteBufFlux.fromString(Flux.just("hel", "lo")));
+                exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR, connection);
+                exchange.getResponse().setStatusCode(HttpStatus.OK);
+                if (contentLength) {
+                    exchange.getResponse().getHeaders().setContentLength(5);
+                }
+                return chain.filter(exchange);
+            }));
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+
+    private List<MockServerWebExchange> handle(GatewayFilter filter, boolean contentLength, int count) {
+        Route route = Route.async().id("sample").uri("http://localhost").predicate(exchange -> true).filter(filter)
+                .build();
+        FilteringWebHandler handler = new FilteringWebHandler(
+                Arrays.asList(new NettyWriteResponseFilter(Collections.emptyList()), new RoutingFilter(contentLength)));
+        List<MockServerWebExchange> exchanges = new ArrayList<>();
+        List<Mono<Void>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/sample/hot"));
+            exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+            exchanges.add(exchange);
+            Mono<Void> result = handler.handle(exchange).cache();
+            result.subscribe();
+            results.add(result);
+        }
+        release.tryEmitEmpty();
+        results.forEach(Mono::block);
+        return exchanges;
+    }
+
+    @Test
+    public void testThroughFilteringWebHandler() {
+        for (MockServerWebExchange exchange : handle(filter(64), true, 3)) {
+            Assertions.assertEquals("hello", exchange.getResponse().getBodyAsString().block());
+        }
+        Assertions.assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void testThroughFilteringWebHandlerWithoutContentLength() {
+        // follower 收齐响应体后再写出
+        for (MockServerWebExchange exchange : handle(filter(64), false, 3)) {
+            Assertions.assertEquals("hello", exchange.getResponse().getBodyAsString().block());
+        }
+        Assertions.assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void testMaxBodySize() {
+        // Content-Length 超过上限时不共享
+        for (MockServerWebExchange exchange : handle(filter(64, DataSize.ofBytes(4)), true, 3)) {
+            Assertions.assertEquals("hello", exchange.getResponse().getBodyAsString().block());
+        }
+        Assertions.assertEquals(3, upstreamCalls.get());
+    }
+
+    @Test
+    public void testMaxBodySizeWithoutContentLength() {
+        // 收齐前超过上限，follower 各自访问上游
+        List<MockServerWebExchange> exchanges = run(filter(64, DataSize.ofBytes(4)), upstream(), "/sample/hot",
+                "/sample/hot", "/sample/hot");
+        Assertions.assertEquals(3, upstreamCalls.get());
+        for (MockServerWebExchange exchange : exchanges) {
+            Assertions.assertEquals("hello", exchange.getResponse().getBodyAsString().block());
+        }
+    }
+
+    @Test
+    public void testMaxFollowers() {
+        run(filter(1), upstream(), "/sample/hot", "/sample/hot", "/sample/hot");
+        Assertions.assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    public void testDoNotShareCookies() {
+        List<MockServerWebExchange> exchanges = run(filter(64), upstream(HttpHeaders.SET_COOKIE, "session=1"),
+                "/sample/hot", "/sample/hot");
+        Assertions.assertEquals(2, upstreamCalls.get());
+        Assertions.assertEquals("hello", exchanges.get(1).getResponse().getBodyAsString().block());
+    }
+}
@@ -0,0 +1,60 @@
+package fun.golinks.gateway.trace;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.http.HttpHeaders;
+import reactor.util.context.Context;
+
+public class TraceContextTest {
+
+    @Test
+    public void testContinueTraceparent() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(TraceContext.TRACEPARENT_HEADER, "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        TraceContext traceContext = TraceContext.from(headers);
+        Assertions.assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", traceContext.getTraceId());
+        Assertions.assertEquals("00f067aa0ba902b7", traceContext.getParentSpanId());
+        Assertions.assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-" + traceContext.getSpanId() + "-01",
+                traceContext.toTraceparent());
+    }
+
+    @Test
+    public void testGenerate() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(TraceContext.TRACEPARENT_HEADER, "00-00000000000000000000000000000000-00f067aa0ba902b7-01");
+        TraceContext traceContext = TraceContext.from(headers);
+        Assertions.assertTrue(traceContext.getTraceId().matches("[0-9a-f]{32}"));
+        Assertions.assertTrue(traceContext.getSpanId().matches("[0-9a-f]{16}"));
+        Assertions.assertNull(traceContext.getParentSpanId());
+        Assertions.assertTrue(TraceContext.isValidTraceparent(traceContext.toTraceparent()));
+    }
+
+    @Test
+    public void testRunWithMdc() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(TraceContext.TRACE_ID_HEADER, "legacy-trace-id");
+        TraceContext traceContext = TraceContext.from(headers);
+        Assertions.assertNull(traceContext.toTraceparent());
+        TraceContext.runWithMdc(Context.of(TraceContext.CONTEXT_KEY, traceContext),
+                () -> Assertions.assertEquals("legacy-trace-id", MDC.get(TraceContext.TRACE_ID_HEADER)));
+        Assertions.assertNull(MDC.get(TraceContext.TRACE_ID_HEADER));
+    }
+
+    @Test
+    public void testRestoreOuterMdc() {
+        TraceContext outer = TraceContext.from(new HttpHeaders());
+        TraceContext inner = TraceContext.from(new HttpHeaders());
+        outer.runWithMdc(() -> {
+            inner.runWithMdc(() -> {
+                Assertions.assertEquals(inner.getTraceId(), MDC.get(TraceContext.TRACE_ID_HEADER));
+                Assertions.assertEquals(inner.getSpanId(), MDC.get(TraceContext.SPAN_ID_HEADER));
+            });
+            // 嵌套调用结束后恢复外层的值，而不是直接删除
+            Assertions.assertEquals(outer.getTraceId(), MDC.get(TraceContext.TRACE_ID_HEADER));
+            Assertions.assertEquals(outer.getSpanId(), MDC.get(TraceContext.SPAN_ID_HEADER));
+        });
+        Assertions.assertNull(MDC.get(TraceContext.TRACE_ID_HEADER));
+        Assertions.assertNull(MDC.get(TraceContext.SPAN_ID_HEADER));
+    }
+}
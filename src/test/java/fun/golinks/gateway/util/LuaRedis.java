@@ -0,0 +1,252 @@
+package fun.golinks.gateway.util;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单元测试用的 Redis 替身：用 LuaJ 执行与线上相同的 Lua 脚本，只实现脚本中用到的命令，TIME 返回由测试控制的时间
+ */
+public class LuaRedis {
+
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<String, Map<String, String>> hashes = new HashMap<>();
+    private final Map<String, Map<String, Double>> sortedSets = new HashMap<>();
+    private final Map<String, Long> expireAts = new HashMap<>();
+    private long now = 1_700_000_000_000L;
+
+    public long now() {
+        return now;
+    }
+
+    public void advance(long millis) {
+        now += millis;
+    }
+
+    public synchronized String get(String key) {
+        expire(key);
+        return strings.get(key);
+    }
+
+    /**
+     * 脚本调用都交给当前实例执行的 {@link ReactiveRedisTemplate}
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public ReactiveRedisTemplate<String, String> template() {
+        ReactiveRedisTemplate<String, String> redisTemplate = Mockito.mock(ReactiveRedisTemplate.class);
+        Mockito.when(redisTemplate.execute(ArgumentMatchers.any(RedisScript.class), ArgumentMatchers.anyList(),
+                ArgumentMatchers.anyList())).thenAnswer(invocation -> {
+                    RedisScript<?> script = invocation.getArgument(0);
+                    return Flux.just(eval(script.getScriptAsString(), invocation.getArgument(1),
+                            invocation.getArgument(2)));
+                });
+        return redisTemplate;
+    }
+
+    /**
+     * 执行脚本，返回值按 Redis 的规则转换：数字截断为整数，表转换为列表
+     */
+    public synchronized Object eval(String script, List<String> keys, List<?> args) {
+        Globals globals = JsePlatform.standardGlobals();
+        globals.set("KEYS", table(keys));
+        globals.set("ARGV", table(args));
+        LuaTable redis = new LuaTable();
+        redis.set("call", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs varargs) {
+                List<String> command = new ArrayList<>();
+                for (int i = 1; i <= varargs.narg(); i++) {
+                    command.add(varargs.arg(i).tojstring());
+                }
+                return execute(command);
+            }
+        });
+        redis.set("replicate_commands", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs varargs) {
+                return LuaValue.TRUE;
+            }
+        });
+        globals.set("redis", redis);
+        return toReply(globals.load(script).call());
+    }
+
+    private static LuaTable table(List<?> values) {
+        LuaTable table = new LuaTable();
+        for (int i = 0; i < values.size(); i++) {
+            table.set(i + 1, LuaValue.valueOf(String.valueOf(values.get(i))));
+        }
+        return table;
+    }
+
+    private static Object toReply(LuaValue value) {
+        if (value.type() == LuaValue.TNUMBER) {
+            return (long) value.todouble();
+        }
+        if (value.istable()) {
+            List<Object> list = new ArrayList<>();
+            for (int i = 1; !value.get(i).isnil(); i++) {
+                list.add(toReply(value.get(i)));
+            }
+            return list;
+        }
+        if (value.isstring()) {
+            return value.tojstring();
+        }
+        return null;
+    }
+
+    private LuaValue execute(List<String> command) {
+        String name = command.get(0).toUpperCase();
+        if (command.size() > 1) {
+            expire(command.get(1));
+        }
+        switch (name) {
+        case "TIME":
+            return LuaValue.listOf(new LuaValue[] { LuaValue.valueOf(String.valueOf(now / 1000)),
+                    LuaValue.valueOf(String.valueOf(now % 1000 * 1000)) });
+        case "GET": {
+            String value = strings.get(command.get(1));
+            return value == null ? LuaValue.FALSE : LuaValue.valueOf(value);
+        }
+        case "SET":
+            strings.put(command.get(1), command.get(2));
+            expireAts.remove(command.get(1));
+            if (command.size() > 4 && "PX".equalsIgnoreCase(command.get(3))) {
+                pexpire(command.get(1), parseLong(command.get(4)));
+            }
+            return LuaValue.valueOf("OK");
+        case "INCRBY": {
+            long value = parseLong(strings.getOrDefault(command.get(1), "0")) + parseLong(command.get(2));
+            strings.put(command.get(1), String.valueOf(value));
+            return LuaValue.valueOf(value);
+        }
+        case "PEXPIRE":
+            if (!exists(command.get(1))) {
+                return LuaValue.valueOf(0);
+            }
+            pexpire(command.get(1), parseLong(command.get(2)));
+            return LuaValue.valueOf(1);
+        case "PTTL": {
+            if (!exists(command.get(1))) {
+                return LuaValue.valueOf(-2);
+            }
+            Long expireAt = expireAts.get(command.get(1));
+            return LuaValue.valueOf(expireAt == null ? -1 : expireAt - now);
+        }
+        case "HMGET": {
+            Map<String, String> hash = hashes.getOrDefault(command.get(1), new HashMap<>());
+            LuaTable result = new LuaTable();
+            for (int i = 2; i < command.size(); i++) {
+                String value = hash.get(command.get(i));
+                result.set(i - 1, value == null ? LuaValue.FALSE : LuaValue.valueOf(value));
+            }
+            return result;
+        }
+        case "HSET": {
+            Map<String, String> hash = hashes.computeIfAbsent(command.get(1), key -> new HashMap<>());
+            int added = 0;
+            for (int i = 2; i + 1 < command.size(); i += 2) {
+                if (hash.put(command.get(i), command.get(i + 1)) == null) {
+                    added++;
+                }
+            }
+            return LuaValue.valueOf(added);
+        }
+        case "ZADD": {
+            Map<String, Double> sortedSet = sortedSets.computeIfAbsent(command.get(1), key -> new HashMap<>());
+            return LuaValue.valueOf(sortedSet.put(command.get(3), parseScore(command.get(2))) == null ? 1 : 0);
+        }
+        case "ZCARD":
+            return LuaValue.valueOf(sortedSets.getOrDefault(command.get(1), new HashMap<>()).size());
+        case "ZREMRANGEBYSCORE": {
+            Map<String, Double> sortedSet = sortedSets.getOrDefault(command.get(1), new HashMap<>());
+            double min = parseScore(command.get(2));
+            double max = parseScore(command.get(3));
+            int removed = 0;
+            for (Iterator<Double> it = sortedSet.values().iterator(); it.hasNext();) {
+                double score = it.next();
+                if (score >= min && score <= max) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            if (sortedSet.isEmpty()) {
+                sortedSets.remove(command.get(1));
+            }
+            return LuaValue.valueOf(removed);
+        }
+        case "ZRANGE": {
+            List<Map.Entry<String, Double>> entries = new ArrayList<>(
+                    sortedSets.getOrDefault(command.get(1), new HashMap<>()).entrySet());
+            entries.sort(Map.Entry.<String, Double> comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+            int size = entries.size();
+            int start = normalize(Integer.parseInt(command.get(2)), size);
+            int stop = Math.min(normalize(Integer.parseInt(command.get(3)), size), size - 1);
+            boolean withScores = command.size() > 4 && "WITHSCORES".equalsIgnoreCase(command.get(4));
+            LuaTable result = new LuaTable();
+            int index = 1;
+            for (int i = start; i <= stop; i++) {
+                result.set(index++, LuaValue.valueOf(entries.get(i).getKey()));
+                if (withScores) {
+                    result.set(index++, LuaValue.valueOf(LuaValue.valueOf(entries.get(i).getValue()).tojstring()));
+                }
+            }
+            return result;
+        }
+        default:
+            throw new LuaError("ERR unknown command '" + name + "'");
+        }
+    }
+
+    private static int normalize(int index, int size) {
+        return index < 0 ? Math.max(0, size + index) : index;
+    }
+
+    private static long parseLong(String value) {
+        return (long) Double.parseDouble(value);
+    }
+
+    private static double parseScore(String value) {
+        if ("-inf".equalsIgnoreCase(value)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if ("+inf".equalsIgnoreCase(value) || "inf".equalsIgnoreCase(value)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.parseDouble(value);
+    }
+
+    private boolean exists(String key) {
+        return strings.containsKey(key) || hashes.containsKey(key) || sortedSets.containsKey(key);
+    }
+
+    private void pexpire(String key, long millis) {
+        expireAts.put(key, now + millis);
+    }
+
+    private void expire(String key) {
+        Long expireAt = expireAts.get(key);
+        if (expireAt != null && expireAt <= now) {
+            expireAts.remove(key);
+            strings.remove(key);
+            hashes.remove(key);
+            sortedSets.remove(key);
+        }
+    }
+}
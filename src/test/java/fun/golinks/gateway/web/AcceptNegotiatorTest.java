@@ -0,0 +1,37 @@
+package fun.golinks.gateway.web;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+public class AcceptNegotiatorTest {
+
+    @Test
+    public void testAcceptsHtml() {
+        String[] html = { "text/html", "text/html;q=0.9", "text/html,application/xhtml+xml,*/*;q=0.8",
+                "application/json, text/*", "application/json, */*;q=0.1" };
+        String[] json = { "", "*/*", "application/json", "application/json, text/plain, */*", "image/webp",
+                "text/htmlx", "invalid" };
+        for (String accept : html) {
+            Assertions.assertTrue(AcceptNegotiator.parse(accept), accept);
+            Assertions.assertTrue(AcceptNegotiator.acceptsHtml(accept), accept);
+            // 第二次命中缓存
+            Assertions.assertTrue(AcceptNegotiator.acceptsHtml(accept), accept);
+        }
+        for (String accept : json) {
+            Assertions.assertFalse(AcceptNegotiator.parse(accept), accept);
+            Assertions.assertFalse(AcceptNegotiator.acceptsHtml(accept), accept);
+            Assertions.assertFalse(AcceptNegotiator.acceptsHtml(accept), accept);
+        }
+    }
+
+    @Test
+    public void testHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        Assertions.assertFalse(AcceptNegotiator.acceptsHtml(headers));
+        headers.add(HttpHeaders.ACCEPT, "application/json");
+        Assertions.assertFalse(AcceptNegotiator.acceptsHtml(headers));
+        headers.add(HttpHeaders.ACCEPT, "text/html");
+        Assertions.assertTrue(AcceptNegotiator.acceptsHtml(headers));
+    }
+}